@@ -0,0 +1,46 @@
+package com.kpi.fict.ot.benchmark;
+
+import com.kpi.fict.ot.StationIndex;
+import com.kpi.fict.ot.io.NetworkLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The load path of the application: the network file is read by {@link NetworkLoader} and the index is frozen.
+ * @version 1.0-SNAPSHOT
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NetworkLoadBenchmark {
+    @Param({"kyiv", "generated-1000", "generated-20000"})
+    public String network;
+
+    private Path file;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = Networks.file(network);
+    }
+
+    @Benchmark
+    public StationIndex load() throws IOException {
+        return NetworkLoader.load(file).freeze();
+    }
+}
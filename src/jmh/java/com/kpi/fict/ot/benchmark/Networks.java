@@ -0,0 +1,117 @@
+package com.kpi.fict.ot.benchmark;
+
+import com.kpi.fict.ot.RouteCalculator;
+import com.kpi.fict.ot.StationIndex;
+import com.kpi.fict.ot.core.Line;
+import com.kpi.fict.ot.core.Route;
+import com.kpi.fict.ot.core.Station;
+import com.kpi.fict.ot.io.NetworkGenerator;
+import com.kpi.fict.ot.io.NetworkLoader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Networks and station pairs of the benchmarks.
+ * A network is either {@code kyiv}, the data file of the application, or {@code generated-N},
+ * a network of about N stations written by {@link NetworkGenerator} with a fixed seed.
+ * @version 1.0-SNAPSHOT
+ */
+public final class Networks {
+    /** The data file of the application. */
+    static final Path KYIV = Paths.get("src/main/resources/kyiv.json");
+    /** Prefix of the generated networks. */
+    private static final String GENERATED = "generated-";
+    /** Average number of stations of a generated line. */
+    private static final int STATIONS_PER_LINE = 40;
+    /** Seed of the generated networks and of the selected pairs. */
+    static final long SEED = 42;
+
+    /**
+     * Kind of the station pair of a route benchmark.
+     */
+    public enum PairKind {
+        SAME_LINE, ONE_TRANSFER, TWO_TRANSFERS, UNREACHABLE
+    }
+
+    private Networks() {
+    }
+
+    /**
+     * Returns the network file, generated networks are written to a temporary file.
+     * @param network name of the network
+     * @return the file
+     * @throws IOException if the file cannot be written
+     */
+    static Path file(String network) throws IOException {
+        if (!network.startsWith(GENERATED)) {
+            return KYIV;
+        }
+        Path file = Files.createTempFile("network", ".json");
+        file.toFile().deleteOnExit();
+        int stations = Integer.parseInt(network.substring(GENERATED.length()));
+        new NetworkGenerator()
+                .seed(SEED)
+                .lines(Math.max(3, stations / STATIONS_PER_LINE))
+                .stationsPerLine(STATIONS_PER_LINE / 2, STATIONS_PER_LINE * 3 / 2)
+                .hubs(stations / 1000, 3)
+                .generate(file);
+        return file;
+    }
+
+    /**
+     * Loads the network. A line with a single station that has no connections is added,
+     * so there is always an unreachable station, then the index is frozen.
+     * @param network name of the network
+     * @return frozen station index
+     * @throws IOException if the network cannot be loaded
+     */
+    static StationIndex load(String network) throws IOException {
+        StationIndex stationIndex = NetworkLoader.load(file(network));
+        int number = stationIndex.getLines().stream().mapToInt(Line::getNumber).max().orElse(0) + 1;
+        Line line = new Line(number, "Isolated");
+        Station station = new Station("Isolated station", line);
+        line.addStation(station);
+        stationIndex.addLine(line);
+        stationIndex.addStation(station);
+        return stationIndex.freeze();
+    }
+
+    /**
+     * Selects a pair of stations. Connected pairs are classified by the number of transfers of the fastest route.
+     * If the network has no such pair, e.g. all lines of Kyiv are connected with each other,
+     * the pair with the closest number of transfers is used.
+     * @param stationIndex station index loaded by {@link #load(String)}
+     * @param kind kind of the pair
+     * @return station of departure and destination station
+     */
+    static Station[] pair(StationIndex stationIndex, PairKind kind) {
+        List<Station> stations = new ArrayList<>(stationIndex.getStations());
+        Station isolated = stationIndex.getStation("Isolated station");
+        stations.remove(isolated);
+        Random random = new Random(SEED);
+        if (kind == PairKind.UNREACHABLE) {
+            return new Station[]{stations.get(random.nextInt(stations.size())), isolated};
+        }
+        RouteCalculator calculator = new RouteCalculator(stationIndex, RouteCalculator.Mode.GRAPH);
+        int transfers = kind.ordinal();
+        Station[] best = null;
+        int bestDifference = Integer.MAX_VALUE;
+        for (int attempt = 0; attempt < 100_000 && bestDifference > 0; attempt++) {
+            Station from = stations.get(random.nextInt(stations.size()));
+            Station to = stations.get(random.nextInt(stations.size()));
+            List<Station> route = calculator.getShortestRoute(from, to);
+            int difference = Math.abs(Route.countTransfers(route) - transfers);
+            if (route.size() > 2 && difference < bestDifference) {
+                best = new Station[]{from, to};
+                bestDifference = difference;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,60 @@
+package com.kpi.fict.ot.benchmark;
+
+import com.kpi.fict.ot.RouteCalculator;
+import com.kpi.fict.ot.StationIndex;
+import com.kpi.fict.ot.core.Station;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Route search of {@link RouteCalculator#getShortestRoute(Station, Station)} for pairs of stations
+ * on the same line, with one and two transfers and without a route, in every search mode.
+ * @version 1.0-SNAPSHOT
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouteBenchmark {
+    @Param({"kyiv", "generated-1000", "generated-20000"})
+    public String network;
+
+    @Param
+    public Networks.PairKind pair;
+
+    @Param
+    public RouteCalculator.Mode mode;
+
+    private RouteCalculator calculator;
+    private Station from;
+    private Station to;
+
+    @Setup
+    public void setUp() throws IOException {
+        StationIndex stationIndex = Networks.load(network);
+        calculator = new RouteCalculator(stationIndex, mode);
+        Station[] stations = Networks.pair(stationIndex, pair);
+        from = stations[0];
+        to = stations[1];
+    }
+
+    @Benchmark
+    public List<Station> getShortestRoute() {
+        return calculator.getShortestRoute(from, to);
+    }
+}
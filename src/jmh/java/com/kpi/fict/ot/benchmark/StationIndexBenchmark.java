@@ -0,0 +1,90 @@
+package com.kpi.fict.ot.benchmark;
+
+import com.kpi.fict.ot.StationIndex;
+import com.kpi.fict.ot.core.Station;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Station lookups of {@link StationIndex}. Every invocation takes the next station of a shuffled sample,
+ * so the lookups are not answered from the same cache lines.
+ * @version 1.0-SNAPSHOT
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StationIndexBenchmark {
+    /** Size of the sample of stations. */
+    private static final int SAMPLE_SIZE = 1024;
+
+    @Param({"kyiv", "generated-1000", "generated-20000"})
+    public String network;
+
+    private StationIndex stationIndex;
+    private String[] names;
+    private int[] lineNumbers;
+    private Station[] connected;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        stationIndex = Networks.load(network);
+        List<Station> stations = new ArrayList<>(stationIndex.getStations());
+        Collections.shuffle(stations, new Random(Networks.SEED));
+        names = new String[SAMPLE_SIZE];
+        lineNumbers = new int[SAMPLE_SIZE];
+        for (int i = 0; i < SAMPLE_SIZE; i++) {
+            Station station = stations.get(i % stations.size());
+            names[i] = station.getName();
+            lineNumbers[i] = station.getLine().getNumber();
+        }
+        List<Station> transfers = new ArrayList<>();
+        for (Station station : stations) {
+            if (!stationIndex.getConnectedStations(station).isEmpty()) {
+                transfers.add(station);
+            }
+        }
+        connected = transfers.toArray(new Station[0]);
+    }
+
+    private int next() {
+        next = (next + 1) & (SAMPLE_SIZE - 1);
+        return next;
+    }
+
+    @Benchmark
+    public Station getStationByName() {
+        return stationIndex.getStation(names[next()]);
+    }
+
+    @Benchmark
+    public Station getStationByNameAndLine() {
+        int i = next();
+        return stationIndex.getStation(names[i], lineNumbers[i]);
+    }
+
+    @Benchmark
+    public Set<Station> getConnectedStations() {
+        return stationIndex.getConnectedStations(connected[next() % connected.length]);
+    }
+}
@@ -1,20 +1,39 @@
 package com.kpi.fict.ot;
 
+import com.kpi.fict.ot.batch.BatchRouter;
 import com.kpi.fict.ot.core.Line;
 import com.kpi.fict.ot.core.Station;
+import com.kpi.fict.ot.io.NetworkFormatException;
+import com.kpi.fict.ot.graph.ContractionHierarchy;
+import com.kpi.fict.ot.graph.RouteTable;
+import com.kpi.fict.ot.graph.StationGraph;
+import com.kpi.fict.ot.io.NetworkLoader;
+import com.kpi.fict.ot.io.NetworkSnapshot;
+import com.kpi.fict.ot.io.NetworkWatcher;
+import com.kpi.fict.ot.lookup.StationMatch;
+import com.kpi.fict.ot.metrics.Metrics;
+import com.kpi.fict.ot.metrics.MetricsReporter;
+import com.kpi.fict.ot.metrics.QueryTracer;
+import com.kpi.fict.ot.server.RouteServer;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.Marker;
 import org.apache.logging.log4j.MarkerManager;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
 
+import javax.management.JMException;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The main class of the mini-project, the task of which is to calculate the shortest route between metro stations.
@@ -49,22 +68,106 @@ public class Main {
      * The path to the file with the structure of the Kyiv metro.
      */
     private static final String DATA_FILE = "src/main/resources/kyiv.json";
+    /**
+     * Maximum number of suggested stations for a name that is not found.
+     */
+    private static final int SUGGESTIONS_LIMIT = 5;
     /**
      * Scanner.
      */
     private static Scanner scanner;
 
     /**
-     * Structure container.
+     * Structure container. Replaced by the network watcher when the data file changes.
+     */
+    private static volatile StationIndex stationIndex;
+
+    /**
+     * Command line option that selects the route search strategy, e.g. {@code --mode=legacy}.
+     */
+    private static final String MODE_OPTION = "--mode=";
+    /**
+     * Command line option with the path to the binary network snapshot, e.g. {@code --snapshot=kyiv.snapshot}.
+     * The snapshot is written if it is missing or older than the data file.
+     */
+    private static final String SNAPSHOT_OPTION = "--snapshot=";
+    /**
+     * Command line option that reloads the network when the data file changes.
+     */
+    private static final String WATCH_OPTION = "--watch";
+    /**
+     * Command line option that starts the HTTP route server on the port instead of the console, e.g. {@code --server=8080}.
+     */
+    private static final String SERVER_OPTION = "--server=";
+    /**
+     * Command line option with the maximum number of requests the server handles at the same time.
+     */
+    private static final String MAX_CONCURRENCY_OPTION = "--max-concurrency=";
+    /**
+     * Command line option with the maximum size of a request to the server in bytes.
+     */
+    private static final String MAX_REQUEST_SIZE_OPTION = "--max-request-size=";
+    /**
+     * Command line option with the period of the metrics snapshots in the log in seconds, e.g. {@code --metrics=60}.
+     */
+    private static final String METRICS_OPTION = "--metrics=";
+    /**
+     * Command line option with the share of the route queries traced to the log, e.g. {@code --trace=0.01}.
+     */
+    private static final String TRACE_OPTION = "--trace=";
+    /**
+     * Command line option with the file of station pairs to route in batch mode, {@code -} for the standard input,
+     * e.g. {@code --batch=trips.csv}.
+     */
+    private static final String BATCH_OPTION = "--batch=";
+    /**
+     * Command line option with the result file of batch mode, the standard output by default.
+     */
+    private static final String OUTPUT_OPTION = "--output=";
+    /**
+     * Command line option with the result format of batch mode, {@code csv} (default) or {@code jsonl}.
+     */
+    private static final String FORMAT_OPTION = "--format=";
+    /**
+     * Command line option with the number of worker threads of batch mode.
+     */
+    private static final String THREADS_OPTION = "--threads=";
+    /**
+     * Command line option with the maximum memory of the route table of {@code --mode=table} in megabytes,
+     * e.g. {@code --table-limit=512}.
      */
-    private static StationIndex stationIndex;
+    private static final String TABLE_LIMIT_OPTION = "--table-limit=";
 
     /**
      * Application entry point.
      * There is an infinite loop for inputting stations and outputting the shortest route.
      */
     public static void main(String[] args) {
-        RouteCalculator calculator = getRouteCalculator();
+        exposeMetrics(args);
+        String snapshot = getOption(args, SNAPSHOT_OPTION);
+        String tableLimit = getOption(args, TABLE_LIMIT_OPTION);
+        long routeTableLimit = tableLimit != null ? Long.parseLong(tableLimit) << 20 :
+                RouteCalculator.DEFAULT_ROUTE_TABLE_LIMIT;
+        RouteCalculator calculator = snapshot != null ?
+                getRouteCalculator(getMode(args), routeTableLimit, Paths.get(snapshot)) :
+                getRouteCalculator(getMode(args), routeTableLimit);
+        String traceRate = getOption(args, TRACE_OPTION);
+        if (traceRate != null) {
+            calculator.setTracer(QueryTracer.logging(Double.parseDouble(traceRate)));
+        }
+        if (getOption(args, WATCH_OPTION) != null) {
+            watchNetwork(calculator);
+        }
+        String batch = getOption(args, BATCH_OPTION);
+        if (batch != null) {
+            runBatch(calculator, args, batch);
+            return;
+        }
+        String port = getOption(args, SERVER_OPTION);
+        if (port != null) {
+            startServer(calculator, args, Integer.parseInt(port));
+            return;
+        }
 
         System.out.println("Програма розрахунку маршрутів метрополітену Києва\n");
         scanner = new Scanner(System.in);
@@ -81,11 +184,206 @@ public class Main {
     /**
      * Returns a new {@link RouteCalculator} with a {@link StationIndex} object as a parameter.
      *
+     * @param mode route search strategy
+     * @param routeTableLimit maximum memory of the route table in bytes
+     * @return route calculator.
+     */
+    private static RouteCalculator getRouteCalculator(RouteCalculator.Mode mode, long routeTableLimit) {
+        createStationIndex();
+        RouteCalculator calculator = new RouteCalculator(stationIndex, RouteCalculator.compileGraph(stationIndex),
+                mode, routeTableLimit);
+        logHierarchy(calculator.getHierarchy());
+        logRouteTable(calculator);
+        return calculator;
+    }
+
+    /**
+     * Writes the preprocessing time and the memory of the contraction hierarchy to the log.
+     *
+     * @param hierarchy the hierarchy or null
+     */
+    private static void logHierarchy(ContractionHierarchy hierarchy) {
+        if (hierarchy != null) {
+            LOGGER.info("Contraction hierarchy of {} stations: {} shortcuts, built in {} ms, {} bytes",
+                    hierarchy.getGraph().size(), hierarchy.getShortcutCount(), hierarchy.getPreprocessingTime(),
+                    hierarchy.getMemoryUsage());
+        }
+    }
+
+    /**
+     * Registers the metrics MXBean and starts writing the metrics to the log if the period is given.
+     *
+     * @param args command line arguments
+     */
+    private static void exposeMetrics(String[] args) {
+        try {
+            Metrics.getDefault().registerMBean();
+        } catch (JMException ex) {
+            LOGGER.error(EXCEPTIONS_MARKER, "Metrics cannot be registered", ex);
+        }
+        String period = getOption(args, METRICS_OPTION);
+        if (period != null) {
+            new MetricsReporter(Metrics.getDefault(), Long.parseLong(period), TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Writes the memory of the route table to the log, or the reason why the routes are searched on demand.
+     *
+     * @param calculator route calculator
+     */
+    private static void logRouteTable(RouteCalculator calculator) {
+        if (calculator.getMode() != RouteCalculator.Mode.TABLE) {
+            return;
+        }
+        RouteTable table = calculator.getRouteTable();
+        if (table != null) {
+            LOGGER.info("Route table of {} stations: built in {} ms, {} bytes", table.getGraph().size(),
+                    table.getBuildTime(), table.getMemoryUsage());
+        } else {
+            LOGGER.warn("Route table needs {} bytes over the limit of {} bytes, routes are searched on demand",
+                    RouteTable.estimateMemory(calculator.getGraph()), calculator.getRouteTableLimit());
+        }
+    }
+
+    /**
+     * Starts reloading the network when the data file changes. The new index is swapped into the calculator,
+     * the route being printed is finished on the old one.
+     *
+     * @param calculator route calculator
+     */
+    private static void watchNetwork(RouteCalculator calculator) {
+        try {
+            new NetworkWatcher(Paths.get(DATA_FILE), index -> {
+                calculator.swap(index);
+                stationIndex = index;
+            });
+        } catch (IOException ex) {
+            LOGGER.error(EXCEPTIONS_MARKER, "File {} cannot be watched", DATA_FILE, ex);
+        }
+    }
+
+    /**
+     * Starts the HTTP route server. The server threads keep the application running.
+     *
+     * @param calculator route calculator
+     * @param args command line arguments with the limits of the server
+     * @param port the port
+     */
+    private static void startServer(RouteCalculator calculator, String[] args, int port) {
+        String maxConcurrency = getOption(args, MAX_CONCURRENCY_OPTION);
+        String maxRequestSize = getOption(args, MAX_REQUEST_SIZE_OPTION);
+        try {
+            new RouteServer(calculator, new InetSocketAddress(port),
+                    maxConcurrency != null ? Integer.parseInt(maxConcurrency) : RouteServer.DEFAULT_MAX_CONCURRENCY,
+                    maxRequestSize != null ? Integer.parseInt(maxRequestSize) : RouteServer.DEFAULT_MAX_REQUEST_SIZE)
+                    .start();
+        } catch (IOException ex) {
+            LOGGER.error(EXCEPTIONS_MARKER, "Server cannot be started on port {}", port, ex);
+        }
+    }
+
+    /**
+     * Computes the routes of the station pairs of the file and writes them without the console dialog.
+     *
+     * @param calculator route calculator
+     * @param args command line arguments with the output options
+     * @param input the file of station pairs or {@code -} for the standard input
+     */
+    private static void runBatch(RouteCalculator calculator, String[] args, String input) {
+        String output = getOption(args, OUTPUT_OPTION);
+        String format = getOption(args, FORMAT_OPTION);
+        String threads = getOption(args, THREADS_OPTION);
+        int threadCount = threads != null ? Integer.parseInt(threads) : Runtime.getRuntime().availableProcessors();
+        try (BufferedReader reader = input.equals("-") ?
+                new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)) :
+                Files.newBufferedReader(Paths.get(input));
+             BufferedWriter writer = output != null ? Files.newBufferedWriter(Paths.get(output)) :
+                     new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+             BatchRouter router = new BatchRouter(calculator,
+                     format != null ? BatchRouter.Format.valueOf(format.toUpperCase()) : BatchRouter.Format.CSV,
+                     threadCount, threadCount * BatchRouter.DEFAULT_WINDOW_PER_THREAD)) {
+            long start = System.nanoTime();
+            long count = router.run(reader, writer);
+            LOGGER.info("Batch of {} routes computed in {} ms", count,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException ex) {
+            LOGGER.error(EXCEPTIONS_MARKER, "Batch {} cannot be computed", input, ex);
+        }
+    }
+
+    /**
+     * Reads the route search strategy from the command line arguments.
+     * {@link RouteCalculator.Mode#GRAPH} is used by default.
+     *
+     * @param args command line arguments
+     * @return route search strategy
+     */
+    private static RouteCalculator.Mode getMode(String[] args) {
+        String mode = getOption(args, MODE_OPTION);
+        return mode != null ? RouteCalculator.Mode.valueOf(mode.toUpperCase()) : RouteCalculator.Mode.GRAPH;
+    }
+
+    /**
+     * Returns the value of the command line option.
+     *
+     * @param args command line arguments
+     * @param option option prefix
+     * @return value or null
+     */
+    private static String getOption(String[] args, String option) {
+        for (String arg : args) {
+            if (arg.startsWith(option)) {
+                return arg.substring(option.length());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns a new {@link RouteCalculator} restored from the binary snapshot.
+     * If the snapshot is missing, outdated or unreadable, the data file is loaded and the snapshot is written again.
+     * In {@link RouteCalculator.Mode#HIERARCHY} mode the contraction hierarchy is stored in the snapshot as well.
+     *
+     * @param mode route search strategy
+     * @param routeTableLimit maximum memory of the route table in bytes
+     * @param snapshot the snapshot file
      * @return route calculator.
      */
-    private static RouteCalculator getRouteCalculator() {
+    private static RouteCalculator getRouteCalculator(RouteCalculator.Mode mode, long routeTableLimit,
+                                                      Path snapshot) {
+        try {
+            if (Files.exists(snapshot) &&
+                    Files.getLastModifiedTime(snapshot).compareTo(Files.getLastModifiedTime(Paths.get(DATA_FILE))) >= 0) {
+                NetworkSnapshot network = NetworkSnapshot.open(snapshot);
+                if (mode != RouteCalculator.Mode.HIERARCHY) {
+                    stationIndex = network.getStationIndex();
+                    RouteCalculator calculator = new RouteCalculator(stationIndex, network.getGraph(), mode,
+                            routeTableLimit);
+                    logRouteTable(calculator);
+                    return calculator;
+                }
+                if (network.getHierarchy() != null) {
+                    stationIndex = network.getStationIndex();
+                    logHierarchy(network.getHierarchy());
+                    return new RouteCalculator(stationIndex, network.getHierarchy());
+                }
+            }
+        } catch (IOException | NetworkFormatException ex) {
+            LOGGER.error(EXCEPTIONS_MARKER, "Snapshot {} cannot be read", snapshot, ex);
+        }
+
         createStationIndex();
-        return new RouteCalculator(stationIndex);
+        StationGraph graph = RouteCalculator.compileGraph(stationIndex);
+        RouteCalculator calculator = new RouteCalculator(stationIndex, graph, mode, routeTableLimit);
+        logHierarchy(calculator.getHierarchy());
+        logRouteTable(calculator);
+        try {
+            NetworkSnapshot.write(snapshot, graph, calculator.getHierarchy());
+        } catch (IOException ex) {
+            LOGGER.error(EXCEPTIONS_MARKER, "Snapshot {} cannot be written", snapshot, ex);
+        }
+        return calculator;
     }
 
     /**
@@ -111,7 +409,7 @@ public class Main {
 
     /**
      * Finds a station by its name if it exists in the {@link StationIndex} object.
-     * Otherwise, the warning will be sent to the log file.
+     * Otherwise, the warning will be sent to the log file and similar station names are suggested.
      *
      * @param message the input string
      * @return {@link Station}
@@ -127,113 +425,32 @@ public class Main {
             }
             LOGGER.warn(INVALID_STATIONS_MARKER, "Станція '{}' не знайдена", line);
             System.out.println("Станція не знайдена :(");
+            List<StationMatch> matches = stationIndex.findStations(line, SUGGESTIONS_LIMIT);
+            if (!matches.isEmpty()) {
+                System.out.println("Можливо, ви мали на увазі:");
+                matches.forEach(match -> System.out.println("\t" + match.getStation().getName() +
+                        " (" + match.getStation().getLine().getName() + " лінія)"));
+            }
         }
     }
 
     /**
-     * Generic method that provides parsing of various data represented in json.
+     * Loads the network file with the streaming {@link NetworkLoader} and freezes the index.
+     * Errors are written to the log with the position in the file, the index stays empty in this case.
      *
-     * @see JSONParser
-     * @see JSONObject
-     * @see JSONArray
+     * @see NetworkLoader
      */
     private static void createStationIndex() {
-        stationIndex = new StationIndex();
         try {
-            JSONParser parser = new JSONParser();
-            JSONObject jsonData = (JSONObject) parser.parse(getJsonFile());
-
-            JSONArray linesArray = (JSONArray) jsonData.get("lines");
-            parseLines(linesArray);
-
-            JSONObject stationsObject = (JSONObject) jsonData.get("stations");
-            parseStations(stationsObject);
-
-            JSONArray connectionsArray = (JSONArray) jsonData.get("connections");
-            parseConnections(connectionsArray);
-        } catch (Exception ex) {
+            stationIndex = NetworkLoader.load(Paths.get(DATA_FILE)).freeze();
+        } catch (NetworkFormatException ex) {
+            stationIndex = new StationIndex();
             LOGGER.error(EXCEPTIONS_MARKER, "Parse exception", ex);
             ex.printStackTrace();
-        }
-    }
-
-    /**
-     * Gets a list of stations with connections.
-     *
-     * @param connectionsArray JSON array
-     */
-    private static void parseConnections(JSONArray connectionsArray) {
-        connectionsArray.forEach(connectionObject ->
-        {
-            JSONArray connection = (JSONArray) connectionObject;
-            List<Station> connectionStations = new ArrayList<>();
-            connection.forEach(item ->
-            {
-                JSONObject itemObject = (JSONObject) item;
-                int lineNumber = ((Long) itemObject.get("line")).intValue();
-                String stationName = (String) itemObject.get("station");
-
-                Station station = stationIndex.getStation(stationName, lineNumber);
-                if (station == null) {
-                    throw new IllegalArgumentException("com.kpi.fict.ot.core.Station " +
-                            stationName + " on line " + lineNumber + " not found");
-                }
-                connectionStations.add(station);
-            });
-            stationIndex.addConnection(connectionStations);
-        });
-    }
-
-    /**
-     * Receives stations.
-     *
-     * @param stationsObject JSON object
-     */
-    private static void parseStations(JSONObject stationsObject) {
-        stationsObject.keySet().forEach(lineNumberObject ->
-        {
-            int lineNumber = Integer.parseInt((String) lineNumberObject);
-            Line line = stationIndex.getLine(lineNumber);
-            JSONArray stationsArray = (JSONArray) stationsObject.get(lineNumberObject);
-            stationsArray.forEach(stationObject ->
-            {
-                Station station = new Station((String) stationObject, line);
-                stationIndex.addStation(station);
-                line.addStation(station);
-            });
-        });
-    }
-
-    /**
-     * Gets lines.
-     *
-     * @param linesArray JSON array
-     */
-    private static void parseLines(JSONArray linesArray) {
-        linesArray.forEach(lineObject -> {
-            JSONObject lineJsonObject = (JSONObject) lineObject;
-            Line line = new Line(
-                    ((Long) lineJsonObject.get("number")).intValue(),
-                    (String) lineJsonObject.get("name")
-            );
-            stationIndex.addLine(line);
-        });
-    }
-
-    /**
-     * Reads a json file and returns it as a string.
-     *
-     * @return string
-     */
-    private static String getJsonFile() {
-        StringBuilder builder = new StringBuilder();
-        try {
-            List<String> lines = Files.readAllLines(Paths.get(DATA_FILE));
-            lines.forEach(builder::append);
-        } catch (Exception ex) {
+        } catch (IOException ex) {
+            stationIndex = new StationIndex();
             LOGGER.error(EXCEPTIONS_MARKER, "File {} not found", DATA_FILE, ex);
             ex.printStackTrace();
         }
-        return builder.toString();
     }
-}
\ No newline at end of file
+}
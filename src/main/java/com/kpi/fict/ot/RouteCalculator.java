@@ -1,11 +1,35 @@
 package com.kpi.fict.ot;
 
+import com.kpi.fict.ot.cache.RouteCache;
+import com.kpi.fict.ot.core.Closure;
+import com.kpi.fict.ot.core.Line;
+import com.kpi.fict.ot.core.LineSegment;
+import com.kpi.fict.ot.core.Route;
 import com.kpi.fict.ot.core.Station;
+import com.kpi.fict.ot.graph.ContractionHierarchy;
+import com.kpi.fict.ot.graph.KShortestPaths;
+import com.kpi.fict.ot.graph.LineGraph;
+import com.kpi.fict.ot.graph.RaptorSearch;
+import com.kpi.fict.ot.graph.Reachability;
+import com.kpi.fict.ot.graph.RouteAlternative;
+import com.kpi.fict.ot.graph.RouteTable;
+import com.kpi.fict.ot.graph.ShortestPathSearch;
+import com.kpi.fict.ot.graph.StationGraph;
+import com.kpi.fict.ot.graph.TravelTimeMatrix;
+import com.kpi.fict.ot.lookup.NearbyStation;
+import com.kpi.fict.ot.metrics.LatencyHistogram;
+import com.kpi.fict.ot.metrics.Metrics;
+import com.kpi.fict.ot.metrics.QueryTrace;
+import com.kpi.fict.ot.metrics.QueryTracer;
 
+import java.time.Clock;
+import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * The class contains the underlying business logic for computing processes.
@@ -13,206 +37,1137 @@ import java.util.Set;
  * @author Linenko Kostyantyn, student of IO-01 in KPI
  */
 public class RouteCalculator {
-    /** Data container */
-    private final StationIndex stationIndex;
+    /**
+     * Route search strategy.
+     */
+    public enum Mode {
+        /**
+         * Shortest path search over the compiled station graph. Supports any number of transfers,
+         * the search is directed to the destination with A* if every station has a location.
+         */
+        GRAPH,
+        /**
+         * Sequential search of routes on the line, with one and with two transfers.
+         * The intermediate lines are taken from the {@link LineGraph} of the graph.
+         */
+        LEGACY,
+        /**
+         * Bidirectional search over a {@link ContractionHierarchy} of the graph. Gives the routes of {@link #GRAPH}
+         * mode, the hierarchy is built whenever the graph is compiled.
+         */
+        HIERARCHY,
+        /**
+         * The fastest of the routes with the fewest transfers. Supports any number of transfers,
+         * only the stations of the lines on the sequences with the fewest transfers are expanded.
+         */
+        MIN_TRANSFERS,
+        /**
+         * Routes of {@link #GRAPH} mode restored from a {@link RouteTable} of all pairs of stations, built whenever
+         * the graph is compiled. If the memory estimate of the table exceeds the limit of the calculator,
+         * the table is not built and the routes are searched on demand as in {@link #GRAPH} mode.
+         */
+        TABLE
+    }
+
+    /** Default limit of the memory of the route table of {@link Mode#TABLE} mode, 256 MB. */
+    public static final long DEFAULT_ROUTE_TABLE_LIMIT = 256L << 20;
+
+    /** Route search strategy. */
+    private final Mode mode;
+    /** Limit of the memory of the route table. */
+    private final long routeTableLimit;
+    /** Current station index with the graph compiled from it. */
+    private volatile Network network;
+    /** Route cache or null. */
+    private volatile RouteCache routeCache;
+    /** Tracer of sampled queries or null. */
+    private volatile QueryTracer tracer;
+    /** Registered closures, modified under the lock of the calculator. */
+    private final List<Closure> closures = new CopyOnWriteArrayList<>();
+    /** Clock of the closure windows. */
+    private volatile Clock clock = Clock.systemUTC();
 
-    /** Average travel time between neighboring stations <b>without</b> a transfer. */
-    private static final double INTER_STATION_DURATION = 2.5;
     /** Average travel time between neighboring stations <b>with</b> a transfer. */
-    private static final double INTER_CONNECTION_DURATION = 3.5;
+    private static final double INTER_CONNECTION_DURATION = StationIndex.DEFAULT_TRANSFER_TIME;
+
+    /** Latency of the queries answered with a route on one line. */
+    private static final LatencyHistogram SAME_LINE_LATENCY = Metrics.getDefault().histogram("route.sameLine");
+    /** Latency of the queries answered with a route with one transfer. */
+    private static final LatencyHistogram ONE_TRANSFER_LATENCY = Metrics.getDefault().histogram("route.oneTransfer");
+    /** Latency of the queries answered with a route with two or more transfers. */
+    private static final LatencyHistogram TWO_TRANSFERS_LATENCY = Metrics.getDefault().histogram("route.twoTransfers");
+    /** Latency of the queries without a route. */
+    private static final LatencyHistogram NO_ROUTE_LATENCY = Metrics.getDefault().histogram("route.none");
+    /** Time to compile the graph with the hierarchy or the line graph of the mode. */
+    private static final LatencyHistogram COMPILE_LATENCY = Metrics.getDefault().histogram("graph.compile");
+    /** Time to apply the closures to the graph and to the route cache. */
+    private static final LatencyHistogram CLOSURE_LATENCY = Metrics.getDefault().histogram("graph.closures");
 
     /**
-     * A single container.
+     * Creates a calculator in {@link Mode#GRAPH} mode.
      * @param stationIndex station index.
      */
     public RouteCalculator(StationIndex stationIndex) {
-        this.stationIndex = stationIndex;
+        this(stationIndex, Mode.GRAPH);
+    }
+
+    /**
+     * Creates a calculator with the given search strategy.
+     * The graph is compiled now and again on the first query after the station index changes.
+     * @param stationIndex station index.
+     * @param mode route search strategy.
+     */
+    public RouteCalculator(StationIndex stationIndex, Mode mode) {
+        this(stationIndex, compileGraph(stationIndex), mode);
+    }
+
+    /**
+     * Creates a calculator over an already compiled graph, e.g. one restored from a snapshot.
+     * @param stationIndex station index.
+     * @param graph graph compiled from the station index.
+     * @param mode route search strategy.
+     */
+    public RouteCalculator(StationIndex stationIndex, StationGraph graph, Mode mode) {
+        this(stationIndex, graph, mode, DEFAULT_ROUTE_TABLE_LIMIT);
+    }
+
+    /**
+     * Creates a calculator over an already compiled graph with the limit of the route table of
+     * {@link Mode#TABLE} mode.
+     * @param stationIndex station index.
+     * @param graph graph compiled from the station index.
+     * @param mode route search strategy.
+     * @param routeTableLimit maximum memory of the route table in bytes
+     */
+    public RouteCalculator(StationIndex stationIndex, StationGraph graph, Mode mode, long routeTableLimit) {
+        this.mode = mode;
+        this.routeTableLimit = routeTableLimit;
+        this.network = prepare(stationIndex, stationIndex.getVersion(), graph, null, 0);
+    }
+
+    /**
+     * Creates a calculator in {@link Mode#HIERARCHY} mode over an already built hierarchy, e.g. one restored
+     * from a snapshot.
+     * @param stationIndex station index.
+     * @param hierarchy hierarchy of the graph compiled from the station index.
+     */
+    public RouteCalculator(StationIndex stationIndex, ContractionHierarchy hierarchy) {
+        this.mode = Mode.HIERARCHY;
+        this.routeTableLimit = DEFAULT_ROUTE_TABLE_LIMIT;
+        this.network = prepare(stationIndex, stationIndex.getVersion(), hierarchy.getGraph(), hierarchy, 0);
+    }
+
+    /**
+     * Compiles the station index into a graph with the average travel times as edge weights.
+     * @param stationIndex station index.
+     * @return graph
+     */
+    public static StationGraph compileGraph(StationIndex stationIndex) {
+        return StationGraph.compile(stationIndex);
+    }
+
+    /**
+     * Prepares the compiled graph for the mode: builds the hierarchy in {@link Mode#HIERARCHY} mode,
+     * the line graph in {@link Mode#LEGACY} and {@link Mode#MIN_TRANSFERS} modes and the route table
+     * in {@link Mode#TABLE} mode if it fits in the limit.
+     * @param stationIndex station index
+     * @param version version of the station index
+     * @param graph compiled graph
+     * @param hierarchy already built hierarchy or null
+     * @param generation route cache generation
+     * @return network
+     */
+    private Network prepare(StationIndex stationIndex, long version, StationGraph graph,
+                            ContractionHierarchy hierarchy, long generation) {
+        if (hierarchy == null && mode == Mode.HIERARCHY) {
+            hierarchy = ContractionHierarchy.build(graph);
+        }
+        LineGraph lineGraph = mode == Mode.LEGACY || mode == Mode.MIN_TRANSFERS ? LineGraph.compile(graph) : null;
+        RouteTable routeTable = mode == Mode.TABLE && RouteTable.estimateMemory(graph) <= routeTableLimit ?
+                RouteTable.build(graph) : null;
+        return new Network(stationIndex, version, graph, hierarchy, routeTable, generation, graph,
+                new ShortestPathSearch(graph), new KShortestPaths(graph), new RaptorSearch(graph), lineGraph, null,
+                List.of(), Long.MAX_VALUE);
+    }
+
+    /**
+     * Applies the closures active at the time to the network. Closed stations are not resolved, their edges and
+     * the edges of closed segments and transfers are blocked in a copy of the graph weights, the searches and
+     * the line graph work on the blocked graph. The hierarchy and the route table are kept: their routes are
+     * checked against the closures and searched again only if they pass a closed element.
+     * Closures of stations that are not part of the network are ignored.
+     * @param network network
+     * @param time the time
+     * @return network with the closures
+     */
+    private Network applyClosures(Network network, Instant time) {
+        List<Closure> active = new ArrayList<>();
+        long nextChange = Long.MAX_VALUE;
+        int[] stations = new int[closures.size()];
+        int[] tracks = new int[closures.size() * 2];
+        int[] transfers = new int[closures.size() * 2];
+        int stationCount = 0;
+        int trackCount = 0;
+        int transferCount = 0;
+        for (Closure closure : closures) {
+            if (!closure.isActive(time)) {
+                if (closure.getStart() != null && time.isBefore(closure.getStart())) {
+                    nextChange = Math.min(nextChange, ceilMillis(closure.getStart()));
+                }
+                continue;
+            }
+            if (closure.getEnd() != null) {
+                nextChange = Math.min(nextChange, ceilMillis(closure.getEnd()));
+            }
+            int from = network.find(closure.getFrom());
+            int to = closure.getTo() != null ? network.find(closure.getTo()) : from;
+            if (from < 0 || to < 0) {
+                continue;
+            }
+            active.add(closure);
+            if (closure.getType() == Closure.Type.STATION) {
+                stations[stationCount++] = from;
+            } else if (closure.getType() == Closure.Type.SEGMENT) {
+                tracks[trackCount++] = from;
+                tracks[trackCount++] = to;
+            } else {
+                transfers[transferCount++] = from;
+                transfers[transferCount++] = to;
+            }
+        }
+        if (active.isEmpty()) {
+            LineGraph lineGraph = network.lineGraph != null && network.lineGraph.getGraph() == network.graph ?
+                    network.lineGraph : mode == Mode.LEGACY || mode == Mode.MIN_TRANSFERS ?
+                    LineGraph.compile(network.graph) : null;
+            return network.withClosures(network.graph, lineGraph, null, List.of(), nextChange);
+        }
+        StationGraph passable = network.graph.withBlockedEdges(Arrays.copyOf(stations, stationCount),
+                Arrays.copyOf(tracks, trackCount), Arrays.copyOf(transfers, transferCount));
+        boolean[] closed = new boolean[passable.size()];
+        for (int i = 0; i < stationCount; i++) {
+            closed[stations[i]] = true;
+        }
+        LineGraph lineGraph = mode == Mode.LEGACY || mode == Mode.MIN_TRANSFERS ? LineGraph.compile(passable) : null;
+        return network.withClosures(passable, lineGraph, closed, List.copyOf(active), nextChange);
+    }
+
+    /**
+     * Returns the first millisecond at or after the instant.
+     */
+    private static long ceilMillis(Instant instant) {
+        long millis = instant.toEpochMilli();
+        return instant.getNano() % 1_000_000 != 0 ? millis + 1 : millis;
+    }
+
+    /**
+     * Returns the current station index.
+     * @return station index
+     */
+    public StationIndex getStationIndex() {
+        return network().stationIndex;
+    }
+
+    /**
+     * Returns the compiled station graph.
+     * @return graph
+     */
+    public StationGraph getGraph() {
+        return network().graph;
+    }
+
+    /**
+     * Returns the contraction hierarchy of the graph.
+     * @return hierarchy or null if the mode is not {@link Mode#HIERARCHY}
+     */
+    public ContractionHierarchy getHierarchy() {
+        return network().hierarchy;
+    }
+
+    /**
+     * Returns the line graph of the graph.
+     * @return line graph or null if the mode is neither {@link Mode#LEGACY} nor {@link Mode#MIN_TRANSFERS}
+     */
+    public LineGraph getLineGraph() {
+        return network().lineGraph;
+    }
+
+    /**
+     * Returns the route table of the graph.
+     * @return route table or null if the mode is not {@link Mode#TABLE} or the table exceeds the limit
+     */
+    public RouteTable getRouteTable() {
+        return network().routeTable;
+    }
+
+    /**
+     * Returns the limit of the memory of the route table of {@link Mode#TABLE} mode.
+     * @return bytes
+     */
+    public long getRouteTableLimit() {
+        return routeTableLimit;
+    }
+
+    /**
+     * Replaces the station index, e.g. with a new version of the network file.
+     * The graph (with the hierarchy or the line graph) is compiled before the replacement, then the new index is published atomically:
+     * queries in flight finish on the old index, new queries use the new one, no query waits.
+     * Stations of the old index are resolved in the new one by name and line number.
+     * @param stationIndex new station index, preferably frozen
+     */
+    public void swap(StationIndex stationIndex) {
+        long start = System.nanoTime();
+        StationGraph graph = compileGraph(stationIndex);
+        Network prepared = prepare(stationIndex, stationIndex.getVersion(), graph, null, 0);
+        COMPILE_LATENCY.recordSince(start);
+        publish(prepared);
     }
 
     /**
-     * Finds the shortest route. A trip with a minimum number of transfers has an advantage over other options.
-     * <b>Attention</b>: the shortest path does not always correspond to the route with the shortest travel time. It is related
-     * with no data on the exact travel time between specific stations. This problem should be solved in subsequent versions.
+     * Replaces the station index with an already compiled graph.
+     * @param stationIndex new station index, preferably frozen
+     * @param graph graph compiled from the station index
+     * @see #swap(StationIndex)
+     */
+    public void swap(StationIndex stationIndex, StationGraph graph) {
+        publish(prepare(stationIndex, stationIndex.getVersion(), graph, null, 0));
+    }
+
+    private synchronized void publish(Network prepared) {
+        RouteCache cache = routeCache;
+        network = applyClosures(prepared, clock.instant()).withGeneration(cache != null ? cache.invalidate() : 0);
+    }
+
+    /**
+     * Closes a station, a segment between neighbouring stations of a line or a transfer. Closed stations are
+     * neither resolved nor passed, closed segments and transfers are not passed by the routes of any mode,
+     * by the alternative routes and by the travel time matrices. A closure with a time window is in force
+     * only within it, the change is picked up by the first query after the window starts or ends.
+     * Nothing is compiled again: the edges of the closed elements are blocked in a copy of the graph weights,
+     * and only the cached routes that pass the new closures are removed from the route cache.
+     * @param closure the closure
+     * @throws IllegalArgumentException if a station is not part of the network, the stations of the segment are not
+     *                                  neighbours or the stations of the transfer are not connected
+     */
+    public synchronized void close(Closure closure) {
+        Network current = network();
+        int from = current.find(closure.getFrom());
+        int to = closure.getTo() != null ? current.find(closure.getTo()) : from;
+        if (from < 0 || to < 0) {
+            throw new IllegalArgumentException("Station '" + (from < 0 ? closure.getFrom() : closure.getTo())
+                    + "' not found");
+        }
+        if (closure.getType() == Closure.Type.SEGMENT && !current.graph.isNeighbour(from, to)) {
+            throw new IllegalArgumentException("Stations '" + closure.getFrom() + "' and '" + closure.getTo()
+                    + "' are not neighbours");
+        }
+        if (closure.getType() == Closure.Type.TRANSFER && !current.graph.isConnected(from, to)) {
+            throw new IllegalArgumentException("Stations '" + closure.getFrom() + "' and '" + closure.getTo()
+                    + "' are not connected");
+        }
+        if (closures.stream().noneMatch(registered -> registered == closure)) {
+            closures.add(closure);
+            updateClosures(current);
+        }
+    }
+
+    /**
+     * Removes a closure. The route cache is invalidated if the closure was in force,
+     * because a shorter route may pass the reopened element.
+     * @param closure the closure given to {@link #close(Closure)}
+     * @return false if the closure is not registered
+     */
+    public synchronized boolean reopen(Closure closure) {
+        if (!closures.removeIf(registered -> registered == closure)) {
+            return false;
+        }
+        updateClosures(network());
+        return true;
+    }
+
+    /**
+     * Returns the registered closures, including the ones whose window has not started or has ended.
+     * @return closures
+     */
+    public List<Closure> getClosures() {
+        return List.copyOf(closures);
+    }
+
+    /**
+     * Returns the closures in force now.
+     * @return closures
+     */
+    public List<Closure> getActiveClosures() {
+        return network().closures;
+    }
+
+    /**
+     * Sets the clock of the closure windows, e.g. to plan routes for another time.
+     * @param clock the clock
+     */
+    public synchronized void setClock(Clock clock) {
+        this.clock = clock;
+        updateClosures(network());
+    }
+
+    /**
+     * Returns the clock of the closure windows.
+     * @return the clock
+     */
+    public Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * Applies the closures in force now to the network and publishes it. If closures were only added, the cached
+     * routes that pass none of them are still the shortest ones and move to the new cache generation,
+     * otherwise the cache is invalidated.
+     * @param current current network
+     * @return the published network
+     */
+    private synchronized Network updateClosures(Network current) {
+        long start = System.nanoTime();
+        Network updated = applyClosures(current, clock.instant());
+        RouteCache cache = routeCache;
+        long generation = 0;
+        if (cache != null) {
+            generation = updated.closures.containsAll(current.closures) ? cache.invalidate(updated::isOpen)
+                    : cache.invalidate();
+        }
+        network = updated.withGeneration(generation);
+        CLOSURE_LATENCY.recordSince(start);
+        return network;
+    }
+
+    /**
+     * Enables caching of routes. The cache is invalidated whenever the station index changes.
+     * In all modes except {@link Mode#LEGACY} the reverse route is derived from a cached forward route,
+     * because the shortest routes are symmetric.
+     * The statistics of the cache are registered as {@code cache.*} gauges of the {@link Metrics}.
+     * @param maximumSize maximum number of routes
+     * @return the cache
+     */
+    public synchronized RouteCache enableRouteCache(int maximumSize) {
+        RouteCache cache = new RouteCache(maximumSize, mode != Mode.LEGACY);
+        network = network().withGeneration(cache.invalidate());
+        routeCache = cache;
+        Metrics metrics = Metrics.getDefault();
+        metrics.gauge("cache.hits", cache::getHitCount);
+        metrics.gauge("cache.reverseHits", cache::getReverseHitCount);
+        metrics.gauge("cache.misses", cache::getMissCount);
+        metrics.gauge("cache.evictions", cache::getEvictionCount);
+        metrics.gauge("cache.size", cache::size);
+        return cache;
+    }
+
+    /**
+     * Returns the route cache.
+     * @return the cache or null if caching is not enabled
+     */
+    public RouteCache getRouteCache() {
+        return routeCache;
+    }
+
+    /**
+     * Enables tracing of sampled queries of {@link #getShortestRoute(Station, Station)}: the wall time of the phases,
+     * the stations and edges the search went through, the candidate routes of {@link Mode#LEGACY} mode and
+     * the allocated memory. Queries that are not sampled run as without a tracer.
+     * @param tracer the tracer or null to disable tracing
+     */
+    public void setTracer(QueryTracer tracer) {
+        this.tracer = tracer;
+    }
+
+    /**
+     * Returns the tracer of sampled queries.
+     * @return the tracer or null if tracing is disabled
+     */
+    public QueryTracer getTracer() {
+        return tracer;
+    }
+
+    /**
+     * Returns the compiled network, compiling it again if the station index has been modified
+     * and applying the closures again if a closure window has started or ended.
+     * @return network
+     */
+    private Network network() {
+        Network current = network;
+        if (current.version != current.stationIndex.getVersion()
+                || current.nextChange != Long.MAX_VALUE && clock.millis() >= current.nextChange) {
+            synchronized (this) {
+                current = network;
+                long version = current.stationIndex.getVersion();
+                if (current.version != version) {
+                    long start = System.nanoTime();
+                    StationGraph graph = compileGraph(current.stationIndex);
+                    RouteCache cache = routeCache;
+                    current = applyClosures(prepare(current.stationIndex, version, graph, null,
+                            cache != null ? cache.invalidate() : 0), clock.instant());
+                    COMPILE_LATENCY.recordSince(start);
+                    network = current;
+                } else if (current.nextChange != Long.MAX_VALUE && clock.millis() >= current.nextChange) {
+                    current = updateClosures(current);
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Returns the route search strategy.
+     * @return mode
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Finds the shortest route.
+     * In {@link Mode#GRAPH}, {@link Mode#HIERARCHY} and {@link Mode#TABLE} modes it is the route with the minimum travel time (see {@link #getDuration(List)})
+     * with any number of transfers, an empty list is returned if the destination is unreachable.
+     * In {@link Mode#LEGACY} mode a trip with a minimum number of transfers has an advantage over other options,
+     * at most two transfers are considered; the trade-off between the travel time and the transfers is given by
+     * {@link #getParetoRoutes(Station, Station)}.
+     * Running and transfer times are the ones of the network file, or the average ones if the file does not have them.
+     * The route passes no closed station, segment or transfer (see {@link #close(Closure)}); in {@link Mode#LEGACY}
+     * mode a route through a closed element is replaced with the fastest open route.
+     * The latency of the query is recorded in the {@code route.*} histogram of the result type.
      * @param from the station of departure
      * @param to destination station
      * @return the shortest route
      */
-    // TODO: Необхідно враховувати тривалість маршруту між станціями.
     public List<Station> getShortestRoute(Station from, Station to) {
+        QueryTracer currentTracer = tracer;
+        if (currentTracer != null && currentTracer.sample()) {
+            return traceShortestRoute(currentTracer, from, to);
+        }
+        long start = System.nanoTime();
+        List<Station> route = findCachedRoute(from, to);
+        latencyOf(route).recordSince(start);
+        return route;
+    }
+
+    private List<Station> findCachedRoute(Station from, Station to) {
+        Network network = network();
+        int fromId = network.resolve(from);
+        int toId = network.resolve(to);
+        if (fromId < 0 || toId < 0) {
+            return new Route();
+        }
+        RouteCache cache = routeCache;
+        if (cache == null) {
+            return findRoute(network, fromId, toId, null);
+        }
+        List<Station> route = cache.get(network.generation, fromId, toId);
+        if (route == null) {
+            route = findRoute(network, fromId, toId, null);
+            cache.put(network.generation, fromId, toId, route);
+        }
+        return route;
+    }
+
+    /**
+     * Finds the shortest route as {@link #getShortestRoute(Station, Station)} does and hands the trace of the query
+     * to the tracer. The search adds its work to the trace before it returns the workspace.
+     */
+    private List<Station> traceShortestRoute(QueryTracer tracer, Station from, Station to) {
+        QueryTrace trace = new QueryTrace(from, to, mode.name());
+        long allocated = tracer.allocatedBytes();
+        long start = System.nanoTime();
+        Network network = network();
+        int fromId = network.resolve(from);
+        int toId = network.resolve(to);
+        long phaseStart = System.nanoTime();
+        trace.addPhase("resolve", phaseStart - start);
+
+        List<Station> route = null;
+        RouteCache cache = routeCache;
+        if (fromId < 0 || toId < 0) {
+            route = new Route();
+        } else if (cache != null) {
+            route = cache.get(network.generation, fromId, toId);
+            long end = System.nanoTime();
+            trace.addPhase("cache", end - phaseStart);
+            phaseStart = end;
+        }
+        if (route == null) {
+            route = findRoute(network, fromId, toId, trace);
+            trace.addPhase("search", System.nanoTime() - phaseStart);
+            if (mode == Mode.LEGACY) {
+                trace.addCandidates(countLegacyCandidates(network.lineGraph, network.graph.getStation(fromId),
+                        network.graph.getStation(toId)));
+            }
+            if (cache != null) {
+                cache.put(network.generation, fromId, toId, route);
+            }
+        }
+
+        long total = System.nanoTime() - start;
+        latencyOf(route).record(total);
+        trace.finish(total, allocated >= 0 ? tracer.allocatedBytes() - allocated : -1, route.size());
+        tracer.accept(trace);
+        return route;
+    }
+
+    /**
+     * Returns the number of interchanges (or pairs of interchanges) {@link Mode#LEGACY} mode compares for the stations,
+     * following {@link #getRouteWithOneConnection} and {@link #getRouteWithTwoConnections}.
+     */
+    private static long countLegacyCandidates(LineGraph lineGraph, Station from, Station to) {
+        StationGraph graph = lineGraph.getGraph();
+        int fromLine = lineGraph.getPart(graph.getId(from));
+        int toLine = lineGraph.getPart(graph.getId(to));
+        if (fromLine < 0 || toLine < 0 || fromLine == toLine) {
+            return 0;
+        }
+        int edge = lineGraph.getEdge(fromLine, toLine);
+        if (edge >= 0) {
+            return lineGraph.interchangeEnd(edge) - lineGraph.interchangeBegin(edge);
+        }
+        if (lineGraph.getTransfers(fromLine, toLine) != 2) {
+            return 0;
+        }
+        long candidates = 0;
+        for (int first = lineGraph.edgeBegin(fromLine); first < lineGraph.edgeEnd(fromLine); first++) {
+            int second = lineGraph.getEdge(lineGraph.edgeTarget(first), toLine);
+            if (second >= 0) {
+                candidates += (long) (lineGraph.interchangeEnd(first) - lineGraph.interchangeBegin(first))
+                        * (lineGraph.interchangeEnd(second) - lineGraph.interchangeBegin(second));
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Returns the histogram of the result type of the route.
+     */
+    private static LatencyHistogram latencyOf(List<Station> route) {
+        if (route.isEmpty()) {
+            return NO_ROUTE_LATENCY;
+        }
+        int transfers = Route.countTransfers(route);
+        return transfers == 0 ? SAME_LINE_LATENCY : transfers == 1 ? ONE_TRANSFER_LATENCY : TWO_TRANSFERS_LATENCY;
+    }
+
+    /**
+     * Finds the open station nearest to the location, see {@link StationIndex#getLocator()}.
+     * @param latitude latitude in degrees
+     * @param longitude longitude in degrees
+     * @return the station or null if no open station has a location
+     * @throws IllegalArgumentException if the location is invalid
+     */
+    public Station findNearestStation(double latitude, double longitude) {
+        Network network = network();
+        List<NearbyStation> nearest = network.stationIndex.getLocator()
+                .nearest(latitude, longitude, 1, station -> network.resolve(station) >= 0);
+        return nearest.isEmpty() ? null : nearest.get(0).getStation();
+    }
+
+    /**
+     * Finds the shortest route between the open stations nearest to the locations.
+     * @param fromLatitude latitude of the point of departure in degrees
+     * @param fromLongitude longitude of the point of departure in degrees
+     * @param toLatitude latitude of the destination in degrees
+     * @param toLongitude longitude of the destination in degrees
+     * @return the shortest route or an empty list if no open station has a location
+     * @throws IllegalArgumentException if a location is invalid
+     * @see #getShortestRoute(Station, Station)
+     */
+    public List<Station> getShortestRoute(double fromLatitude, double fromLongitude, double toLatitude,
+                                          double toLongitude) {
+        Station from = findNearestStation(fromLatitude, fromLongitude);
+        Station to = findNearestStation(toLatitude, toLongitude);
+        return from != null && to != null ? getShortestRoute(from, to) : new Route();
+    }
+
+    /**
+     * Finds alternative routes in the order of the travel time.
+     * @param from the station of departure
+     * @param to destination station
+     * @param count maximum number of routes
+     * @return routes
+     * @see #getAlternativeRoutes(Station, Station, int, Collection)
+     */
+    public List<RouteAlternative> getAlternativeRoutes(Station from, Station to, int count) {
+        return getAlternativeRoutes(from, to, count, List.of());
+    }
+
+    /**
+     * Finds alternative routes in the order of the travel time, e.g. to bypass a closed interchange.
+     * The routes are loopless and the fastest ones regardless of the mode, the first of them is the route of
+     * {@link Mode#GRAPH} mode. The travel times are the ones of {@link #getDuration(List)}.
+     * @param from the station of departure
+     * @param to destination station
+     * @param count maximum number of routes
+     * @param avoid stations the routes must not pass
+     * @return routes, fewer than the count if there are no more routes
+     */
+    public List<RouteAlternative> getAlternativeRoutes(Station from, Station to, int count,
+                                                       Collection<Station> avoid) {
+        Network network = network();
+        int fromId = network.resolve(from);
+        int toId = network.resolve(to);
+        if (fromId < 0 || toId < 0) {
+            return List.of();
+        }
+        return network.alternatives.find(fromId, toId, count, resolve(network, List.copyOf(avoid)));
+    }
+
+    /**
+     * Finds the fastest route for every number of transfers that pays off.
+     * @param from the station of departure
+     * @param to destination station
+     * @return routes ordered by the number of transfers
+     * @see #getParetoRoutes(Station, Station, int)
+     */
+    public List<RouteAlternative> getParetoRoutes(Station from, Station to) {
+        return getParetoRoutes(from, to, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Finds the Pareto set of routes by travel time and number of transfers with a round-based {@link RaptorSearch}:
+     * the fastest route with the fewest transfers, then every route with more transfers that is faster than all
+     * routes with fewer transfers. The last route is the fastest one of {@link Mode#GRAPH} mode unless the limit
+     * cuts it off. The travel times are the ones of {@link #getDuration(List)} regardless of the mode,
+     * closed stations and elements are not passed.
+     * @param from the station of departure
+     * @param to destination station
+     * @param maxTransfers maximum number of transfers
+     * @return routes ordered by the number of transfers, empty if the destination is unreachable
+     * @throws IllegalArgumentException if the maximum number of transfers is negative
+     */
+    public List<RouteAlternative> getParetoRoutes(Station from, Station to, int maxTransfers) {
+        Network network = network();
+        int fromId = network.resolve(from);
+        int toId = network.resolve(to);
+        if (maxTransfers < 0) {
+            throw new IllegalArgumentException("Maximum number of transfers must not be negative: " + maxTransfers);
+        }
+        if (fromId < 0 || toId < 0) {
+            return List.of();
+        }
+        return network.pareto.find(fromId, toId, maxTransfers);
+    }
+
+    /**
+     * Computes travel times and numbers of transfers between every origin and every destination
+     * in the common fork/join pool.
+     * @param origins stations of departure
+     * @param destinations destination stations
+     * @return matrix with a row for every origin and a column for every destination
+     * @see #getTravelTimeMatrix(List, List, ForkJoinPool)
+     */
+    public TravelTimeMatrix getTravelTimeMatrix(List<Station> origins, List<Station> destinations) {
+        return getTravelTimeMatrix(origins, destinations, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Computes travel times and numbers of transfers between every origin and every destination.
+     * The fastest routes are used regardless of the mode, the travel times are the ones of
+     * {@link #getDuration(List)}. Unknown stations are unreachable.
+     * @param origins stations of departure
+     * @param destinations destination stations
+     * @param pool pool of the workers
+     * @return matrix with a row for every origin and a column for every destination
+     */
+    public TravelTimeMatrix getTravelTimeMatrix(List<Station> origins, List<Station> destinations, ForkJoinPool pool) {
+        Network network = network();
+        return TravelTimeMatrix.compute(network.search, resolve(network, origins), resolve(network, destinations), pool);
+    }
+
+    /**
+     * Finds the stations reachable from the station within the limits.
+     * @param from the station of departure
+     * @param maxDuration maximum travel time, {@link Double#POSITIVE_INFINITY} for no limit
+     * @param maxTransfers maximum number of transfers, -1 for no limit
+     * @return reachable stations
+     * @see #getReachableStations(Collection, double, int)
+     */
+    public Reachability getReachableStations(Station from, double maxDuration, int maxTransfers) {
+        return getReachableStations(List.of(from), maxDuration, maxTransfers);
+    }
+
+    /**
+     * Finds the stations reachable from any of the sources, e.g. all stations of an interchange hub,
+     * within a travel time and a number of transfers with a single bounded search. Every station comes with
+     * the travel time and the number of transfers of its fastest arrival within the limits and its predecessor.
+     * The travel times are the ones of {@link #getDuration(List)} regardless of the mode, closed stations and
+     * elements are not passed. Unknown and closed sources are ignored.
+     * @param sources stations of departure
+     * @param maxDuration maximum travel time, {@link Double#POSITIVE_INFINITY} for no limit
+     * @param maxTransfers maximum number of transfers, -1 for no limit
+     * @return reachable stations
+     * @throws IllegalArgumentException if a limit is negative
+     */
+    public Reachability getReachableStations(Collection<Station> sources, double maxDuration, int maxTransfers) {
+        Network network = network();
+        return Reachability.compute(network.search, resolve(network, List.copyOf(sources)), maxDuration,
+                maxTransfers);
+    }
+
+    private static int[] resolve(Network network, List<Station> stations) {
+        int[] ids = new int[stations.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = network.resolve(stations.get(i));
+        }
+        return ids;
+    }
+
+    /**
+     * Finds the shortest route with the search strategy of the calculator. While closures are in force,
+     * a route of the hierarchy, the route table or the legacy search that passes a closed element is searched again
+     * on the blocked graph. The other routes are the shortest ones of the blocked graph as well: the line graph
+     * of {@link Mode#MIN_TRANSFERS} mode is compiled from the blocked graph, with the parts of a split line as
+     * lines of their own.
+     * @param network compiled network
+     * @param fromId identifier of the station of departure
+     * @param toId identifier of the destination station
+     * @param trace trace the searches add their work to or null
+     * @return the shortest route
+     */
+    private List<Station> findRoute(Network network, int fromId, int toId, QueryTrace trace) {
+        List<Station> route = searchRoute(network, fromId, toId, trace);
+        if (network.closed != null && mode != Mode.GRAPH && mode != Mode.MIN_TRANSFERS && !network.isOpen(route)) {
+            return network.search.findRoute(fromId, toId, trace);
+        }
+        return route;
+    }
+
+    private List<Station> searchRoute(Network network, int fromId, int toId, QueryTrace trace) {
+        if (mode == Mode.GRAPH) {
+            return network.search.findRoute(fromId, toId, trace);
+        }
+        if (mode == Mode.HIERARCHY) {
+            return network.hierarchy.findRoute(fromId, toId, trace);
+        }
+        if (mode == Mode.MIN_TRANSFERS) {
+            return network.search.findMinimumTransferRoute(fromId, toId, network.lineGraph, trace);
+        }
+        if (mode == Mode.TABLE) {
+            return network.routeTable != null ? network.routeTable.findRoute(fromId, toId)
+                    : network.search.findRoute(fromId, toId, trace);
+        }
+
+        StationGraph graph = network.graph;
+        Station from = graph.getStation(fromId);
+        Station to = graph.getStation(toId);
         List<Station> route = getRouteOnTheLine(from, to);
         if (route != null) {
             return route;
         }
 
-        route = getRouteWithOneConnection(from, to);
+        route = getRouteWithOneConnection(network.lineGraph, from, to);
         if (route != null) {
             return route;
         }
 
-        route = getRouteWithTwoConnections(from, to);
+        route = getRouteWithTwoConnections(network.lineGraph, from, to);
         return route;
     }
 
     /**
-     * Calculates the approximate travel time.
+     * Calculates the travel time with the running times of the lines and the transfer times of the current network.
+     * @param route list of stations
+     * @return time
+     */
+    public double getDuration(List<Station> route) {
+        return calculateDuration(route, network().stationIndex);
+    }
+
+    /**
+     * Calculates the approximate travel time: running times of the lines and the average transfer time.
      * @param route list of stations
      * @return time
+     * @see #getDuration(List)
      */
     public static double calculateDuration(List<Station> route) {
+        return calculateDuration(route, null);
+    }
+
+    /**
+     * Calculates the travel time. The running time of a line segment of a {@link Route} is taken
+     * from the prefix sums of the line, so the time does not depend on the number of stations.
+     * @param route list of stations
+     * @param stationIndex index with the transfer times or null for the average transfer time
+     * @return time
+     */
+    private static double calculateDuration(List<Station> route, StationIndex stationIndex) {
+        if (route instanceof LineSegment) {
+            LineSegment segment = (LineSegment) route;
+            return segment.getLine().getRunningTime(segment.getFrom(), segment.getTo());
+        }
+        if (route instanceof Route) {
+            double duration = 0;
+            LineSegment previousSegment = null;
+            for (LineSegment segment : ((Route) route).getSegments()) {
+                duration += segment.getLine().getRunningTime(segment.getFrom(), segment.getTo());
+                if (previousSegment != null) {
+                    duration += getStepDuration(previousSegment.get(previousSegment.size() - 1), segment.get(0),
+                            stationIndex);
+                }
+                previousSegment = segment;
+            }
+            return duration;
+        }
         double duration = 0;
         Station previousStation = null;
         for (int i = 0; i < route.size(); i++) {
             Station station = route.get(i);
             if (i > 0) {
-                duration += previousStation.getLine().equals(station.getLine()) ?
-                        INTER_STATION_DURATION : INTER_CONNECTION_DURATION;
+                duration += getStepDuration(previousStation, station, stationIndex);
             }
             previousStation = station;
         }
         return duration;
     }
 
+    /**
+     * Returns the running time between neighbouring stations of a line or the transfer time between other stations.
+     */
+    private static double getStepDuration(Station from, Station to, StationIndex stationIndex) {
+        if (from.getLine().equals(to.getLine())) {
+            return from.getPosition() >= 0 && to.getPosition() >= 0 ?
+                    from.getLine().getNeighbourRunningTime(from.getPosition(), to.getPosition()) : Line.DEFAULT_RUNNING_TIME;
+        }
+        return stationIndex != null ? stationIndex.getTransferTime(from, to) : INTER_CONNECTION_DURATION;
+    }
+
     /**
      * Calculates the route on one line.
-     * Iterates over all stations of the corresponding line. If the desired station (departure or destination) is found in the list,
-     * then the variable direction is assigned the value 1 or -1, respectively. This is necessary in order to determine the direction of tracking
-     * stations and, if necessary, return the reverse route.
+     * The ordinals of the stations on the line give the direction of tracking stations, the route is a view
+     * of the line between them, so no stations are copied.
      * If the stations are not on the same line, the method returns <b>null</b>.
      * @param from the station of departure
      * @param to destination station
      * @return route or null
      */
-    private List<Station> getRouteOnTheLine(Station from, Station to) {
+    private LineSegment getRouteOnTheLine(Station from, Station to) {
         if (!from.getLine().equals(to.getLine())) {
             return null;
         }
-        List<Station> route = new ArrayList<>();
-        List<Station> stations = from.getLine().getStations();
-        int direction = 0;
-        for (Station station : stations) {
-            if (direction == 0) {
-                if (station.equals(from)) {
-                    direction = 1;
-                } else if (station.equals(to)) {
-                    direction = -1;
-                }
-            }
-
-            if (direction != 0) {
-                route.add(station);
-            }
-
-            if ((direction == 1 && station.equals(to)) ||
-                    (direction == -1 && station.equals(from))) {
-                break;
-            }
-        }
-        if (direction == -1) {
-            Collections.reverse(route);
-        }
-        return route;
+        return from.getLine().getSegment(from.getPosition(), to.getPosition());
     }
 
+    /**
+     * Returns the number of stations of the route on one line.
+     * @param from the station of departure
+     * @param to destination station
+     * @return number of stations
+     */
+    private static int getRouteOnTheLineSize(Station from, Station to) {
+        return Math.abs(from.getPosition() - to.getPosition()) + 1;
+    }
 
     /**
-     * Calculates a route with one stop. In the cycle, it searches for a pair of stations that have a connection, splits the route into two
-     * parts and separately calculates the route along one line and combines the results into a single list.
+     * Calculates a route with one stop. In the cycle, it searches the interchanges between the lines of the stations
+     * in the line graph and compares the lengths of the two parts of the route by the ordinals of the stations.
+     * Only the best route is built, as two segments of the lines.
      * If the stations are on the same line, the method returns <b>null</b>.
+     * @param lineGraph line graph
      * @param from the station of departure
      * @param to destination station
      * @return route or null
      */
-    private List<Station> getRouteWithOneConnection(Station from, Station to) {
+    private List<Station> getRouteWithOneConnection(LineGraph lineGraph, Station from, Station to) {
         if (from.getLine().equals(to.getLine())) {
             return null;
         }
 
-        List<Station> route = new ArrayList<>();
+        StationGraph graph = lineGraph.getGraph();
+        int fromLine = lineGraph.getPart(graph.getId(from));
+        int toLine = lineGraph.getPart(graph.getId(to));
+        int edge = fromLine >= 0 && toLine >= 0 ? lineGraph.getEdge(fromLine, toLine) : -1;
+        if (edge < 0) {
+            return null;
+        }
 
-        List<Station> fromLineStations = from.getLine().getStations();
-        List<Station> toLineStations = to.getLine().getStations();
-        for (Station srcStation : fromLineStations) {
-            for (Station dstStation : toLineStations) {
-                if (isConnected(srcStation, dstStation)) {
-                    ArrayList<Station> way = new ArrayList<>();
-                    way.addAll(getRouteOnTheLine(from, srcStation));
-                    way.addAll(getRouteOnTheLine(dstStation, to));
-                    if (route.isEmpty() || route.size() > way.size()) {
-                        route.clear();
-                        route.addAll(way);
-                    }
-                }
+        Station bestSrc = null;
+        Station bestDst = null;
+        int bestSize = 0;
+        for (int i = lineGraph.interchangeBegin(edge); i < lineGraph.interchangeEnd(edge); i++) {
+            Station src = graph.getStation(lineGraph.interchangeFrom(i));
+            Station dst = graph.getStation(lineGraph.interchangeTo(i));
+            int size = getRouteOnTheLineSize(from, src) + getRouteOnTheLineSize(dst, to);
+            if (bestSrc == null || bestSize > size) {
+                bestSrc = src;
+                bestDst = dst;
+                bestSize = size;
             }
         }
-        return route.size() != 0 ? route : null; // исправлено здесь
-    }
-
-    /**
-     * Checking if stations have transition.
-     * @param station1 station-1
-     * @param station2 station-2
-     * @return true or false
-     */
-    private boolean isConnected(Station station1, Station station2) {
-        Set<Station> connected = stationIndex.getConnectedStations(station1);
-        return connected.contains(station2);
+        return new Route(getRouteOnTheLine(from, bestSrc), getRouteOnTheLine(bestDst, to));
     }
 
     /**
-     * Calculates the connecting line route.
+     * Calculates a route with two transitions. The intermediate lines are the ones the line graph puts one transfer
+     * away from both lines of the stations, so only their interchanges are compared. Thus, the wanted is divided
+     * into 3 parts. The lengths of the parts are compared by the ordinals of the stations, only the best route
+     * is built. If the stations are on the same line, the method returns <b>null</b>.
+     * @param lineGraph line graph
      * @param from the station of departure
      * @param to destination station
      * @return route
      */
-    private List<Station> getRouteViaConnectedLine(Station from, Station to) {
-        Set<Station> fromConnected = stationIndex.getConnectedStations(from);
-        Set<Station> toConnected = stationIndex.getConnectedStations(to);
-        for (Station srcStation : fromConnected) {
-            for (Station dstStation : toConnected) {
-                if (srcStation.getLine().equals(dstStation.getLine())) {
-                    return getRouteOnTheLine(srcStation, dstStation);
+    private List<Station> getRouteWithTwoConnections(LineGraph lineGraph, Station from, Station to) {
+        if (from.getLine().equals(to.getLine())) {
+            return null;
+        }
+
+        StationGraph graph = lineGraph.getGraph();
+        int fromLine = lineGraph.getPart(graph.getId(from));
+        int toLine = lineGraph.getPart(graph.getId(to));
+        if (fromLine < 0 || toLine < 0 || lineGraph.getTransfers(fromLine, toLine) != 2) {
+            return new Route();
+        }
+
+        int bestFirst = -1;
+        int bestSecond = -1;
+        int bestSize = 0;
+        for (int first = lineGraph.edgeBegin(fromLine); first < lineGraph.edgeEnd(fromLine); first++) {
+            int second = lineGraph.getEdge(lineGraph.edgeTarget(first), toLine);
+            if (second < 0) {
+                continue;
+            }
+            for (int i = lineGraph.interchangeBegin(first); i < lineGraph.interchangeEnd(first); i++) {
+                for (int j = lineGraph.interchangeBegin(second); j < lineGraph.interchangeEnd(second); j++) {
+                    int size = getRouteOnTheLineSize(from, graph.getStation(lineGraph.interchangeFrom(i)))
+                            + getRouteOnTheLineSize(graph.getStation(lineGraph.interchangeTo(i)),
+                                    graph.getStation(lineGraph.interchangeFrom(j)))
+                            + getRouteOnTheLineSize(graph.getStation(lineGraph.interchangeTo(j)), to);
+                    if (bestFirst < 0 || bestSize > size) {
+                        bestFirst = i;
+                        bestSecond = j;
+                        bestSize = size;
+                    }
                 }
             }
         }
-        return null;
+
+        return new Route(
+                getRouteOnTheLine(from, graph.getStation(lineGraph.interchangeFrom(bestFirst))),
+                getRouteOnTheLine(graph.getStation(lineGraph.interchangeTo(bestFirst)),
+                        graph.getStation(lineGraph.interchangeFrom(bestSecond))),
+                getRouteOnTheLine(graph.getStation(lineGraph.interchangeTo(bestSecond)), to));
     }
 
     /**
-     * Calculates a route with two transitions. Finds an intermediate route between some stations,
-     * the trip between which is carried out with one transfer. Thus, the wanted is divided into 3 parts.
-     * If the stations are on the same line, the method returns <b>null</b>.
-     * @param from the station of departure
-     * @param to destination station
-     * @return route
+     * Graph compiled from one version of the station index with the closures in force.
+     * A query reads the network once, so it finishes on the same graph even if a new one is compiled meanwhile.
      */
-    private List<Station> getRouteWithTwoConnections(Station from, Station to) {
-        if (from.getLine().equals(to.getLine())) {
-            return null;
+    private static final class Network {
+        /** Station index. */
+        private final StationIndex stationIndex;
+        /** Version of the station index. */
+        private final long version;
+        /** Compiled graph. */
+        private final StationGraph graph;
+        /** Contraction hierarchy of the graph or null. */
+        private final ContractionHierarchy hierarchy;
+        /** Route table of the graph or null. */
+        private final RouteTable routeTable;
+        /** Route cache generation of this graph. */
+        private final long generation;
+        /** The graph with the edges of the closures blocked, the graph itself if no closure is in force. */
+        private final StationGraph passable;
+        /** Search of the passable graph. */
+        private final ShortestPathSearch search;
+        /** Search of alternative routes of the passable graph. */
+        private final KShortestPaths alternatives;
+        /** Search of the Pareto routes of the passable graph. */
+        private final RaptorSearch pareto;
+        /** Line graph of the passable graph or null. */
+        private final LineGraph lineGraph;
+        /** Closed stations by identifier, null if no closure is in force. */
+        private final boolean[] closed;
+        /** Closures in force. */
+        private final List<Closure> closures;
+        /** Time in milliseconds when a closure window starts or ends, {@link Long#MAX_VALUE} if never. */
+        private final long nextChange;
+
+        private Network(StationIndex stationIndex, long version, StationGraph graph, ContractionHierarchy hierarchy,
+                        RouteTable routeTable, long generation, StationGraph passable, ShortestPathSearch search,
+                        KShortestPaths alternatives, RaptorSearch pareto, LineGraph lineGraph, boolean[] closed,
+                        List<Closure> closures, long nextChange) {
+            this.stationIndex = stationIndex;
+            this.version = version;
+            this.graph = graph;
+            this.hierarchy = hierarchy;
+            this.routeTable = routeTable;
+            this.generation = generation;
+            this.passable = passable;
+            this.search = search;
+            this.alternatives = alternatives;
+            this.pareto = pareto;
+            this.lineGraph = lineGraph;
+            this.closed = closed;
+            this.closures = closures;
+            this.nextChange = nextChange;
+        }
+
+        /**
+         * Returns the same network with another route cache generation.
+         * @param generation route cache generation
+         * @return network
+         */
+        private Network withGeneration(long generation) {
+            return new Network(stationIndex, version, graph, hierarchy, routeTable, generation, passable, search,
+                    alternatives, pareto, lineGraph, closed, closures, nextChange);
         }
 
-        ArrayList<Station> route = new ArrayList<>();
+        /**
+         * Returns the same network with other closures. The searches are kept if the passable graph is the same.
+         * @return network
+         */
+        private Network withClosures(StationGraph passable, LineGraph lineGraph, boolean[] closed,
+                                     List<Closure> closures, long nextChange) {
+            boolean same = passable == this.passable;
+            return new Network(stationIndex, version, graph, hierarchy, routeTable, generation, passable,
+                    same ? search : new ShortestPathSearch(passable), same ? alternatives : new KShortestPaths(passable),
+                    same ? pareto : new RaptorSearch(passable), lineGraph, closed, closures, nextChange);
+        }
 
-        List<Station> fromLineStations = from.getLine().getStations();
-        List<Station> toLineStations = to.getLine().getStations();
+        /**
+         * Returns the identifier of the station in the graph. A station of another version of the index
+         * is looked up by name and line number.
+         * @param station the station
+         * @return identifier or -1 if there is no such station or it is closed
+         */
+        private int resolve(Station station) {
+            int id = find(station);
+            return id >= 0 && closed != null && closed[id] ? -1 : id;
+        }
 
-        for (Station srcStation : fromLineStations) {
-            for (Station dstStation : toLineStations) {
-                List<Station> connectedLineRoute =
-                        getRouteViaConnectedLine(srcStation, dstStation);
-                if (connectedLineRoute == null) {
-                    continue;
-                }
-                List<Station> way = new ArrayList<>();
-                way.addAll(getRouteOnTheLine(from, srcStation));
-                way.addAll(connectedLineRoute);
-                way.addAll(getRouteOnTheLine(dstStation, to));
-                if (route.isEmpty() || route.size() > way.size()) {
-                    route.clear();
-                    route.addAll(way);
-                }
+        /**
+         * Returns the identifier of the station in the graph, closed or not.
+         * @param station the station
+         * @return identifier or -1 if there is no such station
+         */
+        private int find(Station station) {
+            int id = graph.getId(station);
+            if (id < 0 && stationIndex.getLine(station.getLine().getNumber()) != null) {
+                Station current = stationIndex.getStation(station.getName(), station.getLine().getNumber());
+                id = current != null ? graph.getId(current) : -1;
             }
+            return id;
         }
 
-        return route;
+        /**
+         * Checking if the route passes no closed station, segment or transfer.
+         * @param route route of this network
+         * @return true or false
+         */
+        private boolean isOpen(List<Station> route) {
+            if (closed == null) {
+                return true;
+            }
+            int previous = -1;
+            for (Station station : route) {
+                int id = passable.getId(station);
+                if (id < 0 || closed[id] || previous >= 0 && !passable.isPassable(previous, id)) {
+                    return false;
+                }
+                previous = id;
+            }
+            return true;
+        }
     }
-}
\ No newline at end of file
+}
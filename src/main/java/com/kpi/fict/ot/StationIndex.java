@@ -2,19 +2,45 @@ package com.kpi.fict.ot;
 
 import com.kpi.fict.ot.core.Line;
 import com.kpi.fict.ot.core.Station;
+import com.kpi.fict.ot.lookup.NearbyStation;
+import com.kpi.fict.ot.lookup.StationLocator;
+import com.kpi.fict.ot.lookup.StationMatch;
+import com.kpi.fict.ot.lookup.StationNameIndex;
+import com.kpi.fict.ot.metrics.Metrics;
 
 import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 
 /**
  * Container class for stations, lines and connections.
+ * The index is filled with the {@code add} methods and then may be frozen with {@link #freeze()}, or a frozen
+ * index is built at once with a {@link Builder}:
+ * a frozen index and its lines cannot be modified, so it is safe to share it between threads
+ * once it is published through a volatile field. An index that is not frozen must be modified by one thread only;
+ * its version is volatile, so other threads see that their derived data is outdated. Freezing builds the {@link StationLocator} of the stations
+ * with a known location, so the locations must be set before.
  * @version 1.0-SNAPSHOT
  * @author Linenko Kostyantyn, student of IO-01 in KPI
  */
 public class StationIndex {
+    /** Transfer time between connected stations if the network does not specify it. */
+    public static final double DEFAULT_TRANSFER_TIME = 3.5;
+
+    /** Name lookups that found a station. */
+    private static final LongAdder LOOKUP_HITS = Metrics.getDefault().counter("lookup.hits");
+    /** Name lookups that found no station. */
+    private static final LongAdder LOOKUP_MISSES = Metrics.getDefault().counter("lookup.misses");
+
     private final Map<Integer, Line> number2line;
     private final TreeSet<Station> stations;
     private final Map<Station, TreeSet<Station>> connections;
+    private final Map<Station, TreeMap<Station, Double>> transferTimes;
+    private final StationNameIndex names;
+    private StationLocator locator;
+    private long locatorVersion = -1;
+    private volatile long version;
+    private boolean frozen;
 
     /**
      * A single constructor with no arguments.
@@ -23,6 +49,16 @@ public class StationIndex {
         number2line = new HashMap<>();
         stations = new TreeSet<>();
         connections = new TreeMap<>();
+        transferTimes = new TreeMap<>();
+        names = new StationNameIndex();
+    }
+
+    /**
+     * Creates a builder of a frozen index.
+     * @return builder
+     */
+    public static Builder builder() {
+        return new Builder();
     }
 
     /**
@@ -30,7 +66,11 @@ public class StationIndex {
      * @param station the station
      */
     public void addStation(Station station) {
-        stations.add(station);
+        checkNotFrozen();
+        if (stations.add(station)) {
+            names.add(station);
+            version++;
+        }
     }
 
     /**
@@ -38,7 +78,9 @@ public class StationIndex {
      * @param line the line
      */
     public void addLine(Line line) {
+        checkNotFrozen();
         number2line.put(line.getNumber(), line);
+        version++;
     }
 
     /**
@@ -46,6 +88,7 @@ public class StationIndex {
      * @param stations stations
      */
     public void addConnection(List<Station> stations) {
+        checkNotFrozen();
         for (Station station : stations) {
             if (!connections.containsKey(station)) {
                 connections.put(station, new TreeSet<>());
@@ -54,6 +97,81 @@ public class StationIndex {
             connectedStations.addAll(stations.stream()
                     .filter(s -> !s.equals(station)).collect(Collectors.toList()));
         }
+        version++;
+    }
+
+    /**
+     * Adds a connection with the transfer time between any two of its stations.
+     * @param stations stations
+     * @param transferTime transfer time
+     */
+    public void addConnection(List<Station> stations, double transferTime) {
+        if (!(transferTime > 0) || Double.isInfinite(transferTime)) {
+            throw new IllegalArgumentException("Transfer time must be positive but was " + transferTime);
+        }
+        addConnection(stations);
+        for (Station station : stations) {
+            TreeMap<Station, Double> times = transferTimes.computeIfAbsent(station, s -> new TreeMap<>());
+            for (Station other : stations) {
+                if (!other.equals(station)) {
+                    times.put(other, transferTime);
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves a station of the index. The compiled graphs and the locator of the old location are outdated afterwards,
+     * so a station that is already in the index must be moved with this method rather than
+     * {@link Station#setLocation(double, double)}.
+     * @param station the station
+     * @param latitude latitude in degrees, from -90 to 90
+     * @param longitude longitude in degrees, from -180 to 180
+     * @throws IllegalArgumentException if the station is not in the index or the location is invalid
+     */
+    public void setLocation(Station station, double latitude, double longitude) {
+        checkNotFrozen();
+        if (!stations.contains(station)) {
+            throw new IllegalArgumentException("Station " + station.getName() + " is not in the index");
+        }
+        station.setLocation(latitude, longitude);
+        version++;
+    }
+
+    /**
+     * Makes the index and all of its lines immutable.
+     * @return this index
+     */
+    public StationIndex freeze() {
+        if (!frozen) {
+            number2line.values().forEach(Line::freeze);
+            getLocator();
+            frozen = true;
+        }
+        return this;
+    }
+
+    /**
+     * Checking if the index is frozen.
+     * @return true or false
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("Station index is frozen");
+        }
+    }
+
+    /**
+     * Returns the number of modifications of the index.
+     * Data derived from the index (compiled graphs, cached routes) is outdated when the version changes.
+     * @return version
+     */
+    public long getVersion() {
+        return version;
     }
 
     /**
@@ -65,18 +183,100 @@ public class StationIndex {
         return number2line.get(number);
     }
 
+    /**
+     * Returns all lines ordered by number.
+     * @return unmodifiable collection of lines
+     */
+    public Collection<Line> getLines() {
+        return Collections.unmodifiableCollection(new TreeMap<>(number2line).values());
+    }
+
+    /**
+     * Returns all stations ordered by line number and name.
+     * @return unmodifiable set of stations
+     */
+    public Set<Station> getStations() {
+        return Collections.unmodifiableSet(stations);
+    }
+
     /**
      * Returns the station with the matching name.
+     * Names are compared in normalized form, see {@link com.kpi.fict.ot.lookup.StationNames#normalize(String)}.
+     * If several lines have a station with this name, the station of the line with the lowest number is returned.
+     * The result is counted in the {@code lookup.hits} or {@code lookup.misses} counter of the {@link Metrics}.
      * @param name the name
      * @return the station
      */
     public Station getStation(String name) {
-        for (Station station : stations) {
-            if (station.getName().equalsIgnoreCase(name)) {
-                return station;
-            }
+        List<Station> named = names.getStations(name);
+        if (named.isEmpty()) {
+            LOOKUP_MISSES.increment();
+            return null;
         }
-        return null;
+        LOOKUP_HITS.increment();
+        return named.get(0);
+    }
+
+    /**
+     * Returns all stations with the matching name, one per line.
+     * @param name the name
+     * @return unmodifiable list ordered by line number
+     */
+    public List<Station> getStations(String name) {
+        return names.getStations(name);
+    }
+
+    /**
+     * Returns ranked candidates for user input: exact matches, autocomplete and names with typos.
+     * @param query the query
+     * @param limit maximum number of stations
+     * @return ranked candidates
+     */
+    public List<StationMatch> findStations(String query, int limit) {
+        return names.search(query, limit);
+    }
+
+    /**
+     * Returns the name index for autocomplete and fuzzy lookups.
+     * @return name index
+     */
+    public StationNameIndex getNameIndex() {
+        return names;
+    }
+
+    /**
+     * Returns the spatial index of the stations with a known location.
+     * The index of a frozen index is built once, otherwise it is built again after every modification.
+     * @return station locator
+     */
+    public StationLocator getLocator() {
+        if (locatorVersion != version) {
+            locator = new StationLocator(stations);
+            locatorVersion = version;
+        }
+        return locator;
+    }
+
+    /**
+     * Returns the stations nearest to the location.
+     * @param latitude latitude in degrees
+     * @param longitude longitude in degrees
+     * @param count maximum number of stations
+     * @return stations ordered by distance
+     */
+    public List<NearbyStation> findNearestStations(double latitude, double longitude, int count) {
+        return getLocator().nearest(latitude, longitude, count);
+    }
+
+    /**
+     * Returns the stations within the distance from the location.
+     * @param latitude latitude in degrees
+     * @param longitude longitude in degrees
+     * @param radius distance in metres
+     * @return stations ordered by distance
+     */
+    public List<NearbyStation> findStationsWithin(double latitude, double longitude, double radius) {
+        return getLocator().within(latitude, longitude, radius);
     }
 
     /**
@@ -88,7 +288,7 @@ public class StationIndex {
     public Station getStation(String name, int lineNumber) {
         Station query = new Station(name, getLine(lineNumber));
         Station station = stations.ceiling(query);
-        return station.equals(query) ? station : null;
+        return station != null && station.equals(query) ? station : null;
     }
 
     /**
@@ -97,7 +297,89 @@ public class StationIndex {
      * @return set of stations.
      */
     public Set<Station> getConnectedStations(Station station) {
-        return connections.containsKey(station) ?
-                connections.get(station) : new TreeSet<>();
+        TreeSet<Station> connectedStations = connections.get(station);
+        return connectedStations != null ?
+                Collections.unmodifiableSet(connectedStations) : Collections.emptySet();
+    }
+
+    /**
+     * Returns the transfer time between connected stations.
+     * @param from the station of departure
+     * @param to the station of arrival
+     * @return transfer time, {@link #DEFAULT_TRANSFER_TIME} if the network does not specify it
+     */
+    public double getTransferTime(Station from, Station to) {
+        TreeMap<Station, Double> times = transferTimes.get(from);
+        Double transferTime = times != null ? times.get(to) : null;
+        return transferTime != null ? transferTime : DEFAULT_TRANSFER_TIME;
+    }
+
+    /**
+     * Builder of a frozen index. Stations are added to their lines as well, the builder cannot be used
+     * after {@link #build()}.
+     */
+    public static final class Builder {
+        private final StationIndex stationIndex = new StationIndex();
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a line.
+         * @param line the line
+         * @return this builder
+         */
+        public Builder addLine(Line line) {
+            stationIndex.addLine(line);
+            return this;
+        }
+
+        /**
+         * Adds a station to the index and to the end of its line, unless the line has it already.
+         * @param station the station
+         * @return this builder
+         */
+        public Builder addStation(Station station) {
+            if (station.getLine() == null || stationIndex.getLine(station.getLine().getNumber()) != station.getLine()) {
+                throw new IllegalArgumentException("Line of station " + station + " is not added");
+            }
+            stationIndex.addStation(station);
+            if (station.getPosition() < 0) {
+                station.getLine().addStation(station);
+            }
+            return this;
+        }
+
+        /**
+         * Adds a connection.
+         * @param stations stations
+         * @return this builder
+         */
+        public Builder addConnection(List<Station> stations) {
+            stationIndex.addConnection(stations);
+            return this;
+        }
+
+        /**
+         * Adds a connection with the transfer time between any two of its stations.
+         * @param stations stations
+         * @param transferTime transfer time
+         * @return this builder
+         */
+        public Builder addConnection(List<Station> stations, double transferTime) {
+            stationIndex.addConnection(stations, transferTime);
+            return this;
+        }
+
+        /**
+         * Freezes and returns the index.
+         * @return frozen index
+         */
+        public StationIndex build() {
+            if (stationIndex.isFrozen()) {
+                throw new IllegalStateException("Station index is already built");
+            }
+            return stationIndex.freeze();
+        }
     }
 }
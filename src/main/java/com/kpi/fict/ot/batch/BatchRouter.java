@@ -0,0 +1,268 @@
+package com.kpi.fict.ot.batch;
+
+import com.kpi.fict.ot.RouteCalculator;
+import com.kpi.fict.ot.StationIndex;
+import com.kpi.fict.ot.core.Route;
+import com.kpi.fict.ot.core.Station;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Headless bulk route computation. Pairs of station names are streamed from the input, one pair per line
+ * separated by a tab or a comma; blank lines, lines starting with {@code #} and a {@code from,to} header are skipped.
+ * The routes are computed on a fixed pool of worker threads and written as CSV or JSON lines in the order of the input.
+ * At most {@code window} queries are in flight: the reader waits for the oldest result before it reads further,
+ * so memory use does not depend on the size of the input.
+ * A pair with an unknown station, a malformed line or a failed route computation gives a result with an error,
+ * the batch goes on.
+ * @version 1.0-SNAPSHOT
+ */
+public class BatchRouter implements Closeable {
+    /** Output format. */
+    public enum Format {
+        /**
+         * Comma-separated values with the header {@code from,to,duration,transfers,route,error},
+         * the stations of the route are separated by {@code ;}.
+         */
+        CSV,
+        /**
+         * A JSON object per line with {@code from}, {@code to}, {@code reachable}, {@code duration},
+         * {@code transfers} and {@code route}, or with {@code from}, {@code to} and {@code error}.
+         */
+        JSONL
+    }
+
+    /** Maximum number of queries in flight per worker thread by default. */
+    public static final int DEFAULT_WINDOW_PER_THREAD = 64;
+
+    /** Route calculator. */
+    private final RouteCalculator calculator;
+    /** Output format. */
+    private final Format format;
+    /** Maximum number of queries in flight. */
+    private final int window;
+    /** Worker threads. */
+    private final ExecutorService executor;
+
+    /**
+     * Creates a batch router with a worker thread per processor.
+     * @param calculator route calculator
+     * @param format output format
+     */
+    public BatchRouter(RouteCalculator calculator, Format format) {
+        this(calculator, format, Runtime.getRuntime().availableProcessors(),
+                Runtime.getRuntime().availableProcessors() * DEFAULT_WINDOW_PER_THREAD);
+    }
+
+    /**
+     * A constructor with the limits.
+     * @param calculator route calculator
+     * @param format output format
+     * @param threads number of worker threads
+     * @param window maximum number of queries in flight
+     */
+    public BatchRouter(RouteCalculator calculator, Format format, int threads, int window) {
+        if (threads <= 0 || window <= 0) {
+            throw new IllegalArgumentException("Limits must be positive");
+        }
+        this.calculator = calculator;
+        this.format = format;
+        this.window = window;
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "batch-router-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Computes the routes of all pairs of the input. Neither the input nor the output is closed,
+     * the output is flushed.
+     * @param input pairs of station names
+     * @param output results
+     * @return number of pairs
+     * @throws IOException if the input cannot be read or the output cannot be written
+     */
+    public long run(Reader input, Writer output) throws IOException {
+        BufferedReader reader = input instanceof BufferedReader ? (BufferedReader) input : new BufferedReader(input);
+        BufferedWriter writer = output instanceof BufferedWriter ? (BufferedWriter) output : new BufferedWriter(output);
+        ArrayDeque<Future<String>> pending = new ArrayDeque<>(window);
+        long count = 0;
+        try {
+            if (format == Format.CSV) {
+                writer.write("from,to,duration,transfers,route,error");
+                writer.newLine();
+            }
+            boolean first = true;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String trimmed = line.trim();
+                boolean header = first && trimmed.replace('\t', ',').replace(" ", "").equalsIgnoreCase("from,to");
+                first = false;
+                if (trimmed.isEmpty() || trimmed.startsWith("#") || header) {
+                    continue;
+                }
+                if (pending.size() == window) {
+                    write(writer, pending.poll());
+                }
+                pending.add(executor.submit(() -> compute(trimmed)));
+                count++;
+            }
+            while (!pending.isEmpty()) {
+                write(writer, pending.poll());
+            }
+        } finally {
+            pending.forEach(future -> future.cancel(false));
+        }
+        writer.flush();
+        return count;
+    }
+
+    private static void write(BufferedWriter writer, Future<String> result) throws IOException {
+        try {
+            writer.write(result.get());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Batch is interrupted");
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Route computation failed", ex.getCause());
+        }
+        writer.newLine();
+    }
+
+    /**
+     * Computes the route of one input line and formats the result.
+     */
+    private String compute(String line) {
+        int separator = findSeparator(line);
+        if (separator < 0) {
+            return format("", "", null, "Line must contain two stations separated by a tab or a comma: " + line);
+        }
+        String fromName = unquote(line.substring(0, separator).trim());
+        String toName = unquote(line.substring(separator + 1).trim());
+        StationIndex stationIndex = calculator.getStationIndex();
+        Station from = stationIndex.getStation(fromName);
+        Station to = stationIndex.getStation(toName);
+        if (from == null || to == null) {
+            return format(fromName, toName, null, "Station '" + (from == null ? fromName : toName) + "' not found");
+        }
+        try {
+            return format(fromName, toName, calculator.getShortestRoute(from, to), null);
+        } catch (RuntimeException ex) {
+            return format(fromName, toName, null, "Route computation failed: " + ex);
+        }
+    }
+
+    /**
+     * Returns the position of the tab, or of the first comma outside quotes if there is no tab.
+     */
+    private static int findSeparator(String line) {
+        int tab = line.indexOf('\t');
+        if (tab >= 0) {
+            return tab;
+        }
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Formats a result.
+     * @param route route or null if there is an error
+     * @param error error or null
+     */
+    @SuppressWarnings("unchecked")
+    private String format(String from, String to, List<Station> route, String error) {
+        boolean reachable = route != null && !route.isEmpty();
+        double duration = reachable ? calculator.getDuration(route) : 0;
+        int transfers = reachable ? Route.countTransfers(route) : 0;
+        if (format == Format.JSONL) {
+            JSONObject json = new JSONObject();
+            json.put("from", from);
+            json.put("to", to);
+            if (error != null) {
+                json.put("error", error);
+                return json.toJSONString();
+            }
+            json.put("reachable", reachable);
+            if (reachable) {
+                json.put("duration", duration);
+                json.put("transfers", transfers);
+                JSONArray stations = new JSONArray();
+                route.forEach(station -> stations.add(station.getName()));
+                json.put("route", stations);
+            }
+            return json.toJSONString();
+        }
+
+        StringBuilder csv = new StringBuilder();
+        appendCsv(csv, from).append(',');
+        appendCsv(csv, to).append(',');
+        if (reachable) {
+            csv.append(duration).append(',').append(transfers).append(',');
+            StringBuilder stations = new StringBuilder();
+            for (Station station : route) {
+                if (stations.length() > 0) {
+                    stations.append(';');
+                }
+                stations.append(station.getName());
+            }
+            appendCsv(csv, stations.toString());
+        } else {
+            csv.append(",,");
+        }
+        csv.append(',');
+        return appendCsv(csv, error != null ? error : "").toString();
+    }
+
+    /**
+     * Appends the field, quoted if it contains a separator, a quote or a line break.
+     */
+    private static StringBuilder appendCsv(StringBuilder csv, String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return csv.append(value);
+        }
+        return csv.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    /**
+     * Removes the CSV quotes of a field.
+     */
+    private static String unquote(String value) {
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            return value.substring(1, value.length() - 1).replace("\"\"", "\"");
+        }
+        return value;
+    }
+
+    /**
+     * Stops the worker threads.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
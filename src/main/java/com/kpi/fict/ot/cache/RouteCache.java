@@ -0,0 +1,305 @@
+package com.kpi.fict.ot.cache;
+
+import com.kpi.fict.ot.core.LineSegment;
+import com.kpi.fict.ot.core.Route;
+import com.kpi.fict.ot.core.Station;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Bounded concurrent cache of routes keyed by the pair of station identifiers.
+ * The cache is split into segments by key hash, every segment is an LRU list guarded by its own lock,
+ * so concurrent queries for different pairs rarely contend. The size bound is divided between the segments exactly,
+ * a small cache has fewer segments. Entries belong to a generation:
+ * {@link #invalidate()} starts a new generation and entries of older generations are never returned,
+ * {@link #invalidate(Predicate)} carries the routes that are still valid over to the new generation.
+ * @version 1.0-SNAPSHOT
+ */
+public class RouteCache {
+    /** Maximum number of segments, a power of two. */
+    private static final int SEGMENTS = 16;
+
+    /** Segments. */
+    private final Segment[] segments;
+    /** Maximum number of routes. */
+    private final int maximumSize;
+    /** Whether the reverse route may be answered from a cached forward route. */
+    private final boolean deriveReverse;
+    /** Current generation. */
+    private volatile long generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder reverseHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * A single constructor.
+     * @param maximumSize maximum number of routes
+     * @param deriveReverse whether the route {@code to -> from} may be answered by reversing a cached
+     *                      route {@code from -> to}; valid only when the routes are symmetric
+     */
+    public RouteCache(int maximumSize, boolean deriveReverse) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        this.deriveReverse = deriveReverse;
+        this.segments = new Segment[Math.min(SEGMENTS, Integer.highestOneBit(maximumSize))];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment(maximumSize / segments.length + (i < maximumSize % segments.length ? 1 : 0));
+        }
+    }
+
+    /**
+     * Returns the cached route.
+     * @param generation generation of the caller
+     * @param from identifier of the station of departure
+     * @param to identifier of the destination station
+     * @return route or null
+     */
+    public List<Station> get(long generation, int from, int to) {
+        if (generation == this.generation) {
+            List<Station> route = segmentFor(key(from, to)).get(key(from, to), generation);
+            if (route != null) {
+                hits.increment();
+                return route;
+            }
+            if (deriveReverse) {
+                route = reversed(segmentFor(key(to, from)).get(key(to, from), generation));
+                if (route != null) {
+                    reverseHits.increment();
+                    return route;
+                }
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Returns the view of the route in the opposite direction.
+     * @return reversed route or null if the route is absent or is not a view that can be reversed in O(1)
+     */
+    private static List<Station> reversed(List<Station> route) {
+        if (route instanceof Route) {
+            return ((Route) route).reversed();
+        }
+        if (route instanceof LineSegment) {
+            return ((LineSegment) route).reversed();
+        }
+        return null;
+    }
+
+    /**
+     * Puts the route to the cache. Routes computed for an older generation are ignored.
+     * @param generation generation of the caller
+     * @param from identifier of the station of departure
+     * @param to identifier of the destination station
+     * @param route route
+     */
+    public void put(long generation, int from, int to, List<Station> route) {
+        if (generation == this.generation) {
+            segmentFor(key(from, to)).put(key(from, to), route, generation);
+        }
+    }
+
+    /**
+     * Starts a new generation and removes all routes.
+     * @return the new generation
+     */
+    public long invalidate() {
+        long next;
+        synchronized (this) {
+            next = ++generation;
+        }
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+        return next;
+    }
+
+    /**
+     * Starts a new generation and keeps only the routes accepted by the filter, e.g. the routes that do not pass
+     * a station closed meanwhile. The kept routes move to the new generation, the others are removed.
+     * Routes put for the old generation while the segments are filtered are ignored as after {@link #invalidate()}.
+     * @param retain filter of the routes that are still valid
+     * @return the new generation
+     */
+    public long invalidate(Predicate<List<Station>> retain) {
+        long previous;
+        long next;
+        synchronized (this) {
+            previous = generation;
+            next = ++generation;
+        }
+        for (Segment segment : segments) {
+            segment.retain(retain, previous, next);
+        }
+        return next;
+    }
+
+    /**
+     * Returns the current generation.
+     * @return generation
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Returns the maximum number of routes.
+     * @return size bound
+     */
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Returns the number of cached routes.
+     * @return size
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Returns the number of lookups answered with a cached route.
+     * @return hits
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of lookups answered by reversing a cached route.
+     * @return reverse hits
+     */
+    public long getReverseHitCount() {
+        return reverseHits.sum();
+    }
+
+    /**
+     * Returns the number of lookups without a cached route.
+     * @return misses
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of routes removed to respect the size bound.
+     * @return evictions
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    private static long key(int from, int to) {
+        return (long) from << 32 | (to & 0xFFFFFFFFL);
+    }
+
+    private Segment segmentFor(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return segments[(int) (hash >>> 60) & (segments.length - 1)];
+    }
+
+    /**
+     * LRU list of one segment.
+     */
+    private final class Segment {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LinkedHashMap<Long, Entry> entries;
+
+        private Segment(int capacity) {
+            entries = new LinkedHashMap<>(capacity * 2, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                    if (size() > capacity) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        private List<Station> get(long key, long generation) {
+            lock.lock();
+            try {
+                Entry entry = entries.get(key);
+                return entry != null && entry.generation == generation ? entry.route : null;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void put(long key, List<Station> route, long generation) {
+            lock.lock();
+            try {
+                entries.put(key, new Entry(route, generation));
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void retain(Predicate<List<Station>> retain, long previous, long next) {
+            lock.lock();
+            try {
+                Iterator<Map.Entry<Long, Entry>> iterator = entries.entrySet().iterator();
+                while (iterator.hasNext()) {
+                    Map.Entry<Long, Entry> entry = iterator.next();
+                    Entry value = entry.getValue();
+                    if (value.generation == previous && retain.test(value.route)) {
+                        entry.setValue(new Entry(value.route, next));
+                    } else if (value.generation != next) {
+                        iterator.remove();
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void clear() {
+            lock.lock();
+            try {
+                entries.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private int size() {
+            lock.lock();
+            try {
+                return entries.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Cached route with its generation.
+     */
+    private static final class Entry {
+        private final List<Station> route;
+        private final long generation;
+
+        private Entry(List<Station> route, long generation) {
+            this.route = route;
+            this.generation = generation;
+        }
+    }
+}
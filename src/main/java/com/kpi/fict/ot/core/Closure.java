@@ -0,0 +1,167 @@
+package com.kpi.fict.ot.core;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * A station, a track segment between neighbouring stations of a line or a transfer between two stations
+ * that cannot be used, e.g. because of works. A closure may be limited to a time window, a window without
+ * a start or an end is open on that side.
+ * Closures are compared by identity, so the object given to close an element is the one to reopen it.
+ * @version 1.0-SNAPSHOT
+ */
+public final class Closure
+{
+    /**
+     * Closed element.
+     */
+    public enum Type
+    {
+        /** A station: it cannot be passed, entered or left. */
+        STATION,
+        /** Tracks between neighbouring stations of a line, in both directions. */
+        SEGMENT,
+        /** A transfer between two stations, in both directions. */
+        TRANSFER
+    }
+
+    /** Closed element. */
+    private final Type type;
+    /** The station or the first station of the segment or the transfer. */
+    private final Station from;
+    /** The second station of the segment or the transfer, null for a station. */
+    private final Station to;
+    /** Start of the window or null. */
+    private final Instant start;
+    /** End of the window (exclusive) or null. */
+    private final Instant end;
+
+    private Closure(Type type, Station from, Station to, Instant start, Instant end)
+    {
+        if (start != null && end != null && !start.isBefore(end)) {
+            throw new IllegalArgumentException("Closure must start before it ends: " + start + " - " + end);
+        }
+        this.type = type;
+        this.from = Objects.requireNonNull(from, "station");
+        this.to = to;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Closes the station.
+     * @param station the station
+     * @return closure
+     */
+    public static Closure station(Station station)
+    {
+        return new Closure(Type.STATION, station, null, null, null);
+    }
+
+    /**
+     * Closes the tracks between neighbouring stations of a line.
+     * @param from the station
+     * @param to the neighbouring station of the same line
+     * @return closure
+     */
+    public static Closure segment(Station from, Station to)
+    {
+        Objects.requireNonNull(to, "station");
+        if (!from.getLine().equals(to.getLine()) || from.equals(to)) {
+            throw new IllegalArgumentException("Segment must join two stations of one line: " + from + " - " + to);
+        }
+        return new Closure(Type.SEGMENT, from, to, null, null);
+    }
+
+    /**
+     * Closes the transfer between the stations.
+     * @param from the station
+     * @param to the connected station
+     * @return closure
+     */
+    public static Closure transfer(Station from, Station to)
+    {
+        Objects.requireNonNull(to, "station");
+        if (from.equals(to)) {
+            throw new IllegalArgumentException("Transfer must join two stations: " + from);
+        }
+        return new Closure(Type.TRANSFER, from, to, null, null);
+    }
+
+    /**
+     * Returns the same closure limited to the time window.
+     * @param start start of the window or null if the closure is active from now on
+     * @param end end of the window (exclusive) or null if the closure is active until it is reopened
+     * @return closure
+     */
+    public Closure during(Instant start, Instant end)
+    {
+        return new Closure(type, from, to, start, end);
+    }
+
+    /**
+     * Returns the closed element.
+     * @return type
+     */
+    public Type getType()
+    {
+        return type;
+    }
+
+    /**
+     * Returns the station or the first station of the segment or the transfer.
+     * @return station
+     */
+    public Station getFrom()
+    {
+        return from;
+    }
+
+    /**
+     * Returns the second station of the segment or the transfer.
+     * @return station or null for a closed station
+     */
+    public Station getTo()
+    {
+        return to;
+    }
+
+    /**
+     * Returns the start of the window.
+     * @return instant or null
+     */
+    public Instant getStart()
+    {
+        return start;
+    }
+
+    /**
+     * Returns the end of the window, exclusive.
+     * @return instant or null
+     */
+    public Instant getEnd()
+    {
+        return end;
+    }
+
+    /**
+     * Checking if the closure is in force at the time.
+     * @param time the time
+     * @return true or false
+     */
+    public boolean isActive(Instant time)
+    {
+        return (start == null || !time.isBefore(start)) && (end == null || time.isBefore(end));
+    }
+
+    /**
+     * Term representation.
+     * @return closed element with its window
+     */
+    @Override
+    public String toString()
+    {
+        String element = type == Type.STATION ? "station " + from : type.name().toLowerCase() + " " + from + " - " + to;
+        return element + (start != null ? " from " + start : "") + (end != null ? " until " + end : "");
+    }
+}
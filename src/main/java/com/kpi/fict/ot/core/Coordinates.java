@@ -0,0 +1,85 @@
+package com.kpi.fict.ot.core;
+
+/**
+ * Geographic coordinates as points of a sphere of the mean Earth radius in metres.
+ * The straight line (chord) between two points is shorter than the great-circle distance and grows with it,
+ * so nearest-station lookups and lower bounds of the travel distance need no trigonometry once the points are
+ * converted.
+ * @version 1.0-SNAPSHOT
+ */
+public final class Coordinates
+{
+    /** Mean Earth radius in metres. */
+    public static final double EARTH_RADIUS = 6_371_008.8;
+
+    private Coordinates()
+    {
+    }
+
+    /**
+     * Checking if the latitude and the longitude are valid.
+     * @param latitude latitude in degrees
+     * @param longitude longitude in degrees
+     * @return true or false
+     */
+    public static boolean isValid(double latitude, double longitude)
+    {
+        return latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180;
+    }
+
+    /**
+     * Writes the point of the coordinates.
+     * @param latitude latitude in degrees
+     * @param longitude longitude in degrees
+     * @param points output
+     * @param offset position of the x, y and z of the point in the output
+     */
+    public static void toPoint(double latitude, double longitude, double[] points, int offset)
+    {
+        double phi = Math.toRadians(latitude);
+        double lambda = Math.toRadians(longitude);
+        double cosPhi = Math.cos(phi);
+        points[offset] = EARTH_RADIUS * cosPhi * Math.cos(lambda);
+        points[offset + 1] = EARTH_RADIUS * cosPhi * Math.sin(lambda);
+        points[offset + 2] = EARTH_RADIUS * Math.sin(phi);
+    }
+
+    /**
+     * Returns the great-circle distance of the chord between two points.
+     * @param chord chord in metres
+     * @return distance in metres
+     */
+    public static double toDistance(double chord)
+    {
+        return 2 * EARTH_RADIUS * Math.asin(Math.min(1, chord / (2 * EARTH_RADIUS)));
+    }
+
+    /**
+     * Returns the chord between two points of the great-circle distance.
+     * @param distance distance in metres
+     * @return chord in metres
+     */
+    public static double toChord(double distance)
+    {
+        return 2 * EARTH_RADIUS * Math.sin(Math.min(Math.PI, distance / EARTH_RADIUS) / 2);
+    }
+
+    /**
+     * Returns the great-circle distance between the coordinates.
+     * @param fromLatitude latitude of the first point in degrees
+     * @param fromLongitude longitude of the first point in degrees
+     * @param toLatitude latitude of the second point in degrees
+     * @param toLongitude longitude of the second point in degrees
+     * @return distance in metres
+     */
+    public static double distance(double fromLatitude, double fromLongitude, double toLatitude, double toLongitude)
+    {
+        double[] points = new double[6];
+        toPoint(fromLatitude, fromLongitude, points, 0);
+        toPoint(toLatitude, toLongitude, points, 3);
+        double dx = points[0] - points[3];
+        double dy = points[1] - points[4];
+        double dz = points[2] - points[5];
+        return toDistance(Math.sqrt(dx * dx + dy * dy + dz * dz));
+    }
+}
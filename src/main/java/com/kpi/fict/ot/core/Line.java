@@ -1,24 +1,47 @@
 package com.kpi.fict.ot.core;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * A POJO class that stores line information.
+ * Running times between neighbouring stations are kept as prefix sums, so the running time
+ * between any two stations of the line is computed in O(1).
  * @version 1.0-SNAPSHOT
  * @author Linenko Kostyantyn, student of IO-01 in KPI
  */
 @Data
 public class Line implements Comparable<Line>
 {
+    /** Running time between neighbouring stations if the network does not specify it. */
+    public static final double DEFAULT_RUNNING_TIME = 2.5;
+
     /** Number. */
-    private int number;
+    private final int number;
     /** Name. */
-    private String name;
-    /** List of stations. */
+    private final String name;
+    /** List of stations, unmodifiable once the line is frozen. */
+    @Setter(AccessLevel.NONE)
     private List<Station> stations;
+    /** Whether the last station is connected with the first one. */
+    private boolean loop;
+    /** Running time from the first station to every station of the line. */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private double[] elapsed = new double[8];
+    /** Running time from the last station to the first one of a loop line. */
+    @Setter(AccessLevel.NONE)
+    private double loopRunningTime = DEFAULT_RUNNING_TIME;
+    /** Whether the list of stations can no longer be changed. */
+    @Setter(AccessLevel.NONE)
+    private boolean frozen;
 
     /**
      * A single constructor.
@@ -33,14 +56,139 @@ public class Line implements Comparable<Line>
     }
 
     /**
-     * Adds a station.
+     * Adds a station to the end of the line and assigns its ordinal.
      * @param station the station
      */
     public void addStation(Station station)
     {
+        if (frozen) {
+            throw new IllegalStateException("Line " + number + " is frozen");
+        }
+        int position = stations.size();
+        if (position == elapsed.length) {
+            elapsed = Arrays.copyOf(elapsed, position * 2);
+        }
+        elapsed[position] = position > 0 ? elapsed[position - 1] + DEFAULT_RUNNING_TIME : 0;
+        station.setPosition(position);
         stations.add(station);
     }
 
+    /**
+     * Sets the running times between neighbouring stations.
+     * @param runningTimes running time from every station to the next one, for a loop line it may contain
+     *                     one more value, the running time from the last station to the first one
+     */
+    public void setRunningTimes(double[] runningTimes)
+    {
+        if (frozen) {
+            throw new IllegalStateException("Line " + number + " is frozen");
+        }
+        int size = stations.size();
+        if (runningTimes.length != Math.max(size - 1, 0) && !(loop && runningTimes.length == size)) {
+            throw new IllegalArgumentException("Line " + number + " has " + size + " stations but "
+                    + runningTimes.length + " running times");
+        }
+        for (double runningTime : runningTimes) {
+            if (!(runningTime > 0) || Double.isInfinite(runningTime)) {
+                throw new IllegalArgumentException("Running time must be positive but was " + runningTime);
+            }
+        }
+        for (int i = 1; i < size; i++) {
+            elapsed[i] = elapsed[i - 1] + runningTimes[i - 1];
+        }
+        loopRunningTime = runningTimes.length == size && size > 0 ? runningTimes[size - 1] : DEFAULT_RUNNING_TIME;
+    }
+
+    /**
+     * Returns the running times between neighbouring stations in the format of {@link #setRunningTimes(double[])}.
+     * @return running times
+     */
+    public double[] getRunningTimes()
+    {
+        int size = stations.size();
+        double[] runningTimes = new double[loop ? size : Math.max(size - 1, 0)];
+        for (int i = 1; i < size; i++) {
+            runningTimes[i - 1] = elapsed[i] - elapsed[i - 1];
+        }
+        if (loop && size > 0) {
+            runningTimes[size - 1] = loopRunningTime;
+        }
+        return runningTimes;
+    }
+
+    /**
+     * Returns the running time between two stations along the line, without passing from the last station
+     * to the first one.
+     * @param from ordinal of the first station
+     * @param to ordinal of the last station
+     * @return running time
+     */
+    public double getRunningTime(int from, int to)
+    {
+        checkPosition(from);
+        checkPosition(to);
+        return Math.abs(elapsed[to] - elapsed[from]);
+    }
+
+    /**
+     * Returns the running time between neighbouring stations, including the last and the first stations of a loop line.
+     * @param from ordinal of the station of departure
+     * @param to ordinal of the next station
+     * @return running time
+     */
+    public double getNeighbourRunningTime(int from, int to)
+    {
+        int size = stations.size();
+        if (loop && size > 2 && Math.abs(from - to) == size - 1) {
+            return loopRunningTime;
+        }
+        return getRunningTime(from, to);
+    }
+
+    private void checkPosition(int position)
+    {
+        if (position < 0 || position >= stations.size()) {
+            throw new IndexOutOfBoundsException("Station " + position + " of line " + number
+                    + " with " + stations.size() + " stations");
+        }
+    }
+
+    /**
+     * Makes the line a loop, so trains run from the last station to the first one.
+     * @param loop true for a loop line
+     */
+    public void setLoop(boolean loop)
+    {
+        if (frozen) {
+            throw new IllegalStateException("Line " + number + " is frozen");
+        }
+        this.loop = loop;
+    }
+
+    /**
+     * Makes the list of stations immutable.
+     */
+    public void freeze()
+    {
+        if (!frozen) {
+            stations = Collections.unmodifiableList(new ArrayList<>(stations));
+            elapsed = Arrays.copyOf(elapsed, stations.size());
+            frozen = true;
+        }
+    }
+
+    /**
+     * Returns the stations between two ordinals (both inclusive) in the direction of travel.
+     * The segment is a view, no stations are copied.
+     * @param from ordinal of the first station
+     * @param to ordinal of the last station
+     * @return segment
+     */
+    public LineSegment getSegment(int from, int to)
+    {
+        return new LineSegment(this, from, to);
+    }
+
     /**
      * Compares the current line with the passed line by number.
      * @param line the object to be compared.
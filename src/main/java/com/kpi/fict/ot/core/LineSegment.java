@@ -0,0 +1,96 @@
+package com.kpi.fict.ot.core;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * A read-only view of consecutive stations of one line.
+ * The segment stores only the ordinals of its ends, so it is created in O(1) and both directions are supported.
+ * @version 1.0-SNAPSHOT
+ */
+public final class LineSegment extends AbstractList<Station> implements RandomAccess
+{
+    /** Line. */
+    private final Line line;
+    /** Ordinal of the first station. */
+    private final int from;
+    /** Ordinal of the last station. */
+    private final int to;
+
+    /**
+     * A single constructor.
+     * @param line the line
+     * @param from ordinal of the first station
+     * @param to ordinal of the last station
+     */
+    public LineSegment(Line line, int from, int to)
+    {
+        int size = line.getStations().size();
+        if (from < 0 || to < 0 || from >= size || to >= size) {
+            throw new IndexOutOfBoundsException("Segment " + from + ".." + to + " of line " + line.getNumber());
+        }
+        this.line = line;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Returns the line.
+     * @return line
+     */
+    public Line getLine()
+    {
+        return line;
+    }
+
+    /**
+     * Returns the ordinal of the first station.
+     * @return ordinal
+     */
+    public int getFrom()
+    {
+        return from;
+    }
+
+    /**
+     * Returns the ordinal of the last station.
+     * @return ordinal
+     */
+    public int getTo()
+    {
+        return to;
+    }
+
+    /**
+     * Returns the same stations in the opposite direction.
+     * @return segment
+     */
+    public LineSegment reversed()
+    {
+        return new LineSegment(line, to, from);
+    }
+
+    /**
+     * Returns the station by its index in the segment.
+     * @param index index in the segment
+     * @return the station
+     */
+    @Override
+    public Station get(int index)
+    {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return line.getStations().get(from <= to ? from + index : from - index);
+    }
+
+    /**
+     * Returns the number of stations.
+     * @return size
+     */
+    @Override
+    public int size()
+    {
+        return Math.abs(to - from) + 1;
+    }
+}
@@ -0,0 +1,125 @@
+package com.kpi.fict.ot.core;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A read-only route built from line segments joined by transfers.
+ * The stations are not copied, they are read from the lines on access.
+ * @version 1.0-SNAPSHOT
+ */
+public final class Route extends AbstractList<Station> implements RandomAccess
+{
+    /** Segments in the direction of travel. */
+    private final LineSegment[] segments;
+    /** Index of the first station of every segment in the route. */
+    private final int[] starts;
+    /** Number of stations. */
+    private final int size;
+
+    /**
+     * A single constructor.
+     * @param segments segments in the direction of travel
+     */
+    public Route(LineSegment... segments)
+    {
+        this.segments = segments;
+        this.starts = new int[segments.length];
+        int total = 0;
+        for (int i = 0; i < segments.length; i++) {
+            starts[i] = total;
+            total += segments[i].size();
+        }
+        this.size = total;
+    }
+
+    /**
+     * Returns the segments of the route.
+     * @return unmodifiable list of segments
+     */
+    public List<LineSegment> getSegments()
+    {
+        return List.of(segments);
+    }
+
+    /**
+     * Returns the number of transfers between the segments. Adjacent segments of the same line, e.g. the two parts
+     * of a route across the end of a loop line, are not a transfer.
+     * @return number of transfers
+     */
+    public int getTransferCount()
+    {
+        int transfers = 0;
+        for (int i = 1; i < segments.length; i++) {
+            if (!segments[i - 1].getLine().equals(segments[i].getLine())) {
+                transfers++;
+            }
+        }
+        return transfers;
+    }
+
+    /**
+     * Counts the changes of the line between adjacent stations of the route.
+     * @param route list of stations
+     * @return number of transfers
+     */
+    public static int countTransfers(List<Station> route)
+    {
+        if (route instanceof Route) {
+            return ((Route) route).getTransferCount();
+        }
+        if (route instanceof LineSegment) {
+            return 0;
+        }
+        int transfers = 0;
+        for (int i = 1; i < route.size(); i++) {
+            if (!route.get(i - 1).getLine().equals(route.get(i).getLine())) {
+                transfers++;
+            }
+        }
+        return transfers;
+    }
+
+    /**
+     * Returns the same route in the opposite direction.
+     * @return route
+     */
+    public Route reversed()
+    {
+        LineSegment[] reversed = new LineSegment[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            reversed[segments.length - 1 - i] = segments[i].reversed();
+        }
+        return new Route(reversed);
+    }
+
+    /**
+     * Returns the station by its index in the route.
+     * @param index index in the route
+     * @return the station
+     */
+    @Override
+    public Station get(int index)
+    {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        int segment = Arrays.binarySearch(starts, index);
+        if (segment < 0) {
+            segment = -segment - 2;
+        }
+        return segments[segment].get(index - starts[segment]);
+    }
+
+    /**
+     * Returns the number of stations.
+     * @return size
+     */
+    @Override
+    public int size()
+    {
+        return size;
+    }
+}
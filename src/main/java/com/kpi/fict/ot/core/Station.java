@@ -1,9 +1,12 @@
 package com.kpi.fict.ot.core;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Setter;
 
 /**
  * POJO-class that stores information about the station.
+ * The location of the station is optional, see {@link Coordinates}.
  * @version 1.0-SNAPSHOT
  * @author Linenko Kostyantyn, student of IO-01 in KPI
  */
@@ -11,9 +14,18 @@ import lombok.Data;
 public class Station implements Comparable<Station>
 {
     /** Line. */
-    private Line line;
+    private final Line line;
     /** Name of station. */
-    private String name;
+    private final String name;
+    /** Ordinal of the station on its line or -1 if the station is not added to the line, set by the line. */
+    @Setter(AccessLevel.NONE)
+    private int position = -1;
+    /** Latitude in degrees or NaN if the location is unknown. */
+    @Setter(AccessLevel.NONE)
+    private double latitude = Double.NaN;
+    /** Longitude in degrees or NaN if the location is unknown. */
+    @Setter(AccessLevel.NONE)
+    private double longitude = Double.NaN;
 
     /**
      * A single constructor.
@@ -26,6 +38,44 @@ public class Station implements Comparable<Station>
         this.line = line;
     }
 
+    /**
+     * Sets the ordinal of the station on its line, see {@link Line#addStation(Station)}.
+     * @param position ordinal
+     */
+    void setPosition(int position)
+    {
+        this.position = position;
+    }
+
+    /**
+     * Sets the location of the station.
+     * A station that is already in a {@link com.kpi.fict.ot.StationIndex} is moved with
+     * {@link com.kpi.fict.ot.StationIndex#setLocation(Station, double, double)}, so the index notices the change.
+     * @param latitude latitude in degrees, from -90 to 90
+     * @param longitude longitude in degrees, from -180 to 180
+     * @throws IllegalStateException if the line of the station is frozen
+     */
+    public void setLocation(double latitude, double longitude)
+    {
+        if (line != null && line.isFrozen()) {
+            throw new IllegalStateException("Line " + line.getNumber() + " is frozen");
+        }
+        if (!Coordinates.isValid(latitude, longitude)) {
+            throw new IllegalArgumentException("Invalid location " + latitude + ", " + longitude + " of " + name);
+        }
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    /**
+     * Checking if the location of the station is known.
+     * @return true or false
+     */
+    public boolean hasLocation()
+    {
+        return !Double.isNaN(latitude);
+    }
+
     /**
      * Compares the current station with the transmitted station by line number and name.
      * @param station the object to be compared.
@@ -0,0 +1,617 @@
+package com.kpi.fict.ot.graph;
+
+import com.kpi.fict.ot.core.Route;
+import com.kpi.fict.ot.core.Station;
+import com.kpi.fict.ot.metrics.QueryTrace;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Contraction hierarchy of a {@link StationGraph} for point-to-point queries on large merged networks.
+ * Stations are contracted one by one, the least important first: the neighbours of a contracted station are joined
+ * by a shortcut unless a witness path around the station is as short. A query is a bidirectional search that follows
+ * only edges to stations contracted later, so it settles a small fraction of the stations, and the shortcuts of the
+ * found path are unpacked into the stations of the graph.
+ * Contraction stops when every remaining station has too many neighbours, as it happens on networks without
+ * geographic structure. The remaining stations form the core: they keep all edges between each other,
+ * and the query searches the core in both directions like the plain bidirectional Dijkstra's algorithm.
+ * Edges of the graph are undirected, so one upward graph serves both directions of the search.
+ * @version 1.0-SNAPSHOT
+ */
+public final class ContractionHierarchy {
+    /** Maximum number of stations settled by a witness search, a lower limit adds more shortcuts faster. */
+    private static final int WITNESS_SETTLED_LIMIT = 256;
+    /** Maximum number of stations settled by a witness search that only estimates the priority of a station. */
+    private static final int SIMULATION_SETTLED_LIMIT = 32;
+    /** Stations with more neighbours are not contracted but left in the core. */
+    private static final int CORE_DEGREE = 24;
+    /** Priority of the stations that are left in the core. */
+    private static final int CORE_PRIORITY = Integer.MAX_VALUE;
+
+    /** The graph. */
+    private final StationGraph graph;
+    /** Contraction order of every station, stations contracted later and the core stations have higher ranks. */
+    private final int[] ranks;
+    /** Number of stations left in the core, they have the highest ranks. */
+    private final int coreSize;
+    /** Offsets of upward edges, the edges of a station lead to stations with higher ranks or to core stations. */
+    private final IntBuffer upOffsets;
+    /** Targets of upward edges. */
+    private final IntBuffer upTargets;
+    /** Weights of upward edges. */
+    private final DoubleBuffer upWeights;
+    /** Station bridged by the shortcut or -1 for an edge of the graph. */
+    private final IntBuffer upMiddles;
+    /** Preprocessing time in milliseconds. */
+    private final long preprocessingTime;
+    /** Query states shared by the queries. */
+    private final WorkspacePool<QueryWorkspace> workspaces;
+
+    private ContractionHierarchy(StationGraph graph, int[] ranks, int coreSize, IntBuffer upOffsets,
+                                 IntBuffer upTargets, DoubleBuffer upWeights, IntBuffer upMiddles,
+                                 long preprocessingTime) {
+        this.graph = graph;
+        this.ranks = ranks;
+        this.coreSize = coreSize;
+        this.upOffsets = upOffsets;
+        this.upTargets = upTargets;
+        this.upWeights = upWeights;
+        this.upMiddles = upMiddles;
+        this.preprocessingTime = preprocessingTime;
+        this.workspaces = new WorkspacePool<>(() -> new QueryWorkspace(graph.size()));
+    }
+
+    /**
+     * Contracts the stations of the graph. Stations are ordered by the number of shortcuts their contraction adds
+     * less their degree, plus the number of their contracted neighbours, so contraction spreads over the network.
+     * @param graph the graph
+     * @return hierarchy
+     */
+    public static ContractionHierarchy build(StationGraph graph) {
+        long start = System.nanoTime();
+        Contraction contraction = new Contraction(graph);
+        contraction.run();
+
+        int size = graph.size();
+        int[] upOffsets = new int[size + 1];
+        for (int id = 0; id < size; id++) {
+            upOffsets[id + 1] = upOffsets[id] + contraction.upTargets[id].length;
+        }
+        int[] upTargets = new int[upOffsets[size]];
+        double[] upWeights = new double[upOffsets[size]];
+        int[] upMiddles = new int[upOffsets[size]];
+        for (int id = 0; id < size; id++) {
+            System.arraycopy(contraction.upTargets[id], 0, upTargets, upOffsets[id], contraction.upTargets[id].length);
+            System.arraycopy(contraction.upWeights[id], 0, upWeights, upOffsets[id], contraction.upWeights[id].length);
+            System.arraycopy(contraction.upMiddles[id], 0, upMiddles, upOffsets[id], contraction.upMiddles[id].length);
+        }
+        return new ContractionHierarchy(graph, contraction.ranks, contraction.coreSize, IntBuffer.wrap(upOffsets),
+                IntBuffer.wrap(upTargets), DoubleBuffer.wrap(upWeights), IntBuffer.wrap(upMiddles),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Writes the hierarchy. The graph must be stored separately.
+     * @param output output
+     * @throws IOException if the output cannot be written
+     */
+    public void write(DataOutput output) throws IOException {
+        StationGraph.writeInts(output, ranks);
+        output.writeInt(coreSize);
+        StationGraph.writeInts(output, upOffsets);
+        StationGraph.writeInts(output, upTargets);
+        StationGraph.writeDoubles(output, upWeights);
+        StationGraph.writeInts(output, upMiddles);
+        output.writeLong(preprocessingTime);
+    }
+
+    /**
+     * Reads a hierarchy written by {@link #write(DataOutput)}. The ranks are copied from the buffer,
+     * the edge arrays are views over it, so the buffer must not be changed while the hierarchy is used.
+     * @param input input positioned at the hierarchy
+     * @param graph the graph of the hierarchy
+     * @return hierarchy
+     */
+    public static ContractionHierarchy read(ByteBuffer input, StationGraph graph) {
+        int[] ranks = StationGraph.readInts(input);
+        if (ranks.length != graph.size()) {
+            throw new IllegalArgumentException("Hierarchy of " + ranks.length + " stations does not match the graph of "
+                    + graph.size() + " stations");
+        }
+        return new ContractionHierarchy(graph, ranks, input.getInt(), StationGraph.viewInts(input),
+                StationGraph.viewInts(input), StationGraph.viewDoubles(input), StationGraph.viewInts(input),
+                input.getLong());
+    }
+
+    /**
+     * Returns the graph.
+     * @return graph
+     */
+    public StationGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Returns the number of stations left in the core.
+     * @return number of stations
+     */
+    public int getCoreSize() {
+        return coreSize;
+    }
+
+    /**
+     * Returns the number of upward edges, including shortcuts.
+     * @return number of edges
+     */
+    public int getEdgeCount() {
+        return upTargets.limit();
+    }
+
+    /**
+     * Returns the number of shortcuts added by the contraction.
+     * @return number of shortcuts
+     */
+    public int getShortcutCount() {
+        int count = 0;
+        for (int e = 0; e < upMiddles.limit(); e++) {
+            count += upMiddles.get(e) >= 0 ? 1 : 0;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the time the contraction took.
+     * @return milliseconds
+     */
+    public long getPreprocessingTime() {
+        return preprocessingTime;
+    }
+
+    /**
+     * Returns the size of the hierarchy arrays, without the graph and the query state of the threads.
+     * @return bytes
+     */
+    public long getMemoryUsage() {
+        return (long) Integer.BYTES * (ranks.length + upOffsets.limit() + upTargets.limit() + upMiddles.limit())
+                + (long) Double.BYTES * upWeights.limit();
+    }
+
+    /**
+     * Runs the query without unpacking the route and returns the number of stations settled by both searches.
+     * @param source identifier of the station of departure
+     * @param target identifier of the destination station
+     * @return number of stations
+     */
+    public int countSettled(int source, int target) {
+        QueryWorkspace workspace = workspaces.borrow();
+        try {
+            search(workspace, source, target);
+            return workspace.settled;
+        } finally {
+            workspaces.release(workspace);
+        }
+    }
+
+    /**
+     * Finds the route with the minimum total weight.
+     * @param from the station of departure
+     * @param to destination station
+     * @return route or an empty list if the destination is unreachable
+     */
+    public List<Station> findRoute(Station from, Station to) {
+        int source = graph.getId(from);
+        int target = graph.getId(to);
+        if (source < 0 || target < 0) {
+            return new Route();
+        }
+        return findRoute(source, target);
+    }
+
+    /**
+     * Finds the route with the minimum total weight.
+     * @param source identifier of the station of departure
+     * @param target identifier of the destination station
+     * @return route or an empty list if the destination is unreachable
+     */
+    public List<Station> findRoute(int source, int target) {
+        return findRoute(source, target, null);
+    }
+
+    /**
+     * Finds the route with the minimum total weight and adds the work of both searches to the trace.
+     * @param source identifier of the station of departure
+     * @param target identifier of the destination station
+     * @param trace the trace or null
+     * @return route or an empty list if the destination is unreachable
+     */
+    public List<Station> findRoute(int source, int target, QueryTrace trace) {
+        QueryWorkspace workspace = workspaces.borrow();
+        try {
+            int meeting = search(workspace, source, target);
+            if (trace != null) {
+                workspace.forward.addTo(trace, upOffsets, null);
+                workspace.backward.addTo(trace, upOffsets, null);
+            }
+            if (meeting < 0) {
+                return new Route();
+            }
+            unpack(workspace, meeting);
+            return graph.toRoute(workspace.path.values, workspace.path.size);
+        } finally {
+            workspaces.release(workspace);
+        }
+    }
+
+    /**
+     * Runs the upward searches from both ends, alternating by the minimum distance,
+     * until neither of them can improve the best route.
+     * @return the station where the searches meet on the best route or -1
+     */
+    private int search(QueryWorkspace workspace, int source, int target) {
+        SearchWorkspace forward = workspace.forward;
+        SearchWorkspace backward = workspace.backward;
+        forward.reset();
+        backward.reset();
+        forward.relax(source, 0, -1, 0);
+        backward.relax(target, 0, -1, 0);
+        double best = Double.POSITIVE_INFINITY;
+        int meeting = -1;
+        int settled = 0;
+        for (; ; ) {
+            double forwardDistance = forward.peekDistance();
+            double backwardDistance = backward.peekDistance();
+            if (Math.min(forwardDistance, backwardDistance) >= best) {
+                break;
+            }
+            SearchWorkspace current = forwardDistance <= backwardDistance ? forward : backward;
+            SearchWorkspace other = current == forward ? backward : forward;
+            int node = current.poll();
+            settled++;
+            double distance = current.distance[node];
+            double total = distance + other.distanceOf(node);
+            if (total < best) {
+                best = total;
+                meeting = node;
+            }
+            for (int e = upOffsets.get(node), end = upOffsets.get(node + 1); e < end; e++) {
+                double candidate = distance + upWeights.get(e);
+                if (candidate < current.distanceOf(upTargets.get(e))) {
+                    current.relax(upTargets.get(e), candidate, node, 0);
+                }
+            }
+        }
+        workspace.settled = settled;
+        return meeting;
+    }
+
+    /**
+     * Joins the paths of both searches at the meeting station and replaces the shortcuts with the stations
+     * they bridge. The stations are written to {@link QueryWorkspace#path}.
+     */
+    private void unpack(QueryWorkspace workspace, int meeting) {
+        IntStack hops = workspace.hops;
+        hops.clear();
+        for (int node = meeting; node != -1; node = workspace.forward.previous[node]) {
+            hops.push(node);
+        }
+        for (int i = 0, j = hops.size - 1; i < j; i++, j--) {
+            int swap = hops.values[i];
+            hops.values[i] = hops.values[j];
+            hops.values[j] = swap;
+        }
+        for (int node = workspace.backward.previous[meeting]; node != -1; node = workspace.backward.previous[node]) {
+            hops.push(node);
+        }
+
+        IntStack path = workspace.path;
+        IntStack stack = workspace.stack;
+        path.clear();
+        path.push(hops.values[0]);
+        for (int i = 1; i < hops.size; i++) {
+            stack.clear();
+            stack.push(hops.values[i - 1]);
+            stack.push(hops.values[i]);
+            while (stack.size > 0) {
+                int to = stack.pop();
+                int from = stack.pop();
+                int middle = upMiddles.get(findEdge(from, to));
+                if (middle < 0) {
+                    path.push(to);
+                } else {
+                    stack.push(middle);
+                    stack.push(to);
+                    stack.push(from);
+                    stack.push(middle);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the upward edge between two stations, it belongs to the station with the lower rank.
+     * Core stations have the edges to each other in both directions.
+     */
+    private int findEdge(int from, int to) {
+        int lower = ranks[from] < ranks[to] ? from : to;
+        int higher = lower == from ? to : from;
+        for (int e = upOffsets.get(lower); e < upOffsets.get(lower + 1); e++) {
+            if (upTargets.get(e) == higher) {
+                return e;
+            }
+        }
+        throw new IllegalStateException("No edge between stations " + from + " and " + to);
+    }
+
+    @Override
+    public String toString() {
+        return "Contraction hierarchy of " + graph.size() + " stations: " + getEdgeCount() + " edges, "
+                + getShortcutCount() + " shortcuts, " + coreSize + " in the core, " + preprocessingTime + " ms, "
+                + getMemoryUsage() / 1024 + " KiB";
+    }
+
+    /**
+     * Mutable adjacency of the stations that are not contracted yet.
+     * A contracted station is removed from the lists of its neighbours, its own list becomes its upward edges.
+     * The lists of the core stations become their upward edges when the contraction stops.
+     */
+    private static final class Contraction {
+        private final int size;
+        private final int[][] targets;
+        private final double[][] weights;
+        private final int[][] middles;
+        private final int[] degrees;
+        /** Number of contracted neighbours of every station. */
+        private final int[] contractedNeighbours;
+        private final boolean[] contracted;
+        private final SearchWorkspace witness;
+
+        private final int[] ranks;
+        private int coreSize;
+        private final int[][] upTargets;
+        private final double[][] upWeights;
+        private final int[][] upMiddles;
+
+        private Contraction(StationGraph graph) {
+            size = graph.size();
+            targets = new int[size][];
+            weights = new double[size][];
+            middles = new int[size][];
+            degrees = new int[size];
+            contractedNeighbours = new int[size];
+            contracted = new boolean[size];
+            witness = new SearchWorkspace(size);
+            ranks = new int[size];
+            upTargets = new int[size][];
+            upWeights = new double[size][];
+            upMiddles = new int[size][];
+            for (int id = 0; id < size; id++) {
+                int capacity = graph.trackOffsets.get(id + 1) - graph.trackOffsets.get(id)
+                        + graph.transferOffsets.get(id + 1) - graph.transferOffsets.get(id);
+                targets[id] = new int[Math.max(capacity, 1)];
+                weights[id] = new double[targets[id].length];
+                middles[id] = new int[targets[id].length];
+                for (int e = graph.trackOffsets.get(id); e < graph.trackOffsets.get(id + 1); e++) {
+                    addEdge(id, graph.trackTargets.get(e), graph.trackWeights.get(e), -1);
+                }
+                for (int e = graph.transferOffsets.get(id); e < graph.transferOffsets.get(id + 1); e++) {
+                    addEdge(id, graph.transferTargets.get(e), graph.transferWeights.get(e), -1);
+                }
+            }
+        }
+
+        /**
+         * Contracts the stations until only the core is left, updating the priorities of the neighbours lazily.
+         */
+        private void run() {
+            int[] priorities = new int[size];
+            PriorityQueue<Long> queue = new PriorityQueue<>(Math.max(size, 1));
+            for (int id = 0; id < size; id++) {
+                priorities[id] = priority(id);
+                queue.add(key(priorities[id], id));
+            }
+            int rank = 0;
+            while (!queue.isEmpty()) {
+                long key = queue.poll();
+                int node = (int) key;
+                if (contracted[node] || (int) (key >> 32) != priorities[node]) {
+                    continue;
+                }
+                int priority = priority(node);
+                if (!queue.isEmpty() && priority > (int) (queue.peek() >> 32)) {
+                    priorities[node] = priority;
+                    queue.add(key(priority, node));
+                    continue;
+                }
+                if (priority == CORE_PRIORITY) {
+                    break;
+                }
+                contract(node, false);
+                ranks[node] = rank++;
+                remove(node);
+                for (int i = 0; i < upTargets[node].length; i++) {
+                    int neighbour = upTargets[node][i];
+                    priorities[neighbour] = priority(neighbour);
+                    queue.add(key(priorities[neighbour], neighbour));
+                }
+            }
+            for (int node = 0; node < size; node++) {
+                if (!contracted[node]) {
+                    ranks[node] = rank++;
+                    coreSize++;
+                    upTargets[node] = Arrays.copyOf(targets[node], degrees[node]);
+                    upWeights[node] = Arrays.copyOf(weights[node], degrees[node]);
+                    upMiddles[node] = Arrays.copyOf(middles[node], degrees[node]);
+                }
+            }
+        }
+
+        private static long key(int priority, int node) {
+            return (long) priority << 32 | node;
+        }
+
+        /**
+         * Estimates the priority of the station, stations with lower priorities are contracted first.
+         */
+        private int priority(int node) {
+            if (degrees[node] > CORE_DEGREE) {
+                return CORE_PRIORITY;
+            }
+            return contract(node, true) - degrees[node] + contractedNeighbours[node];
+        }
+
+        /**
+         * Adds shortcuts between the neighbours of the station that have no witness path.
+         * @param node the station
+         * @param simulate only count the shortcuts
+         * @return number of shortcuts
+         */
+        private int contract(int node, boolean simulate) {
+            int shortcuts = 0;
+            int degree = degrees[node];
+            for (int i = 0; i < degree - 1; i++) {
+                int from = targets[node][i];
+                double maxDistance = 0;
+                for (int j = i + 1; j < degree; j++) {
+                    maxDistance = Math.max(maxDistance, weights[node][i] + weights[node][j]);
+                }
+                searchWitness(from, node, maxDistance, simulate ? SIMULATION_SETTLED_LIMIT : WITNESS_SETTLED_LIMIT);
+                for (int j = i + 1; j < degree; j++) {
+                    int to = targets[node][j];
+                    double via = weights[node][i] + weights[node][j];
+                    if (witness.distanceOf(to) > via) {
+                        shortcuts++;
+                        if (!simulate) {
+                            addEdge(from, to, via, node);
+                            addEdge(to, from, via, node);
+                        }
+                    }
+                }
+            }
+            return shortcuts;
+        }
+
+        /**
+         * Runs a bounded search from the station that does not pass the contracted one.
+         */
+        private void searchWitness(int source, int excluded, double maxDistance, int limit) {
+            witness.reset();
+            witness.relax(source, 0, -1, 0);
+            for (int settled = 0; !witness.isEmpty() && witness.peekDistance() <= maxDistance
+                    && settled < limit; settled++) {
+                int node = witness.poll();
+                double distance = witness.distance[node];
+                for (int k = 0; k < degrees[node]; k++) {
+                    int target = targets[node][k];
+                    double candidate = distance + weights[node][k];
+                    if (target != excluded && candidate < witness.distanceOf(target)) {
+                        witness.relax(target, candidate, node, 0);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Adds an edge to the list of the station or lowers the weight of the existing one.
+         */
+        private void addEdge(int from, int to, double weight, int middle) {
+            if (from == to) {
+                return;
+            }
+            for (int k = 0; k < degrees[from]; k++) {
+                if (targets[from][k] == to) {
+                    if (weight < weights[from][k]) {
+                        weights[from][k] = weight;
+                        middles[from][k] = middle;
+                    }
+                    return;
+                }
+            }
+            if (degrees[from] == targets[from].length) {
+                targets[from] = Arrays.copyOf(targets[from], degrees[from] * 2);
+                weights[from] = Arrays.copyOf(weights[from], degrees[from] * 2);
+                middles[from] = Arrays.copyOf(middles[from], degrees[from] * 2);
+            }
+            targets[from][degrees[from]] = to;
+            weights[from][degrees[from]] = weight;
+            middles[from][degrees[from]++] = middle;
+        }
+
+        /**
+         * Keeps the edges of the contracted station as its upward edges and removes it from its neighbours.
+         */
+        private void remove(int node) {
+            int degree = degrees[node];
+            upTargets[node] = Arrays.copyOf(targets[node], degree);
+            upWeights[node] = Arrays.copyOf(weights[node], degree);
+            upMiddles[node] = Arrays.copyOf(middles[node], degree);
+            contracted[node] = true;
+            for (int neighbour : upTargets[node]) {
+                contractedNeighbours[neighbour]++;
+                for (int k = 0; k < degrees[neighbour]; k++) {
+                    if (targets[neighbour][k] == node) {
+                        int last = --degrees[neighbour];
+                        targets[neighbour][k] = targets[neighbour][last];
+                        weights[neighbour][k] = weights[neighbour][last];
+                        middles[neighbour][k] = middles[neighbour][last];
+                        break;
+                    }
+                }
+            }
+            targets[node] = null;
+            weights[node] = null;
+            middles[node] = null;
+        }
+    }
+
+    /**
+     * Reusable state of a query.
+     */
+    private static final class QueryWorkspace {
+        private final SearchWorkspace forward;
+        private final SearchWorkspace backward;
+        /** Stations of the path in the upward graph. */
+        private final IntStack hops = new IntStack();
+        /** Stations of the unpacked path. */
+        private final IntStack path = new IntStack();
+        /** Edges waiting to be unpacked. */
+        private final IntStack stack = new IntStack();
+        /** Number of stations settled by the last query. */
+        private int settled;
+
+        private QueryWorkspace(int size) {
+            forward = new SearchWorkspace(size);
+            backward = new SearchWorkspace(size);
+        }
+    }
+
+    /**
+     * Growable stack of integers.
+     */
+    private static final class IntStack {
+        private int[] values = new int[16];
+        private int size;
+
+        private void push(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        private int pop() {
+            return values[--size];
+        }
+
+        private void clear() {
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package com.kpi.fict.ot.graph;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Yen's algorithm of the K fastest loopless routes over a {@link StationGraph}.
+ * One shortest path tree is built towards the destination per query, it gives the fastest route at once and
+ * the exact remaining travel time of every station. Every deviation of Yen's algorithm is then an A* search
+ * guided by these times: while the tree path of the deviation is not blocked, the search settles only its stations.
+ * Deviations whose lower bound cannot beat the routes already found are skipped without a search,
+ * and a search stops as soon as it cannot beat them.
+ * @version 1.0-SNAPSHOT
+ */
+public final class KShortestPaths {
+    /** The graph. */
+    private final StationGraph graph;
+    /** Search states shared by the queries. */
+    private final WorkspacePool<Workspace> workspaces;
+
+    /**
+     * A single constructor.
+     * @param graph the graph
+     */
+    public KShortestPaths(StationGraph graph) {
+        this.graph = graph;
+        this.workspaces = new WorkspacePool<>(() -> new Workspace(graph.size()));
+    }
+
+    /**
+     * Returns the graph.
+     * @return graph
+     */
+    public StationGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Finds the fastest loopless routes in the order of the travel time.
+     * @param source identifier of the station of departure
+     * @param target identifier of the destination station
+     * @param count maximum number of routes
+     * @param avoided identifiers of the stations the routes must not pass
+     * @return routes, fewer than the count if there are no more routes
+     */
+    public List<RouteAlternative> find(int source, int target, int count, int[] avoided) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Number of routes must be positive but was " + count);
+        }
+        Workspace workspace = workspaces.borrow();
+        try {
+            return find(workspace, source, target, count, avoided);
+        } finally {
+            workspaces.release(workspace);
+        }
+    }
+
+    private List<RouteAlternative> find(Workspace workspace, int source, int target, int count, int[] avoided) {
+        List<Path> accepted = new ArrayList<>();
+        if (buildTree(workspace, target, avoided) && workspace.tree.isReached(source)) {
+            int length = 1;
+            for (int node = source; node != target; node = workspace.tree.previous[node]) {
+                length++;
+            }
+            int[] nodes = new int[length];
+            nodes[0] = source;
+            for (int i = 1; i < length; i++) {
+                nodes[i] = workspace.tree.previous[nodes[i - 1]];
+            }
+            accepted.add(new Path(graph, nodes));
+        }
+
+        List<Path> candidates = new ArrayList<>();
+        while (!accepted.isEmpty() && accepted.size() < count) {
+            Path previous = accepted.get(accepted.size() - 1);
+            for (int i = 0; i < previous.nodes.length - 1; i++) {
+                int spur = previous.nodes[i];
+                int needed = count - accepted.size();
+                double bound = candidates.size() >= needed ?
+                        candidates.get(needed - 1).duration : Double.POSITIVE_INFINITY;
+                if (previous.prefix[i] + workspace.tree.distance[spur] >= bound) {
+                    continue;
+                }
+                workspace.block(previous.nodes, i, accepted);
+                int[] deviation = searchDeviation(workspace, spur, target, bound - previous.prefix[i]);
+                if (deviation == null) {
+                    continue;
+                }
+                int[] nodes = Arrays.copyOf(previous.nodes, i + deviation.length);
+                System.arraycopy(deviation, 0, nodes, i, deviation.length);
+                Path candidate = new Path(graph, nodes);
+                if (!contains(candidates, candidate) && !contains(accepted, candidate)) {
+                    insert(candidates, candidate, needed);
+                }
+            }
+            if (candidates.isEmpty()) {
+                break;
+            }
+            accepted.add(candidates.remove(0));
+        }
+
+        List<RouteAlternative> routes = new ArrayList<>(accepted.size());
+        for (Path path : accepted) {
+            routes.add(new RouteAlternative(graph.toRoute(path.nodes, path.nodes.length), path.duration,
+                    path.transfers));
+        }
+        return routes;
+    }
+
+    /**
+     * Builds the shortest path tree towards the target, the avoided stations are left out.
+     * @return false if the target itself is avoided
+     */
+    private boolean buildTree(Workspace workspace, int target, int[] avoided) {
+        workspace.avoid(avoided);
+        if (workspace.isAvoided(target)) {
+            return false;
+        }
+        SearchWorkspace tree = workspace.tree;
+        tree.reset();
+        tree.relax(target, 0, -1, 0);
+        while (!tree.isEmpty()) {
+            int node = tree.poll();
+            double distance = tree.distance[node];
+            for (int e = graph.trackOffsets.get(node); e < graph.trackOffsets.get(node + 1); e++) {
+                relaxTree(workspace, node, distance, graph.trackTargets.get(e), graph.trackWeights.get(e));
+            }
+            for (int e = graph.transferOffsets.get(node); e < graph.transferOffsets.get(node + 1); e++) {
+                relaxTree(workspace, node, distance, graph.transferTargets.get(e), graph.transferWeights.get(e));
+            }
+        }
+        return true;
+    }
+
+    private static void relaxTree(Workspace workspace, int node, double distance, int target, double weight) {
+        double candidate = distance + weight;
+        if (!workspace.isAvoided(target) && candidate < workspace.tree.distanceOf(target)) {
+            workspace.tree.relax(target, candidate, node, 0);
+        }
+    }
+
+    /**
+     * Searches the fastest route from the spur station that does not pass the blocked stations and edges.
+     * The heap is ordered by the travel time from the spur plus the remaining time of the tree.
+     * @param limit the route must be faster
+     * @return stations from the spur to the target or null
+     */
+    private int[] searchDeviation(Workspace workspace, int spur, int target, double limit) {
+        SearchWorkspace tree = workspace.tree;
+        SearchWorkspace search = workspace.deviation;
+        search.reset();
+        search.relax(spur, tree.distance[spur], -1, 0);
+        while (!search.isEmpty() && search.peekDistance() < limit) {
+            int node = search.poll();
+            if (node == target) {
+                int length = 1;
+                for (int current = node; current != spur; current = search.previous[current]) {
+                    length++;
+                }
+                int[] nodes = new int[length];
+                for (int current = node, i = length - 1; i >= 0; current = search.previous[current], i--) {
+                    nodes[i] = current;
+                }
+                return nodes;
+            }
+            double distance = search.distance[node] - tree.distance[node];
+            for (int e = graph.trackOffsets.get(node); e < graph.trackOffsets.get(node + 1); e++) {
+                relaxDeviation(workspace, node, spur, distance, graph.trackTargets.get(e), graph.trackWeights.get(e));
+            }
+            for (int e = graph.transferOffsets.get(node); e < graph.transferOffsets.get(node + 1); e++) {
+                relaxDeviation(workspace, node, spur, distance, graph.transferTargets.get(e),
+                        graph.transferWeights.get(e));
+            }
+        }
+        return null;
+    }
+
+    private static void relaxDeviation(Workspace workspace, int node, int spur, double distance, int target,
+                                       double weight) {
+        // stations out of the tree are avoided or cannot reach the destination
+        if (!workspace.tree.isReached(target) || workspace.isBlocked(target)
+                || (node == spur && workspace.isBlockedNext(target))) {
+            return;
+        }
+        double candidate = distance + weight + workspace.tree.distance[target];
+        if (candidate < workspace.deviation.distanceOf(target)) {
+            workspace.deviation.relax(target, candidate, node, 0);
+        }
+    }
+
+    private static boolean contains(List<Path> paths, Path path) {
+        for (Path other : paths) {
+            if (Arrays.equals(other.nodes, path.nodes)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Inserts the candidate in the order of the travel time and drops the candidates that can no longer be taken.
+     */
+    private static void insert(List<Path> candidates, Path candidate, int needed) {
+        int position = candidates.size();
+        while (position > 0 && candidates.get(position - 1).duration > candidate.duration) {
+            position--;
+        }
+        candidates.add(position, candidate);
+        while (candidates.size() > needed) {
+            candidates.remove(candidates.size() - 1);
+        }
+    }
+
+    /**
+     * A route as station identifiers with the travel time to every station.
+     */
+    private static final class Path {
+        private final int[] nodes;
+        /** Travel time from the first station to every station. */
+        private final double[] prefix;
+        private final double duration;
+        private final int transfers;
+
+        private Path(StationGraph graph, int[] nodes) {
+            this.nodes = nodes;
+            this.prefix = new double[nodes.length];
+            int transferCount = 0;
+            for (int i = 1; i < nodes.length; i++) {
+                double track = weight(nodes[i - 1], nodes[i], graph.trackOffsets, graph.trackTargets,
+                        graph.trackWeights);
+                double transfer = weight(nodes[i - 1], nodes[i], graph.transferOffsets, graph.transferTargets,
+                        graph.transferWeights);
+                prefix[i] = prefix[i - 1] + Math.min(track, transfer);
+                transferCount += transfer < track ? 1 : 0;
+            }
+            this.duration = prefix[nodes.length - 1];
+            this.transfers = transferCount;
+        }
+
+        /**
+         * Returns the minimum weight of the edges between the stations.
+         */
+        private static double weight(int from, int to, IntBuffer offsets, IntBuffer targets,
+                                     DoubleBuffer weights) {
+            double weight = Double.POSITIVE_INFINITY;
+            for (int e = offsets.get(from); e < offsets.get(from + 1); e++) {
+                if (targets.get(e) == to) {
+                    weight = Math.min(weight, weights.get(e));
+                }
+            }
+            return weight;
+        }
+    }
+
+    /**
+     * Reusable state of a query.
+     */
+    private static final class Workspace {
+        /** Shortest path tree towards the destination. */
+        private final SearchWorkspace tree;
+        /** Search of a deviation. */
+        private final SearchWorkspace deviation;
+        /** Stations marked with {@link #avoidStamp} are avoided. */
+        private final int[] avoided;
+        private int avoidStamp;
+        /** Stations marked with {@link #blockStamp} belong to the root of the deviation. */
+        private final int[] blocked;
+        private int blockStamp;
+        /** Stations the deviation must not go to from the spur station. */
+        private int[] blockedNext = new int[4];
+        private int blockedNextCount;
+
+        private Workspace(int size) {
+            tree = new SearchWorkspace(size);
+            deviation = new SearchWorkspace(size);
+            avoided = new int[size];
+            blocked = new int[size];
+        }
+
+        private void avoid(int[] stations) {
+            avoidStamp = nextStamp(avoided, avoidStamp);
+            for (int station : stations) {
+                if (station >= 0) {
+                    avoided[station] = avoidStamp;
+                }
+            }
+        }
+
+        private boolean isAvoided(int station) {
+            return avoided[station] == avoidStamp;
+        }
+
+        /**
+         * Blocks the stations of the root before the spur and the edges from the spur taken by the routes
+         * that share the root.
+         */
+        private void block(int[] root, int spurIndex, List<Path> accepted) {
+            blockStamp = nextStamp(blocked, blockStamp);
+            for (int i = 0; i < spurIndex; i++) {
+                blocked[root[i]] = blockStamp;
+            }
+            blockedNextCount = 0;
+            for (Path path : accepted) {
+                if (path.nodes.length > spurIndex + 1
+                        && Arrays.equals(path.nodes, 0, spurIndex + 1, root, 0, spurIndex + 1)) {
+                    if (blockedNextCount == blockedNext.length) {
+                        blockedNext = Arrays.copyOf(blockedNext, blockedNextCount * 2);
+                    }
+                    blockedNext[blockedNextCount++] = path.nodes[spurIndex + 1];
+                }
+            }
+        }
+
+        private boolean isBlocked(int station) {
+            return blocked[station] == blockStamp;
+        }
+
+        private boolean isBlockedNext(int station) {
+            for (int i = 0; i < blockedNextCount; i++) {
+                if (blockedNext[i] == station) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static int nextStamp(int[] stamps, int stamp) {
+            if (++stamp == 0) {
+                Arrays.fill(stamps, 0);
+                stamp = 1;
+            }
+            return stamp;
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package com.kpi.fict.ot.graph;
+
+import com.kpi.fict.ot.core.Line;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Graph of the lines of a {@link StationGraph}: lines are nodes, two lines are adjacent if they have an interchange.
+ * A line whose track is cut by blocked edges, e.g. by a closed segment, is split into parts that are nodes of their own:
+ * the part with the first station of the line keeps the position of the line, the other parts are numbered after
+ * the lines. Without blocked tracks the nodes are exactly the lines.
+ * Edges are stored in compressed sparse row form, the interchanges of an edge are the pairs of connected stations
+ * {@code interchangeFrom[i] -> interchangeTo[i]} for
+ * {@code interchangeOffsets[edge] <= i < interchangeOffsets[edge + 1]}.
+ * The minimum numbers of transfers between all pairs of lines are precomputed by a breadth-first search
+ * from every line, so a query learns in O(1) whether a line lies on a sequence of lines with the fewest transfers.
+ * The table takes {@code 2 * nodes^2} bytes.
+ * @version 1.0-SNAPSHOT
+ */
+public final class LineGraph {
+    /** The graph of the stations. */
+    private final StationGraph graph;
+    /** Number of nodes, the lines and the other parts of the split lines. */
+    private final int size;
+    /** Node of every station or -1. */
+    private final int[] stationParts;
+    /** Line position of every node. */
+    private final int[] partLines;
+    /** Offsets of the adjacent lines. */
+    private final int[] offsets;
+    /** Adjacent lines, sorted for every line. */
+    private final int[] targets;
+    /** Offsets of the interchanges of every edge. */
+    private final int[] interchangeOffsets;
+    /** Station of the interchange on the line of the edge source. */
+    private final int[] interchangeFrom;
+    /** Station of the interchange on the line of the edge target. */
+    private final int[] interchangeTo;
+    /** Minimum numbers of transfers in row-major order, -1 if the line is unreachable. */
+    private final short[] transfers;
+
+    private LineGraph(StationGraph graph, int[] stationParts, int[] partLines, int[] offsets, int[] targets,
+                      int[] interchangeOffsets, int[] interchangeFrom, int[] interchangeTo) {
+        if (partLines.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many lines for the transfer table: " + partLines.length);
+        }
+        this.graph = graph;
+        this.size = partLines.length;
+        this.stationParts = stationParts;
+        this.partLines = partLines;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.interchangeOffsets = interchangeOffsets;
+        this.interchangeFrom = interchangeFrom;
+        this.interchangeTo = interchangeTo;
+        this.transfers = new short[Math.multiplyExact(size, size)];
+        computeTransfers();
+    }
+
+    /**
+     * Builds the line graph from the transfer edges of the station graph.
+     * Transfers within one part of a line, stations without a line and blocked transfers are ignored.
+     * @param graph the graph
+     * @return line graph
+     */
+    public static LineGraph compile(StationGraph graph) {
+        int[] stationParts = new int[graph.size()];
+        int[] partLines = split(graph, stationParts);
+        int size = partLines.length;
+        long[] interchanges = new long[graph.transferTargets.limit()];
+        int count = 0;
+        for (int station = 0; station < graph.size(); station++) {
+            int fromLine = stationParts[station];
+            for (int e = graph.transferOffsets.get(station); e < graph.transferOffsets.get(station + 1); e++) {
+                int toLine = stationParts[graph.transferTargets.get(e)];
+                if (fromLine >= 0 && toLine >= 0 && fromLine != toLine
+                        && graph.transferWeights.get(e) < Double.POSITIVE_INFINITY) {
+                    interchanges[count++] = (long) (fromLine * size + toLine) << 32 | e;
+                }
+            }
+        }
+        // sorting by the pair of lines keeps the interchanges of every pair in station order
+        interchanges = Arrays.copyOf(interchanges, count);
+        Arrays.sort(interchanges);
+
+        int[] offsets = new int[size + 1];
+        int[] targets = new int[count];
+        int[] interchangeOffsets = new int[count + 1];
+        int[] interchangeFrom = new int[count];
+        int[] interchangeTo = new int[count];
+        int edges = 0;
+        long previousPair = -1;
+        for (int i = 0; i < count; i++) {
+            long pair = interchanges[i] >>> 32;
+            int e = (int) interchanges[i];
+            if (pair != previousPair) {
+                targets[edges] = (int) (pair % size);
+                offsets[(int) (pair / size) + 1]++;
+                interchangeOffsets[edges++] = i;
+                previousPair = pair;
+            }
+            interchangeTo[i] = graph.transferTargets.get(e);
+            interchangeFrom[i] = stationOf(graph, e);
+        }
+        interchangeOffsets[edges] = count;
+        for (int l = 0; l < size; l++) {
+            offsets[l + 1] += offsets[l];
+        }
+        return new LineGraph(graph, stationParts, partLines, offsets, Arrays.copyOf(targets, edges),
+                Arrays.copyOf(interchangeOffsets, edges + 1), interchangeFrom, interchangeTo);
+    }
+
+    /**
+     * Finds the parts of the lines connected by passable track edges.
+     * @param graph the graph
+     * @param stationParts receives the part of every station or -1
+     * @return line position of every part
+     */
+    private static int[] split(StationGraph graph, int[] stationParts) {
+        Arrays.fill(stationParts, -1);
+        int[] partLines = new int[graph.lineCount() + graph.size()];
+        for (int line = 0; line < graph.lineCount(); line++) {
+            partLines[line] = line;
+        }
+        boolean[] named = new boolean[graph.lineCount()];
+        int parts = graph.lineCount();
+        int[] stack = new int[graph.size()];
+        // identifiers follow the order of the stations on their lines, so the first part of a line is found first
+        for (int station = 0; station < graph.size(); station++) {
+            int line = graph.stationLines[station];
+            if (line < 0 || stationParts[station] >= 0) {
+                continue;
+            }
+            int part = named[line] ? parts++ : line;
+            named[line] = true;
+            partLines[part] = line;
+            stationParts[station] = part;
+            int top = 0;
+            stack[top++] = station;
+            while (top > 0) {
+                int node = stack[--top];
+                for (int e = graph.trackOffsets.get(node); e < graph.trackOffsets.get(node + 1); e++) {
+                    int next = graph.trackTargets.get(e);
+                    if (stationParts[next] < 0 && graph.stationLines[next] == line
+                            && graph.trackWeights.get(e) < Double.POSITIVE_INFINITY) {
+                        stationParts[next] = part;
+                        stack[top++] = next;
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf(partLines, parts);
+    }
+
+    /**
+     * Returns the station whose transfer edge it is.
+     */
+    private static int stationOf(StationGraph graph, int edge) {
+        int low = 0;
+        int high = graph.size() - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (graph.transferOffsets.get(middle) <= edge) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Fills the table of the minimum numbers of transfers.
+     */
+    private void computeTransfers() {
+        Arrays.fill(transfers, (short) -1);
+        int[] queue = new int[size];
+        for (int source = 0; source < size; source++) {
+            int row = source * size;
+            int head = 0;
+            int tail = 0;
+            transfers[row + source] = 0;
+            queue[tail++] = source;
+            while (head < tail) {
+                int line = queue[head++];
+                short next = (short) (transfers[row + line] + 1);
+                for (int e = offsets[line]; e < offsets[line + 1]; e++) {
+                    if (transfers[row + targets[e]] < 0) {
+                        transfers[row + targets[e]] = next;
+                        queue[tail++] = targets[e];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the graph of the stations.
+     * @return graph
+     */
+    public StationGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Returns the number of nodes, the lines and the other parts of the split lines.
+     * @return number of nodes
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the node of the part of the line the station lies on.
+     * @param id station identifier
+     * @return node or -1 if the station has no line
+     */
+    public int getPart(int id) {
+        return stationParts[id];
+    }
+
+    /**
+     * Returns the line of the node.
+     * @param part node
+     * @return line position in the graph
+     */
+    public int getLineOf(int part) {
+        return partLines[part];
+    }
+
+    /**
+     * Returns the minimum number of transfers between stations of the lines.
+     * @param fromLine node of the line
+     * @param toLine node of the line
+     * @return number of transfers or -1 if there is no route
+     */
+    public int getTransfers(int fromLine, int toLine) {
+        return transfers[fromLine * size + toLine];
+    }
+
+    /**
+     * Checking if the line lies on a sequence of lines with the fewest transfers.
+     * @param fromLine the first line of the sequence
+     * @param line node of the line
+     * @param toLine the last line of the sequence
+     * @return true or false
+     */
+    public boolean isOnMinimumTransferSequence(int fromLine, int line, int toLine) {
+        int total = getTransfers(fromLine, toLine);
+        int before = getTransfers(fromLine, line);
+        int after = getTransfers(line, toLine);
+        return total >= 0 && before >= 0 && after >= 0 && before + after == total;
+    }
+
+    /**
+     * Returns the sequences of lines with the fewest transfers between the lines.
+     * The sequences are enumerated line by line along the table, no other line is visited.
+     * Of a split line, the part with its first station is taken.
+     * @param from the first line
+     * @param to the last line
+     * @param limit maximum number of sequences
+     * @return sequences, empty if there is no route
+     */
+    public List<List<Line>> getMinimumTransferSequences(Line from, Line to, int limit) {
+        int fromLine = graph.getLineId(from);
+        int toLine = graph.getLineId(to);
+        List<List<Line>> sequences = new ArrayList<>();
+        if (fromLine < 0 || toLine < 0 || getTransfers(fromLine, toLine) < 0) {
+            return sequences;
+        }
+        int[] sequence = new int[getTransfers(fromLine, toLine) + 1];
+        sequence[0] = fromLine;
+        collectSequences(sequence, 1, toLine, limit, sequences);
+        return sequences;
+    }
+
+    private void collectSequences(int[] sequence, int length, int toLine, int limit, List<List<Line>> sequences) {
+        if (sequences.size() >= limit) {
+            return;
+        }
+        if (length == sequence.length) {
+            List<Line> lines = new ArrayList<>(length);
+            for (int line : sequence) {
+                lines.add(graph.getLine(partLines[line]));
+            }
+            sequences.add(lines);
+            return;
+        }
+        int line = sequence[length - 1];
+        for (int e = offsets[line]; e < offsets[line + 1]; e++) {
+            if (getTransfers(targets[e], toLine) == sequence.length - 1 - length) {
+                sequence[length] = targets[e];
+                collectSequences(sequence, length + 1, toLine, limit, sequences);
+            }
+        }
+    }
+
+    /**
+     * Returns the edge between the lines.
+     * @param fromLine node of the line
+     * @param toLine node of the line
+     * @return edge index or -1 if the lines have no interchange
+     */
+    public int getEdge(int fromLine, int toLine) {
+        int edge = Arrays.binarySearch(targets, offsets[fromLine], offsets[fromLine + 1], toLine);
+        return edge >= 0 ? edge : -1;
+    }
+
+    /**
+     * Returns the index of the first edge of the line.
+     * @param line node of the line
+     * @return edge index
+     */
+    public int edgeBegin(int line) {
+        return offsets[line];
+    }
+
+    /**
+     * Returns the index after the last edge of the line.
+     * @param line node of the line
+     * @return edge index
+     */
+    public int edgeEnd(int line) {
+        return offsets[line + 1];
+    }
+
+    /**
+     * Returns the adjacent line of the edge.
+     * @param edge edge index
+     * @return node of the line
+     */
+    public int edgeTarget(int edge) {
+        return targets[edge];
+    }
+
+    /**
+     * Returns the index of the first interchange of the edge.
+     * @param edge edge index
+     * @return interchange index
+     */
+    public int interchangeBegin(int edge) {
+        return interchangeOffsets[edge];
+    }
+
+    /**
+     * Returns the index after the last interchange of the edge.
+     * @param edge edge index
+     * @return interchange index
+     */
+    public int interchangeEnd(int edge) {
+        return interchangeOffsets[edge + 1];
+    }
+
+    /**
+     * Returns the station of the interchange on the source line of the edge.
+     * @param interchange interchange index
+     * @return station identifier
+     */
+    public int interchangeFrom(int interchange) {
+        return interchangeFrom[interchange];
+    }
+
+    /**
+     * Returns the station of the interchange on the target line of the edge.
+     * @param interchange interchange index
+     * @return station identifier
+     */
+    public int interchangeTo(int interchange) {
+        return interchangeTo[interchange];
+    }
+
+    /**
+     * Returns the size of the arrays of the line graph and the table.
+     * @return bytes
+     */
+    public long getMemoryUsage() {
+        return (long) Integer.BYTES * (offsets.length + targets.length + interchangeOffsets.length
+                + interchangeFrom.length + interchangeTo.length + stationParts.length + partLines.length)
+                + (long) Short.BYTES * transfers.length;
+    }
+}
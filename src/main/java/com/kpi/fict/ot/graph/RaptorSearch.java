@@ -0,0 +1,383 @@
+package com.kpi.fict.ot.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Round-based search of the Pareto set of routes by travel time and number of transfers, after RAPTOR
+ * (Delling, Pajor, Werneck), with the lines of a {@link StationGraph} in place of timetabled trips.
+ * Round {@code k} finds the fastest arrivals with at most {@code k} transfers: the stations improved in the previous
+ * round are left by their transfer edges, then every line with a station reached by a transfer is scanned once
+ * in each direction (twice around a loop line), riding from the best station to board at. The scans run over flat
+ * arrays of the stations and the running times of the lines and need no priority queue.
+ * An arrival is kept only if it is faster than the best arrival at the destination so far, so the rounds stop
+ * when no more transfers can give a faster route.
+ * @version 1.0-SNAPSHOT
+ */
+public final class RaptorSearch {
+    /** Direction bit of a boarding code: the line was ridden backwards. */
+    private static final int BACKWARD = 1;
+
+    /** The graph. */
+    private final StationGraph graph;
+    /** Offsets of the stops of every line. */
+    private final int[] lineOffsets;
+    /** Station identifiers of the stops of all lines in line order. */
+    private final int[] stops;
+    /** Running time from a stop to the next one, for the last stop to the first one of a loop line or infinity. */
+    private final double[] forward;
+    /** Running time from the next stop to a stop, for the first stop to the last one of a loop line or infinity. */
+    private final double[] backward;
+    /** Whether the last and the first stops of the line are neighbours. */
+    private final boolean[] loops;
+    /** Position of the station among the stops of its line or -1. */
+    private final int[] stopIndex;
+    /** Search states shared by the queries. */
+    private final WorkspacePool<Workspace> workspaces;
+
+    /**
+     * A single constructor. The stops and the running times are copied from the track edges of the graph,
+     * so blocked edges give infinite running times.
+     * @param graph the graph
+     */
+    public RaptorSearch(StationGraph graph) {
+        this.graph = graph;
+        int lineCount = graph.lineStations.length;
+        this.lineOffsets = new int[lineCount + 1];
+        for (int l = 0; l < lineCount; l++) {
+            lineOffsets[l + 1] = lineOffsets[l] + graph.lineStations[l].length;
+        }
+        this.stops = new int[lineOffsets[lineCount]];
+        this.forward = new double[stops.length];
+        this.backward = new double[stops.length];
+        this.loops = new boolean[lineCount];
+        this.stopIndex = new int[graph.size()];
+        Arrays.fill(stopIndex, -1);
+        for (int l = 0; l < lineCount; l++) {
+            int[] order = graph.lineStations[l];
+            int begin = lineOffsets[l];
+            System.arraycopy(order, 0, stops, begin, order.length);
+            for (int i = 0; i < order.length; i++) {
+                stopIndex[order[i]] = i;
+                int next = order[(i + 1) % order.length];
+                forward[begin + i] = trackWeight(order[i], next);
+                backward[begin + i] = trackWeight(next, order[i]);
+            }
+            loops[l] = order.length > 2 && graph.isNeighbour(order[order.length - 1], order[0]);
+            if (!loops[l] && order.length > 0) {
+                forward[begin + order.length - 1] = Double.POSITIVE_INFINITY;
+                backward[begin + order.length - 1] = Double.POSITIVE_INFINITY;
+            }
+        }
+        this.workspaces = new WorkspacePool<>(() -> new Workspace(graph.size(), lineCount));
+    }
+
+    /**
+     * Returns the minimum weight of the track edges between the stations.
+     */
+    private double trackWeight(int from, int to) {
+        double weight = Double.POSITIVE_INFINITY;
+        for (int e = graph.trackOffsets.get(from); e < graph.trackOffsets.get(from + 1); e++) {
+            if (graph.trackTargets.get(e) == to) {
+                weight = Math.min(weight, graph.trackWeights.get(e));
+            }
+        }
+        return weight;
+    }
+
+    /**
+     * Returns the graph.
+     * @return graph
+     */
+    public StationGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Finds the Pareto set of routes: the fastest route with the fewest transfers, then every route with more
+     * transfers that is faster than all routes with fewer transfers.
+     * @param source identifier of the station of departure
+     * @param target identifier of the destination station
+     * @param maxTransfers maximum number of transfers
+     * @return routes ordered by the number of transfers, empty if the destination is unreachable
+     * @throws IllegalArgumentException if the maximum number of transfers is negative
+     */
+    public List<RouteAlternative> find(int source, int target, int maxTransfers) {
+        if (maxTransfers < 0) {
+            throw new IllegalArgumentException("Maximum number of transfers must not be negative: " + maxTransfers);
+        }
+        Workspace workspace = workspaces.borrow();
+        try {
+            return find(workspace, source, target, maxTransfers);
+        } finally {
+            workspaces.release(workspace);
+        }
+    }
+
+    private List<RouteAlternative> find(Workspace workspace, int source, int target, int maxTransfers) {
+        workspace.reset();
+        List<RouteAlternative> routes = new ArrayList<>();
+
+        workspace.ensureRounds(1);
+        workspace.transferTimes[source] = 0;
+        workspace.transferred[workspace.transferredCount++] = source;
+        workspace.via[source] = -1;
+        for (int round = 0; round <= maxTransfers; round++) {
+            if (round > 0) {
+                workspace.ensureRounds(round + 1);
+                workspace.nextRound();
+                transfer(workspace, round, target);
+            }
+            if (workspace.transferredCount == 0) {
+                break;
+            }
+            double previousBest = workspace.best[target];
+            board(workspace, round);
+            for (int i = 0; i < workspace.lineCount; i++) {
+                scan(workspace, round, workspace.lines[i], target);
+            }
+            workspace.clearTransfers();
+            if (workspace.best[target] < previousBest) {
+                routes.add(restore(workspace, round, target));
+            }
+        }
+        return routes;
+    }
+
+    /**
+     * Marks the stations reached by a transfer (or the source) as improved in the round and marks their lines.
+     */
+    private void board(Workspace workspace, int round) {
+        for (int i = 0; i < workspace.transferredCount; i++) {
+            int station = workspace.transferred[i];
+            improve(workspace, round, station, workspace.transferTimes[station], station << 1);
+            int line = graph.stationLines[station];
+            if (line >= 0 && !workspace.lineMarked[line]) {
+                workspace.lineMarked[line] = true;
+                workspace.lines[workspace.lineCount++] = line;
+            }
+        }
+    }
+
+    /**
+     * Leaves the stations improved in the previous round by their transfer edges.
+     */
+    private void transfer(Workspace workspace, int round, int target) {
+        int size = graph.size();
+        int previousOffset = (round - 1) * size;
+        for (int i = 0; i < workspace.improvedCount; i++) {
+            int station = workspace.improved[i];
+            double time = workspace.times[previousOffset + station];
+            for (int e = graph.transferOffsets.get(station); e < graph.transferOffsets.get(station + 1); e++) {
+                int next = graph.transferTargets.get(e);
+                double candidate = time + graph.transferWeights.get(e);
+                if (candidate < workspace.transferTimes[next] && candidate < workspace.best[next]
+                        && candidate < workspace.best[target]) {
+                    if (workspace.transferTimes[next] == Double.POSITIVE_INFINITY) {
+                        workspace.transferred[workspace.transferredCount++] = next;
+                    }
+                    workspace.transferTimes[next] = candidate;
+                    workspace.via[round * size + next] = station;
+                }
+            }
+        }
+    }
+
+    /**
+     * Scans the line in both directions, boarding at the stations reached by a transfer in the round.
+     */
+    private void scan(Workspace workspace, int round, int line, int target) {
+        int begin = lineOffsets[line];
+        int count = lineOffsets[line + 1] - begin;
+        int steps = loops[line] ? 2 * count : count;
+        double carry = Double.POSITIVE_INFINITY;
+        int boarding = -1;
+        for (int step = 0; step < steps; step++) {
+            int index = step % count;
+            if (step > 0) {
+                carry += forward[begin + (step - 1) % count];
+            }
+            int stop = stops[begin + index];
+            double boardTime = workspace.transferTimes[stop];
+            if (boardTime <= carry && boardTime < Double.POSITIVE_INFINITY) {
+                carry = boardTime;
+                boarding = stop;
+            }
+            if (carry < workspace.best[stop] && carry < workspace.best[target]) {
+                improve(workspace, round, stop, carry, boarding << 1);
+            }
+        }
+        carry = Double.POSITIVE_INFINITY;
+        boarding = -1;
+        for (int step = 0; step < steps; step++) {
+            int index = count - 1 - step % count;
+            if (step > 0) {
+                carry += backward[begin + index];
+            }
+            int stop = stops[begin + index];
+            double boardTime = workspace.transferTimes[stop];
+            if (boardTime <= carry && boardTime < Double.POSITIVE_INFINITY) {
+                carry = boardTime;
+                boarding = stop;
+            }
+            if (carry < workspace.best[stop] && carry < workspace.best[target]) {
+                improve(workspace, round, stop, carry, boarding << 1 | BACKWARD);
+            }
+        }
+    }
+
+    private void improve(Workspace workspace, int round, int station, double time, int boarding) {
+        int index = round * graph.size() + station;
+        workspace.best[station] = time;
+        workspace.times[index] = time;
+        workspace.boardings[index] = boarding;
+        if (!workspace.marked[station]) {
+            workspace.marked[station] = true;
+            workspace.next[workspace.nextCount++] = station;
+        }
+    }
+
+    /**
+     * Restores the route of the arrival at the station in the round: the ride of every round back to its boarding
+     * station, then the transfer to it from the station improved in the round before.
+     */
+    private RouteAlternative restore(Workspace workspace, int round, int target) {
+        int size = graph.size();
+        int[] path = new int[16];
+        int length = 0;
+        int station = target;
+        for (int r = round; ; r--) {
+            int boarding = workspace.boardings[r * size + station];
+            int from = boarding >> 1;
+            int line = graph.stationLines[station];
+            int step = (boarding & BACKWARD) != 0 ? 1 : -1;
+            while (true) {
+                if (length == path.length) {
+                    path = Arrays.copyOf(path, length * 2);
+                }
+                path[length++] = station;
+                if (station == from) {
+                    break;
+                }
+                int count = lineOffsets[line + 1] - lineOffsets[line];
+                station = stops[lineOffsets[line] + (stopIndex[station] + step + count) % count];
+            }
+            station = workspace.via[r * size + from];
+            if (station < 0) {
+                break;
+            }
+        }
+        for (int i = 0, j = length - 1; i < j; i++, j--) {
+            int swap = path[i];
+            path[i] = path[j];
+            path[j] = swap;
+        }
+        return new RouteAlternative(graph.toRoute(path, length), workspace.times[round * size + target], round);
+    }
+
+    /**
+     * Reusable state of a query. The labels of the rounds are valid only for the stations improved
+     * in the round, so they are never cleared.
+     */
+    private static final class Workspace {
+        /** Number of stations. */
+        private final int size;
+        /** Best arrival at every station in any round. */
+        private final double[] best;
+        /** Arrival by a transfer in the current round, infinity if there is none. */
+        private final double[] transferTimes;
+        /** Stations with an arrival by a transfer in the current round. */
+        private final int[] transferred;
+        private int transferredCount;
+        /** Stations improved in the previous round. */
+        private int[] improved;
+        private int improvedCount;
+        /** Stations improved in the current round. */
+        private int[] next;
+        private int nextCount;
+        /** Marks of the stations improved in the current round. */
+        private final boolean[] marked;
+        /** Lines to scan in the current round. */
+        private final int[] lines;
+        private int lineCount;
+        /** Marks of the lines to scan. */
+        private final boolean[] lineMarked;
+        /** Arrival of the round by round and station. */
+        private double[] times;
+        /** Boarding station of the round shifted left by one, with the direction bit. */
+        private int[] boardings;
+        /** Station the transfer of the round came from, -1 for the source. */
+        private int[] via;
+
+        private Workspace(int size, int lines) {
+            this.size = size;
+            this.best = new double[size];
+            this.transferTimes = new double[size];
+            this.transferred = new int[size];
+            this.improved = new int[size];
+            this.next = new int[size];
+            this.marked = new boolean[size];
+            this.lines = new int[lines];
+            this.lineMarked = new boolean[lines];
+            this.times = new double[0];
+            this.boardings = new int[0];
+            this.via = new int[0];
+            Arrays.fill(transferTimes, Double.POSITIVE_INFINITY);
+        }
+
+        private void reset() {
+            Arrays.fill(best, Double.POSITIVE_INFINITY);
+            clearTransfers();
+            for (int i = 0; i < nextCount; i++) {
+                marked[next[i]] = false;
+            }
+            nextCount = 0;
+            improvedCount = 0;
+        }
+
+        /**
+         * Grows the labels of the rounds to the number of rounds.
+         */
+        private void ensureRounds(int rounds) {
+            long cells = (long) rounds * size;
+            if (cells > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Too many rounds: " + rounds);
+            }
+            if (times.length < cells) {
+                int capacity = (int) Math.min(Integer.MAX_VALUE, Math.max(cells, 2L * times.length));
+                times = Arrays.copyOf(times, capacity);
+                boardings = Arrays.copyOf(boardings, capacity);
+                via = Arrays.copyOf(via, capacity);
+            }
+        }
+
+        /**
+         * Makes the stations improved in the current round the ones of the previous round.
+         */
+        private void nextRound() {
+            int[] swap = improved;
+            improved = next;
+            improvedCount = nextCount;
+            next = swap;
+            for (int i = 0; i < improvedCount; i++) {
+                marked[improved[i]] = false;
+            }
+            nextCount = 0;
+        }
+
+        /**
+         * Removes the arrivals by a transfer and the marks of the lines of the round.
+         */
+        private void clearTransfers() {
+            for (int i = 0; i < transferredCount; i++) {
+                transferTimes[transferred[i]] = Double.POSITIVE_INFINITY;
+            }
+            transferredCount = 0;
+            for (int i = 0; i < lineCount; i++) {
+                lineMarked[lines[i]] = false;
+            }
+            lineCount = 0;
+        }
+    }
+}
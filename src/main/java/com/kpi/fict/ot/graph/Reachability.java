@@ -0,0 +1,253 @@
+package com.kpi.fict.ot.graph;
+
+import com.kpi.fict.ot.core.Route;
+import com.kpi.fict.ot.core.Station;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Stations reachable from one or more sources within a travel time and a number of transfers, with the arrival time,
+ * the number of transfers and the predecessor of every station.
+ * A single search settles the stations in the order of the travel time and stops as soon as the next one is over
+ * the time limit. Without a transfer limit it is Dijkstra's algorithm over the graph. With a limit of {@code k}
+ * transfers a station is labelled once per number of transfers from 0 to {@code k}, because a slower arrival
+ * with fewer transfers may reach stations the fastest one cannot; a label is not expanded if the station has
+ * already been settled with fewer transfers.
+ * @version 1.0-SNAPSHOT
+ */
+public final class Reachability {
+    /** The graph. */
+    private final StationGraph graph;
+    /** Labels per station: one without a transfer limit, otherwise the limit plus one. */
+    private final int layers;
+    /** Travel times by station identifier, {@link Double#POSITIVE_INFINITY} for unreachable stations. */
+    private final double[] durations;
+    /** Numbers of transfers by station identifier, -1 for unreachable stations. */
+    private final int[] transfers;
+    /** Label of the fastest arrival by station identifier or -1. */
+    private final int[] labels;
+    /** Predecessor labels, valid for the labels on the path of a fastest arrival. */
+    private int[] previousLabels;
+    /** Reachable stations in the order of the travel time. */
+    private final int[] order;
+    /** Number of reachable stations. */
+    private int size;
+
+    private Reachability(StationGraph graph, int layers) {
+        this.graph = graph;
+        this.layers = layers;
+        this.durations = new double[graph.size()];
+        this.transfers = new int[graph.size()];
+        this.labels = new int[graph.size()];
+        this.order = new int[graph.size()];
+        Arrays.fill(durations, Double.POSITIVE_INFINITY);
+        Arrays.fill(transfers, -1);
+        Arrays.fill(labels, -1);
+    }
+
+    /**
+     * Finds the stations reachable from the sources. Every source is reached at time 0 without transfers.
+     * @param search shortest path search of the graph
+     * @param sources identifiers of the stations of departure, -1 for unknown stations
+     * @param maxDuration maximum travel time, {@link Double#POSITIVE_INFINITY} for no limit
+     * @param maxTransfers maximum number of transfers, -1 for no limit
+     * @return reachable stations
+     * @throws IllegalArgumentException if a limit is negative or a station identifier is unknown
+     */
+    public static Reachability compute(ShortestPathSearch search, int[] sources, double maxDuration,
+                                       int maxTransfers) {
+        StationGraph graph = search.getGraph();
+        if (!(maxDuration >= 0)) {
+            throw new IllegalArgumentException("Maximum travel time must not be negative: " + maxDuration);
+        }
+        if (maxTransfers < -1) {
+            throw new IllegalArgumentException("Maximum number of transfers must not be negative: " + maxTransfers);
+        }
+        for (int id : sources) {
+            if (id >= graph.size()) {
+                throw new IllegalArgumentException("Unknown station identifier " + id);
+            }
+        }
+        int layers;
+        SearchWorkspace workspace;
+        try {
+            layers = maxTransfers < 0 ? 1 : Math.addExact(maxTransfers, 1);
+            workspace = search.borrow(layers);
+        } catch (ArithmeticException ex) {
+            throw new IllegalArgumentException("Too many labels for " + maxTransfers + " transfers", ex);
+        }
+
+        Reachability reachability = new Reachability(graph, layers);
+        try {
+            reachability.search(workspace, sources, maxDuration, maxTransfers);
+        } finally {
+            search.release(workspace, layers);
+        }
+        return reachability;
+    }
+
+    /**
+     * Runs the search and keeps the labels of the settled stations.
+     */
+    private void search(SearchWorkspace workspace, int[] sources, double maxDuration, int maxTransfers) {
+        workspace.reset();
+        for (int id : sources) {
+            if (id >= 0 && !workspace.isReached(id * layers)) {
+                workspace.relax(id * layers, 0, -1, 0);
+            }
+        }
+        int[] fewestTransfers = null;
+        if (layers > 1) {
+            fewestTransfers = new int[graph.size()];
+            Arrays.fill(fewestTransfers, layers);
+        }
+        while (!workspace.isEmpty() && workspace.peekDistance() <= maxDuration) {
+            int label = workspace.poll();
+            int node = label / layers;
+            int layer = label - node * layers;
+            double distance = workspace.distance[label];
+            int transferCount = workspace.transfers[label];
+            if (labels[node] < 0) {
+                durations[node] = distance;
+                transfers[node] = transferCount;
+                labels[node] = label;
+                order[size++] = node;
+            }
+            if (fewestTransfers != null) {
+                if (layer >= fewestTransfers[node]) {
+                    continue;
+                }
+                fewestTransfers[node] = layer;
+            }
+            for (int e = graph.trackOffsets.get(node); e < graph.trackOffsets.get(node + 1); e++) {
+                relax(workspace, label, graph.trackTargets.get(e) * layers + layer,
+                        distance + graph.trackWeights.get(e), transferCount, maxDuration);
+            }
+            if (maxTransfers < 0 || layer < maxTransfers) {
+                int nextLayer = maxTransfers < 0 ? 0 : layer + 1;
+                for (int e = graph.transferOffsets.get(node); e < graph.transferOffsets.get(node + 1); e++) {
+                    relax(workspace, label, graph.transferTargets.get(e) * layers + nextLayer,
+                            distance + graph.transferWeights.get(e), transferCount + 1, maxDuration);
+                }
+            }
+        }
+        previousLabels = Arrays.copyOf(workspace.previous, graph.size() * layers);
+    }
+
+    private static void relax(SearchWorkspace workspace, int label, int next, double candidate, int transfers,
+                              double maxDuration) {
+        if (candidate <= maxDuration && candidate < workspace.distanceOf(next)) {
+            workspace.relax(next, candidate, label, transfers);
+        }
+    }
+
+    /**
+     * Returns the graph.
+     * @return graph
+     */
+    public StationGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Returns the number of reachable stations, the sources included.
+     * @return number of stations
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the reachable stations in the order of the travel time, the sources first.
+     * @return stations
+     */
+    public List<Station> getStations() {
+        return new Stations();
+    }
+
+    /**
+     * Checking if the station is reachable.
+     * @param station the station
+     * @return true or false
+     */
+    public boolean isReachable(Station station) {
+        int id = graph.getId(station);
+        return id >= 0 && labels[id] >= 0;
+    }
+
+    /**
+     * Returns the travel time of the fastest arrival within the limits.
+     * @param station the station
+     * @return travel time or {@link Double#POSITIVE_INFINITY} if the station is unreachable
+     */
+    public double getDuration(Station station) {
+        int id = graph.getId(station);
+        return id >= 0 ? durations[id] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Returns the number of transfers of the fastest arrival within the limits.
+     * @param station the station
+     * @return number of transfers or -1 if the station is unreachable
+     */
+    public int getTransfers(Station station) {
+        int id = graph.getId(station);
+        return id >= 0 ? transfers[id] : -1;
+    }
+
+    /**
+     * Returns the station before the station on the route of the fastest arrival.
+     * @param station the station
+     * @return predecessor or null for a source and an unreachable station
+     */
+    public Station getPrevious(Station station) {
+        int id = graph.getId(station);
+        if (id < 0 || labels[id] < 0 || previousLabels[labels[id]] < 0) {
+            return null;
+        }
+        return graph.getStation(previousLabels[labels[id]] / layers);
+    }
+
+    /**
+     * Restores the route of the fastest arrival from its source.
+     * @param station the station
+     * @return route or an empty list if the station is unreachable
+     */
+    public List<Station> getRoute(Station station) {
+        int id = graph.getId(station);
+        if (id < 0 || labels[id] < 0) {
+            return new Route();
+        }
+        int length = 0;
+        for (int label = labels[id]; label >= 0; label = previousLabels[label]) {
+            length++;
+        }
+        int[] path = new int[length];
+        int index = length;
+        for (int label = labels[id]; label >= 0; label = previousLabels[label]) {
+            path[--index] = label / layers;
+        }
+        return graph.toRoute(path, length);
+    }
+
+    /**
+     * View of the reachable stations.
+     */
+    private final class Stations extends AbstractList<Station> implements RandomAccess {
+        @Override
+        public Station get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index " + index + " of " + size + " stations");
+            }
+            return graph.getStation(order[index]);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
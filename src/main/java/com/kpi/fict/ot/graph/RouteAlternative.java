@@ -0,0 +1,53 @@
+package com.kpi.fict.ot.graph;
+
+import com.kpi.fict.ot.core.Station;
+
+import java.util.List;
+
+/**
+ * One of the alternative routes between two stations with its travel time and number of transfers.
+ * @version 1.0-SNAPSHOT
+ */
+public final class RouteAlternative {
+    /** Stations of the route. */
+    private final List<Station> route;
+    /** Travel time. */
+    private final double duration;
+    /** Number of transfers. */
+    private final int transfers;
+
+    RouteAlternative(List<Station> route, double duration, int transfers) {
+        this.route = route;
+        this.duration = duration;
+        this.transfers = transfers;
+    }
+
+    /**
+     * Returns the stations of the route.
+     * @return route
+     */
+    public List<Station> getRoute() {
+        return route;
+    }
+
+    /**
+     * Returns the travel time with the running and transfer times of the graph.
+     * @return time
+     */
+    public double getDuration() {
+        return duration;
+    }
+
+    /**
+     * Returns the number of transfers.
+     * @return number of transfers
+     */
+    public int getTransfers() {
+        return transfers;
+    }
+
+    @Override
+    public String toString() {
+        return route + " (" + duration + ", " + transfers + " transfers)";
+    }
+}
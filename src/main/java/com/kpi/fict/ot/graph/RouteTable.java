@@ -0,0 +1,309 @@
+package com.kpi.fict.ot.graph;
+
+import com.kpi.fict.ot.core.Route;
+import com.kpi.fict.ot.core.Station;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Precomputed fastest routes between all pairs of stations of a {@link StationGraph}, for O(1) travel times
+ * and routes restored in O(route length).
+ * The tables are stored by destination: the cell {@code target * size + source} holds the next hop from the source
+ * towards the target, the travel time and the number of transfers. A next hop is the rank of the edge among the
+ * track and then the transfer edges of the station, so it takes a byte unless a station has 255 edges or more.
+ * Travel times are floats, the numbers of transfers take a byte unless a route may have more than 127 transfers.
+ * The edges of a compiled graph are symmetric, so a shortest path tree built from the target gives the next hops
+ * of all sources; the trees are built in parallel, each of them fills its own row.
+ * The memory of the tables is known before they are built, see {@link #estimateMemory(StationGraph)}.
+ * @version 1.0-SNAPSHOT
+ */
+public final class RouteTable {
+    /** Maximum number of targets computed by a single task. */
+    private static final int TARGETS_PER_TASK = 4;
+    /** Next hop of the target itself and of unreachable stations. */
+    private static final int NO_HOP = -1;
+
+    /** The graph. */
+    private final StationGraph graph;
+    /** Number of stations. */
+    private final int size;
+    /** Next hops if they fit in a byte, or null. */
+    private final byte[] byteHops;
+    /** Next hops if they fit in a short, or null. */
+    private final short[] shortHops;
+    /** Next hops otherwise, or null. */
+    private final int[] intHops;
+    /** Travel times, {@link Float#POSITIVE_INFINITY} if the target is unreachable. */
+    private final float[] durations;
+    /** Numbers of transfers if they fit in a byte, or null. */
+    private final byte[] byteTransfers;
+    /** Numbers of transfers otherwise, or null. */
+    private final short[] shortTransfers;
+    /** Time to build the tables in milliseconds. */
+    private long buildTime;
+
+    private RouteTable(StationGraph graph) {
+        this.graph = graph;
+        this.size = graph.size();
+        int cells = Math.multiplyExact(size, size);
+        int hopBytes = hopBytes(graph);
+        this.byteHops = hopBytes == Byte.BYTES ? new byte[cells] : null;
+        this.shortHops = hopBytes == Short.BYTES ? new short[cells] : null;
+        this.intHops = hopBytes == Integer.BYTES ? new int[cells] : null;
+        this.durations = new float[cells];
+        int transferBytes = transferBytes(graph);
+        this.byteTransfers = transferBytes == Byte.BYTES ? new byte[cells] : null;
+        this.shortTransfers = transferBytes == Short.BYTES ? new short[cells] : null;
+    }
+
+    /**
+     * Returns the memory of the tables of the graph without building them.
+     * @param graph the graph
+     * @return bytes
+     */
+    public static long estimateMemory(StationGraph graph) {
+        return (long) graph.size() * graph.size() * (hopBytes(graph) + Float.BYTES + transferBytes(graph));
+    }
+
+    /**
+     * Returns the size of a next hop: the rank of an edge of the station with the most edges,
+     * one value is reserved for {@link #NO_HOP}.
+     */
+    private static int hopBytes(StationGraph graph) {
+        int maxDegree = 0;
+        for (int node = 0; node < graph.size(); node++) {
+            maxDegree = Math.max(maxDegree, graph.trackOffsets.get(node + 1) - graph.trackOffsets.get(node)
+                    + graph.transferOffsets.get(node + 1) - graph.transferOffsets.get(node));
+        }
+        return maxDegree < 0xFF ? Byte.BYTES : maxDegree < 0xFFFF ? Short.BYTES : Integer.BYTES;
+    }
+
+    /**
+     * Returns the size of a number of transfers. A route has fewer transfers than there are stations with transfers,
+     * one value is reserved for unreachable stations.
+     */
+    private static int transferBytes(StationGraph graph) {
+        int stations = 0;
+        for (int node = 0; node < graph.size(); node++) {
+            stations += graph.transferOffsets.get(node + 1) > graph.transferOffsets.get(node) ? 1 : 0;
+        }
+        return stations <= Byte.MAX_VALUE ? Byte.BYTES : Short.BYTES;
+    }
+
+    /**
+     * Builds the tables in the common fork/join pool.
+     * @param graph the graph
+     * @return route table
+     * @throws IllegalArgumentException if the tables would not fit in arrays
+     */
+    public static RouteTable build(StationGraph graph) {
+        return build(graph, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Builds the tables.
+     * @param graph the graph
+     * @param pool pool of the workers
+     * @return route table
+     * @throws IllegalArgumentException if the tables would not fit in arrays
+     */
+    public static RouteTable build(StationGraph graph, ForkJoinPool pool) {
+        if ((long) graph.size() * graph.size() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many stations for the route table: " + graph.size());
+        }
+        long start = System.nanoTime();
+        RouteTable table = new RouteTable(graph);
+        if (table.size > 0) {
+            pool.invoke(table.new RowsTask(new ShortestPathSearch(graph), 0, table.size));
+        }
+        table.buildTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        return table;
+    }
+
+    /**
+     * Returns the graph.
+     * @return graph
+     */
+    public StationGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Returns the time to build the tables.
+     * @return milliseconds
+     */
+    public long getBuildTime() {
+        return buildTime;
+    }
+
+    /**
+     * Returns the size of the tables.
+     * @return bytes
+     */
+    public long getMemoryUsage() {
+        return (long) size * size * (getHopBytes() + Float.BYTES + (byteTransfers != null ? Byte.BYTES : Short.BYTES));
+    }
+
+    /**
+     * Returns the size of a next hop.
+     * @return bytes
+     */
+    public int getHopBytes() {
+        return byteHops != null ? Byte.BYTES : shortHops != null ? Short.BYTES : Integer.BYTES;
+    }
+
+    /**
+     * Returns the travel time of the fastest route.
+     * @param source identifier of the station of departure
+     * @param target identifier of the destination station
+     * @return travel time or {@link Double#POSITIVE_INFINITY} if the destination is unreachable
+     */
+    public double getDuration(int source, int target) {
+        return durations[index(source, target)];
+    }
+
+    /**
+     * Returns the number of transfers of the fastest route.
+     * @param source identifier of the station of departure
+     * @param target identifier of the destination station
+     * @return number of transfers or -1 if the destination is unreachable
+     */
+    public int getTransfers(int source, int target) {
+        int index = index(source, target);
+        return byteTransfers != null ? byteTransfers[index] : shortTransfers[index];
+    }
+
+    /**
+     * Restores the fastest route by following the next hops.
+     * @param source identifier of the station of departure
+     * @param target identifier of the destination station
+     * @return route or an empty list if the destination is unreachable
+     */
+    public List<Station> findRoute(int source, int target) {
+        int row = index(0, target);
+        if (source != target && hop(row + source) == NO_HOP) {
+            return new Route();
+        }
+        int length = 1;
+        for (int node = source; node != target; node = next(node, hop(row + node))) {
+            length++;
+        }
+        int[] path = new int[length];
+        path[0] = source;
+        for (int i = 1; i < length; i++) {
+            path[i] = next(path[i - 1], hop(row + path[i - 1]));
+        }
+        return graph.toRoute(path, length);
+    }
+
+    private int index(int source, int target) {
+        if (source < 0 || source >= size || target < 0 || target >= size) {
+            throw new IndexOutOfBoundsException("Unknown station identifier " + (source < 0 || source >= size ?
+                    source : target));
+        }
+        return target * size + source;
+    }
+
+    private int hop(int index) {
+        if (byteHops != null) {
+            return byteHops[index] == (byte) NO_HOP ? NO_HOP : byteHops[index] & 0xFF;
+        }
+        if (shortHops != null) {
+            return shortHops[index] == (short) NO_HOP ? NO_HOP : shortHops[index] & 0xFFFF;
+        }
+        return intHops[index];
+    }
+
+    private void setHop(int index, int hop) {
+        if (byteHops != null) {
+            byteHops[index] = (byte) hop;
+        } else if (shortHops != null) {
+            shortHops[index] = (short) hop;
+        } else {
+            intHops[index] = hop;
+        }
+    }
+
+    /**
+     * Returns the target of the edge of the rank.
+     */
+    private int next(int node, int hop) {
+        int tracks = graph.trackOffsets.get(node + 1) - graph.trackOffsets.get(node);
+        return hop < tracks ? graph.trackTargets.get(graph.trackOffsets.get(node) + hop)
+                : graph.transferTargets.get(graph.transferOffsets.get(node) + hop - tracks);
+    }
+
+    /**
+     * Returns the rank of the lightest edge between the stations.
+     */
+    private int rankOf(int node, int target) {
+        int rank = NO_HOP;
+        double weight = Double.POSITIVE_INFINITY;
+        int tracks = graph.trackOffsets.get(node + 1) - graph.trackOffsets.get(node);
+        for (int e = graph.trackOffsets.get(node); e < graph.trackOffsets.get(node + 1); e++) {
+            if (graph.trackTargets.get(e) == target && graph.trackWeights.get(e) < weight) {
+                rank = e - graph.trackOffsets.get(node);
+                weight = graph.trackWeights.get(e);
+            }
+        }
+        for (int e = graph.transferOffsets.get(node); e < graph.transferOffsets.get(node + 1); e++) {
+            if (graph.transferTargets.get(e) == target && graph.transferWeights.get(e) < weight) {
+                rank = tracks + e - graph.transferOffsets.get(node);
+                weight = graph.transferWeights.get(e);
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Fills a range of rows, splitting it in halves while it is larger than {@link #TARGETS_PER_TASK}.
+     */
+    private final class RowsTask extends RecursiveAction {
+        private final ShortestPathSearch search;
+        private final int from;
+        private final int to;
+
+        private RowsTask(ShortestPathSearch search, int from, int to) {
+            this.search = search;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > TARGETS_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RowsTask(search, from, middle), new RowsTask(search, middle, to));
+                return;
+            }
+            SearchWorkspace workspace = search.borrow();
+            try {
+                for (int target = from; target < to; target++) {
+                    fillRow(workspace, target);
+                }
+            } finally {
+                search.release(workspace);
+            }
+        }
+
+        private void fillRow(SearchWorkspace workspace, int target) {
+            search.searchAll(workspace, target, null, 0);
+            int row = target * size;
+            for (int source = 0; source < size; source++) {
+                boolean reached = workspace.isReached(source);
+                setHop(row + source, reached && source != target ?
+                        rankOf(source, workspace.previous[source]) : NO_HOP);
+                durations[row + source] = reached ? (float) workspace.distance[source] : Float.POSITIVE_INFINITY;
+                int transfers = reached ? workspace.transfers[source] : -1;
+                if (byteTransfers != null) {
+                    byteTransfers[row + source] = (byte) transfers;
+                } else {
+                    shortTransfers[row + source] = (short) transfers;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.kpi.fict.ot.graph;
+
+import com.kpi.fict.ot.metrics.QueryTrace;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Reusable state of a search over a {@link StationGraph}.
+ * Labels are invalidated in O(1) by bumping the search stamp, so a query does not clear or allocate arrays.
+ * @version 1.0-SNAPSHOT
+ */
+final class SearchWorkspace {
+    /** Tentative distances. Valid only where {@code stamps[v] == stamp}. */
+    final double[] distance;
+    /** Predecessors on the shortest path tree. Valid only where {@code stamps[v] == stamp}. */
+    final int[] previous;
+    /** Number of transfers on the path to the node. Valid only where {@code stamps[v] == stamp}. */
+    final int[] transfers;
+    /** Heap keys: the distance, plus the estimate of the rest for A*. Valid only where {@code stamps[v] == stamp}. */
+    private final double[] keys;
+    /** Search stamp of every label. */
+    private final int[] stamps;
+    /** Current search stamp. */
+    private int stamp;
+
+    /** Heap of nodes ordered by {@link #keys}. */
+    private final int[] heap;
+    /** Position of a node in {@link #heap} or -1. Valid only where {@code stamps[v] == stamp}. */
+    private final int[] positions;
+    /** Number of nodes in the heap. */
+    private int heapSize;
+
+    /**
+     * Allocates a workspace for the graph size.
+     * @param size number of stations
+     */
+    SearchWorkspace(int size) {
+        distance = new double[size];
+        previous = new int[size];
+        transfers = new int[size];
+        keys = new double[size];
+        stamps = new int[size];
+        heap = new int[size];
+        positions = new int[size];
+    }
+
+    /**
+     * Starts a new search: every label becomes unreached and the heap becomes empty.
+     */
+    void reset() {
+        heapSize = 0;
+        if (++stamp == 0) {
+            Arrays.fill(stamps, 0);
+            stamp = 1;
+        }
+    }
+
+    /**
+     * Checking if the node has a label in the current search.
+     * @param node node
+     * @return true or false
+     */
+    boolean isReached(int node) {
+        return stamps[node] == stamp;
+    }
+
+    /**
+     * Checking if the node has left the heap in the current search.
+     * @param node node
+     * @return true or false
+     */
+    boolean isSettled(int node) {
+        return stamps[node] == stamp && positions[node] < 0;
+    }
+
+    /**
+     * Adds the work of the last search to the trace: the labelled and the settled nodes and the edges of the settled
+     * nodes. The labels are scanned in O(V), so the search itself does not count anything.
+     * @param trace the trace
+     * @param offsets CSR offsets of the edges
+     * @param moreOffsets CSR offsets of other edges of the nodes or null
+     */
+    void addTo(QueryTrace trace, IntBuffer offsets, IntBuffer moreOffsets) {
+        long settled = 0;
+        long labelled = 0;
+        long edges = 0;
+        for (int node = 0; node < stamps.length; node++) {
+            if (stamps[node] == stamp) {
+                labelled++;
+                if (positions[node] < 0) {
+                    settled++;
+                    edges += offsets.get(node + 1) - offsets.get(node);
+                    edges += moreOffsets != null ? moreOffsets.get(node + 1) - moreOffsets.get(node) : 0;
+                }
+            }
+        }
+        trace.addSearch(settled, labelled, edges);
+    }
+
+    /**
+     * Returns the tentative distance of the node.
+     * @param node node
+     * @return distance or positive infinity
+     */
+    double distanceOf(int node) {
+        return stamps[node] == stamp ? distance[node] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Sets the label of the node and adds it to the heap or moves it up.
+     * @param node node
+     * @param value new distance
+     * @param predecessor predecessor
+     * @param transferCount number of transfers on the path
+     */
+    void relax(int node, double value, int predecessor, int transferCount) {
+        relax(node, value, value, predecessor, transferCount);
+    }
+
+    /**
+     * Sets the label of the node and adds it to the heap or moves it up by the key.
+     * @param node node
+     * @param value new distance
+     * @param key heap key, at least the distance
+     * @param predecessor predecessor
+     * @param transferCount number of transfers on the path
+     */
+    void relax(int node, double value, double key, int predecessor, int transferCount) {
+        if (stamps[node] != stamp) {
+            stamps[node] = stamp;
+            positions[node] = heapSize;
+            heap[heapSize++] = node;
+        } else if (positions[node] < 0) {
+            return;
+        }
+        distance[node] = value;
+        keys[node] = key;
+        previous[node] = predecessor;
+        transfers[node] = transferCount;
+        siftUp(positions[node]);
+    }
+
+    /**
+     * Checking if the heap is empty.
+     * @return true or false
+     */
+    boolean isEmpty() {
+        return heapSize == 0;
+    }
+
+    /**
+     * Returns the distance of the node with the minimum key in the heap.
+     * @return distance or positive infinity if the heap is empty
+     */
+    double peekDistance() {
+        return heapSize > 0 ? distance[heap[0]] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Removes the node with the minimum key. The node becomes settled.
+     * @return node
+     */
+    int poll() {
+        int node = heap[0];
+        positions[node] = -1;
+        if (--heapSize > 0) {
+            heap[0] = heap[heapSize];
+            positions[heap[0]] = 0;
+            siftDown(0);
+        }
+        return node;
+    }
+
+    private void siftUp(int position) {
+        int node = heap[position];
+        double value = keys[node];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (keys[heap[parent]] <= value) {
+                break;
+            }
+            heap[position] = heap[parent];
+            positions[heap[position]] = position;
+            position = parent;
+        }
+        heap[position] = node;
+        positions[node] = position;
+    }
+
+    private void siftDown(int position) {
+        int node = heap[position];
+        double value = keys[node];
+        for (; ; ) {
+            int child = 2 * position + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && keys[heap[child + 1]] < keys[heap[child]]) {
+                child++;
+            }
+            if (keys[heap[child]] >= value) {
+                break;
+            }
+            heap[position] = heap[child];
+            positions[heap[position]] = position;
+            position = child;
+        }
+        heap[position] = node;
+        positions[node] = position;
+    }
+}
@@ -0,0 +1,416 @@
+package com.kpi.fict.ot.graph;
+
+import com.kpi.fict.ot.core.Coordinates;
+import com.kpi.fict.ot.core.LineSegment;
+import com.kpi.fict.ot.core.Route;
+import com.kpi.fict.ot.core.Station;
+import com.kpi.fict.ot.metrics.QueryTrace;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dijkstra's algorithm over a {@link StationGraph}.
+ * The route may contain any number of transfers, the search takes O(E log V) time.
+ * Queries borrow a {@link SearchWorkspace} from a {@link WorkspacePool} shared by all threads, so a query allocates
+ * only the resulting {@link Route} view.
+ * If every station has a location, a route is searched with A*: the estimate of the rest of the route is the chord
+ * to the destination (see {@link Coordinates}) at the highest speed of all edges of the graph. The chord satisfies the
+ * triangle inequality and no edge is faster, so the estimate is consistent whatever the locations are and the route
+ * stays the shortest one.
+ * @version 1.0-SNAPSHOT
+ */
+public class ShortestPathSearch {
+    /** The graph. */
+    private final StationGraph graph;
+    /** Maximum number of pools of layered workspaces. */
+    private static final int LAYERED_POOLS = 8;
+
+    /** Search states shared by the queries. */
+    private final WorkspacePool<SearchWorkspace> workspaces;
+    /** Search states with a label per station and layer, by the number of layers. */
+    private final Map<Integer, WorkspacePool<SearchWorkspace>> layeredWorkspaces = new ConcurrentHashMap<>();
+    /** Coordinates x, y and z of the stations by identifier or null if a location is unknown. */
+    private final double[] points;
+    /** Lower bound of the travel time per metre of the chord. */
+    private final double pace;
+
+    /**
+     * A single constructor.
+     * @param graph the graph
+     */
+    public ShortestPathSearch(StationGraph graph) {
+        this.graph = graph;
+        this.workspaces = new WorkspacePool<>(() -> new SearchWorkspace(graph.size()));
+        double[] located = new double[graph.size() * 3];
+        for (int id = 0; id < graph.size() && located != null; id++) {
+            Station station = graph.getStation(id);
+            if (station.hasLocation()) {
+                Coordinates.toPoint(station.getLatitude(), station.getLongitude(), located, id * 3);
+            } else {
+                located = null;
+            }
+        }
+        double minimum = Double.POSITIVE_INFINITY;
+        if (located != null) {
+            for (int id = 0; id < graph.size(); id++) {
+                minimum = Math.min(minimum, pace(located, id, graph.trackOffsets, graph.trackTargets,
+                        graph.trackWeights));
+                minimum = Math.min(minimum, pace(located, id, graph.transferOffsets, graph.transferTargets,
+                        graph.transferWeights));
+            }
+        }
+        // rounding must not make the estimate exceed the travel time
+        this.pace = minimum * (1 - 1e-9);
+        this.points = minimum < Double.POSITIVE_INFINITY ? located : null;
+    }
+
+    /**
+     * Returns the minimum travel time per metre of the chord of the passable edges of the node.
+     */
+    private static double pace(double[] points, int node, IntBuffer offsets, IntBuffer targets,
+                               DoubleBuffer weights) {
+        double minimum = Double.POSITIVE_INFINITY;
+        for (int e = offsets.get(node), end = offsets.get(node + 1); e < end; e++) {
+            double chord = chord(points, node, targets.get(e));
+            if (chord > 0 && weights.get(e) < Double.POSITIVE_INFINITY) {
+                minimum = Math.min(minimum, weights.get(e) / chord);
+            }
+        }
+        return minimum;
+    }
+
+    private static double chord(double[] points, int from, int to) {
+        double dx = points[from * 3] - points[to * 3];
+        double dy = points[from * 3 + 1] - points[to * 3 + 1];
+        double dz = points[from * 3 + 2] - points[to * 3 + 2];
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    /**
+     * Checking if routes are searched with A*.
+     * @return true if every station has a location
+     */
+    public boolean isGoalDirected() {
+        return points != null;
+    }
+
+    /**
+     * Returns the graph.
+     * @return graph
+     */
+    public StationGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Finds the route with the minimum total weight.
+     * @param from the station of departure
+     * @param to destination station
+     * @return route or an empty list if the destination is unreachable
+     */
+    public List<Station> findRoute(Station from, Station to) {
+        int source = graph.getId(from);
+        int target = graph.getId(to);
+        if (source < 0 || target < 0) {
+            return new Route();
+        }
+        return findRoute(source, target);
+    }
+
+    /**
+     * Finds the route with the minimum total weight.
+     * @param source identifier of the station of departure
+     * @param target identifier of the destination station
+     * @return route or an empty list if the destination is unreachable
+     */
+    public List<Station> findRoute(int source, int target) {
+        return findRoute(source, target, null);
+    }
+
+    /**
+     * Finds the route with the minimum total weight and adds the work of the search to the trace.
+     * The edges of the destination are counted too, although the search stops before it relaxes them.
+     * @param source identifier of the station of departure
+     * @param target identifier of the destination station
+     * @param trace the trace or null
+     * @return route or an empty list if the destination is unreachable
+     */
+    public List<Station> findRoute(int source, int target, QueryTrace trace) {
+        SearchWorkspace workspace = workspaces.borrow();
+        try {
+            boolean found = search(workspace, source, target);
+            if (trace != null) {
+                workspace.addTo(trace, graph.trackOffsets, graph.transferOffsets);
+            }
+            return found ? toRoute(workspace, target) : new Route();
+        } finally {
+            workspaces.release(workspace);
+        }
+    }
+
+    /**
+     * Finds the fastest of the routes with the fewest transfers.
+     * Only the stations of the lines on the sequences with the fewest transfers are expanded, and a transfer is taken
+     * only to a line one transfer further from the line of departure, so every settled station is reached with
+     * the minimum number of transfers and the search minimizes the travel time alone.
+     * The parts of a line split by blocked tracks are different lines of the line graph, so a route that has
+     * to leave a line and come back to its other part is found too.
+     * @param source identifier of the station of departure
+     * @param target identifier of the destination station
+     * @param lineGraph line graph compiled from the graph of the search
+     * @return route or an empty list if the destination is unreachable
+     */
+    public List<Station> findMinimumTransferRoute(int source, int target, LineGraph lineGraph) {
+        return findMinimumTransferRoute(source, target, lineGraph, null);
+    }
+
+    /**
+     * Finds the fastest of the routes with the fewest transfers and adds the work of the search to the trace.
+     * @param source identifier of the station of departure
+     * @param target identifier of the destination station
+     * @param lineGraph line graph compiled from the graph of the search
+     * @param trace the trace or null
+     * @return route or an empty list if the destination is unreachable
+     * @see #findMinimumTransferRoute(int, int, LineGraph)
+     */
+    public List<Station> findMinimumTransferRoute(int source, int target, LineGraph lineGraph, QueryTrace trace) {
+        int fromLine = lineGraph.getPart(source);
+        int toLine = lineGraph.getPart(target);
+        if (fromLine < 0 || toLine < 0) {
+            return findRoute(source, target, trace);
+        }
+        int total = lineGraph.getTransfers(fromLine, toLine);
+        if (total < 0) {
+            return new Route();
+        }
+        SearchWorkspace workspace = workspaces.borrow();
+        try {
+            List<Station> route = searchMinimumTransfers(workspace, source, target, lineGraph, fromLine, toLine, total);
+            if (trace != null) {
+                workspace.addTo(trace, graph.trackOffsets, graph.transferOffsets);
+            }
+            return route;
+        } finally {
+            workspaces.release(workspace);
+        }
+    }
+
+    private List<Station> searchMinimumTransfers(SearchWorkspace workspace, int source, int target,
+                                                 LineGraph lineGraph, int fromLine, int toLine, int total) {
+        workspace.reset();
+        workspace.relax(source, 0, -1, 0);
+        while (!workspace.isEmpty()) {
+            int node = workspace.poll();
+            if (node == target) {
+                return toRoute(workspace, target);
+            }
+            double distance = workspace.distance[node];
+            int transfers = workspace.transfers[node];
+            relax(workspace, node, distance, transfers, graph.trackOffsets, graph.trackTargets, graph.trackWeights);
+            for (int e = graph.transferOffsets.get(node), end = graph.transferOffsets.get(node + 1); e < end; e++) {
+                int next = graph.transferTargets.get(e);
+                int nextLine = lineGraph.getPart(next);
+                double candidate = distance + graph.transferWeights.get(e);
+                if (nextLine >= 0 && lineGraph.getTransfers(fromLine, nextLine) == transfers + 1
+                        && lineGraph.getTransfers(nextLine, toLine) == total - transfers - 1
+                        && candidate < workspace.distanceOf(next)) {
+                    workspace.relax(next, candidate, node, transfers + 1);
+                }
+            }
+        }
+        return new Route();
+    }
+
+    /**
+     * Runs the search until the target is settled or the heap is exhausted.
+     * @param workspace search state
+     * @param source source identifier
+     * @param target target identifier
+     * @return true if the target is reachable
+     */
+    private boolean search(SearchWorkspace workspace, int source, int target) {
+        workspace.reset();
+        if (points == null) {
+            workspace.relax(source, 0, -1, 0);
+        } else {
+            workspace.relax(source, 0, chord(points, source, target) * pace, -1, 0);
+        }
+        while (!workspace.isEmpty()) {
+            int node = workspace.poll();
+            if (node == target) {
+                return true;
+            }
+            if (points == null) {
+                expand(workspace, node);
+            } else {
+                double distance = workspace.distance[node];
+                int transfers = workspace.transfers[node];
+                relaxTowards(workspace, node, distance, transfers, target,
+                        graph.trackOffsets, graph.trackTargets, graph.trackWeights);
+                relaxTowards(workspace, node, distance, transfers + 1, target,
+                        graph.transferOffsets, graph.transferTargets, graph.transferWeights);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Builds the shortest path tree from the source until all marked targets are settled.
+     * Afterwards the workspace holds the duration, the number of transfers and the predecessor of every settled node.
+     * @param workspace search state
+     * @param source source identifier
+     * @param targets marks of the targets or null to settle every reachable node
+     * @param targetCount number of marked targets
+     */
+    void searchAll(SearchWorkspace workspace, int source, boolean[] targets, int targetCount) {
+        workspace.reset();
+        workspace.relax(source, 0, -1, 0);
+        int settled = 0;
+        while (!workspace.isEmpty()) {
+            int node = workspace.poll();
+            if (targets != null && targets[node] && ++settled == targetCount) {
+                return;
+            }
+            expand(workspace, node);
+        }
+    }
+
+    /**
+     * Borrows a workspace of the graph size, it must be released after use.
+     * @return workspace
+     */
+    SearchWorkspace borrow() {
+        return workspaces.borrow();
+    }
+
+    /**
+     * Returns the borrowed workspace.
+     * @param workspace workspace
+     */
+    void release(SearchWorkspace workspace) {
+        workspaces.release(workspace);
+    }
+
+    /**
+     * Borrows a workspace with a label for every station in each of the layers, it must be released after use
+     * with the same number of layers. Workspaces of up to {@value #LAYERED_POOLS} different numbers of layers
+     * are pooled, the others are dropped on release.
+     * @param layers number of layers
+     * @return workspace
+     * @throws ArithmeticException if the labels would not fit in an array
+     */
+    SearchWorkspace borrow(int layers) {
+        if (layers == 1) {
+            return workspaces.borrow();
+        }
+        int size = Math.multiplyExact(graph.size(), layers);
+        WorkspacePool<SearchWorkspace> pool = layeredWorkspaces.get(layers);
+        if (pool == null && layeredWorkspaces.size() < LAYERED_POOLS) {
+            pool = layeredWorkspaces.computeIfAbsent(layers, key -> new WorkspacePool<>(() -> new SearchWorkspace(size),
+                    Runtime.getRuntime().availableProcessors()));
+        }
+        return pool != null ? pool.borrow() : new SearchWorkspace(size);
+    }
+
+    /**
+     * Returns the workspace borrowed with {@link #borrow(int)}.
+     * @param workspace workspace
+     * @param layers number of layers
+     */
+    void release(SearchWorkspace workspace, int layers) {
+        WorkspacePool<SearchWorkspace> pool = layers == 1 ? workspaces : layeredWorkspaces.get(layers);
+        if (pool != null) {
+            pool.release(workspace);
+        }
+    }
+
+    /**
+     * Relaxes the track and transfer edges of the settled node.
+     */
+    private void expand(SearchWorkspace workspace, int node) {
+        double distance = workspace.distance[node];
+        int transfers = workspace.transfers[node];
+        relax(workspace, node, distance, transfers, graph.trackOffsets, graph.trackTargets, graph.trackWeights);
+        relax(workspace, node, distance, transfers + 1,
+                graph.transferOffsets, graph.transferTargets, graph.transferWeights);
+    }
+
+    /**
+     * Relaxes the edges of the node stored in one of the CSR arrays.
+     */
+    private static void relax(SearchWorkspace workspace, int node, double distance, int transfers,
+                              IntBuffer offsets, IntBuffer targets, DoubleBuffer weights) {
+        for (int e = offsets.get(node), end = offsets.get(node + 1); e < end; e++) {
+            double candidate = distance + weights.get(e);
+            if (candidate < workspace.distanceOf(targets.get(e))) {
+                workspace.relax(targets.get(e), candidate, node, transfers);
+            }
+        }
+    }
+
+    /**
+     * Relaxes the edges of the node stored in one of the CSR arrays with the estimate of the rest of the route.
+     */
+    private void relaxTowards(SearchWorkspace workspace, int node, double distance, int transfers, int target,
+                              IntBuffer offsets, IntBuffer targets, DoubleBuffer weights) {
+        for (int e = offsets.get(node), end = offsets.get(node + 1); e < end; e++) {
+            int next = targets.get(e);
+            double candidate = distance + weights.get(e);
+            if (candidate < workspace.distanceOf(next)) {
+                workspace.relax(next, candidate, candidate + chord(points, next, target) * pace, node, transfers);
+            }
+        }
+    }
+
+    /**
+     * Restores the route from the predecessors.
+     * Consecutive stations of one line become a single {@link LineSegment}, so the stations are not copied.
+     * @param workspace search state
+     * @param target target identifier
+     * @return route
+     */
+    private Route toRoute(SearchWorkspace workspace, int target) {
+        int count = 0;
+        for (int node = target; node != -1; node = segmentStart(workspace, node)) {
+            count++;
+        }
+        LineSegment[] segments = new LineSegment[count];
+        for (int node = target; node != -1; ) {
+            int start = segmentStart(workspace, node);
+            int first = node;
+            while (workspace.previous[first] != start) {
+                first = workspace.previous[first];
+            }
+            Station last = graph.getStation(node);
+            segments[--count] = last.getLine().getSegment(graph.getStation(first).getPosition(), last.getPosition());
+            node = start;
+        }
+        return new Route(segments);
+    }
+
+    /**
+     * Walks back along the predecessors while the stations follow each other on one line.
+     * @param workspace search state
+     * @param node last station of the segment
+     * @return the station before the first station of the segment or -1
+     */
+    private int segmentStart(SearchWorkspace workspace, int node) {
+        int direction = 0;
+        int current = node;
+        int previous = workspace.previous[current];
+        while (previous != -1 && graph.stationLines[previous] == graph.stationLines[current]) {
+            int step = graph.getStation(current).getPosition() - graph.getStation(previous).getPosition();
+            if (Math.abs(step) != 1 || (direction != 0 && step != direction)) {
+                break;
+            }
+            direction = step;
+            current = previous;
+            previous = workspace.previous[current];
+        }
+        return previous;
+    }
+}
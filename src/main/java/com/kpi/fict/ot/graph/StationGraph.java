@@ -0,0 +1,550 @@
+package com.kpi.fict.ot.graph;
+
+import com.kpi.fict.ot.StationIndex;
+import com.kpi.fict.ot.core.Line;
+import com.kpi.fict.ot.core.LineSegment;
+import com.kpi.fict.ot.core.Route;
+import com.kpi.fict.ot.core.Station;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Frozen primitive graph compiled from a {@link StationIndex}.
+ * Every station gets a dense integer identifier, stations of one line get consecutive identifiers in line order.
+ * Edges are stored in compressed sparse row form: the edges of station {@code v} are
+ * {@code targets[offsets[v]] .. targets[offsets[v + 1] - 1]}. Track edges (neighbouring stations of a line,
+ * and the last and the first stations of a loop line) and transfer edges (stations with a transition)
+ * are kept in separate arrays. The edge arrays are buffers, so a graph read from a snapshot works on the mapped file.
+ * The graph is not updated when the index changes and has to be compiled again.
+ * @version 1.0-SNAPSHOT
+ */
+public class StationGraph {
+    /** Stations by identifier. */
+    private final Station[] stations;
+    /** Identifiers of the stations that are not found by their line ordinal. */
+    private final Map<Station, Integer> ids;
+    /** Lines ordered by number. */
+    private final Line[] lines;
+    /** Line numbers in the same order as {@link #lines}. */
+    private final int[] lineNumbers;
+    /** Position of the station line in {@link #lines} or -1. */
+    final int[] stationLines;
+    /** Station identifiers of every line in line order. */
+    final int[][] lineStations;
+
+    /** Offsets of track edges. */
+    final IntBuffer trackOffsets;
+    /** Targets of track edges. */
+    final IntBuffer trackTargets;
+    /** Weights of track edges. */
+    final DoubleBuffer trackWeights;
+    /** Offsets of transfer edges. */
+    final IntBuffer transferOffsets;
+    /** Targets of transfer edges. */
+    final IntBuffer transferTargets;
+    /** Weights of transfer edges. */
+    final DoubleBuffer transferWeights;
+
+    private StationGraph(Station[] stations, Map<Station, Integer> ids, Line[] lines, int[] stationLines,
+                         int[][] lineStations, IntBuffer trackOffsets, IntBuffer trackTargets,
+                         DoubleBuffer trackWeights, IntBuffer transferOffsets, IntBuffer transferTargets,
+                         DoubleBuffer transferWeights) {
+        this.stations = stations;
+        this.ids = ids;
+        this.lines = lines;
+        this.lineNumbers = Arrays.stream(lines).mapToInt(Line::getNumber).toArray();
+        this.stationLines = stationLines;
+        this.lineStations = lineStations;
+        this.trackOffsets = trackOffsets;
+        this.trackTargets = trackTargets;
+        this.trackWeights = trackWeights;
+        this.transferOffsets = transferOffsets;
+        this.transferTargets = transferTargets;
+        this.transferWeights = transferWeights;
+    }
+
+    /**
+     * Compiles the station index into a graph. Track edges are weighted with the running times of the lines,
+     * transfer edges with the transfer times of the index.
+     * @param stationIndex station index
+     * @return graph
+     */
+    public static StationGraph compile(StationIndex stationIndex) {
+        Line[] lines = stationIndex.getLines().toArray(new Line[0]);
+        Map<Station, Integer> ids = new TreeMap<>();
+        List<Station> stations = new ArrayList<>();
+        List<Integer> stationLines = new ArrayList<>();
+        int[][] lineStations = new int[lines.length][];
+        for (int l = 0; l < lines.length; l++) {
+            List<Station> onLine = lines[l].getStations();
+            int[] order = new int[onLine.size()];
+            int size = 0;
+            for (Station station : onLine) {
+                if (!ids.containsKey(station)) {
+                    ids.put(station, stations.size());
+                    order[size++] = stations.size();
+                    stations.add(station);
+                    stationLines.add(l);
+                }
+            }
+            lineStations[l] = Arrays.copyOf(order, size);
+        }
+        for (Station station : stationIndex.getStations()) {
+            if (!ids.containsKey(station)) {
+                ids.put(station, stations.size());
+                stations.add(station);
+                stationLines.add(Arrays.asList(lines).indexOf(station.getLine()));
+            }
+        }
+        int size = stations.size();
+
+        int[] trackOffsets = new int[size + 1];
+        for (int l = 0; l < lines.length; l++) {
+            int[] order = lineStations[l];
+            boolean loop = isLoop(lines[l], order);
+            for (int i = 0; i < order.length; i++) {
+                trackOffsets[order[i] + 1] += (i > 0 || loop ? 1 : 0) + (i < order.length - 1 || loop ? 1 : 0);
+            }
+        }
+        accumulate(trackOffsets);
+        int[] trackTargets = new int[trackOffsets[size]];
+        double[] trackWeights = new double[trackOffsets[size]];
+        int[] fill = Arrays.copyOf(trackOffsets, size);
+        for (int l = 0; l < lines.length; l++) {
+            int[] order = lineStations[l];
+            boolean loop = isLoop(lines[l], order);
+            for (int i = 0; i < order.length; i++) {
+                int position = stations.get(order[i]).getPosition();
+                if (i > 0 || loop) {
+                    int target = order[i > 0 ? i - 1 : order.length - 1];
+                    trackWeights[fill[order[i]]] = lines[l].getNeighbourRunningTime(position,
+                            stations.get(target).getPosition());
+                    trackTargets[fill[order[i]]++] = target;
+                }
+                if (i < order.length - 1 || loop) {
+                    int target = order[i < order.length - 1 ? i + 1 : 0];
+                    trackWeights[fill[order[i]]] = lines[l].getNeighbourRunningTime(position,
+                            stations.get(target).getPosition());
+                    trackTargets[fill[order[i]]++] = target;
+                }
+            }
+        }
+
+        int[][] connected = new int[size][];
+        for (int id = 0; id < size; id++) {
+            connected[id] = stationIndex.getConnectedStations(stations.get(id)).stream()
+                    .map(ids::get)
+                    .filter(Objects::nonNull)
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+        }
+        int[] transferOffsets = new int[size + 1];
+        for (int id = 0; id < size; id++) {
+            transferOffsets[id + 1] = connected[id].length;
+        }
+        accumulate(transferOffsets);
+        int[] transferTargets = new int[transferOffsets[size]];
+        double[] transferWeights = new double[transferOffsets[size]];
+        for (int id = 0; id < size; id++) {
+            System.arraycopy(connected[id], 0, transferTargets, transferOffsets[id], connected[id].length);
+            for (int e = transferOffsets[id]; e < transferOffsets[id + 1]; e++) {
+                transferWeights[e] = stationIndex.getTransferTime(stations.get(id), stations.get(transferTargets[e]));
+            }
+        }
+
+        Station[] stationArray = stations.toArray(new Station[0]);
+        return new StationGraph(stationArray, unordered(stationArray, lineStations), lines,
+                stationLines.stream().mapToInt(Integer::intValue).toArray(), lineStations,
+                IntBuffer.wrap(trackOffsets), IntBuffer.wrap(trackTargets), DoubleBuffer.wrap(trackWeights),
+                IntBuffer.wrap(transferOffsets), IntBuffer.wrap(transferTargets), DoubleBuffer.wrap(transferWeights));
+    }
+
+    /**
+     * Writes the graph. Stations and lines are written by identifier and position, so their names
+     * must be stored separately.
+     * @param output output
+     * @throws IOException if the output cannot be written
+     */
+    public void write(DataOutput output) throws IOException {
+        writeInts(output, stationLines);
+        output.writeInt(lineStations.length);
+        for (int[] order : lineStations) {
+            writeInts(output, order);
+        }
+        writeInts(output, trackOffsets);
+        writeInts(output, trackTargets);
+        writeDoubles(output, trackWeights);
+        writeInts(output, transferOffsets);
+        writeInts(output, transferTargets);
+        writeDoubles(output, transferWeights);
+    }
+
+    /**
+     * Reads a graph written by {@link #write(DataOutput)}. The station and line arrays are copied from the buffer,
+     * the edge arrays are views over it, so the buffer must not be changed while the graph is used.
+     * @param input input positioned at the graph
+     * @param stations stations by identifier
+     * @param lines lines ordered by number
+     * @return graph
+     */
+    public static StationGraph read(ByteBuffer input, Station[] stations, Line[] lines) {
+        int[] stationLines = readInts(input);
+        int[][] lineStations = new int[input.getInt()][];
+        for (int l = 0; l < lineStations.length; l++) {
+            lineStations[l] = readInts(input);
+        }
+        return new StationGraph(stations, unordered(stations, lineStations), lines, stationLines, lineStations,
+                viewInts(input), viewInts(input), viewDoubles(input),
+                viewInts(input), viewInts(input), viewDoubles(input));
+    }
+
+    /**
+     * Returns identifiers of the stations that cannot be found by their line ordinal.
+     * @param stations stations by identifier
+     * @param lineStations station identifiers of every line
+     * @return identifiers by station
+     */
+    private static Map<Station, Integer> unordered(Station[] stations, int[][] lineStations) {
+        boolean[] ordered = new boolean[stations.length];
+        for (int[] order : lineStations) {
+            for (int i = 0; i < order.length; i++) {
+                ordered[order[i]] = stations[order[i]].getPosition() == i;
+            }
+        }
+        Map<Station, Integer> ids = new TreeMap<>();
+        for (int id = 0; id < stations.length; id++) {
+            if (!ordered[id]) {
+                ids.put(stations[id], id);
+            }
+        }
+        return ids;
+    }
+
+    static void writeInts(DataOutput output, int[] values) throws IOException {
+        output.writeInt(values.length);
+        for (int value : values) {
+            output.writeInt(value);
+        }
+    }
+
+    static void writeDoubles(DataOutput output, double[] values) throws IOException {
+        output.writeInt(values.length);
+        for (double value : values) {
+            output.writeDouble(value);
+        }
+    }
+
+    static void writeInts(DataOutput output, IntBuffer values) throws IOException {
+        output.writeInt(values.limit());
+        for (int i = 0; i < values.limit(); i++) {
+            output.writeInt(values.get(i));
+        }
+    }
+
+    static void writeDoubles(DataOutput output, DoubleBuffer values) throws IOException {
+        output.writeInt(values.limit());
+        for (int i = 0; i < values.limit(); i++) {
+            output.writeDouble(values.get(i));
+        }
+    }
+
+    static int[] readInts(ByteBuffer input) {
+        int[] values = new int[input.getInt()];
+        input.asIntBuffer().get(values);
+        input.position(input.position() + values.length * Integer.BYTES);
+        return values;
+    }
+
+    /**
+     * Returns a view over the ints written by {@link #writeInts(DataOutput, int[])} and skips them.
+     */
+    static IntBuffer viewInts(ByteBuffer input) {
+        int length = input.getInt() * Integer.BYTES;
+        IntBuffer values = input.slice(input.position(), length).asIntBuffer();
+        input.position(input.position() + length);
+        return values;
+    }
+
+    /**
+     * Returns a view over the doubles written by {@link #writeDoubles(DataOutput, double[])} and skips them.
+     */
+    static DoubleBuffer viewDoubles(ByteBuffer input) {
+        int length = input.getInt() * Double.BYTES;
+        DoubleBuffer values = input.slice(input.position(), length).asDoubleBuffer();
+        input.position(input.position() + length);
+        return values;
+    }
+
+    /**
+     * Builds a route from a path of station identifiers.
+     * Consecutive stations of one line become a single {@link LineSegment}, so the stations are not copied.
+     * @param path station identifiers in the direction of travel
+     * @param length number of stations of the path
+     * @return route
+     */
+    Route toRoute(int[] path, int length) {
+        List<LineSegment> segments = new ArrayList<>();
+        for (int first = 0; first < length; ) {
+            int last = first;
+            int direction = 0;
+            while (last + 1 < length && stationLines[path[last + 1]] == stationLines[path[last]]) {
+                int step = stations[path[last + 1]].getPosition() - stations[path[last]].getPosition();
+                if (Math.abs(step) != 1 || (direction != 0 && step != direction)) {
+                    break;
+                }
+                direction = step;
+                last++;
+            }
+            Station end = stations[path[last]];
+            segments.add(end.getLine().getSegment(stations[path[first]].getPosition(), end.getPosition()));
+            first = last + 1;
+        }
+        return new Route(segments.toArray(new LineSegment[0]));
+    }
+
+    /**
+     * Turns counts stored at {@code offsets[v + 1]} into offsets.
+     * @param offsets counts
+     */
+    private static void accumulate(int[] offsets) {
+        for (int i = 1; i < offsets.length; i++) {
+            offsets[i] += offsets[i - 1];
+        }
+    }
+
+    /**
+     * Checking if the line has an edge between its last and first stations.
+     * A loop of two stations has the edge already.
+     */
+    private static boolean isLoop(Line line, int[] order) {
+        return line.isLoop() && order.length > 2;
+    }
+
+    /**
+     * Returns the number of stations.
+     * @return number of stations
+     */
+    public int size() {
+        return stations.length;
+    }
+
+    /**
+     * Returns the identifier of the station.
+     * The station ordinal on its line gives the identifier in O(1), other stations are looked up by name.
+     * @param station the station
+     * @return identifier or -1 if the station is not part of the graph
+     */
+    public int getId(Station station) {
+        int lineId = getLineId(station.getLine());
+        int position = station.getPosition();
+        if (lineId >= 0 && position >= 0 && position < lineStations[lineId].length) {
+            int id = lineStations[lineId][position];
+            if (stations[id] == station) {
+                return id;
+            }
+        }
+        Integer id = ids.get(station);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Returns the station with the identifier.
+     * @param id identifier
+     * @return the station
+     */
+    public Station getStation(int id) {
+        return stations[id];
+    }
+
+    /**
+     * Returns the number of lines.
+     * @return number of lines
+     */
+    public int lineCount() {
+        return lines.length;
+    }
+
+    /**
+     * Returns the line at the position.
+     * @param lineId line position
+     * @return the line
+     */
+    public Line getLine(int lineId) {
+        return lines[lineId];
+    }
+
+    /**
+     * Returns the position of the line in the graph.
+     * @param line the line
+     * @return position or -1 if the line is not part of the graph
+     */
+    public int getLineId(Line line) {
+        int position = Arrays.binarySearch(lineNumbers, line.getNumber());
+        return position >= 0 ? position : -1;
+    }
+
+    /**
+     * Returns the position of the station line in the graph.
+     * @param id station identifier
+     * @return line position or -1
+     */
+    public int getLineIdOf(int id) {
+        return stationLines[id];
+    }
+
+    /**
+     * Returns station identifiers of the line in line order.
+     * The array is shared and must not be modified.
+     * @param lineId line position
+     * @return station identifiers
+     */
+    public int[] getLineStations(int lineId) {
+        return lineStations[lineId];
+    }
+
+    /**
+     * Checking if stations have transition.
+     * @param from station identifier
+     * @param to station identifier
+     * @return true or false
+     */
+    public boolean isConnected(int from, int to) {
+        for (int e = transferOffsets.get(from); e < transferOffsets.get(from + 1); e++) {
+            if (transferTargets.get(e) == to) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checking if stations are neighbours on a line.
+     * @param from station identifier
+     * @param to station identifier
+     * @return true or false
+     */
+    public boolean isNeighbour(int from, int to) {
+        for (int e = trackOffsets.get(from); e < trackOffsets.get(from + 1); e++) {
+            if (trackTargets.get(e) == to) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checking if the station can be left for the other one by an edge that is not blocked.
+     * @param from station identifier
+     * @param to station identifier
+     * @return true or false
+     */
+    public boolean isPassable(int from, int to) {
+        for (int e = trackOffsets.get(from); e < trackOffsets.get(from + 1); e++) {
+            if (trackTargets.get(e) == to && trackWeights.get(e) < Double.POSITIVE_INFINITY) {
+                return true;
+            }
+        }
+        for (int e = transferOffsets.get(from); e < transferOffsets.get(from + 1); e++) {
+            if (transferTargets.get(e) == to && transferWeights.get(e) < Double.POSITIVE_INFINITY) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the graph with the same stations and edges in which some edges are blocked, e.g. because of closures.
+     * A blocked edge has an infinite weight, so the searches never relax it. Only the weight arrays are copied,
+     * the other arrays are shared with this graph.
+     * @param stations identifiers of the stations whose edges are blocked in both directions
+     * @param tracks pairs of station identifiers, the track edges {@code tracks[2i] <-> tracks[2i + 1]} are blocked
+     * @param transfers pairs of station identifiers, the transfer edges
+     *                  {@code transfers[2i] <-> transfers[2i + 1]} are blocked
+     * @return graph
+     */
+    public StationGraph withBlockedEdges(int[] stations, int[] tracks, int[] transfers) {
+        double[] blockedTracks = new double[trackWeights.limit()];
+        trackWeights.get(0, blockedTracks);
+        double[] blockedTransfers = new double[transferWeights.limit()];
+        transferWeights.get(0, blockedTransfers);
+        for (int station : stations) {
+            for (int e = trackOffsets.get(station); e < trackOffsets.get(station + 1); e++) {
+                block(trackOffsets, trackTargets, blockedTracks, station, trackTargets.get(e));
+            }
+            for (int e = transferOffsets.get(station); e < transferOffsets.get(station + 1); e++) {
+                block(transferOffsets, transferTargets, blockedTransfers, station, transferTargets.get(e));
+            }
+        }
+        for (int i = 0; i + 1 < tracks.length; i += 2) {
+            block(trackOffsets, trackTargets, blockedTracks, tracks[i], tracks[i + 1]);
+        }
+        for (int i = 0; i + 1 < transfers.length; i += 2) {
+            block(transferOffsets, transferTargets, blockedTransfers, transfers[i], transfers[i + 1]);
+        }
+        return new StationGraph(this.stations, ids, lines, stationLines, lineStations, trackOffsets, trackTargets,
+                DoubleBuffer.wrap(blockedTracks), transferOffsets, transferTargets,
+                DoubleBuffer.wrap(blockedTransfers));
+    }
+
+    /**
+     * Sets the weights of the edges between the stations in both directions to infinity.
+     */
+    private static void block(IntBuffer offsets, IntBuffer targets, double[] weights, int from, int to) {
+        for (int e = offsets.get(from); e < offsets.get(from + 1); e++) {
+            if (targets.get(e) == to) {
+                weights[e] = Double.POSITIVE_INFINITY;
+            }
+        }
+        for (int e = offsets.get(to); e < offsets.get(to + 1); e++) {
+            if (targets.get(e) == from) {
+                weights[e] = Double.POSITIVE_INFINITY;
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the first transfer edge of the station.
+     * @param id station identifier
+     * @return edge index
+     */
+    public int transferBegin(int id) {
+        return transferOffsets.get(id);
+    }
+
+    /**
+     * Returns the index after the last transfer edge of the station.
+     * @param id station identifier
+     * @return edge index
+     */
+    public int transferEnd(int id) {
+        return transferOffsets.get(id + 1);
+    }
+
+    /**
+     * Returns the target of the transfer edge.
+     * @param edge edge index
+     * @return station identifier
+     */
+    public int transferTarget(int edge) {
+        return transferTargets.get(edge);
+    }
+
+    /**
+     * Returns the transfer time of the transfer edge.
+     * @param edge edge index
+     * @return transfer time
+     */
+    public double transferWeight(int edge) {
+        return transferWeights.get(edge);
+    }
+}
@@ -0,0 +1,209 @@
+package com.kpi.fict.ot.graph;
+
+import com.kpi.fict.ot.core.Station;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Dense matrix of travel times and numbers of transfers between origins and destinations.
+ * One shortest path tree is built for every origin and it stops as soon as all destinations are settled.
+ * Origins are split between the workers of a {@link ForkJoinPool}, every worker uses its own search workspace,
+ * and the rows are written to disjoint ranges of the matrix, so the computation needs no synchronization.
+ * @version 1.0-SNAPSHOT
+ */
+public final class TravelTimeMatrix {
+    /** Maximum number of origins computed by a single task. */
+    private static final int ORIGINS_PER_TASK = 4;
+
+    /** Number of origins. */
+    private final int rows;
+    /** Number of destinations. */
+    private final int columns;
+    /** Travel times in row-major order, {@link Double#POSITIVE_INFINITY} for unreachable destinations. */
+    private final double[] durations;
+    /** Numbers of transfers in row-major order, -1 for unreachable destinations. */
+    private final int[] transfers;
+
+    private TravelTimeMatrix(int rows, int columns) {
+        this.rows = rows;
+        this.columns = columns;
+        int cells = Math.multiplyExact(rows, columns);
+        this.durations = new double[cells];
+        this.transfers = new int[cells];
+    }
+
+    /**
+     * Computes the matrix for the stations of the graph of the search.
+     * Stations that are not in the graph are unreachable.
+     * @param search shortest path search
+     * @param origins stations of departure
+     * @param destinations destination stations
+     * @param pool pool of the workers
+     * @return matrix
+     */
+    public static TravelTimeMatrix compute(ShortestPathSearch search, List<Station> origins,
+                                           List<Station> destinations, ForkJoinPool pool) {
+        StationGraph graph = search.getGraph();
+        return compute(search, toIds(graph, origins), toIds(graph, destinations), pool);
+    }
+
+    /**
+     * Computes the matrix for the station identifiers.
+     * @param search shortest path search
+     * @param originIds identifiers of the stations of departure, -1 for unknown stations
+     * @param destinationIds identifiers of the destination stations, -1 for unknown stations
+     * @param pool pool of the workers
+     * @return matrix
+     */
+    public static TravelTimeMatrix compute(ShortestPathSearch search, int[] originIds,
+                                           int[] destinationIds, ForkJoinPool pool) {
+        StationGraph graph = search.getGraph();
+        boolean[] targets = new boolean[graph.size()];
+        int targetCount = 0;
+        for (int id : destinationIds) {
+            if (id >= graph.size()) {
+                throw new IllegalArgumentException("Unknown station identifier " + id);
+            }
+            if (id >= 0 && !targets[id]) {
+                targets[id] = true;
+                targetCount++;
+            }
+        }
+        for (int id : originIds) {
+            if (id >= graph.size()) {
+                throw new IllegalArgumentException("Unknown station identifier " + id);
+            }
+        }
+
+        TravelTimeMatrix matrix = new TravelTimeMatrix(originIds.length, destinationIds.length);
+        if (matrix.durations.length > 0) {
+            pool.invoke(matrix.new RowsTask(search, originIds, destinationIds, targets, targetCount,
+                    0, originIds.length));
+        }
+        return matrix;
+    }
+
+    private static int[] toIds(StationGraph graph, List<Station> stations) {
+        int[] ids = new int[stations.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = graph.getId(stations.get(i));
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the number of origins.
+     * @return number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of destinations.
+     * @return number of columns
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Returns the travel time.
+     * @param origin index of the origin
+     * @param destination index of the destination
+     * @return travel time or {@link Double#POSITIVE_INFINITY} if the destination is unreachable
+     */
+    public double getDuration(int origin, int destination) {
+        return durations[index(origin, destination)];
+    }
+
+    /**
+     * Returns the number of transfers of the fastest route.
+     * @param origin index of the origin
+     * @param destination index of the destination
+     * @return number of transfers or -1 if the destination is unreachable
+     */
+    public int getTransfers(int origin, int destination) {
+        return transfers[index(origin, destination)];
+    }
+
+    /**
+     * Checking if the destination is reachable from the origin.
+     * @param origin index of the origin
+     * @param destination index of the destination
+     * @return true or false
+     */
+    public boolean isReachable(int origin, int destination) {
+        return transfers[index(origin, destination)] >= 0;
+    }
+
+    private int index(int origin, int destination) {
+        if (origin < 0 || origin >= rows || destination < 0 || destination >= columns) {
+            throw new IndexOutOfBoundsException("Cell (" + origin + ", " + destination + ") of "
+                    + rows + "x" + columns + " matrix");
+        }
+        return origin * columns + destination;
+    }
+
+    /**
+     * Fills a range of rows, splitting it in halves while it is larger than {@link #ORIGINS_PER_TASK}.
+     */
+    private final class RowsTask extends RecursiveAction {
+        private final ShortestPathSearch search;
+        private final int[] originIds;
+        private final int[] destinationIds;
+        private final boolean[] targets;
+        private final int targetCount;
+        private final int from;
+        private final int to;
+
+        private RowsTask(ShortestPathSearch search, int[] originIds, int[] destinationIds,
+                         boolean[] targets, int targetCount, int from, int to) {
+            this.search = search;
+            this.originIds = originIds;
+            this.destinationIds = destinationIds;
+            this.targets = targets;
+            this.targetCount = targetCount;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > ORIGINS_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RowsTask(search, originIds, destinationIds, targets, targetCount, from, middle),
+                        new RowsTask(search, originIds, destinationIds, targets, targetCount, middle, to));
+                return;
+            }
+            SearchWorkspace workspace = search.borrow();
+            try {
+                for (int row = from; row < to; row++) {
+                    fillRow(workspace, row);
+                }
+            } finally {
+                search.release(workspace);
+            }
+        }
+
+        private void fillRow(SearchWorkspace workspace, int row) {
+            int offset = row * columns;
+            int source = originIds[row];
+            if (source >= 0) {
+                search.searchAll(workspace, source, targets, targetCount);
+            }
+            for (int column = 0; column < columns; column++) {
+                int target = destinationIds[column];
+                if (source >= 0 && target >= 0 && workspace.isReached(target)) {
+                    durations[offset + column] = workspace.distance[target];
+                    transfers[offset + column] = workspace.transfers[target];
+                } else {
+                    durations[offset + column] = Double.POSITIVE_INFINITY;
+                    transfers[offset + column] = -1;
+                }
+            }
+        }
+    }
+}
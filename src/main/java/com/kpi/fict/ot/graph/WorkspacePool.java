@@ -0,0 +1,87 @@
+package com.kpi.fict.ot.graph;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * Pool of reusable query workspaces shared by all threads.
+ * A query borrows a workspace and returns it when it is done, so the number of workspaces follows the number of
+ * concurrent queries rather than the number of threads that ever ran a query: with a thread per request
+ * (e.g. virtual threads) the requests still reuse the same few workspaces and a query allocates nothing.
+ * Workspaces are taken from and put to the slots with atomic operations, no lock is held. A workspace returned to
+ * a full pool is dropped, a borrow from an empty pool creates a new workspace.
+ * @param <T> workspace type
+ * @version 1.0-SNAPSHOT
+ */
+public final class WorkspacePool<T> {
+    /** Creates the workspaces. */
+    private final Supplier<T> factory;
+    /** Idle workspaces, null for an empty slot. */
+    private final AtomicReferenceArray<T> slots;
+
+    /**
+     * Creates a pool with a slot for four workspaces per processor, at least 16.
+     * @param factory creates the workspaces
+     */
+    public WorkspacePool(Supplier<T> factory) {
+        this(factory, Math.max(16, 4 * Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Creates a pool.
+     * @param factory creates the workspaces
+     * @param capacity maximum number of idle workspaces
+     */
+    public WorkspacePool(Supplier<T> factory, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Pool capacity must be positive: " + capacity);
+        }
+        this.factory = factory;
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * Takes an idle workspace or creates one. The workspace belongs to the caller until it is released.
+     * @return workspace
+     */
+    public T borrow() {
+        int capacity = slots.length();
+        int start = ThreadLocalRandom.current().nextInt(capacity);
+        for (int i = 0; i < capacity; i++) {
+            int slot = start + i < capacity ? start + i : start + i - capacity;
+            T workspace = slots.get(slot);
+            if (workspace != null && slots.compareAndSet(slot, workspace, null)) {
+                return workspace;
+            }
+        }
+        return factory.get();
+    }
+
+    /**
+     * Returns the workspace to the pool. It must not be used by the caller afterwards.
+     * @param workspace workspace taken by {@link #borrow()}
+     */
+    public void release(T workspace) {
+        int capacity = slots.length();
+        int start = ThreadLocalRandom.current().nextInt(capacity);
+        for (int i = 0; i < capacity; i++) {
+            int slot = start + i < capacity ? start + i : start + i - capacity;
+            if (slots.get(slot) == null && slots.compareAndSet(slot, null, workspace)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of idle workspaces.
+     * @return number of workspaces
+     */
+    public int idle() {
+        int count = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            count += slots.get(i) != null ? 1 : 0;
+        }
+        return count;
+    }
+}
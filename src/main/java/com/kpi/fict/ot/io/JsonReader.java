@@ -0,0 +1,460 @@
+package com.kpi.fict.ot.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Streaming JSON tokenizer.
+ * The input is read through a fixed-size buffer, so neither the text nor a document tree is kept in memory.
+ * Every value is consumed with the method of its type, unwanted values are skipped with {@link #skipValue()}.
+ * Errors are reported with {@link NetworkFormatException} that contains the position in the input.
+ * @version 1.0-SNAPSHOT
+ */
+public class JsonReader implements Closeable {
+    /**
+     * Kind of the next token.
+     */
+    public enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+    }
+
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int NONEMPTY_ARRAY = 3;
+    private static final int EMPTY_OBJECT = 4;
+    private static final int DANGLING_NAME = 5;
+    private static final int NONEMPTY_OBJECT = 6;
+
+    /** Input. */
+    private final Reader reader;
+    /** Buffer of the input. */
+    private final char[] buffer = new char[8192];
+    /** Position of the next character in the buffer. */
+    private int position;
+    /** Number of characters in the buffer. */
+    private int limit;
+    /** Current line, starting from 1. */
+    private int line = 1;
+    /** Current column, starting from 1. */
+    private int column = 1;
+
+    /** Scopes of the nested arrays and objects. */
+    private int[] stack = new int[32];
+    /** Depth of the nesting. */
+    private int depth = 1;
+    /** The next token if it is already read, otherwise null. */
+    private Token peeked;
+    /** Reusable buffer for strings and numbers. */
+    private final StringBuilder text = new StringBuilder();
+
+    /**
+     * A single constructor.
+     * @param reader input
+     */
+    public JsonReader(Reader reader) {
+        this.reader = reader;
+        stack[0] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * Returns the kind of the next token without consuming it.
+     * @return token
+     * @throws IOException if the input cannot be read
+     */
+    public Token peek() throws IOException {
+        if (peeked == null) {
+            peeked = doPeek();
+        }
+        return peeked;
+    }
+
+    /**
+     * Checking if the current array or object has more elements.
+     * @return true or false
+     * @throws IOException if the input cannot be read
+     */
+    public boolean hasNext() throws IOException {
+        Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+    }
+
+    /**
+     * Consumes the beginning of an object.
+     * @throws IOException if the input cannot be read
+     */
+    public void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    /**
+     * Consumes the end of an object.
+     * @throws IOException if the input cannot be read
+     */
+    public void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+        depth--;
+    }
+
+    /**
+     * Consumes the beginning of an array.
+     * @throws IOException if the input cannot be read
+     */
+    public void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    /**
+     * Consumes the end of an array.
+     * @throws IOException if the input cannot be read
+     */
+    public void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+        depth--;
+    }
+
+    /**
+     * Consumes a property name.
+     * @return name
+     * @throws IOException if the input cannot be read
+     */
+    public String nextName() throws IOException {
+        expect(Token.NAME);
+        return readString();
+    }
+
+    /**
+     * Consumes a string value.
+     * @return string
+     * @throws IOException if the input cannot be read
+     */
+    public String nextString() throws IOException {
+        expect(Token.STRING);
+        return readString();
+    }
+
+    /**
+     * Consumes a numeric value.
+     * @return number
+     * @throws IOException if the input cannot be read
+     */
+    public double nextDouble() throws IOException {
+        expect(Token.NUMBER);
+        String number = readNumber();
+        try {
+            return Double.parseDouble(number);
+        } catch (NumberFormatException ex) {
+            throw error("Malformed number '" + number + "'");
+        }
+    }
+
+    /**
+     * Consumes an integer value.
+     * @return number
+     * @throws IOException if the input cannot be read
+     */
+    public int nextInt() throws IOException {
+        expect(Token.NUMBER);
+        String number = readNumber();
+        try {
+            return Integer.parseInt(number);
+        } catch (NumberFormatException ex) {
+            throw error("Expected an integer but was '" + number + "'");
+        }
+    }
+
+    /**
+     * Consumes a boolean value.
+     * @return true or false
+     * @throws IOException if the input cannot be read
+     */
+    public boolean nextBoolean() throws IOException {
+        expect(Token.BOOLEAN);
+        if (read() == 't') {
+            readLiteral("rue");
+            return true;
+        }
+        readLiteral("alse");
+        return false;
+    }
+
+    /**
+     * Consumes a null value.
+     * @throws IOException if the input cannot be read
+     */
+    public void nextNull() throws IOException {
+        expect(Token.NULL);
+        readLiteral("null");
+    }
+
+    /**
+     * Skips the next value with all nested values.
+     * @throws IOException if the input cannot be read
+     */
+    public void skipValue() throws IOException {
+        int nesting = 0;
+        do {
+            switch (peek()) {
+                case BEGIN_OBJECT -> {
+                    beginObject();
+                    nesting++;
+                }
+                case BEGIN_ARRAY -> {
+                    beginArray();
+                    nesting++;
+                }
+                case END_OBJECT -> {
+                    endObject();
+                    nesting--;
+                }
+                case END_ARRAY -> {
+                    endArray();
+                    nesting--;
+                }
+                case NAME -> nextName();
+                case STRING -> nextString();
+                case NUMBER -> readNumberToken();
+                case BOOLEAN -> nextBoolean();
+                case NULL -> nextNull();
+                case END_DOCUMENT -> throw error("Unexpected end of document");
+            }
+        } while (nesting > 0);
+    }
+
+    /**
+     * Returns the current line of the input, starting from 1.
+     * @return line
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * Returns the current column of the input, starting from 1.
+     * @return column
+     */
+    public int getColumn() {
+        return column;
+    }
+
+    /**
+     * Creates an exception with the current position.
+     * @param message description of the problem
+     * @return exception
+     */
+    public NetworkFormatException error(String message) {
+        return new NetworkFormatException(message, line, column);
+    }
+
+    /**
+     * Closes the input.
+     * @throws IOException if the input cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void readNumberToken() throws IOException {
+        expect(Token.NUMBER);
+        readNumber();
+    }
+
+    private void expect(Token token) throws IOException {
+        Token actual = peek();
+        if (actual != token) {
+            throw error("Expected " + token + " but was " + actual);
+        }
+        peeked = null;
+    }
+
+    private void push(int scope) {
+        if (depth == stack.length) {
+            int[] newStack = new int[depth * 2];
+            System.arraycopy(stack, 0, newStack, 0, depth);
+            stack = newStack;
+        }
+        stack[depth++] = scope;
+    }
+
+    private Token doPeek() throws IOException {
+        int scope = stack[depth - 1];
+        if (scope == EMPTY_ARRAY) {
+            stack[depth - 1] = NONEMPTY_ARRAY;
+            if (peekNonWhitespace() == ']') {
+                read();
+                return Token.END_ARRAY;
+            }
+        } else if (scope == NONEMPTY_ARRAY) {
+            int c = readNonWhitespace();
+            if (c == ']') {
+                return Token.END_ARRAY;
+            }
+            if (c != ',') {
+                throw error("Expected ',' or ']'");
+            }
+        } else if (scope == EMPTY_OBJECT || scope == NONEMPTY_OBJECT) {
+            stack[depth - 1] = DANGLING_NAME;
+            if (scope == NONEMPTY_OBJECT) {
+                int c = readNonWhitespace();
+                if (c == '}') {
+                    return Token.END_OBJECT;
+                }
+                if (c != ',') {
+                    throw error("Expected ',' or '}'");
+                }
+            }
+            int c = readNonWhitespace();
+            if (c == '}' && scope == EMPTY_OBJECT) {
+                return Token.END_OBJECT;
+            }
+            if (c != '"') {
+                throw error("Expected a property name");
+            }
+            return Token.NAME;
+        } else if (scope == DANGLING_NAME) {
+            stack[depth - 1] = NONEMPTY_OBJECT;
+            if (readNonWhitespace() != ':') {
+                throw error("Expected ':'");
+            }
+        } else if (scope == EMPTY_DOCUMENT) {
+            stack[depth - 1] = NONEMPTY_DOCUMENT;
+        } else if (scope == NONEMPTY_DOCUMENT) {
+            if (peekNonWhitespace() == -1) {
+                return Token.END_DOCUMENT;
+            }
+            throw error("Expected the end of document");
+        }
+
+        int c = peekNonWhitespace();
+        switch (c) {
+            case '{':
+                read();
+                return Token.BEGIN_OBJECT;
+            case '[':
+                read();
+                return Token.BEGIN_ARRAY;
+            case '"':
+                read();
+                return Token.STRING;
+            case 't':
+            case 'f':
+                return Token.BOOLEAN;
+            case 'n':
+                return Token.NULL;
+            case -1:
+                throw error("Unexpected end of document");
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    return Token.NUMBER;
+                }
+                throw error("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    private String readString() throws IOException {
+        text.setLength(0);
+        for (; ; ) {
+            int c = read();
+            if (c == '"') {
+                return text.toString();
+            }
+            if (c == -1) {
+                throw error("Unterminated string");
+            }
+            if (c == '\\') {
+                c = read();
+                switch (c) {
+                    case 'b' -> text.append('\b');
+                    case 'f' -> text.append('\f');
+                    case 'n' -> text.append('\n');
+                    case 'r' -> text.append('\r');
+                    case 't' -> text.append('\t');
+                    case 'u' -> {
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(read(), 16);
+                            if (digit < 0) {
+                                throw error("Malformed unicode escape");
+                            }
+                            code = code * 16 + digit;
+                        }
+                        text.append((char) code);
+                    }
+                    case '"', '\\', '/' -> text.append((char) c);
+                    default -> throw error("Malformed escape sequence");
+                }
+            } else {
+                text.append((char) c);
+            }
+        }
+    }
+
+    private String readNumber() throws IOException {
+        text.setLength(0);
+        for (; ; ) {
+            int c = peekChar();
+            if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E') {
+                text.append((char) read());
+            } else {
+                return text.toString();
+            }
+        }
+    }
+
+    private void readLiteral(String rest) throws IOException {
+        for (int i = 0; i < rest.length(); i++) {
+            if (read() != rest.charAt(i)) {
+                throw error("Malformed literal");
+            }
+        }
+    }
+
+    private int readNonWhitespace() throws IOException {
+        int c = peekNonWhitespace();
+        read();
+        return c;
+    }
+
+    private int peekNonWhitespace() throws IOException {
+        for (; ; ) {
+            int c = peekChar();
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\uFEFF') {
+                read();
+            } else {
+                return c;
+            }
+        }
+    }
+
+    private int peekChar() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        char c = buffer[position++];
+        if (c == '\n') {
+            line++;
+            column = 1;
+        } else {
+            column++;
+        }
+        return c;
+    }
+
+    private boolean fill() throws IOException {
+        int count = reader.read(buffer, 0, buffer.length);
+        position = 0;
+        limit = Math.max(count, 0);
+        return count > 0;
+    }
+}
@@ -0,0 +1,41 @@
+package com.kpi.fict.ot.io;
+
+/**
+ * Thrown when a network file is malformed or refers to unknown lines or stations.
+ * The message contains the position in the file.
+ * @version 1.0-SNAPSHOT
+ */
+public class NetworkFormatException extends IllegalArgumentException {
+    /** Line of the file, starting from 1. */
+    private final int line;
+    /** Column of the line, starting from 1. */
+    private final int column;
+
+    /**
+     * A single constructor.
+     * @param message description of the problem
+     * @param line line of the file
+     * @param column column of the line
+     */
+    public NetworkFormatException(String message, int line, int column) {
+        super(message + " at line " + line + ", column " + column);
+        this.line = line;
+        this.column = column;
+    }
+
+    /**
+     * Returns the line of the file, starting from 1.
+     * @return line
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * Returns the column of the line, starting from 1.
+     * @return column
+     */
+    public int getColumn() {
+        return column;
+    }
+}
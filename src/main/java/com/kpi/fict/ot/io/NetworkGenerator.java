@@ -0,0 +1,309 @@
+package com.kpi.fict.ot.io;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * Deterministic generator of synthetic networks in the format read by {@link NetworkLoader}.
+ * The same parameters and seed always give the same file. Every line is connected with one of the previous
+ * lines, so the whole network is connected. The transfer density adds connections of two stations
+ * of random lines, hubs are connections of several stations of different lines. Some lines can be loops.
+ * The file is written as it is generated, so networks of hundreds of thousands of stations take little memory.
+ * <p>
+ * Command line: {@code --output=file [--seed=1] [--lines=10] [--min-stations=10] [--max-stations=30]
+ * [--transfers=0.5] [--loops=0.1] [--hubs=0] [--hub-size=3]}.
+ * @version 1.0-SNAPSHOT
+ */
+public class NetworkGenerator {
+    /** Syllables of the station names. */
+    private static final String[] SYLLABLES = {
+            "ka", "lo", "mi", "ro", "va", "ne", "sy", "tu", "da", "pe", "ho", "ri",
+            "za", "bo", "le", "ni", "sa", "to", "vy", "me", "ra", "du", "ko", "li"
+    };
+    /** Number of random attempts to find a station that has no connection yet. */
+    private static final int ATTEMPTS = 16;
+
+    /** Seed. */
+    private long seed = 1;
+    /** Number of lines. */
+    private int lineCount = 10;
+    /** Minimum number of stations of a line. */
+    private int minStations = 10;
+    /** Maximum number of stations of a line. */
+    private int maxStations = 30;
+    /** Number of connections of two stations per line in addition to the ones that connect the lines. */
+    private double transferDensity = 0.5;
+    /** Share of the loop lines. */
+    private double loopShare = 0.1;
+    /** Number of hubs. */
+    private int hubCount;
+    /** Number of stations of a hub. */
+    private int hubSize = 3;
+
+    /**
+     * Sets the seed.
+     * @param seed seed
+     * @return this generator
+     */
+    public NetworkGenerator seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Sets the number of lines.
+     * @param lineCount number of lines, at least 1
+     * @return this generator
+     */
+    public NetworkGenerator lines(int lineCount) {
+        if (lineCount < 1) {
+            throw new IllegalArgumentException("Number of lines must be positive");
+        }
+        this.lineCount = lineCount;
+        return this;
+    }
+
+    /**
+     * Sets the number of stations of a line, it is selected uniformly from the range.
+     * @param minStations minimum number of stations, at least 2
+     * @param maxStations maximum number of stations
+     * @return this generator
+     */
+    public NetworkGenerator stationsPerLine(int minStations, int maxStations) {
+        if (minStations < 2 || maxStations < minStations) {
+            throw new IllegalArgumentException("Invalid range of stations " + minStations + ".." + maxStations);
+        }
+        this.minStations = minStations;
+        this.maxStations = maxStations;
+        return this;
+    }
+
+    /**
+     * Sets the number of connections of two stations per line
+     * in addition to the ones that connect every line with the network.
+     * @param transferDensity number of connections per line
+     * @return this generator
+     */
+    public NetworkGenerator transferDensity(double transferDensity) {
+        if (transferDensity < 0) {
+            throw new IllegalArgumentException("Transfer density must not be negative");
+        }
+        this.transferDensity = transferDensity;
+        return this;
+    }
+
+    /**
+     * Sets the share of the loop lines.
+     * @param loopShare share from 0 to 1
+     * @return this generator
+     */
+    public NetworkGenerator loopShare(double loopShare) {
+        if (loopShare < 0 || loopShare > 1) {
+            throw new IllegalArgumentException("Share of loop lines must be from 0 to 1");
+        }
+        this.loopShare = loopShare;
+        return this;
+    }
+
+    /**
+     * Sets the number of hubs and the number of stations of a hub.
+     * @param hubCount number of hubs
+     * @param hubSize number of stations of different lines, at least 3
+     * @return this generator
+     */
+    public NetworkGenerator hubs(int hubCount, int hubSize) {
+        if (hubCount < 0 || hubSize < 3) {
+            throw new IllegalArgumentException("Hub must join at least 3 stations");
+        }
+        this.hubCount = hubCount;
+        this.hubSize = hubSize;
+        return this;
+    }
+
+    /**
+     * Generates a network into the file.
+     * @param path the file
+     * @throws IOException if the file cannot be written
+     */
+    public void generate(Path path) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            generate(writer);
+        }
+    }
+
+    /**
+     * Generates a network. The writer is not closed.
+     * @param writer output
+     * @throws IOException if the output cannot be written
+     */
+    public void generate(Writer writer) throws IOException {
+        Random random = new Random(seed);
+        int[] sizes = new int[lineCount];
+        int[] firstIds = new int[lineCount + 1];
+        boolean[] loops = new boolean[lineCount];
+        for (int l = 0; l < lineCount; l++) {
+            sizes[l] = minStations + random.nextInt(maxStations - minStations + 1);
+            firstIds[l + 1] = firstIds[l] + sizes[l];
+            loops[l] = sizes[l] > 2 && random.nextDouble() < loopShare;
+        }
+        BitSet connected = new BitSet(firstIds[lineCount]);
+
+        Writer output = writer instanceof BufferedWriter ? writer : new BufferedWriter(writer);
+        output.write("{\n  \"lines\": [");
+        for (int l = 0; l < lineCount; l++) {
+            output.write(l > 0 ? ",\n    " : "\n    ");
+            output.write("{\"number\": " + (l + 1) + ", \"name\": \"Line " + (l + 1) + "\"");
+            output.write(loops[l] ? ", \"loop\": true}" : "}");
+        }
+        output.write("\n  ],\n  \"stations\": {");
+        for (int l = 0; l < lineCount; l++) {
+            output.write(l > 0 ? ",\n    \"" : "\n    \"");
+            output.write((l + 1) + "\": [");
+            for (int id = firstIds[l]; id < firstIds[l + 1]; id++) {
+                output.write(id > firstIds[l] ? ", \"" : "\"");
+                output.write(stationName(id));
+                output.write('"');
+            }
+            output.write(']');
+        }
+        output.write("\n  },\n  \"connections\": [");
+
+        boolean first = true;
+        int[] hub = new int[2];
+        for (int l = 1; l < lineCount; l++) {
+            hub[0] = pickStation(random, connected, firstIds, l);
+            hub[1] = pickStation(random, connected, firstIds, random.nextInt(l));
+            first = writeConnection(output, hub, firstIds, first);
+        }
+        long transfers = lineCount > 1 ? Math.round(transferDensity * lineCount) : 0;
+        for (long t = 0; t < transfers; t++) {
+            int a = random.nextInt(lineCount);
+            int b = random.nextInt(lineCount - 1);
+            hub[0] = pickStation(random, connected, firstIds, a);
+            hub[1] = pickStation(random, connected, firstIds, b < a ? b : b + 1);
+            first = writeConnection(output, hub, firstIds, first);
+        }
+        int size = Math.min(hubSize, lineCount);
+        if (size >= 3) {
+            int[] lines = new int[lineCount];
+            for (int l = 0; l < lineCount; l++) {
+                lines[l] = l;
+            }
+            hub = new int[size];
+            for (int h = 0; h < hubCount; h++) {
+                for (int i = 0; i < size; i++) {
+                    int j = i + random.nextInt(lineCount - i);
+                    int line = lines[j];
+                    lines[j] = lines[i];
+                    lines[i] = line;
+                    hub[i] = pickStation(random, connected, firstIds, line);
+                }
+                first = writeConnection(output, hub, firstIds, first);
+            }
+        }
+        output.write("\n  ]\n}\n");
+        output.flush();
+    }
+
+    /**
+     * Selects a random station of the line, preferring stations without connections.
+     */
+    private static int pickStation(Random random, BitSet connected, int[] firstIds, int line) {
+        int from = firstIds[line];
+        int size = firstIds[line + 1] - from;
+        int id = from + random.nextInt(size);
+        for (int attempt = 1; attempt < ATTEMPTS && connected.get(id); attempt++) {
+            id = from + random.nextInt(size);
+        }
+        if (connected.get(id)) {
+            int free = connected.nextClearBit(from);
+            id = free < from + size ? free : id;
+        }
+        connected.set(id);
+        return id;
+    }
+
+    private static boolean writeConnection(Writer output, int[] stations, int[] firstIds, boolean first)
+            throws IOException {
+        output.write(first ? "\n    [" : ",\n    [");
+        for (int i = 0; i < stations.length; i++) {
+            output.write(i > 0 ? ", " : "");
+            output.write("{\"line\": " + (lineOf(firstIds, stations[i]) + 1)
+                    + ", \"station\": \"" + stationName(stations[i]) + "\"}");
+        }
+        output.write(']');
+        return false;
+    }
+
+    private static int lineOf(int[] firstIds, int id) {
+        int low = 0;
+        int high = firstIds.length - 2;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (firstIds[middle] <= id) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns a unique pronounceable name of the station: the identifier is written in bijective numeration
+     * with syllables as digits, so every name has at least two syllables.
+     * @param id station identifier
+     * @return name
+     */
+    static String stationName(int id) {
+        StringBuilder name = new StringBuilder();
+        long n = (long) id + SYLLABLES.length + 1;
+        while (n > 0) {
+            n--;
+            name.insert(0, SYLLABLES[(int) (n % SYLLABLES.length)]);
+            n /= SYLLABLES.length;
+        }
+        name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+        return name.toString();
+    }
+
+    /**
+     * Generates a network file from the command line.
+     * @param args command line arguments
+     * @throws IOException if the file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        String output = getOption(args, "--output=", null);
+        if (output == null) {
+            System.err.println("Usage: NetworkGenerator --output=file [--seed=1] [--lines=10] [--min-stations=10]"
+                    + " [--max-stations=30] [--transfers=0.5] [--loops=0.1] [--hubs=0] [--hub-size=3]");
+            System.exit(1);
+        }
+        new NetworkGenerator()
+                .seed(Long.parseLong(getOption(args, "--seed=", "1")))
+                .lines(Integer.parseInt(getOption(args, "--lines=", "10")))
+                .stationsPerLine(Integer.parseInt(getOption(args, "--min-stations=", "10")),
+                        Integer.parseInt(getOption(args, "--max-stations=", "30")))
+                .transferDensity(Double.parseDouble(getOption(args, "--transfers=", "0.5")))
+                .loopShare(Double.parseDouble(getOption(args, "--loops=", "0.1")))
+                .hubs(Integer.parseInt(getOption(args, "--hubs=", "0")),
+                        Integer.parseInt(getOption(args, "--hub-size=", "3")))
+                .generate(Paths.get(output));
+    }
+
+    private static String getOption(String[] args, String option, String defaultValue) {
+        for (String arg : args) {
+            if (arg.startsWith(option)) {
+                return arg.substring(option.length());
+            }
+        }
+        return defaultValue;
+    }
+}
@@ -0,0 +1,436 @@
+package com.kpi.fict.ot.io;
+
+import com.kpi.fict.ot.StationIndex;
+import com.kpi.fict.ot.core.Coordinates;
+import com.kpi.fict.ot.core.Line;
+import com.kpi.fict.ot.core.Station;
+import com.kpi.fict.ot.metrics.LatencyHistogram;
+import com.kpi.fict.ot.metrics.Metrics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming loader of a network file.
+ * The file is a JSON object with {@code lines} (array of {@code {"number", "name"}} with an optional
+ * {@code "loop": true} for a line whose last station is connected with the first one and optional
+ * {@code "durations"}, the running times between neighbouring stations), {@code stations}
+ * (object of station arrays by line number, a station is a name or an object
+ * {@code {"name", "latitude", "longitude"}} with its location in degrees) and {@code connections} (array of arrays of
+ * {@code {"line", "station"}}, or of objects {@code {"stations": [...], "duration": 4.0}} with the transfer time)
+ * in any order. It is tokenized incrementally by {@link JsonReader} and the
+ * {@link StationIndex} is filled directly. Stations of lines that are not declared yet and connections
+ * of stations that are not loaded yet are kept until they can be resolved.
+ * The time of every section and of the resolution is recorded in the {@code loader.*} histograms of the
+ * {@link Metrics}.
+ * @version 1.0-SNAPSHOT
+ */
+public class NetworkLoader {
+    private static final LatencyHistogram LINES_LATENCY = Metrics.getDefault().histogram("loader.lines");
+    private static final LatencyHistogram STATIONS_LATENCY = Metrics.getDefault().histogram("loader.stations");
+    private static final LatencyHistogram CONNECTIONS_LATENCY = Metrics.getDefault().histogram("loader.connections");
+    private static final LatencyHistogram FINISH_LATENCY = Metrics.getDefault().histogram("loader.finish");
+    private static final LatencyHistogram TOTAL_LATENCY = Metrics.getDefault().histogram("loader.total");
+
+    /** The index being filled. */
+    private final StationIndex stationIndex;
+    /** Stations by line number of the lines that are not declared yet. */
+    private final Map<Integer, List<PendingStation>> pendingStations = new HashMap<>();
+    /** Connections that refer to stations that are not loaded yet. */
+    private final List<PendingConnection> pendingConnections = new ArrayList<>();
+    /** Running times of the lines, they are set when all stations are loaded. */
+    private final List<PendingRunningTimes> pendingRunningTimes = new ArrayList<>();
+
+    /**
+     * Creates a loader that fills the index.
+     * @param stationIndex station index
+     */
+    public NetworkLoader(StationIndex stationIndex) {
+        this.stationIndex = stationIndex;
+    }
+
+    /**
+     * Loads a network file into a new index.
+     * @param path the file
+     * @return station index
+     * @throws IOException if the file cannot be read
+     * @throws NetworkFormatException if the file is malformed
+     */
+    public static StationIndex load(Path path) throws IOException {
+        StationIndex stationIndex = new StationIndex();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            new NetworkLoader(stationIndex).read(channel);
+        }
+        return stationIndex;
+    }
+
+    /**
+     * Reads a network from the channel. The channel is not closed.
+     * @param channel input
+     * @throws IOException if the input cannot be read
+     * @throws NetworkFormatException if the input is malformed
+     */
+    public void read(ReadableByteChannel channel) throws IOException {
+        read(Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(), -1));
+    }
+
+    /**
+     * Reads a network from the stream. The stream is not closed.
+     * @param stream input
+     * @throws IOException if the input cannot be read
+     * @throws NetworkFormatException if the input is malformed
+     */
+    public void read(InputStream stream) throws IOException {
+        read(new InputStreamReader(stream, StandardCharsets.UTF_8));
+    }
+
+    private void read(Reader input) throws IOException {
+        long start = System.nanoTime();
+        JsonReader reader = new JsonReader(input);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            long sectionStart = System.nanoTime();
+            switch (name) {
+                case "lines" -> {
+                    readLines(reader);
+                    LINES_LATENCY.recordSince(sectionStart);
+                }
+                case "stations" -> {
+                    readStations(reader);
+                    STATIONS_LATENCY.recordSince(sectionStart);
+                }
+                case "connections" -> {
+                    readConnections(reader);
+                    CONNECTIONS_LATENCY.recordSince(sectionStart);
+                }
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (reader.peek() != JsonReader.Token.END_DOCUMENT) {
+            throw reader.error("Expected the end of document");
+        }
+        long finishStart = System.nanoTime();
+        finish(reader);
+        FINISH_LATENCY.recordSince(finishStart);
+        TOTAL_LATENCY.recordSince(start);
+    }
+
+    /**
+     * Reads lines and adds the stations that were waiting for them.
+     */
+    private void readLines(JsonReader reader) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            int number = 0;
+            String name = null;
+            boolean hasNumber = false;
+            boolean loop = false;
+            PendingRunningTimes runningTimes = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "number" -> {
+                        number = reader.nextInt();
+                        hasNumber = true;
+                    }
+                    case "name" -> name = reader.nextString();
+                    case "loop" -> loop = reader.nextBoolean();
+                    case "durations" -> runningTimes = readRunningTimes(reader);
+                    default -> reader.skipValue();
+                }
+            }
+            if (!hasNumber || name == null) {
+                throw reader.error("Line must have a number and a name");
+            }
+            reader.endObject();
+
+            Line line = new Line(number, name);
+            line.setLoop(loop);
+            stationIndex.addLine(line);
+            if (runningTimes != null) {
+                runningTimes.lineNumber = number;
+                pendingRunningTimes.add(runningTimes);
+            }
+            List<PendingStation> stations = pendingStations.remove(number);
+            if (stations != null) {
+                stations.forEach(station -> addStation(station, line));
+            }
+        }
+        reader.endArray();
+    }
+
+    /**
+     * Reads the running times of a line.
+     */
+    private PendingRunningTimes readRunningTimes(JsonReader reader) throws IOException {
+        PendingRunningTimes runningTimes = new PendingRunningTimes(reader.getLine(), reader.getColumn());
+        double[] values = new double[16];
+        int size = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            double value = reader.nextDouble();
+            if (!(value > 0) || Double.isInfinite(value)) {
+                throw reader.error("Duration must be positive but was " + value);
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+        reader.endArray();
+        runningTimes.values = Arrays.copyOf(values, size);
+        return runningTimes;
+    }
+
+    /**
+     * Reads stations of every line.
+     */
+    private void readStations(JsonReader reader) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            int number;
+            try {
+                number = Integer.parseInt(key);
+            } catch (NumberFormatException ex) {
+                throw reader.error("Line number expected but was '" + key + "'");
+            }
+            Line line = stationIndex.getLine(number);
+            List<PendingStation> stations = line == null
+                    ? pendingStations.computeIfAbsent(number, n -> new ArrayList<>()) : null;
+            reader.beginArray();
+            while (reader.hasNext()) {
+                PendingStation station = readStation(reader);
+                if (line != null) {
+                    addStation(station, line);
+                } else {
+                    stations.add(station);
+                }
+            }
+            reader.endArray();
+        }
+        reader.endObject();
+    }
+
+    /**
+     * Reads a station name or a station object with its location.
+     */
+    private PendingStation readStation(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonReader.Token.BEGIN_OBJECT) {
+            return new PendingStation(reader.nextString(), Double.NaN, Double.NaN);
+        }
+        String name = null;
+        double latitude = Double.NaN;
+        double longitude = Double.NaN;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "name" -> name = reader.nextString();
+                case "latitude" -> latitude = reader.nextDouble();
+                case "longitude" -> longitude = reader.nextDouble();
+                default -> reader.skipValue();
+            }
+        }
+        if (name == null) {
+            throw reader.error("Station must have a name");
+        }
+        if (Double.isNaN(latitude) != Double.isNaN(longitude)) {
+            throw reader.error("Station " + name + " must have both a latitude and a longitude");
+        }
+        if (!Double.isNaN(latitude) && !Coordinates.isValid(latitude, longitude)) {
+            throw reader.error("Invalid location " + latitude + ", " + longitude + " of station " + name);
+        }
+        reader.endObject();
+        return new PendingStation(name, latitude, longitude);
+    }
+
+    /**
+     * Reads connections and adds the ones whose stations are loaded.
+     */
+    private void readConnections(JsonReader reader) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            PendingConnection connection = new PendingConnection(reader.getLine(), reader.getColumn());
+            if (reader.peek() == JsonReader.Token.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    switch (reader.nextName()) {
+                        case "stations" -> readConnectionStations(reader, connection);
+                        case "duration" -> {
+                            connection.duration = reader.nextDouble();
+                            if (!(connection.duration > 0) || Double.isInfinite(connection.duration)) {
+                                throw reader.error("Duration must be positive but was " + connection.duration);
+                            }
+                        }
+                        default -> reader.skipValue();
+                    }
+                }
+                reader.endObject();
+                if (connection.stationNames.isEmpty()) {
+                    throw reader.error("Connection must have stations");
+                }
+            } else {
+                readConnectionStations(reader, connection);
+            }
+            if (!connection.tryAdd()) {
+                pendingConnections.add(connection);
+            }
+        }
+        reader.endArray();
+    }
+
+    /**
+     * Reads the array of stations of a connection.
+     */
+    private void readConnectionStations(JsonReader reader, PendingConnection connection) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            int number = 0;
+            String name = null;
+            boolean hasNumber = false;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "line" -> {
+                        number = reader.nextInt();
+                        hasNumber = true;
+                    }
+                    case "station" -> name = reader.nextString();
+                    default -> reader.skipValue();
+                }
+            }
+            if (!hasNumber || name == null) {
+                throw reader.error("Connection item must have a line and a station");
+            }
+            reader.endObject();
+            connection.lineNumbers.add(number);
+            connection.stationNames.add(name);
+        }
+        reader.endArray();
+    }
+
+    /**
+     * Resolves everything that was waiting for lines or stations.
+     */
+    private void finish(JsonReader reader) {
+        if (!pendingStations.isEmpty()) {
+            throw reader.error("Stations of undeclared line " + pendingStations.keySet().iterator().next());
+        }
+        for (PendingConnection connection : pendingConnections) {
+            if (!connection.tryAdd()) {
+                connection.fail();
+            }
+        }
+        pendingConnections.clear();
+        for (PendingRunningTimes runningTimes : pendingRunningTimes) {
+            try {
+                stationIndex.getLine(runningTimes.lineNumber).setRunningTimes(runningTimes.values);
+            } catch (IllegalArgumentException ex) {
+                throw new NetworkFormatException(ex.getMessage(), runningTimes.line, runningTimes.column);
+            }
+        }
+        pendingRunningTimes.clear();
+    }
+
+    private void addStation(PendingStation pending, Line line) {
+        Station station = new Station(pending.name, line);
+        if (!Double.isNaN(pending.latitude)) {
+            station.setLocation(pending.latitude, pending.longitude);
+        }
+        stationIndex.addStation(station);
+        line.addStation(station);
+    }
+
+    /**
+     * A station of a line that may not be declared yet.
+     */
+    private static final class PendingStation {
+        private final String name;
+        private final double latitude;
+        private final double longitude;
+
+        private PendingStation(String name, double latitude, double longitude) {
+            this.name = name;
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+    }
+
+    /**
+     * A connection with its position in the file.
+     */
+    private final class PendingConnection {
+        private final int line;
+        private final int column;
+        private final List<Integer> lineNumbers = new ArrayList<>(2);
+        private final List<String> stationNames = new ArrayList<>(2);
+        private double duration = Double.NaN;
+
+        private PendingConnection(int line, int column) {
+            this.line = line;
+            this.column = column;
+        }
+
+        /**
+         * Adds the connection if all of its stations are loaded.
+         * @return true if the connection is added
+         */
+        private boolean tryAdd() {
+            List<Station> stations = new ArrayList<>(stationNames.size());
+            for (int i = 0; i < stationNames.size(); i++) {
+                Line stationLine = stationIndex.getLine(lineNumbers.get(i));
+                Station station = stationLine == null ? null : stationIndex.getStation(stationNames.get(i), lineNumbers.get(i));
+                if (station == null) {
+                    return false;
+                }
+                stations.add(station);
+            }
+            if (Double.isNaN(duration)) {
+                stationIndex.addConnection(stations);
+            } else {
+                stationIndex.addConnection(stations, duration);
+            }
+            return true;
+        }
+
+        private void fail() {
+            for (int i = 0; i < stationNames.size(); i++) {
+                Line stationLine = stationIndex.getLine(lineNumbers.get(i));
+                if (stationLine == null || stationIndex.getStation(stationNames.get(i), lineNumbers.get(i)) == null) {
+                    throw new NetworkFormatException("Station " + stationNames.get(i) + " on line "
+                            + lineNumbers.get(i) + " not found", line, column);
+                }
+            }
+        }
+    }
+
+    /**
+     * Running times of a line with their position in the file.
+     */
+    private static final class PendingRunningTimes {
+        private final int line;
+        private final int column;
+        private int lineNumber;
+        private double[] values;
+
+        private PendingRunningTimes(int line, int column) {
+            this.line = line;
+            this.column = column;
+        }
+    }
+}
@@ -0,0 +1,393 @@
+package com.kpi.fict.ot.io;
+
+import com.kpi.fict.ot.StationIndex;
+import com.kpi.fict.ot.core.Line;
+import com.kpi.fict.ot.core.Station;
+import com.kpi.fict.ot.graph.ContractionHierarchy;
+import com.kpi.fict.ot.graph.StationGraph;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Versioned, checksummed binary snapshot of a loaded network and its compiled {@link StationGraph},
+ * optionally with the {@link ContractionHierarchy} of the graph and the locations of the stations.
+ * The file starts with a header (magic, format version, payload length, CRC32C of the payload and the number of
+ * sections), the payload is a sequence of tagged sections. Unknown sections are skipped, so optional precomputed
+ * routing data can be added without breaking older readers.
+ * The snapshot is read from a memory-mapped file: the edge arrays of the graph and of the hierarchy are views over
+ * the mapping, so the searches read them from the page cache and they are not copied to the heap. Only names are
+ * decoded, no text is parsed and no station is resolved by name. Stations are written in identifier order, which is
+ * line order, so they are added to their lines as they are read. The stations, the lines and the connections are
+ * still created on the heap, because the routes and the {@link StationIndex} are made of {@link Station} objects.
+ * @version 1.0-SNAPSHOT
+ */
+public class NetworkSnapshot {
+    /** File signature, {@code MMNS}. */
+    private static final int MAGIC = 0x4D4D4E53;
+    /** Format version. */
+    public static final int VERSION = 1;
+    /** Header size in bytes. */
+    private static final int HEADER_SIZE = 24;
+
+    /** Section with line numbers and names. */
+    private static final int LINES_SECTION = 1;
+    /** Section with station lines and names by identifier. */
+    private static final int STATIONS_SECTION = 2;
+    /** Section with the compiled graph. */
+    private static final int GRAPH_SECTION = 3;
+    /** Section with the loop lines. */
+    private static final int LOOPS_SECTION = 4;
+    /** Section with the running times of the lines. */
+    private static final int RUNNING_TIMES_SECTION = 5;
+    /** Optional section with the contraction hierarchy of the graph. */
+    private static final int HIERARCHY_SECTION = 6;
+    /** Optional section with the locations of the stations by identifier. */
+    private static final int LOCATIONS_SECTION = 7;
+
+    /** Restored station index. */
+    private final StationIndex stationIndex;
+    /** Restored graph. */
+    private final StationGraph graph;
+    /** Restored hierarchy or null. */
+    private final ContractionHierarchy hierarchy;
+
+    private NetworkSnapshot(StationIndex stationIndex, StationGraph graph, ContractionHierarchy hierarchy) {
+        this.stationIndex = stationIndex;
+        this.graph = graph;
+        this.hierarchy = hierarchy;
+    }
+
+    /**
+     * Returns the restored station index. The index is frozen.
+     * @return station index
+     */
+    public StationIndex getStationIndex() {
+        return stationIndex;
+    }
+
+    /**
+     * Returns the restored graph.
+     * @return graph
+     */
+    public StationGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Returns the restored hierarchy.
+     * @return hierarchy or null if the snapshot has none
+     */
+    public ContractionHierarchy getHierarchy() {
+        return hierarchy;
+    }
+
+    /**
+     * Writes a snapshot without a hierarchy.
+     * @param path the file
+     * @param graph graph compiled from the index
+     * @throws IOException if the file cannot be written
+     * @see #write(Path, StationGraph, ContractionHierarchy)
+     */
+    public static void write(Path path, StationGraph graph) throws IOException {
+        write(path, graph, null);
+    }
+
+    /**
+     * Writes a snapshot. The file is written next to the target and then moved in place,
+     * so readers never see a partially written file.
+     * @param path the file
+     * @param graph graph compiled from the index
+     * @param hierarchy hierarchy of the graph or null
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Path path, StationGraph graph, ContractionHierarchy hierarchy) throws IOException {
+        if (hierarchy != null && hierarchy.getGraph() != graph) {
+            throw new IllegalArgumentException("Hierarchy is built from another graph");
+        }
+        List<Section> sections = new ArrayList<>();
+        sections.add(new Section(LINES_SECTION, output -> {
+            output.writeInt(graph.lineCount());
+            for (int l = 0; l < graph.lineCount(); l++) {
+                output.writeInt(graph.getLine(l).getNumber());
+                writeString(output, graph.getLine(l).getName());
+            }
+        }));
+        sections.add(new Section(STATIONS_SECTION, output -> {
+            output.writeInt(graph.size());
+            for (int id = 0; id < graph.size(); id++) {
+                Station station = graph.getStation(id);
+                int lineId = graph.getLineIdOf(id);
+                int position = station.getPosition();
+                boolean onLine = lineId >= 0 && position >= 0 && position < graph.getLineStations(lineId).length
+                        && graph.getLineStations(lineId)[position] == id;
+                output.writeInt(lineId);
+                output.writeBoolean(onLine);
+                writeString(output, station.getName());
+            }
+        }));
+        sections.add(new Section(GRAPH_SECTION, graph::write));
+        sections.add(new Section(LOOPS_SECTION, output -> {
+            int count = 0;
+            for (int l = 0; l < graph.lineCount(); l++) {
+                count += graph.getLine(l).isLoop() ? 1 : 0;
+            }
+            output.writeInt(count);
+            for (int l = 0; l < graph.lineCount(); l++) {
+                if (graph.getLine(l).isLoop()) {
+                    output.writeInt(l);
+                }
+            }
+        }));
+        sections.add(new Section(RUNNING_TIMES_SECTION, output -> {
+            output.writeInt(graph.lineCount());
+            for (int l = 0; l < graph.lineCount(); l++) {
+                double[] runningTimes = graph.getLine(l).getRunningTimes();
+                output.writeInt(runningTimes.length);
+                for (double runningTime : runningTimes) {
+                    output.writeDouble(runningTime);
+                }
+            }
+        }));
+        if (hierarchy != null) {
+            sections.add(new Section(HIERARCHY_SECTION, hierarchy::write));
+        }
+        if (hasLocations(graph)) {
+            sections.add(new Section(LOCATIONS_SECTION, output -> {
+                output.writeInt(graph.size());
+                for (int id = 0; id < graph.size(); id++) {
+                    output.writeDouble(graph.getStation(id).getLatitude());
+                    output.writeDouble(graph.getStation(id).getLongitude());
+                }
+            }));
+        }
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            channel.position(HEADER_SIZE);
+            CRC32C checksum = new CRC32C();
+            OutputStream stream = Channels.newOutputStream(channel);
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                    new CheckedOutputStream(stream, checksum), 1 << 16));
+            for (Section section : sections) {
+                output.writeInt(section.tag);
+                output.writeLong(section.content.length);
+                output.write(section.content);
+            }
+            output.flush();
+            long payloadLength = channel.position() - HEADER_SIZE;
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(payloadLength)
+                    .putInt((int) checksum.getValue()).putInt(sections.size()).flip();
+            channel.write(header, 0);
+            channel.force(true);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Maps and reads a snapshot.
+     * @param path the file
+     * @return restored network
+     * @throws IOException if the file cannot be read
+     * @throws NetworkFormatException if the file is not a snapshot, has another version or is corrupted
+     */
+    public static NetworkSnapshot open(Path path) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new NetworkFormatException("Snapshot of " + channel.size() + " bytes is too large", 1, 1);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new NetworkFormatException("Not a network snapshot", 1, 1);
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new NetworkFormatException("Unsupported snapshot version " + buffer.getInt(4), 1, 1);
+        }
+        long payloadLength = buffer.getLong(8);
+        if (payloadLength != buffer.capacity() - HEADER_SIZE) {
+            throw new NetworkFormatException("Truncated snapshot", 1, 1);
+        }
+        CRC32C checksum = new CRC32C();
+        checksum.update(buffer.slice(HEADER_SIZE, (int) payloadLength));
+        if ((int) checksum.getValue() != buffer.getInt(16)) {
+            throw new NetworkFormatException("Snapshot checksum mismatch", 1, 1);
+        }
+
+        int sectionCount = buffer.getInt(20);
+        buffer.position(HEADER_SIZE);
+        Line[] lines = null;
+        Station[] stations = null;
+        StationGraph graph = null;
+        ContractionHierarchy hierarchy = null;
+        for (int s = 0; s < sectionCount; s++) {
+            int tag = buffer.getInt();
+            long length = buffer.getLong();
+            if (length < 0 || length > buffer.remaining()) {
+                throw new NetworkFormatException("Section " + tag + " exceeds the snapshot", 1, 1);
+            }
+            int end = (int) (buffer.position() + length);
+            switch (tag) {
+                case LINES_SECTION -> lines = readLines(buffer);
+                case STATIONS_SECTION -> stations = readStations(buffer, lines);
+                case GRAPH_SECTION -> graph = StationGraph.read(buffer, stations, lines);
+                case LOOPS_SECTION -> readLoops(buffer, lines);
+                case RUNNING_TIMES_SECTION -> readRunningTimes(buffer, lines);
+                case HIERARCHY_SECTION -> hierarchy = graph != null ? ContractionHierarchy.read(buffer, graph) : null;
+                case LOCATIONS_SECTION -> readLocations(buffer, stations);
+                default -> {
+                }
+            }
+            buffer.position(end);
+        }
+        if (lines == null || stations == null || graph == null) {
+            throw new NetworkFormatException("Snapshot misses required sections", 1, 1);
+        }
+        return new NetworkSnapshot(toStationIndex(graph, lines), graph, hierarchy);
+    }
+
+    private static boolean hasLocations(StationGraph graph) {
+        for (int id = 0; id < graph.size(); id++) {
+            if (graph.getStation(id).hasLocation()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void readLocations(ByteBuffer buffer, Station[] stations) {
+        for (int id = 0, count = buffer.getInt(); id < count; id++) {
+            double latitude = buffer.getDouble();
+            double longitude = buffer.getDouble();
+            if (stations != null && id < stations.length && !Double.isNaN(latitude)) {
+                stations[id].setLocation(latitude, longitude);
+            }
+        }
+    }
+
+    private static Line[] readLines(ByteBuffer buffer) {
+        Line[] lines = new Line[buffer.getInt()];
+        for (int l = 0; l < lines.length; l++) {
+            int number = buffer.getInt();
+            lines[l] = new Line(number, readString(buffer));
+        }
+        return lines;
+    }
+
+    private static void readLoops(ByteBuffer buffer, Line[] lines) {
+        for (int count = buffer.getInt(); count > 0; count--) {
+            lines[buffer.getInt()].setLoop(true);
+        }
+    }
+
+    private static void readRunningTimes(ByteBuffer buffer, Line[] lines) {
+        int count = buffer.getInt();
+        if (lines == null || count != lines.length) {
+            throw new NetworkFormatException("Running times of " + count + " lines do not match the lines", 1, 1);
+        }
+        for (int l = 0; l < count; l++) {
+            int length = buffer.getInt();
+            int size = lines[l].getStations().size();
+            if (length != Math.max(size - 1, 0) && !(lines[l].isLoop() && length == size)) {
+                throw new NetworkFormatException("Line " + lines[l].getNumber() + " has " + size + " stations but "
+                        + length + " running times", 1, 1);
+            }
+            double[] runningTimes = new double[length];
+            buffer.asDoubleBuffer().get(runningTimes);
+            buffer.position(buffer.position() + runningTimes.length * Double.BYTES);
+            lines[l].setRunningTimes(runningTimes);
+        }
+    }
+
+    private static Station[] readStations(ByteBuffer buffer, Line[] lines) {
+        Station[] stations = new Station[buffer.getInt()];
+        for (int id = 0; id < stations.length; id++) {
+            int lineId = buffer.getInt();
+            boolean onLine = buffer.get() != 0;
+            Line line = lineId >= 0 ? lines[lineId] : null;
+            stations[id] = new Station(readString(buffer), line);
+            if (onLine) {
+                line.addStation(stations[id]);
+            }
+        }
+        return stations;
+    }
+
+    /**
+     * Fills a station index from the graph, connections and their transfer times are restored from transfer edges.
+     * The index is frozen.
+     */
+    private static StationIndex toStationIndex(StationGraph graph, Line[] lines) {
+        StationIndex stationIndex = new StationIndex();
+        for (Line line : lines) {
+            stationIndex.addLine(line);
+        }
+        for (int id = 0; id < graph.size(); id++) {
+            stationIndex.addStation(graph.getStation(id));
+        }
+        for (int id = 0; id < graph.size(); id++) {
+            for (int e = graph.transferBegin(id); e < graph.transferEnd(id); e++) {
+                stationIndex.addConnection(List.of(graph.getStation(id), graph.getStation(graph.transferTarget(e))),
+                        graph.transferWeight(e));
+            }
+        }
+        return stationIndex.freeze();
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writer of the section content.
+     */
+    @FunctionalInterface
+    private interface SectionWriter {
+        void write(DataOutputStream output) throws IOException;
+    }
+
+    /**
+     * A tagged section with its content.
+     */
+    private static final class Section {
+        private final int tag;
+        private final byte[] content;
+
+        private Section(int tag, SectionWriter writer) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream output = new DataOutputStream(bytes);
+            writer.write(output);
+            output.flush();
+            this.tag = tag;
+            this.content = bytes.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.kpi.fict.ot.io;
+
+import com.kpi.fict.ot.StationIndex;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Watches a network file and loads a new frozen {@link StationIndex} when the file changes on disk.
+ * The index is built on the watcher thread and handed to the consumer, e.g.
+ * {@link com.kpi.fict.ot.RouteCalculator#swap(StationIndex)}, so queries never wait for the reload.
+ * If the new file cannot be loaded, the error is logged and the current network stays in use.
+ * @version 1.0-SNAPSHOT
+ */
+public class NetworkWatcher implements Closeable {
+    private static final Logger LOGGER = LogManager.getLogger(NetworkWatcher.class);
+
+    /** Time to wait for more changes of the file before it is loaded, in milliseconds. */
+    private static final long SETTLE_MILLIS = 200;
+
+    /** The network file. */
+    private final Path file;
+    /** Receiver of the new index. */
+    private final Consumer<StationIndex> consumer;
+    /** Watch service of the file directory. */
+    private final WatchService watchService;
+    /** Watcher thread. */
+    private final Thread thread;
+
+    /**
+     * Starts watching the file.
+     * @param file the network file
+     * @param consumer receiver of every new index
+     * @throws IOException if the directory cannot be watched
+     */
+    public NetworkWatcher(Path file, Consumer<StationIndex> consumer) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.consumer = consumer;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.file.getParent().register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        this.thread = new Thread(this::watch, "network-watcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    private void watch() {
+        try {
+            for (; ; ) {
+                WatchKey key = watchService.take();
+                boolean changed = isChanged(key);
+                while (changed && (key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    isChanged(key);
+                }
+                if (changed) {
+                    reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Checking if the events of the key concern the file. The key is reset.
+     */
+    private boolean isChanged(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.context() instanceof Path && file.getFileName().equals(event.context())) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+
+    private void reload() {
+        try {
+            long start = System.nanoTime();
+            StationIndex stationIndex = NetworkLoader.load(file).freeze();
+            consumer.accept(stationIndex);
+            LOGGER.info("Network {} reloaded in {} ms", file, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.error("Network {} cannot be reloaded, the current version stays in use", file, ex);
+        }
+    }
+
+    /**
+     * Stops watching the file.
+     * @throws IOException if the watch service cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        thread.interrupt();
+        watchService.close();
+    }
+}
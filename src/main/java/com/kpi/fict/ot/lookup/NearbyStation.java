@@ -0,0 +1,49 @@
+package com.kpi.fict.ot.lookup;
+
+import com.kpi.fict.ot.core.Station;
+
+/**
+ * A station found by location with its great-circle distance from the point of the query.
+ * @version 1.0-SNAPSHOT
+ */
+public final class NearbyStation {
+    /** The station. */
+    private final Station station;
+    /** Distance in metres. */
+    private final double distance;
+
+    /**
+     * A single constructor.
+     * @param station the station
+     * @param distance distance in metres
+     */
+    public NearbyStation(Station station, double distance) {
+        this.station = station;
+        this.distance = distance;
+    }
+
+    /**
+     * Returns the station.
+     * @return the station
+     */
+    public Station getStation() {
+        return station;
+    }
+
+    /**
+     * Returns the great-circle distance from the point of the query.
+     * @return distance in metres
+     */
+    public double getDistance() {
+        return distance;
+    }
+
+    /**
+     * Term representation.
+     * @return station name, line and distance
+     */
+    @Override
+    public String toString() {
+        return station.getName() + " (" + station.getLine().getName() + ", " + Math.round(distance) + " m)";
+    }
+}
@@ -0,0 +1,312 @@
+package com.kpi.fict.ot.lookup;
+
+import com.kpi.fict.ot.core.Coordinates;
+import com.kpi.fict.ot.core.Station;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Static k-d tree of the stations with a known location for nearest-station and within-radius queries.
+ * Stations are points of a sphere (see {@link Coordinates}), so the tree splits a three-dimensional space and the
+ * distances are exact great-circle distances anywhere on the Earth, without projections. The tree is implicit:
+ * the stations and their points are stored in flat arrays in tree order, the median of a range is the node that
+ * splits the range along the axis of the largest spread, and small ranges are scanned as leaves.
+ * A query visits O(log n) nodes for a few results and allocates only the results.
+ * The locator is immutable and may be shared between threads.
+ * @version 1.0-SNAPSHOT
+ */
+public final class StationLocator {
+    /** Ranges of at most this many stations are not split. */
+    private static final int LEAF_SIZE = 8;
+
+    /** Stations in tree order. */
+    private final Station[] stations;
+    /** Coordinates x, y and z of the stations in tree order. */
+    private final double[] points;
+    /** Split axis of the node at the median of every split range. */
+    private final byte[] axes;
+
+    /**
+     * Builds the tree of the stations with a known location, the other stations are ignored.
+     * @param stations stations
+     */
+    public StationLocator(Collection<Station> stations) {
+        List<Station> located = new ArrayList<>(stations.size());
+        for (Station station : stations) {
+            if (station.hasLocation()) {
+                located.add(station);
+            }
+        }
+        int size = located.size();
+        double[] unordered = new double[size * 3];
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            Coordinates.toPoint(located.get(i).getLatitude(), located.get(i).getLongitude(), unordered, i * 3);
+            order[i] = i;
+        }
+        this.axes = new byte[size];
+        build(order, unordered, 0, size);
+        this.stations = new Station[size];
+        this.points = new double[size * 3];
+        for (int i = 0; i < size; i++) {
+            this.stations[i] = located.get(order[i]);
+            System.arraycopy(unordered, order[i] * 3, points, i * 3, 3);
+        }
+    }
+
+    /**
+     * Arranges the range in tree order.
+     */
+    private void build(int[] order, double[] unordered, int from, int to) {
+        if (to - from <= LEAF_SIZE) {
+            return;
+        }
+        int axis = 0;
+        double spread = -1;
+        for (int a = 0; a < 3; a++) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = from; i < to; i++) {
+                double value = unordered[order[i] * 3 + a];
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            if (max - min > spread) {
+                spread = max - min;
+                axis = a;
+            }
+        }
+        int median = (from + to) >>> 1;
+        select(order, unordered, axis, from, to - 1, median);
+        axes[median] = (byte) axis;
+        build(order, unordered, from, median);
+        build(order, unordered, median + 1, to);
+    }
+
+    /**
+     * Moves the k-th smallest point of the range along the axis to position k, smaller points before it and
+     * larger points after it (quickselect).
+     */
+    private static void select(int[] order, double[] unordered, int axis, int left, int right, int k) {
+        while (left < right) {
+            double pivot = unordered[order[(left + right) >>> 1] * 3 + axis];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (unordered[order[i] * 3 + axis] < pivot) {
+                    i++;
+                }
+                while (unordered[order[j] * 3 + axis] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int swap = order[i];
+                    order[i++] = order[j];
+                    order[j--] = swap;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of stations with a known location.
+     * @return number of stations
+     */
+    public int size() {
+        return stations.length;
+    }
+
+    /**
+     * Finds the stations nearest to the location.
+     * @param latitude latitude in degrees
+     * @param longitude longitude in degrees
+     * @param count maximum number of stations
+     * @return stations ordered by distance
+     * @throws IllegalArgumentException if the location is invalid or the count is not positive
+     */
+    public List<NearbyStation> nearest(double latitude, double longitude, int count) {
+        return nearest(latitude, longitude, count, station -> true);
+    }
+
+    /**
+     * Finds the stations nearest to the location among the stations accepted by the filter.
+     * @param latitude latitude in degrees
+     * @param longitude longitude in degrees
+     * @param count maximum number of stations
+     * @param filter accepted stations
+     * @return stations ordered by distance
+     * @throws IllegalArgumentException if the location is invalid or the count is not positive
+     */
+    public List<NearbyStation> nearest(double latitude, double longitude, int count, Predicate<Station> filter) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Number of stations must be positive: " + count);
+        }
+        Query query = new Query(latitude, longitude, Math.min(count, stations.length));
+        if (query.capacity > 0) {
+            nearest(query, filter, 0, stations.length);
+        }
+        List<NearbyStation> result = new ArrayList<>(query.size);
+        for (int i = 0; i < query.size; i++) {
+            result.add(new NearbyStation(stations[query.found[i]], Coordinates.toDistance(Math.sqrt(query.squares[i]))));
+        }
+        result.sort(Comparator.comparingDouble(NearbyStation::getDistance));
+        return result;
+    }
+
+    private void nearest(Query query, Predicate<Station> filter, int from, int to) {
+        if (to - from <= LEAF_SIZE) {
+            for (int i = from; i < to; i++) {
+                offer(query, filter, i);
+            }
+            return;
+        }
+        int median = (from + to) >>> 1;
+        double difference = query.point[axes[median]] - points[median * 3 + axes[median]];
+        if (difference < 0) {
+            nearest(query, filter, from, median);
+        } else {
+            nearest(query, filter, median + 1, to);
+        }
+        offer(query, filter, median);
+        if (query.size < query.capacity || difference * difference < query.squares[0]) {
+            if (difference < 0) {
+                nearest(query, filter, median + 1, to);
+            } else {
+                nearest(query, filter, from, median);
+            }
+        }
+    }
+
+    /**
+     * Adds the station to the results if it is one of the nearest so far.
+     */
+    private void offer(Query query, Predicate<Station> filter, int index) {
+        double square = query.squareTo(points, index);
+        if (query.size == query.capacity && square >= query.squares[0] || !filter.test(stations[index])) {
+            return;
+        }
+        query.add(index, square);
+    }
+
+    /**
+     * Finds the stations within the distance from the location.
+     * @param latitude latitude in degrees
+     * @param longitude longitude in degrees
+     * @param radius great-circle distance in metres
+     * @return stations ordered by distance
+     * @throws IllegalArgumentException if the location is invalid or the radius is negative
+     */
+    public List<NearbyStation> within(double latitude, double longitude, double radius) {
+        if (!(radius >= 0)) {
+            throw new IllegalArgumentException("Radius must not be negative: " + radius);
+        }
+        Query query = new Query(latitude, longitude, 0);
+        double chord = Coordinates.toChord(radius);
+        List<NearbyStation> result = new ArrayList<>();
+        within(query, chord * chord, 0, stations.length, result);
+        result.sort(Comparator.comparingDouble(NearbyStation::getDistance));
+        return result;
+    }
+
+    private void within(Query query, double limit, int from, int to, List<NearbyStation> result) {
+        if (to - from <= LEAF_SIZE) {
+            for (int i = from; i < to; i++) {
+                collect(query, limit, i, result);
+            }
+            return;
+        }
+        int median = (from + to) >>> 1;
+        double difference = query.point[axes[median]] - points[median * 3 + axes[median]];
+        collect(query, limit, median, result);
+        if (difference < 0 || difference * difference <= limit) {
+            within(query, limit, from, median, result);
+        }
+        if (difference >= 0 || difference * difference <= limit) {
+            within(query, limit, median + 1, to, result);
+        }
+    }
+
+    private void collect(Query query, double limit, int index, List<NearbyStation> result) {
+        double square = query.squareTo(points, index);
+        if (square <= limit) {
+            result.add(new NearbyStation(stations[index], Coordinates.toDistance(Math.sqrt(square))));
+        }
+    }
+
+    /**
+     * Point of a query and the bounded max-heap of the nearest stations by squared chord.
+     */
+    private static final class Query {
+        private final double[] point = new double[3];
+        private final int capacity;
+        private final int[] found;
+        private final double[] squares;
+        private int size;
+
+        private Query(double latitude, double longitude, int capacity) {
+            if (!Coordinates.isValid(latitude, longitude)) {
+                throw new IllegalArgumentException("Invalid location " + latitude + ", " + longitude);
+            }
+            Coordinates.toPoint(latitude, longitude, point, 0);
+            this.capacity = capacity;
+            this.found = new int[capacity];
+            this.squares = new double[capacity];
+        }
+
+        private double squareTo(double[] points, int index) {
+            double dx = points[index * 3] - point[0];
+            double dy = points[index * 3 + 1] - point[1];
+            double dz = points[index * 3 + 2] - point[2];
+            return dx * dx + dy * dy + dz * dz;
+        }
+
+        /**
+         * Adds the station to the heap, replacing the farthest one if the heap is full.
+         */
+        private void add(int index, double square) {
+            int position;
+            if (size < capacity) {
+                position = size++;
+                while (position > 0) {
+                    int parent = (position - 1) >>> 1;
+                    if (squares[parent] >= square) {
+                        break;
+                    }
+                    found[position] = found[parent];
+                    squares[position] = squares[parent];
+                    position = parent;
+                }
+            } else {
+                position = 0;
+                for (; ; ) {
+                    int child = 2 * position + 1;
+                    if (child >= size) {
+                        break;
+                    }
+                    if (child + 1 < size && squares[child + 1] > squares[child]) {
+                        child++;
+                    }
+                    if (squares[child] <= square) {
+                        break;
+                    }
+                    found[position] = found[child];
+                    squares[position] = squares[child];
+                    position = child;
+                }
+            }
+            found[position] = index;
+            squares[position] = square;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.kpi.fict.ot.lookup;
+
+import com.kpi.fict.ot.core.Station;
+
+import java.util.Comparator;
+
+/**
+ * A candidate station found by name.
+ * Candidates are ranked by the kind of the match, then by edit distance, then by name length and name.
+ * @version 1.0-SNAPSHOT
+ */
+public final class StationMatch {
+    /**
+     * How the name was matched.
+     */
+    public enum Kind {
+        /** The normalized name is equal to the query. */
+        EXACT,
+        /** The normalized name starts with the query. */
+        PREFIX,
+        /** The normalized name is within the edit distance of the query. */
+        FUZZY
+    }
+
+    /** Ranking order. */
+    public static final Comparator<StationMatch> RANKING = Comparator
+            .comparing(StationMatch::getKind)
+            .thenComparingInt(StationMatch::getDistance)
+            .thenComparingInt(match -> match.getStation().getName().length())
+            .thenComparing(StationMatch::getStation);
+
+    /** The station. */
+    private final Station station;
+    /** Kind of the match. */
+    private final Kind kind;
+    /** Edit distance between the query and the normalized name. */
+    private final int distance;
+
+    /**
+     * A single constructor.
+     * @param station the station
+     * @param kind kind of the match
+     * @param distance edit distance
+     */
+    public StationMatch(Station station, Kind kind, int distance) {
+        this.station = station;
+        this.kind = kind;
+        this.distance = distance;
+    }
+
+    /**
+     * Returns the station.
+     * @return the station
+     */
+    public Station getStation() {
+        return station;
+    }
+
+    /**
+     * Returns the kind of the match.
+     * @return kind
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Returns the edit distance between the query and the normalized name.
+     * @return distance, 0 for exact and prefix matches
+     */
+    public int getDistance() {
+        return distance;
+    }
+
+    /**
+     * Term representation.
+     * @return station name, line and kind of the match
+     */
+    @Override
+    public String toString() {
+        return station.getName() + " (" + station.getLine().getName() + ", " + kind + ")";
+    }
+}
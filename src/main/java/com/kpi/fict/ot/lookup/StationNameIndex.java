@@ -0,0 +1,238 @@
+package com.kpi.fict.ot.lookup;
+
+import com.kpi.fict.ot.core.Station;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Station lookup by name.
+ * Exact lookups use a hash map of normalized names (see {@link StationNames#normalize(String)}),
+ * autocomplete and fuzzy matching use a prefix trie of the same names. Every normalized name refers to all stations
+ * with that name, e.g. the stations of an interchange on several lines.
+ * @version 1.0-SNAPSHOT
+ */
+public class StationNameIndex {
+    /** Stations by normalized name, every list is ordered by line number. */
+    private final Map<String, List<Station>> stations;
+    /** Root of the prefix trie. */
+    private final Node root;
+
+    /**
+     * A single constructor with no arguments.
+     */
+    public StationNameIndex() {
+        stations = new HashMap<>();
+        root = new Node();
+    }
+
+    /**
+     * Adds a station.
+     * @param station the station
+     */
+    public void add(Station station) {
+        String name = StationNames.normalize(station.getName());
+        List<Station> named = stations.get(name);
+        if (named == null) {
+            named = new ArrayList<>(1);
+            stations.put(name, named);
+            root.insert(name);
+        }
+        int position = Collections.binarySearch(named, station);
+        if (position < 0) {
+            named.add(-position - 1, station);
+        }
+    }
+
+    /**
+     * Returns the stations with the name.
+     * @param name the name
+     * @return unmodifiable list ordered by line number, empty if there are no such stations
+     */
+    public List<Station> getStations(String name) {
+        List<Station> named = stations.get(StationNames.normalize(name));
+        return named != null ? Collections.unmodifiableList(named) : Collections.emptyList();
+    }
+
+    /**
+     * Returns the stations whose names start with the prefix. Shorter names are ranked higher.
+     * @param prefix the prefix
+     * @param limit maximum number of stations
+     * @return ranked candidates
+     */
+    public List<StationMatch> complete(String prefix, int limit) {
+        String normalized = StationNames.normalize(prefix);
+        List<StationMatch> matches = new ArrayList<>();
+        Node node = root.find(normalized);
+        if (node == null) {
+            return matches;
+        }
+        ArrayDeque<Node> queue = new ArrayDeque<>();
+        queue.add(node);
+        while (!queue.isEmpty() && matches.size() < limit) {
+            Node current = queue.poll();
+            if (current.name != null) {
+                StationMatch.Kind kind = current.name.equals(normalized) ?
+                        StationMatch.Kind.EXACT : StationMatch.Kind.PREFIX;
+                addMatches(matches, current.name, kind, 0, limit);
+            }
+            Collections.addAll(queue, current.children);
+        }
+        return matches;
+    }
+
+    /**
+     * Returns the stations whose names are within the edit (Levenshtein) distance of the query.
+     * The trie is searched with one row of the distance matrix per level, branches that cannot be within
+     * the distance are pruned.
+     * @param query the query
+     * @param maxDistance maximum edit distance
+     * @param limit maximum number of stations
+     * @return candidates ranked by distance
+     */
+    public List<StationMatch> findSimilar(String query, int maxDistance, int limit) {
+        String normalized = StationNames.normalize(query);
+        int[] row = new int[normalized.length() + 1];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = i;
+        }
+        List<String> names = new ArrayList<>();
+        List<Integer> distances = new ArrayList<>();
+        for (int i = 0; i < root.keys.length; i++) {
+            collectSimilar(root.children[i], root.keys[i], normalized, row, maxDistance, names, distances);
+        }
+
+        Integer[] order = new Integer[names.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.<Integer>comparingInt(distances::get)
+                .thenComparingInt(i -> names.get(i).length())
+                .thenComparing(names::get));
+
+        List<StationMatch> matches = new ArrayList<>();
+        for (int i = 0; i < order.length && matches.size() < limit; i++) {
+            int distance = distances.get(order[i]);
+            addMatches(matches, names.get(order[i]),
+                    distance == 0 ? StationMatch.Kind.EXACT : StationMatch.Kind.FUZZY, distance, limit);
+        }
+        return matches;
+    }
+
+    /**
+     * Returns ranked candidates for user input: exact matches, then completions, then similar names.
+     * The maximum edit distance is 1 for queries up to 4 characters and 2 for longer ones.
+     * @param query the query
+     * @param limit maximum number of stations
+     * @return ranked candidates without repetitions
+     */
+    public List<StationMatch> search(String query, int limit) {
+        int maxDistance = StationNames.normalize(query).length() <= 4 ? 1 : 2;
+        List<StationMatch> matches = new ArrayList<>();
+        List<StationMatch> candidates = new ArrayList<>(complete(query, limit));
+        candidates.addAll(findSimilar(query, maxDistance, limit));
+        candidates.sort(StationMatch.RANKING);
+        for (StationMatch match : candidates) {
+            if (matches.size() < limit && !containsStation(matches, match.getStation())) {
+                matches.add(match);
+            }
+        }
+        return matches;
+    }
+
+    private static boolean containsStation(List<StationMatch> matches, Station station) {
+        for (StationMatch match : matches) {
+            if (match.getStation() == station) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void addMatches(List<StationMatch> matches, String name, StationMatch.Kind kind, int distance, int limit) {
+        for (Station station : stations.get(name)) {
+            if (matches.size() >= limit) {
+                return;
+            }
+            matches.add(new StationMatch(station, kind, distance));
+        }
+    }
+
+    private static void collectSimilar(Node node, char key, String query, int[] previousRow, int maxDistance,
+                                       List<String> names, List<Integer> distances) {
+        int[] row = new int[previousRow.length];
+        row[0] = previousRow[0] + 1;
+        int minimum = row[0];
+        for (int i = 1; i < row.length; i++) {
+            int substitution = previousRow[i - 1] + (query.charAt(i - 1) == key ? 0 : 1);
+            row[i] = Math.min(substitution, Math.min(row[i - 1] + 1, previousRow[i] + 1));
+            minimum = Math.min(minimum, row[i]);
+        }
+        if (node.name != null && row[row.length - 1] <= maxDistance) {
+            names.add(node.name);
+            distances.add(row[row.length - 1]);
+        }
+        if (minimum <= maxDistance) {
+            for (int i = 0; i < node.keys.length; i++) {
+                collectSimilar(node.children[i], node.keys[i], query, row, maxDistance, names, distances);
+            }
+        }
+    }
+
+    /**
+     * Node of the prefix trie. Children are ordered by character.
+     */
+    private static final class Node {
+        private static final char[] NO_KEYS = new char[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        /** Characters of the children. */
+        private char[] keys = NO_KEYS;
+        /** Children. */
+        private Node[] children = NO_CHILDREN;
+        /** Normalized name that ends in this node or null. */
+        private String name;
+
+        private void insert(String name) {
+            Node node = this;
+            for (int i = 0; i < name.length(); i++) {
+                node = node.child(name.charAt(i));
+            }
+            node.name = name;
+        }
+
+        private Node find(String prefix) {
+            Node node = this;
+            for (int i = 0; i < prefix.length() && node != null; i++) {
+                int position = Arrays.binarySearch(node.keys, prefix.charAt(i));
+                node = position >= 0 ? node.children[position] : null;
+            }
+            return node;
+        }
+
+        private Node child(char key) {
+            int position = Arrays.binarySearch(keys, key);
+            if (position >= 0) {
+                return children[position];
+            }
+            position = -position - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, position);
+            System.arraycopy(children, 0, newChildren, 0, position);
+            newKeys[position] = key;
+            newChildren[position] = new Node();
+            System.arraycopy(keys, position, newKeys, position + 1, keys.length - position);
+            System.arraycopy(children, position, newChildren, position + 1, children.length - position);
+            keys = newKeys;
+            children = newChildren;
+            return newChildren[position];
+        }
+    }
+}
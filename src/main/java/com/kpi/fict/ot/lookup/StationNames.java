@@ -0,0 +1,52 @@
+package com.kpi.fict.ot.lookup;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * Normalization of station names for lookups.
+ * @version 1.0-SNAPSHOT
+ */
+public final class StationNames {
+    private StationNames() {
+    }
+
+    /**
+     * Normalizes the name: folds the case, removes diacritics and apostrophes
+     * (the typographic and the Ukrainian modifier letter apostrophe included), treats hyphens as spaces
+     * and collapses whitespace. Thus {@code "Лук’янівська"}, {@code "лук'янівська"} and {@code "Лукянівська"}
+     * have the same normalized form.
+     * @param name the name
+     * @return normalized name
+     */
+    public static String normalize(String name) {
+        String decomposed = Normalizer.normalize(name, Normalizer.Form.NFD);
+        StringBuilder builder = new StringBuilder(decomposed.length());
+        boolean space = false;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK || isApostrophe(c)) {
+                continue;
+            }
+            if (Character.isWhitespace(c) || c == '-' || c == '–' || c == '—') {
+                space = builder.length() > 0;
+                continue;
+            }
+            if (space) {
+                builder.append(' ');
+                space = false;
+            }
+            builder.append(c);
+        }
+        return builder.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Checking if the character is an apostrophe.
+     * @param c the character
+     * @return true or false
+     */
+    private static boolean isApostrophe(char c) {
+        return c == '\'' || c == '`' || c == '’' || c == '‘' || c == 'ʼ' || c == '´';
+    }
+}
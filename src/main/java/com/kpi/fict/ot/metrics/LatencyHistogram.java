@@ -0,0 +1,120 @@
+package com.kpi.fict.ot.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent histogram of latencies in nanoseconds with log-linear buckets: every power of two is split into
+ * {@value #SUB_BUCKETS} buckets, so a percentile is within 12.5% of the recorded value.
+ * Recording is lock-free and allocates nothing, the buckets of all values up to {@link Long#MAX_VALUE}
+ * are allocated up front.
+ * @version 1.0-SNAPSHOT
+ */
+public final class LatencyHistogram {
+    /** Number of bits of the position inside a power of two. */
+    private static final int SUB_BUCKET_BITS = 3;
+    /** Number of buckets of every power of two. */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /** Number of buckets, the last one holds the values of the highest power of two. */
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    /** Number of values of every bucket. */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    /** Number of values. */
+    private final LongAdder count = new LongAdder();
+    /** Sum of the values. */
+    private final LongAdder sum = new LongAdder();
+    /** Maximum value. */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a latency.
+     * @param nanos latency in nanoseconds, negative values are recorded as zero
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        counts.incrementAndGet(bucket(value));
+        count.increment();
+        sum.add(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Records the time elapsed since the start.
+     * @param startNanos start time of {@link System#nanoTime()}
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Returns the number of recorded values.
+     * @return count
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Returns the current state of the histogram. Values recorded meanwhile may be partially included.
+     * @return snapshot
+     */
+    public LatencySnapshot snapshot() {
+        long[] values = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            values[i] = counts.get(i);
+            total += values[i];
+        }
+        long maximum = max.get();
+        return new LatencySnapshot(total, total > 0 ? (double) sum.sum() / total : 0,
+                percentile(values, total, 0.5, maximum), percentile(values, total, 0.9, maximum),
+                percentile(values, total, 0.99, maximum), percentile(values, total, 0.999, maximum), maximum);
+    }
+
+    /**
+     * Returns the upper bound of the bucket of the percentile, but not more than the maximum.
+     */
+    private static long percentile(long[] values, long total, double quantile, long maximum) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += values[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), maximum);
+            }
+        }
+        return maximum;
+    }
+
+    /**
+     * Returns the bucket of the value. Values below {@link #SUB_BUCKETS} have a bucket each.
+     */
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * Returns the greatest value of the bucket.
+     */
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lower + ((1L << shift) - 1);
+    }
+}
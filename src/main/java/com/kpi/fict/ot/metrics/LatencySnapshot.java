@@ -0,0 +1,91 @@
+package com.kpi.fict.ot.metrics;
+
+import java.util.Locale;
+
+/**
+ * Immutable state of a {@link LatencyHistogram}. The latencies are in microseconds.
+ * @version 1.0-SNAPSHOT
+ */
+public final class LatencySnapshot {
+    private static final double NANOS_PER_MICRO = 1000.0;
+
+    private final long count;
+    private final double mean;
+    private final long median;
+    private final long p90;
+    private final long p99;
+    private final long p999;
+    private final long max;
+
+    LatencySnapshot(long count, double mean, long median, long p90, long p99, long p999, long max) {
+        this.count = count;
+        this.mean = mean;
+        this.median = median;
+        this.p90 = p90;
+        this.p99 = p99;
+        this.p999 = p999;
+        this.max = max;
+    }
+
+    /**
+     * Returns the number of recorded values.
+     * @return count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the mean latency.
+     * @return microseconds
+     */
+    public double getMean() {
+        return mean / NANOS_PER_MICRO;
+    }
+
+    /**
+     * Returns the median latency.
+     * @return microseconds
+     */
+    public double getMedian() {
+        return median / NANOS_PER_MICRO;
+    }
+
+    /**
+     * Returns the 90th percentile of the latency.
+     * @return microseconds
+     */
+    public double getP90() {
+        return p90 / NANOS_PER_MICRO;
+    }
+
+    /**
+     * Returns the 99th percentile of the latency.
+     * @return microseconds
+     */
+    public double getP99() {
+        return p99 / NANOS_PER_MICRO;
+    }
+
+    /**
+     * Returns the 99.9th percentile of the latency.
+     * @return microseconds
+     */
+    public double getP999() {
+        return p999 / NANOS_PER_MICRO;
+    }
+
+    /**
+     * Returns the maximum latency.
+     * @return microseconds
+     */
+    public double getMax() {
+        return max / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "count=%d mean=%.1fus p50=%.1fus p90=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus",
+                count, getMean(), getMedian(), getP90(), getP99(), getP999(), getMax());
+    }
+}
@@ -0,0 +1,112 @@
+package com.kpi.fict.ot.metrics;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry of named latency histograms, counters and gauges.
+ * Instrumented classes look their metrics up once, into static fields, so recording is a plain call on
+ * a {@link LatencyHistogram} or a {@link LongAdder} without any map lookup or allocation.
+ * The metrics are exposed as an MXBean (see {@link #registerMBean()}) and by {@link MetricsReporter}.
+ * @version 1.0-SNAPSHOT
+ */
+public final class Metrics implements MetricsMXBean {
+    /** Name of the MXBean. */
+    public static final String OBJECT_NAME = "com.kpi.fict.ot:type=Metrics";
+
+    /** Registry of the application. */
+    private static final Metrics DEFAULT = new Metrics();
+
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the registry of the application.
+     * @return registry
+     */
+    public static Metrics getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the histogram with the name, creating it on the first call.
+     * @param name the name
+     * @return histogram
+     */
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> new LatencyHistogram());
+    }
+
+    /**
+     * Returns the counter with the name, creating it on the first call.
+     * @param name the name
+     * @return counter
+     */
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    /**
+     * Registers a gauge whose value is read when the metrics are reported, e.g. a statistic of a cache.
+     * A gauge with the same name is replaced.
+     * @param name the name
+     * @param gauge supplier of the value
+     */
+    public void gauge(String name, LongSupplier gauge) {
+        gauges.put(name, gauge);
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        Map<String, Long> values = new TreeMap<>();
+        counters.forEach((name, counter) -> values.put(name, counter.sum()));
+        gauges.forEach((name, gauge) -> values.put(name, gauge.getAsLong()));
+        return values;
+    }
+
+    @Override
+    public Map<String, LatencySnapshot> getLatencies() {
+        Map<String, LatencySnapshot> snapshots = new TreeMap<>();
+        histograms.forEach((name, histogram) -> snapshots.put(name, histogram.snapshot()));
+        return snapshots;
+    }
+
+    /**
+     * Registers the metrics in the platform MBean server as {@value #OBJECT_NAME}.
+     * Metrics registered earlier under this name are replaced.
+     * @return name of the MXBean
+     * @throws JMException if the MXBean cannot be registered
+     */
+    public ObjectName registerMBean() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        try {
+            server.registerMBean(this, name);
+        } catch (InstanceAlreadyExistsException ex) {
+            server.unregisterMBean(name);
+            server.registerMBean(this, name);
+        }
+        return name;
+    }
+
+    /**
+     * Returns the counters and the latencies, one metric per line.
+     * @return text
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        getCounters().forEach((name, value) -> text.append(name).append(' ').append(value).append('\n'));
+        getLatencies().forEach((name, snapshot) -> text.append(name).append(' ').append(snapshot).append('\n'));
+        return text.toString();
+    }
+}
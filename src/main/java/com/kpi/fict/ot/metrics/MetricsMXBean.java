@@ -0,0 +1,21 @@
+package com.kpi.fict.ot.metrics;
+
+import java.util.Map;
+
+/**
+ * Management interface of the {@link Metrics}, registered as {@value Metrics#OBJECT_NAME}.
+ * @version 1.0-SNAPSHOT
+ */
+public interface MetricsMXBean {
+    /**
+     * Returns the values of the counters and the gauges.
+     * @return values by name
+     */
+    Map<String, Long> getCounters();
+
+    /**
+     * Returns the snapshots of the latency histograms.
+     * @return snapshots by name
+     */
+    Map<String, LatencySnapshot> getLatencies();
+}
@@ -0,0 +1,62 @@
+package com.kpi.fict.ot.metrics;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.Marker;
+import org.apache.logging.log4j.MarkerManager;
+
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes a snapshot of the {@link Metrics} to the log periodically, with the {@code METRICS} marker.
+ * The reporter runs on a daemon thread.
+ * @version 1.0-SNAPSHOT
+ */
+public class MetricsReporter implements Closeable {
+    private static final Logger LOGGER = LogManager.getLogger(MetricsReporter.class);
+    /** Filters the metrics snapshots. */
+    private static final Marker METRICS_MARKER = MarkerManager.getMarker("METRICS");
+
+    /** The metrics. */
+    private final Metrics metrics;
+    /** Reporter thread. */
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Starts reporting.
+     * @param metrics the metrics
+     * @param period period of the snapshots
+     * @param unit unit of the period
+     */
+    public MetricsReporter(Metrics metrics, long period, TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive but was " + period);
+        }
+        this.metrics = metrics;
+        this.executor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.scheduleAtFixedRate(this::report, period, period, unit);
+    }
+
+    /**
+     * Writes a snapshot of the metrics to the log.
+     */
+    public void report() {
+        metrics.getCounters().forEach((name, value) -> LOGGER.info(METRICS_MARKER, "{} {}", name, value));
+        metrics.getLatencies().forEach((name, snapshot) -> LOGGER.info(METRICS_MARKER, "{} {}", name, snapshot));
+    }
+
+    /**
+     * Stops reporting.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
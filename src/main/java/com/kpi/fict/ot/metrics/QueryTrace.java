@@ -0,0 +1,204 @@
+package com.kpi.fict.ot.metrics;
+
+import com.kpi.fict.ot.core.Station;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Trace of one sampled route query: wall time of every phase, work of the search and allocated memory.
+ * The searches do not count their work, it is restored from their state after the query
+ * (e.g. the settled stations are the labelled ones that left the heap), so untraced queries pay nothing for it.
+ * @version 1.0-SNAPSHOT
+ */
+public final class QueryTrace {
+    private final Station from;
+    private final Station to;
+    private final String mode;
+    private String[] phaseNames = new String[4];
+    private long[] phaseNanos = new long[4];
+    private int phaseCount;
+    private long totalNanos;
+    private long settled;
+    private long labelled;
+    private long edges;
+    private long candidates;
+    private long allocatedBytes = -1;
+    private int routeSize;
+
+    /**
+     * A single constructor.
+     * @param from the station of departure
+     * @param to destination station
+     * @param mode route search strategy
+     */
+    public QueryTrace(Station from, Station to, String mode) {
+        this.from = from;
+        this.to = to;
+        this.mode = mode;
+    }
+
+    /**
+     * Adds the wall time of a phase. The time of a phase added again is summed.
+     * @param name name of the phase
+     * @param nanos time in nanoseconds
+     */
+    public void addPhase(String name, long nanos) {
+        for (int i = 0; i < phaseCount; i++) {
+            if (phaseNames[i].equals(name)) {
+                phaseNanos[i] += nanos;
+                return;
+            }
+        }
+        if (phaseCount == phaseNames.length) {
+            phaseNames = Arrays.copyOf(phaseNames, phaseCount * 2);
+            phaseNanos = Arrays.copyOf(phaseNanos, phaseCount * 2);
+        }
+        phaseNames[phaseCount] = name;
+        phaseNanos[phaseCount++] = nanos;
+    }
+
+    /**
+     * Adds the work of a search.
+     * @param settled number of settled (expanded) stations
+     * @param labelled number of stations that got a tentative time
+     * @param edges number of edges of the settled stations
+     */
+    public void addSearch(long settled, long labelled, long edges) {
+        this.settled += settled;
+        this.labelled += labelled;
+        this.edges += edges;
+    }
+
+    /**
+     * Adds evaluated candidate routes, e.g. pairs of interchanges compared by the legacy search.
+     * @param count number of candidates
+     */
+    public void addCandidates(long count) {
+        candidates += count;
+    }
+
+    /**
+     * Sets the result of the query.
+     * @param totalNanos wall time of the query
+     * @param allocatedBytes bytes allocated by the thread during the query or -1 if unknown
+     * @param routeSize number of stations of the route
+     */
+    public void finish(long totalNanos, long allocatedBytes, int routeSize) {
+        this.totalNanos = totalNanos;
+        this.allocatedBytes = allocatedBytes;
+        this.routeSize = routeSize;
+    }
+
+    /**
+     * Returns the station of departure.
+     * @return the station
+     */
+    public Station getFrom() {
+        return from;
+    }
+
+    /**
+     * Returns the destination station.
+     * @return the station
+     */
+    public Station getTo() {
+        return to;
+    }
+
+    /**
+     * Returns the route search strategy.
+     * @return mode
+     */
+    public String getMode() {
+        return mode;
+    }
+
+    /**
+     * Returns the wall time of every phase in the order of the phases.
+     * @return nanoseconds by phase
+     */
+    public Map<String, Long> getPhases() {
+        Map<String, Long> phases = new LinkedHashMap<>();
+        for (int i = 0; i < phaseCount; i++) {
+            phases.put(phaseNames[i], phaseNanos[i]);
+        }
+        return phases;
+    }
+
+    /**
+     * Returns the wall time of the query.
+     * @return nanoseconds
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * Returns the number of settled (expanded) stations.
+     * @return number of stations
+     */
+    public long getSettledCount() {
+        return settled;
+    }
+
+    /**
+     * Returns the number of stations that got a tentative time.
+     * @return number of stations
+     */
+    public long getLabelledCount() {
+        return labelled;
+    }
+
+    /**
+     * Returns the number of edges of the settled stations.
+     * @return number of edges
+     */
+    public long getEdgeCount() {
+        return edges;
+    }
+
+    /**
+     * Returns the number of evaluated candidate routes.
+     * @return number of candidates
+     */
+    public long getCandidateCount() {
+        return candidates;
+    }
+
+    /**
+     * Returns the bytes allocated by the thread during the query, including the trace itself.
+     * @return bytes or -1 if the JVM does not measure allocations
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * Returns the number of stations of the route.
+     * @return number of stations, 0 if there is no route
+     */
+    public int getRouteSize() {
+        return routeSize;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append(from.getName()).append(" (").append(from.getLine().getNumber()).append(") -> ")
+                .append(to.getName()).append(" (").append(to.getLine().getNumber()).append(") ").append(mode)
+                .append(String.format(Locale.ROOT, " %.1fus", totalNanos / 1000.0))
+                .append(" stations=").append(routeSize)
+                .append(" settled=").append(settled)
+                .append(" labelled=").append(labelled)
+                .append(" edges=").append(edges)
+                .append(" candidates=").append(candidates)
+                .append(" allocated=").append(allocatedBytes).append('B');
+        for (int i = 0; i < phaseCount; i++) {
+            text.append(String.format(Locale.ROOT, " %s=%.1fus", phaseNames[i], phaseNanos[i] / 1000.0));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,116 @@
+package com.kpi.fict.ot.metrics;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.Marker;
+import org.apache.logging.log4j.MarkerManager;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+/**
+ * Samples route queries for tracing, see {@link com.kpi.fict.ot.RouteCalculator#setTracer(QueryTracer)}.
+ * Every finished {@link QueryTrace} is handed to the consumer, and the slowest traces are kept
+ * to find pathological pairs of stations.
+ * @version 1.0-SNAPSHOT
+ */
+public class QueryTracer {
+    private static final Logger LOGGER = LogManager.getLogger(QueryTracer.class);
+    /** Filters the query traces. */
+    private static final Marker QUERY_TRACE_MARKER = MarkerManager.getMarker("QUERY_TRACE");
+    /** Number of the slowest traces that are kept. */
+    public static final int SLOWEST_LIMIT = 10;
+
+    /** Share of the traced queries. */
+    private final double rate;
+    /** Receiver of the traces. */
+    private final Consumer<QueryTrace> consumer;
+    /** Allocation counter of the threads or null if the JVM does not support it. */
+    private final com.sun.management.ThreadMXBean threads;
+    /** The slowest traces, the slowest first. */
+    private final List<QueryTrace> slowest = new ArrayList<>(SLOWEST_LIMIT + 1);
+
+    /**
+     * A single constructor.
+     * @param rate share of the traced queries from 0 to 1
+     * @param consumer receiver of every trace
+     */
+    public QueryTracer(double rate, Consumer<QueryTrace> consumer) {
+        if (!(rate >= 0 && rate <= 1)) {
+            throw new IllegalArgumentException("Sample rate must be between 0 and 1 but was " + rate);
+        }
+        this.rate = rate;
+        this.consumer = consumer;
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        this.threads = bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported() ?
+                (com.sun.management.ThreadMXBean) bean : null;
+    }
+
+    /**
+     * Creates a tracer that writes the traces to the log with the {@code QUERY_TRACE} marker.
+     * @param rate share of the traced queries from 0 to 1
+     * @return tracer
+     */
+    public static QueryTracer logging(double rate) {
+        return new QueryTracer(rate, trace -> LOGGER.info(QUERY_TRACE_MARKER, "{}", trace));
+    }
+
+    /**
+     * Returns the share of the traced queries.
+     * @return rate
+     */
+    public double getRate() {
+        return rate;
+    }
+
+    /**
+     * Decides whether the query is traced.
+     * @return true or false
+     */
+    public boolean sample() {
+        return rate >= 1 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    /**
+     * Returns the bytes allocated by the current thread so far.
+     * @return bytes or -1 if the JVM does not measure allocations
+     */
+    public long allocatedBytes() {
+        return threads != null && threads.isThreadAllocatedMemoryEnabled() ?
+                threads.getThreadAllocatedBytes(Thread.currentThread().getId()) : -1;
+    }
+
+    /**
+     * Accepts a finished trace.
+     * @param trace the trace
+     */
+    public void accept(QueryTrace trace) {
+        synchronized (slowest) {
+            if (slowest.size() < SLOWEST_LIMIT
+                    || slowest.get(slowest.size() - 1).getTotalNanos() < trace.getTotalNanos()) {
+                slowest.add(trace);
+                slowest.sort(Comparator.comparingLong(QueryTrace::getTotalNanos).reversed());
+                if (slowest.size() > SLOWEST_LIMIT) {
+                    slowest.remove(SLOWEST_LIMIT);
+                }
+            }
+        }
+        consumer.accept(trace);
+    }
+
+    /**
+     * Returns the slowest traced queries.
+     * @return at most {@value #SLOWEST_LIMIT} traces, the slowest first
+     */
+    public List<QueryTrace> getSlowest() {
+        synchronized (slowest) {
+            return List.copyOf(slowest);
+        }
+    }
+}
@@ -0,0 +1,600 @@
+package com.kpi.fict.ot.server;
+
+import com.kpi.fict.ot.RouteCalculator;
+import com.kpi.fict.ot.StationIndex;
+import com.kpi.fict.ot.core.Coordinates;
+import com.kpi.fict.ot.core.Route;
+import com.kpi.fict.ot.core.Station;
+import com.kpi.fict.ot.graph.Reachability;
+import com.kpi.fict.ot.graph.RouteAlternative;
+import com.kpi.fict.ot.lookup.NearbyStation;
+import com.kpi.fict.ot.lookup.StationMatch;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Embedded HTTP server of route lookups on the HTTP server of the JDK.
+ * All requests share the {@link RouteCalculator} and the station index it was swapped to, so a request needs no locking.
+ * Endpoints, all of them answer {@code GET} requests with JSON:
+ * <ul>
+ *     <li>{@code /stations?q=name&limit=5} - exact, prefix and similar station names;</li>
+ *     <li>{@code /nearest?lat=50.45&lon=30.52&limit=5&radius=1000} - the stations nearest to the location,
+ *     optionally only the ones within the distance in metres;</li>
+ *     <li>{@code /route?from=name&to=name} - the shortest route with its duration and number of transfers;</li>
+ *     <li>{@code /duration?from=name&to=name} - only the duration and the number of transfers;</li>
+ *     <li>{@code /alternatives?from=name&to=name&k=3&avoid=name} - the fastest loopless routes,
+ *     optionally avoiding a station;</li>
+ *     <li>{@code /pareto?from=name&to=name&maxTransfers=3} - the fastest route for every number of transfers
+ *     that pays off;</li>
+ *     <li>{@code /reachable?from=name&maxDuration=20&maxTransfers=1} - the stations reachable within the travel time
+ *     and the number of transfers, both limits are optional.</li>
+ * </ul>
+ * A station of a line is selected with the optional {@code fromLine}, {@code toLine} and {@code avoidLine}
+ * parameters. Instead of a name, a station may be given by a location, e.g. {@code fromLat} and {@code fromLon}:
+ * the nearest open station is used.
+ * Requests run on virtual threads if the runtime has them, otherwise on a pool of platform threads.
+ * A request takes a permit before it is handed to the executor, so no request waits in the queue of the pool:
+ * requests over the concurrency limit are answered with 503 at once, requests over the size limit with 413 or 414.
+ * @version 1.0-SNAPSHOT
+ */
+public class RouteServer implements Closeable {
+    private static final Logger LOGGER = LogManager.getLogger(RouteServer.class);
+
+    /** Default maximum number of requests handled at the same time. */
+    public static final int DEFAULT_MAX_CONCURRENCY = 256;
+    /** Default maximum size of the request target and body in bytes. */
+    public static final int DEFAULT_MAX_REQUEST_SIZE = 8192;
+    /** Default number of station suggestions. */
+    private static final int DEFAULT_LIMIT = 5;
+    /** Maximum number of station suggestions. */
+    private static final int MAX_LIMIT = 50;
+    /** Default number of alternative routes. */
+    private static final int DEFAULT_ALTERNATIVES = 3;
+    /** Maximum number of alternative routes. */
+    private static final int MAX_ALTERNATIVES = 10;
+
+    /** Route calculator. */
+    private final RouteCalculator calculator;
+    /** Maximum size of the request target and body in bytes. */
+    private final int maxRequestSize;
+    /** Permits of the requests being handled or waiting for a thread. */
+    private final Semaphore permits;
+    /** Set while a request without a permit is answered on the thread of the HTTP server. */
+    private final ThreadLocal<Boolean> rejected = new ThreadLocal<>();
+    /** Executor of the requests. */
+    private final ExecutorService executor;
+    /** HTTP server. */
+    private final HttpServer server;
+
+    /**
+     * Creates a server with the default limits. The server is started by {@link #start()}.
+     * @param calculator route calculator
+     * @param address address to bind, port 0 selects a free port
+     * @throws IOException if the address cannot be bound
+     */
+    public RouteServer(RouteCalculator calculator, InetSocketAddress address) throws IOException {
+        this(calculator, address, DEFAULT_MAX_CONCURRENCY, DEFAULT_MAX_REQUEST_SIZE);
+    }
+
+    /**
+     * Creates a server. The server is started by {@link #start()}.
+     * @param calculator route calculator
+     * @param address address to bind, port 0 selects a free port
+     * @param maxConcurrency maximum number of requests handled at the same time
+     * @param maxRequestSize maximum size of the request target and body in bytes
+     * @throws IOException if the address cannot be bound
+     */
+    public RouteServer(RouteCalculator calculator, InetSocketAddress address, int maxConcurrency,
+                       int maxRequestSize) throws IOException {
+        if (maxConcurrency <= 0 || maxRequestSize <= 0) {
+            throw new IllegalArgumentException("Limits must be positive");
+        }
+        this.calculator = calculator;
+        this.maxRequestSize = maxRequestSize;
+        this.permits = new Semaphore(maxConcurrency);
+        this.executor = newExecutor(maxConcurrency);
+        this.server = HttpServer.create(address, maxConcurrency);
+        this.server.setExecutor(new Admission());
+        this.server.createContext("/stations", new Endpoint(this::findStations));
+        this.server.createContext("/nearest", new Endpoint(this::findNearest));
+        this.server.createContext("/route", new Endpoint(this::findRoute));
+        this.server.createContext("/duration", new Endpoint(this::findDuration));
+        this.server.createContext("/alternatives", new Endpoint(this::findAlternatives));
+        this.server.createContext("/pareto", new Endpoint(this::findParetoRoutes));
+        this.server.createContext("/reachable", new Endpoint(this::findReachable));
+    }
+
+    /**
+     * Returns a virtual-thread-per-task executor if the runtime supports it.
+     * Otherwise, a pool with a platform thread for every permitted request is used.
+     */
+    private static ExecutorService newExecutor(int maxConcurrency) {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newFixedThreadPool(maxConcurrency, task -> {
+                Thread thread = new Thread(task, "route-server-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        server.start();
+        LOGGER.info("Route server is listening on {}", server.getAddress());
+    }
+
+    /**
+     * Returns the bound address.
+     * @return address
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * Stops the server. Requests being handled are given a second to complete.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Response findStations(Map<String, String> parameters) {
+        String query = require(parameters, "q");
+        int limit = DEFAULT_LIMIT;
+        if (parameters.containsKey("limit")) {
+            limit = parseInt(parameters.get("limit"), "limit");
+            if (limit <= 0 || limit > MAX_LIMIT) {
+                throw new BadRequestException("Parameter 'limit' must be from 1 to " + MAX_LIMIT);
+            }
+        }
+        JSONArray stations = new JSONArray();
+        for (StationMatch match : calculator.getStationIndex().findStations(query, limit)) {
+            JSONObject station = toJson(match.getStation());
+            station.put("match", match.getKind().name().toLowerCase(Locale.ROOT));
+            station.put("distance", match.getDistance());
+            stations.add(station);
+        }
+        JSONObject body = new JSONObject();
+        body.put("stations", stations);
+        return new Response(200, body);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Response findNearest(Map<String, String> parameters) {
+        double latitude = parseDouble(require(parameters, "lat"), "lat");
+        double longitude = parseDouble(require(parameters, "lon"), "lon");
+        if (!Coordinates.isValid(latitude, longitude)) {
+            throw new BadRequestException("Invalid location " + latitude + ", " + longitude);
+        }
+        int limit = DEFAULT_LIMIT;
+        if (parameters.containsKey("limit")) {
+            limit = parseInt(parameters.get("limit"), "limit");
+            if (limit <= 0 || limit > MAX_LIMIT) {
+                throw new BadRequestException("Parameter 'limit' must be from 1 to " + MAX_LIMIT);
+            }
+        }
+        double radius = Double.POSITIVE_INFINITY;
+        if (parameters.containsKey("radius")) {
+            radius = parseDouble(parameters.get("radius"), "radius");
+            if (!(radius >= 0)) {
+                throw new BadRequestException("Parameter 'radius' must not be negative");
+            }
+        }
+        JSONArray stations = new JSONArray();
+        for (NearbyStation nearby : calculator.getStationIndex().findNearestStations(latitude, longitude, limit)) {
+            if (nearby.getDistance() > radius) {
+                break;
+            }
+            JSONObject station = toJson(nearby.getStation());
+            station.put("distance", nearby.getDistance());
+            stations.add(station);
+        }
+        JSONObject body = new JSONObject();
+        body.put("stations", stations);
+        return new Response(200, body);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Response findRoute(Map<String, String> parameters) {
+        Station from = resolve(parameters, "from");
+        Station to = resolve(parameters, "to");
+        List<Station> route = calculator.getShortestRoute(from, to);
+        JSONObject body = summarize(from, to, route);
+        JSONArray stations = new JSONArray();
+        for (Station station : route) {
+            stations.add(toJson(station));
+        }
+        body.put("stations", stations);
+        return new Response(200, body);
+    }
+
+    private Response findDuration(Map<String, String> parameters) {
+        Station from = resolve(parameters, "from");
+        Station to = resolve(parameters, "to");
+        return new Response(200, summarize(from, to, calculator.getShortestRoute(from, to)));
+    }
+
+    private Response findAlternatives(Map<String, String> parameters) {
+        Station from = resolve(parameters, "from");
+        Station to = resolve(parameters, "to");
+        int count = DEFAULT_ALTERNATIVES;
+        if (parameters.containsKey("k")) {
+            count = parseInt(parameters.get("k"), "k");
+            if (count <= 0 || count > MAX_ALTERNATIVES) {
+                throw new BadRequestException("Parameter 'k' must be from 1 to " + MAX_ALTERNATIVES);
+            }
+        }
+        List<Station> avoid = parameters.containsKey("avoid") ? List.of(resolve(parameters, "avoid")) : List.of();
+        return new Response(200, toJson(from, to, calculator.getAlternativeRoutes(from, to, count, avoid)));
+    }
+
+    private Response findParetoRoutes(Map<String, String> parameters) {
+        Station from = resolve(parameters, "from");
+        Station to = resolve(parameters, "to");
+        int maxTransfers = Integer.MAX_VALUE;
+        if (parameters.containsKey("maxTransfers")) {
+            maxTransfers = parseInt(parameters.get("maxTransfers"), "maxTransfers");
+            if (maxTransfers < 0) {
+                throw new BadRequestException("Parameter 'maxTransfers' must not be negative");
+            }
+        }
+        return new Response(200, toJson(from, to, calculator.getParetoRoutes(from, to, maxTransfers)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static JSONObject toJson(Station from, Station to, List<RouteAlternative> alternatives) {
+        JSONArray routes = new JSONArray();
+        for (RouteAlternative alternative : alternatives) {
+            JSONObject route = new JSONObject();
+            route.put("duration", alternative.getDuration());
+            route.put("transfers", alternative.getTransfers());
+            JSONArray stations = new JSONArray();
+            for (Station station : alternative.getRoute()) {
+                stations.add(toJson(station));
+            }
+            route.put("stations", stations);
+            routes.add(route);
+        }
+        JSONObject body = new JSONObject();
+        body.put("from", toJson(from));
+        body.put("to", toJson(to));
+        body.put("routes", routes);
+        return body;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Response findReachable(Map<String, String> parameters) {
+        Station from = resolve(parameters, "from");
+        double maxDuration = Double.POSITIVE_INFINITY;
+        if (parameters.containsKey("maxDuration")) {
+            maxDuration = parseDouble(parameters.get("maxDuration"), "maxDuration");
+            if (!(maxDuration >= 0)) {
+                throw new BadRequestException("Parameter 'maxDuration' must not be negative");
+            }
+        }
+        int maxTransfers = -1;
+        if (parameters.containsKey("maxTransfers")) {
+            maxTransfers = parseInt(parameters.get("maxTransfers"), "maxTransfers");
+            if (maxTransfers < 0) {
+                throw new BadRequestException("Parameter 'maxTransfers' must not be negative");
+            }
+        }
+        Reachability reachability = calculator.getReachableStations(from, maxDuration, maxTransfers);
+        JSONArray stations = new JSONArray();
+        for (Station station : reachability.getStations()) {
+            JSONObject json = toJson(station);
+            json.put("duration", reachability.getDuration(station));
+            json.put("transfers", reachability.getTransfers(station));
+            Station previous = reachability.getPrevious(station);
+            if (previous != null) {
+                json.put("previous", toJson(previous));
+            }
+            stations.add(json);
+        }
+        JSONObject body = new JSONObject();
+        body.put("from", toJson(from));
+        body.put("stations", stations);
+        return new Response(200, body);
+    }
+
+    @SuppressWarnings("unchecked")
+    private JSONObject summarize(Station from, Station to, List<Station> route) {
+        JSONObject body = new JSONObject();
+        body.put("from", toJson(from));
+        body.put("to", toJson(to));
+        body.put("reachable", !route.isEmpty());
+        if (!route.isEmpty()) {
+            body.put("duration", calculator.getDuration(route));
+            body.put("transfers", Route.countTransfers(route));
+        }
+        return body;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static JSONObject toJson(Station station) {
+        JSONObject json = new JSONObject();
+        json.put("name", station.getName());
+        json.put("line", station.getLine().getNumber());
+        json.put("lineName", station.getLine().getName());
+        if (station.hasLocation()) {
+            json.put("latitude", station.getLatitude());
+            json.put("longitude", station.getLongitude());
+        }
+        return json;
+    }
+
+    /**
+     * Finds the station of the parameter, optionally on the line of the {@code <name>Line} parameter,
+     * or the open station nearest to the location of the {@code <name>Lat} and {@code <name>Lon} parameters.
+     */
+    private Station resolve(Map<String, String> parameters, String name) {
+        if (!parameters.containsKey(name) && parameters.containsKey(name + "Lat")) {
+            double latitude = parseDouble(parameters.get(name + "Lat"), name + "Lat");
+            double longitude = parseDouble(require(parameters, name + "Lon"), name + "Lon");
+            if (!Coordinates.isValid(latitude, longitude)) {
+                throw new BadRequestException("Invalid location " + latitude + ", " + longitude);
+            }
+            Station nearest = calculator.findNearestStation(latitude, longitude);
+            if (nearest == null) {
+                throw new NotFoundException("No station near " + latitude + ", " + longitude, List.of());
+            }
+            return nearest;
+        }
+        String stationName = require(parameters, name);
+        StationIndex stationIndex = calculator.getStationIndex();
+        String lineParameter = parameters.get(name + "Line");
+        Station station;
+        if (lineParameter != null) {
+            int lineNumber = parseInt(lineParameter, name + "Line");
+            station = null;
+            for (Station candidate : stationIndex.getStations(stationName)) {
+                if (candidate.getLine().getNumber() == lineNumber) {
+                    station = candidate;
+                    break;
+                }
+            }
+        } else {
+            station = stationIndex.getStation(stationName);
+        }
+        if (station == null) {
+            throw new NotFoundException("Station '" + stationName + "' not found",
+                    stationIndex.findStations(stationName, DEFAULT_LIMIT));
+        }
+        return station;
+    }
+
+    private static String require(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+        if (value == null || value.isBlank()) {
+            throw new BadRequestException("Parameter '" + name + "' is required");
+        }
+        return value;
+    }
+
+    private static int parseInt(String value, String name) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            throw new BadRequestException("Parameter '" + name + "' must be an integer");
+        }
+    }
+
+    private static double parseDouble(String value, String name) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException ex) {
+            throw new BadRequestException("Parameter '" + name + "' must be a number");
+        }
+    }
+
+    /**
+     * Splits the query string into decoded parameters. The first value of a repeated parameter is used.
+     */
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            String key = separator < 0 ? pair : pair.substring(0, separator);
+            String value = separator < 0 ? "" : pair.substring(separator + 1);
+            try {
+                parameters.putIfAbsent(URLDecoder.decode(key, StandardCharsets.UTF_8),
+                        URLDecoder.decode(value, StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException ex) {
+                throw new BadRequestException("Malformed query string");
+            }
+        }
+        return parameters;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static JSONObject error(String message) {
+        JSONObject body = new JSONObject();
+        body.put("error", message);
+        return body;
+    }
+
+    /**
+     * Handler of an endpoint.
+     */
+    @FunctionalInterface
+    private interface Action {
+        Response handle(Map<String, String> parameters);
+    }
+
+    /**
+     * Status and JSON body of the response.
+     */
+    private static final class Response {
+        private final int status;
+        private final JSONObject body;
+
+        private Response(int status, JSONObject body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    /**
+     * Request with invalid parameters.
+     */
+    private static class BadRequestException extends IllegalArgumentException {
+        private BadRequestException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Request of an unknown station, the response contains similar stations.
+     */
+    private static final class NotFoundException extends BadRequestException {
+        private final transient List<StationMatch> suggestions;
+
+        private NotFoundException(String message, List<StationMatch> suggestions) {
+            super(message);
+            this.suggestions = suggestions;
+        }
+    }
+
+    /**
+     * Takes a permit for every exchange before it is handed to the executor. An exchange without a permit is not
+     * queued: it runs on the thread of the HTTP server, which only reads the request and answers 503.
+     */
+    private final class Admission implements Executor {
+        @Override
+        public void execute(Runnable task) {
+            if (!permits.tryAcquire()) {
+                rejected.set(Boolean.TRUE);
+                try {
+                    task.run();
+                } finally {
+                    rejected.remove();
+                }
+                return;
+            }
+            try {
+                executor.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                permits.release();
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Applies the limits and turns the result of the action into a JSON response.
+     */
+    private final class Endpoint implements HttpHandler {
+        private final Action action;
+
+        private Endpoint(Action action) {
+            this.action = action;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try (exchange) {
+                if (rejected.get() != null) {
+                    send(exchange, new Response(503, error("Too many concurrent requests")));
+                    return;
+                }
+                send(exchange, dispatch(exchange));
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private Response dispatch(HttpExchange exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "GET");
+                return new Response(405, error("Method " + exchange.getRequestMethod() + " is not allowed"));
+            }
+            String rawQuery = exchange.getRequestURI().getRawQuery();
+            if (exchange.getRequestURI().getRawPath().length() + (rawQuery != null ? rawQuery.length() : 0)
+                    > maxRequestSize) {
+                return new Response(414, error("Request target exceeds " + maxRequestSize + " bytes"));
+            }
+            String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+            if (contentLength != null && isTooLarge(contentLength)) {
+                return new Response(413, error("Request body exceeds " + maxRequestSize + " bytes"));
+            }
+            try {
+                return action.handle(parseQuery(rawQuery));
+            } catch (NotFoundException ex) {
+                JSONObject body = error(ex.getMessage());
+                JSONArray suggestions = new JSONArray();
+                ex.suggestions.forEach(match -> suggestions.add(toJson(match.getStation())));
+                body.put("suggestions", suggestions);
+                return new Response(404, body);
+            } catch (BadRequestException ex) {
+                return new Response(400, error(ex.getMessage()));
+            } catch (RuntimeException ex) {
+                LOGGER.error("Request {} failed", exchange.getRequestURI(), ex);
+                return new Response(500, error("Internal server error"));
+            }
+        }
+
+        private boolean isTooLarge(String contentLength) {
+            try {
+                return Long.parseLong(contentLength.trim()) > maxRequestSize;
+            } catch (NumberFormatException ex) {
+                return true;
+            }
+        }
+
+        private void send(HttpExchange exchange, Response response) throws IOException {
+            byte[] bytes = response.body.toJSONString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+            exchange.sendResponseHeaders(response.status, bytes.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.kpi.fict.ot.timetable;
+
+import com.kpi.fict.ot.core.Line;
+import com.kpi.fict.ot.core.LineSegment;
+import com.kpi.fict.ot.core.Route;
+import com.kpi.fict.ot.core.Station;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of an earliest arrival query: the trips taken with their departure and arrival times.
+ * Legs are separated by transfers between connected stations.
+ * @version 1.0-SNAPSHOT
+ */
+public final class Journey {
+    /** Requested departure time. */
+    private final int departureTime;
+    /** Arrival time at the destination. */
+    private final int arrivalTime;
+    /** Trips in the order of travel. */
+    private final List<Leg> legs;
+
+    Journey(int departureTime, int arrivalTime, List<Leg> legs) {
+        this.departureTime = departureTime;
+        this.arrivalTime = arrivalTime;
+        this.legs = Collections.unmodifiableList(legs);
+    }
+
+    /**
+     * Returns the requested departure time.
+     * @return seconds after midnight
+     */
+    public int getDepartureTime() {
+        return departureTime;
+    }
+
+    /**
+     * Returns the arrival time at the destination.
+     * @return seconds after midnight
+     */
+    public int getArrivalTime() {
+        return arrivalTime;
+    }
+
+    /**
+     * Returns the total travel time including the waiting for the first train.
+     * @return seconds
+     */
+    public int getDuration() {
+        return arrivalTime - departureTime;
+    }
+
+    /**
+     * Returns the trips in the order of travel.
+     * @return unmodifiable list of legs
+     */
+    public List<Leg> getLegs() {
+        return legs;
+    }
+
+    /**
+     * Returns the number of transfers.
+     * @return number of transfers
+     */
+    public int getTransfers() {
+        return Math.max(legs.size() - 1, 0);
+    }
+
+    /**
+     * Returns all stations of the journey.
+     * @return route
+     */
+    public Route toRoute() {
+        List<LineSegment> segments = new ArrayList<>();
+        for (Leg leg : legs) {
+            segments.addAll(leg.segments);
+        }
+        return new Route(segments.toArray(new LineSegment[0]));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (Leg leg : legs) {
+            result.append(leg).append('\n');
+        }
+        return result.append("Arrival ").append(Timetable.formatTime(arrivalTime)).toString();
+    }
+
+    /**
+     * A ride on one train.
+     */
+    public static final class Leg {
+        /** The line. */
+        private final Line line;
+        /** Stations of the ride, two segments if a loop train passes from the last station to the first one. */
+        private final List<LineSegment> segments;
+        /** Departure time from the first station. */
+        private final int departureTime;
+        /** Arrival time at the last station. */
+        private final int arrivalTime;
+
+        Leg(Line line, List<LineSegment> segments, int departureTime, int arrivalTime) {
+            this.line = line;
+            this.segments = segments;
+            this.departureTime = departureTime;
+            this.arrivalTime = arrivalTime;
+        }
+
+        /**
+         * Returns the line.
+         * @return line
+         */
+        public Line getLine() {
+            return line;
+        }
+
+        /**
+         * Returns the stations of the ride.
+         * @return stations
+         */
+        public List<Station> getStations() {
+            return segments.size() == 1 ? segments.get(0) : new Route(segments.toArray(new LineSegment[0]));
+        }
+
+        /**
+         * Returns the station of boarding.
+         * @return station
+         */
+        public Station getFrom() {
+            return segments.get(0).get(0);
+        }
+
+        /**
+         * Returns the station of alighting.
+         * @return station
+         */
+        public Station getTo() {
+            LineSegment last = segments.get(segments.size() - 1);
+            return last.get(last.size() - 1);
+        }
+
+        /**
+         * Returns the departure time from the station of boarding.
+         * @return seconds after midnight
+         */
+        public int getDepartureTime() {
+            return departureTime;
+        }
+
+        /**
+         * Returns the arrival time at the station of alighting.
+         * @return seconds after midnight
+         */
+        public int getArrivalTime() {
+            return arrivalTime;
+        }
+
+        @Override
+        public String toString() {
+            return Timetable.formatTime(departureTime) + " " + getFrom().getName() + " - "
+                    + Timetable.formatTime(arrivalTime) + " " + getTo().getName() + " (" + line.getName() + ")";
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.kpi.fict.ot.timetable;
+
+import java.util.Arrays;
+
+/**
+ * Departures of the trains of a line from its terminal stations.
+ * Forward trains depart from the first station of the line, backward trains from the last one; trains of a loop
+ * line depart from the first station in both directions and make one full circle. Times are seconds after midnight
+ * of the service day and may exceed 24 hours for trains after midnight. A schedule is given either by exact
+ * departures or by a headway in a service window, schedules of several windows are combined with
+ * {@link #and(LineSchedule)}.
+ * @version 1.0-SNAPSHOT
+ */
+public final class LineSchedule {
+    /** Sorted departures from the first station. */
+    private final int[] forwardDepartures;
+    /** Sorted departures from the last station. */
+    private final int[] backwardDepartures;
+
+    /**
+     * Creates a schedule with exact departures.
+     * @param forwardDepartures departures from the first station
+     * @param backwardDepartures departures from the last station
+     */
+    public LineSchedule(int[] forwardDepartures, int[] backwardDepartures) {
+        this.forwardDepartures = normalize(forwardDepartures);
+        this.backwardDepartures = normalize(backwardDepartures);
+    }
+
+    /**
+     * Creates a schedule with trains departing from both terminals every headway.
+     * @param firstDeparture the first departure
+     * @param lastDeparture the latest possible departure
+     * @param headway interval between trains
+     * @return schedule
+     */
+    public static LineSchedule ofHeadway(int firstDeparture, int lastDeparture, int headway) {
+        if (headway <= 0 || lastDeparture < firstDeparture) {
+            throw new IllegalArgumentException("Invalid service window " + firstDeparture + ".." + lastDeparture
+                    + " with headway " + headway);
+        }
+        int[] departures = new int[(lastDeparture - firstDeparture) / headway + 1];
+        for (int i = 0; i < departures.length; i++) {
+            departures[i] = firstDeparture + i * headway;
+        }
+        return new LineSchedule(departures, departures);
+    }
+
+    /**
+     * Combines the departures of two schedules, e.g. of the peak and off-peak windows.
+     * @param other another schedule
+     * @return combined schedule
+     */
+    public LineSchedule and(LineSchedule other) {
+        return new LineSchedule(concat(forwardDepartures, other.forwardDepartures),
+                concat(backwardDepartures, other.backwardDepartures));
+    }
+
+    /**
+     * Returns the departures from the first station.
+     * @return sorted departures
+     */
+    public int[] getForwardDepartures() {
+        return forwardDepartures.clone();
+    }
+
+    /**
+     * Returns the departures from the last station.
+     * @return sorted departures
+     */
+    public int[] getBackwardDepartures() {
+        return backwardDepartures.clone();
+    }
+
+    /**
+     * Returns the number of trips in both directions.
+     * @return number of trips
+     */
+    public int getTripCount() {
+        return forwardDepartures.length + backwardDepartures.length;
+    }
+
+    int[] forward() {
+        return forwardDepartures;
+    }
+
+    int[] backward() {
+        return backwardDepartures;
+    }
+
+    private static int[] concat(int[] first, int[] second) {
+        int[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    /**
+     * Sorts the departures and removes duplicates.
+     */
+    private static int[] normalize(int[] departures) {
+        int[] sorted = departures.clone();
+        Arrays.sort(sorted);
+        int size = 0;
+        for (int departure : sorted) {
+            if (departure < 0) {
+                throw new IllegalArgumentException("Departure time must not be negative but was " + departure);
+            }
+            if (size == 0 || sorted[size - 1] != departure) {
+                sorted[size++] = departure;
+            }
+        }
+        return Arrays.copyOf(sorted, size);
+    }
+}
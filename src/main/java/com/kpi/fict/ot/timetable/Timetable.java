@@ -0,0 +1,413 @@
+package com.kpi.fict.ot.timetable;
+
+import com.kpi.fict.ot.StationIndex;
+import com.kpi.fict.ot.core.Line;
+import com.kpi.fict.ot.core.LineSegment;
+import com.kpi.fict.ot.core.Station;
+import com.kpi.fict.ot.graph.StationGraph;
+import com.kpi.fict.ot.graph.WorkspacePool;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Timetable of a network with earliest arrival queries answered by the Connection Scan Algorithm.
+ * Every trip of every line is split into elementary connections (a train running between neighbouring stations),
+ * the connections are stored in flat arrays sorted by departure time. A query scans the connections once from the
+ * departure time and stops as soon as no connection can improve the arrival at the destination, so it touches
+ * a contiguous range of memory and needs no priority queue. Transfers between connected stations are footpaths
+ * with the transfer times of the {@link StationIndex}. Running times of the lines are given in minutes,
+ * times of the timetable are seconds after midnight.
+ * Queries borrow their state from a shared pool, the timetable itself is immutable.
+ * @version 1.0-SNAPSHOT
+ */
+public class Timetable {
+    /** Seconds in a minute of the running and transfer times. */
+    private static final double SECONDS_PER_MINUTE = 60;
+    /** Arrival time of the stations that are not reached. */
+    private static final int UNREACHED = Integer.MAX_VALUE;
+
+    /** The graph that gives identifiers of the stations and the transfers. */
+    private final StationGraph graph;
+    /** Departure station of every connection. */
+    private final int[] departureStops;
+    /** Arrival station of every connection. */
+    private final int[] arrivalStops;
+    /** Departure time of every connection, sorted. */
+    private final int[] departureTimes;
+    /** Arrival time of every connection. */
+    private final int[] arrivalTimes;
+    /** Trip of every connection. */
+    private final int[] trips;
+    /** Line identifier of every trip. */
+    private final int[] tripLines;
+    /** Direction of every trip, true for trips from the first station of the line. */
+    private final boolean[] tripForward;
+    /** Transfer times between connected stations in seconds, in the order of the transfer edges of the graph. */
+    private final int[] transferTimes;
+    /** Query states shared by the queries. */
+    private final WorkspacePool<Workspace> workspaces;
+
+    private Timetable(StationGraph graph, int[] departureStops, int[] arrivalStops, int[] departureTimes,
+                      int[] arrivalTimes, int[] trips, int[] tripLines, boolean[] tripForward) {
+        this.graph = graph;
+        this.departureStops = departureStops;
+        this.arrivalStops = arrivalStops;
+        this.departureTimes = departureTimes;
+        this.arrivalTimes = arrivalTimes;
+        this.trips = trips;
+        this.tripLines = tripLines;
+        this.tripForward = tripForward;
+        this.transferTimes = new int[graph.size() == 0 ? 0 : graph.transferEnd(graph.size() - 1)];
+        for (int e = 0; e < transferTimes.length; e++) {
+            transferTimes[e] = toSeconds(graph.transferWeight(e));
+        }
+        this.workspaces = new WorkspacePool<>(() -> new Workspace(graph.size(), tripLines.length));
+    }
+
+    /**
+     * Builds the timetable of the station index.
+     * @param stationIndex station index
+     * @param schedules schedules by line number
+     * @param defaultSchedule schedule of the lines that have no schedule, e.g. a headway-based one, or null
+     *                        if such lines are not served
+     * @return timetable
+     */
+    public static Timetable build(StationIndex stationIndex, Map<Integer, LineSchedule> schedules,
+                                  LineSchedule defaultSchedule) {
+        return build(StationGraph.compile(stationIndex), schedules, defaultSchedule);
+    }
+
+    /**
+     * Builds the timetable of a compiled graph.
+     * @param graph graph compiled from the station index
+     * @param schedules schedules by line number
+     * @param defaultSchedule schedule of the lines that have no schedule or null if such lines are not served
+     * @return timetable
+     */
+    public static Timetable build(StationGraph graph, Map<Integer, LineSchedule> schedules,
+                                  LineSchedule defaultSchedule) {
+        LineSchedule[] lineSchedules = new LineSchedule[graph.lineCount()];
+        int[][] runningTimes = new int[graph.lineCount()][];
+        int tripCount = 0;
+        long connectionCount = 0;
+        for (int l = 0; l < graph.lineCount(); l++) {
+            Line line = graph.getLine(l);
+            int[] order = graph.getLineStations(l);
+            lineSchedules[l] = schedules.getOrDefault(line.getNumber(), defaultSchedule);
+            if (lineSchedules[l] == null || order.length < 2) {
+                lineSchedules[l] = null;
+                continue;
+            }
+            runningTimes[l] = runningTimes(graph, line, order);
+            tripCount += lineSchedules[l].getTripCount();
+            connectionCount += (long) lineSchedules[l].getTripCount() * runningTimes[l].length;
+        }
+        if (connectionCount > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Timetable has too many connections: " + connectionCount);
+        }
+
+        int size = (int) connectionCount;
+        int[] departureStops = new int[size];
+        int[] arrivalStops = new int[size];
+        int[] departureTimes = new int[size];
+        int[] arrivalTimes = new int[size];
+        int[] trips = new int[size];
+        int[] tripLines = new int[tripCount];
+        boolean[] tripForward = new boolean[tripCount];
+        int c = 0;
+        int trip = 0;
+        for (int l = 0; l < graph.lineCount(); l++) {
+            if (lineSchedules[l] == null) {
+                continue;
+            }
+            int[] order = graph.getLineStations(l);
+            int[] times = runningTimes[l];
+            int hops = times.length;
+            for (int direction = 0; direction < 2; direction++) {
+                boolean forward = direction == 0;
+                for (int departure : forward ? lineSchedules[l].forward() : lineSchedules[l].backward()) {
+                    int time = departure;
+                    for (int h = 0; h < hops; h++) {
+                        // a forward trip runs order[h] -> order[h + 1], a backward one order[h + 1] -> order[h]
+                        int hop = forward ? h : hops - 1 - h;
+                        departureStops[c] = order[forward ? hop : (hop + 1) % order.length];
+                        arrivalStops[c] = order[forward ? (hop + 1) % order.length : hop];
+                        departureTimes[c] = time;
+                        time += times[hop];
+                        arrivalTimes[c] = time;
+                        trips[c++] = trip;
+                    }
+                    tripLines[trip] = l;
+                    tripForward[trip++] = forward;
+                }
+            }
+        }
+
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = (long) departureTimes[i] << 32 | i;
+        }
+        Arrays.sort(keys);
+        int[] permutation = new int[size];
+        for (int i = 0; i < size; i++) {
+            permutation[i] = (int) keys[i];
+        }
+        return new Timetable(graph, permute(departureStops, permutation), permute(arrivalStops, permutation),
+                permute(departureTimes, permutation), permute(arrivalTimes, permutation),
+                permute(trips, permutation), tripLines, tripForward);
+    }
+
+    /**
+     * Returns the running times in seconds between neighbouring stations of the line in line order,
+     * with the running time from the last station to the first one for a loop line.
+     */
+    private static int[] runningTimes(StationGraph graph, Line line, int[] order) {
+        boolean loop = line.isLoop() && order.length > 2;
+        int[] times = new int[loop ? order.length : order.length - 1];
+        for (int i = 0; i < times.length; i++) {
+            int from = graph.getStation(order[i]).getPosition();
+            int to = graph.getStation(order[(i + 1) % order.length]).getPosition();
+            times[i] = toSeconds(line.getNeighbourRunningTime(from, to));
+        }
+        return times;
+    }
+
+    private static int toSeconds(double minutes) {
+        return Math.max(1, (int) Math.round(minutes * SECONDS_PER_MINUTE));
+    }
+
+    private static int[] permute(int[] values, int[] permutation) {
+        int[] result = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = values[permutation[i]];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the graph of the timetable.
+     * @return graph
+     */
+    public StationGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Returns the number of elementary connections.
+     * @return number of connections
+     */
+    public int getConnectionCount() {
+        return departureTimes.length;
+    }
+
+    /**
+     * Finds the journey with the earliest arrival.
+     * @param from the station of departure
+     * @param to destination station
+     * @param departureTime the earliest departure, seconds after midnight
+     * @return journey or null if the destination cannot be reached by the last trains
+     */
+    public Journey findEarliestArrival(Station from, Station to, int departureTime) {
+        int source = graph.getId(from);
+        int target = graph.getId(to);
+        if (source < 0 || target < 0) {
+            return null;
+        }
+        return findEarliestArrival(source, target, departureTime);
+    }
+
+    /**
+     * Finds the journey with the earliest arrival.
+     * @param source identifier of the station of departure
+     * @param target identifier of the destination station
+     * @param departureTime the earliest departure, seconds after midnight
+     * @return journey or null if the destination cannot be reached by the last trains
+     */
+    public Journey findEarliestArrival(int source, int target, int departureTime) {
+        Workspace workspace = workspaces.borrow();
+        try {
+            return findEarliestArrival(workspace, source, target, departureTime);
+        } finally {
+            workspaces.release(workspace);
+        }
+    }
+
+    private Journey findEarliestArrival(Workspace workspace, int source, int target, int departureTime) {
+        workspace.reset();
+        workspace.improve(source, departureTime, -1, -1);
+        walk(workspace, source, departureTime);
+
+        int connections = departureTimes.length;
+        for (int c = firstConnection(departureTime); c < connections; c++) {
+            if (departureTimes[c] >= workspace.arrivalOf(target)) {
+                break;
+            }
+            int trip = trips[c];
+            if (!workspace.isBoarded(trip)) {
+                if (workspace.arrivalOf(departureStops[c]) > departureTimes[c]) {
+                    continue;
+                }
+                workspace.board(trip, c);
+            }
+            int stop = arrivalStops[c];
+            if (arrivalTimes[c] < workspace.arrivalOf(stop)) {
+                workspace.improve(stop, arrivalTimes[c], c, -1);
+                walk(workspace, stop, arrivalTimes[c]);
+            }
+        }
+        if (workspace.arrivalOf(target) == UNREACHED) {
+            return null;
+        }
+        return toJourney(workspace, source, target, departureTime);
+    }
+
+    /**
+     * Relaxes the transfers from the station.
+     */
+    private void walk(Workspace workspace, int stop, int time) {
+        for (int e = graph.transferBegin(stop), end = graph.transferEnd(stop); e < end; e++) {
+            int other = graph.transferTarget(e);
+            int arrival = time + transferTimes[e];
+            if (arrival < workspace.arrivalOf(other)) {
+                workspace.improve(other, arrival, -1, stop);
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the first connection that departs not earlier than the time.
+     */
+    private int firstConnection(int time) {
+        int low = 0;
+        int high = departureTimes.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (departureTimes[middle] < time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Restores the legs from the connections that reached the stations.
+     */
+    private Journey toJourney(Workspace workspace, int source, int target, int departureTime) {
+        List<Journey.Leg> legs = new ArrayList<>();
+        for (int stop = target; stop != source; ) {
+            int c = workspace.arrivalConnection[stop];
+            if (c < 0) {
+                stop = workspace.transferFrom[stop];
+                continue;
+            }
+            int trip = trips[c];
+            int boarding = workspace.boardingConnection[trip];
+            legs.add(toLeg(trip, departureStops[boarding], arrivalStops[c], departureTimes[boarding], arrivalTimes[c]));
+            stop = departureStops[boarding];
+        }
+        Collections.reverse(legs);
+        return new Journey(departureTime, workspace.arrivalOf(target), legs);
+    }
+
+    private Journey.Leg toLeg(int trip, int from, int to, int departureTime, int arrivalTime) {
+        Line line = graph.getLine(tripLines[trip]);
+        int first = graph.getStation(from).getPosition();
+        int last = graph.getStation(to).getPosition();
+        int end = line.getStations().size() - 1;
+        List<LineSegment> segments;
+        if (tripForward[trip] && last < first) {
+            segments = List.of(line.getSegment(first, end), line.getSegment(0, last));
+        } else if (!tripForward[trip] && last > first) {
+            segments = List.of(line.getSegment(first, 0), line.getSegment(end, last));
+        } else {
+            segments = List.of(line.getSegment(first, last));
+        }
+        return new Journey.Leg(line, segments, departureTime, arrivalTime);
+    }
+
+    /**
+     * Converts a time of the form {@code HH:mm} or {@code HH:mm:ss} into seconds after midnight.
+     * Hours may exceed 23 for trains after midnight.
+     * @param time time
+     * @return seconds after midnight
+     */
+    public static int parseTime(String time) {
+        String[] parts = time.trim().split(":");
+        if (parts.length < 2 || parts.length > 3) {
+            throw new IllegalArgumentException("Time must be HH:mm or HH:mm:ss but was '" + time + "'");
+        }
+        try {
+            int seconds = Integer.parseInt(parts[0]) * 3600 + Integer.parseInt(parts[1]) * 60;
+            return parts.length == 3 ? seconds + Integer.parseInt(parts[2]) : seconds;
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Time must be HH:mm or HH:mm:ss but was '" + time + "'");
+        }
+    }
+
+    /**
+     * Formats seconds after midnight as {@code HH:mm}, seconds are shown if they are not zero.
+     * @param seconds seconds after midnight
+     * @return time
+     */
+    public static String formatTime(int seconds) {
+        String time = String.format("%02d:%02d", seconds / 3600, seconds / 60 % 60);
+        return seconds % 60 == 0 ? time : time + String.format(":%02d", seconds % 60);
+    }
+
+    /**
+     * Arrival times of the stations and boarded trips of a query. Entries are valid only
+     * if their stamp equals the stamp of the query, so a query does not clear the arrays.
+     */
+    private static final class Workspace {
+        private final int[] arrival;
+        private final int[] arrivalConnection;
+        private final int[] transferFrom;
+        private final int[] stopStamps;
+        private final int[] boardingConnection;
+        private final int[] tripStamps;
+        private int stamp;
+
+        private Workspace(int stops, int trips) {
+            arrival = new int[stops];
+            arrivalConnection = new int[stops];
+            transferFrom = new int[stops];
+            stopStamps = new int[stops];
+            boardingConnection = new int[trips];
+            tripStamps = new int[trips];
+        }
+
+        private void reset() {
+            if (++stamp == 0) {
+                Arrays.fill(stopStamps, 0);
+                Arrays.fill(tripStamps, 0);
+                stamp = 1;
+            }
+        }
+
+        private int arrivalOf(int stop) {
+            return stopStamps[stop] == stamp ? arrival[stop] : UNREACHED;
+        }
+
+        private void improve(int stop, int time, int connection, int from) {
+            stopStamps[stop] = stamp;
+            arrival[stop] = time;
+            arrivalConnection[stop] = connection;
+            transferFrom[stop] = from;
+        }
+
+        private boolean isBoarded(int trip) {
+            return tripStamps[trip] == stamp;
+        }
+
+        private void board(int trip, int connection) {
+            tripStamps[trip] = stamp;
+            boardingConnection[trip] = connection;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+import com.kpi.fict.ot.RouteCalculator;
+import com.kpi.fict.ot.StationIndex;
+import com.kpi.fict.ot.batch.BatchRouter;
+import com.kpi.fict.ot.core.Station;
+import com.kpi.fict.ot.io.NetworkLoader;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BatchRouterTest {
+
+    RouteCalculator calculator;
+
+    @BeforeEach
+    void beforeEach() throws Exception {
+        calculator = new RouteCalculator(NetworkLoader.load(Paths.get("src/main/resources/kyiv.json")).freeze());
+    }
+
+    @Test
+    @DisplayName("CSV results in the order of the input")
+    void csv() throws Exception {
+        String input = "from,to\nХрещатик,Лук'янівська\n\n# comment\nХрещатик\tХрещатик\nНемає,Теремки\nХрещатик\n";
+        StringWriter output = new StringWriter();
+        try (BatchRouter router = new BatchRouter(calculator, BatchRouter.Format.CSV, 2, 2)) {
+            assertEquals(4, router.run(new StringReader(input), output));
+        }
+        String[] lines = output.toString().split("\\R");
+        assertEquals(5, lines.length);
+        assertEquals("from,to,duration,transfers,route,error", lines[0]);
+        assertTrue(lines[1].startsWith("Хрещатик,Лук'янівська,"));
+        assertTrue(lines[1].contains(",1,Хрещатик;Театральна;Золоті Ворота;Лук'янівська,"), lines[1]);
+        assertEquals("Хрещатик,Хрещатик,0.0,0,Хрещатик,", lines[2]);
+        assertEquals("Немає,Теремки,,,,Station 'Немає' not found", lines[3]);
+        assertTrue(lines[4].endsWith("a comma: Хрещатик"));
+    }
+
+    @Test
+    @DisplayName("A failed pair gives an error row, the batch goes on")
+    void failedPair() throws Exception {
+        RouteCalculator failing = new RouteCalculator(calculator.getStationIndex()) {
+            @Override
+            public List<Station> getShortestRoute(Station from, Station to) {
+                if (from.getName().equals("Теремки")) {
+                    throw new IllegalStateException("Broken");
+                }
+                return super.getShortestRoute(from, to);
+            }
+        };
+        String input = "Теремки,Хрещатик\nХрещатик,Лук'янівська\n";
+        StringWriter output = new StringWriter();
+        try (BatchRouter router = new BatchRouter(failing, BatchRouter.Format.CSV, 2, 2)) {
+            assertEquals(2, router.run(new StringReader(input), output));
+        }
+        String[] lines = output.toString().split("\\R");
+        assertEquals(3, lines.length);
+        assertEquals("Теремки,Хрещатик,,,,Route computation failed: java.lang.IllegalStateException: Broken", lines[1]);
+        assertTrue(lines[2].startsWith("Хрещатик,Лук'янівська,"));
+    }
+
+    @Test
+    @DisplayName("JSON lines of a large input through a small window")
+    void jsonLines() throws Exception {
+        StationIndex stationIndex = calculator.getStationIndex();
+        List<Station> stations = new ArrayList<>(stationIndex.getStations());
+        StringBuilder input = new StringBuilder();
+        int count = 5000;
+        for (int i = 0; i < count; i++) {
+            input.append(stations.get(i % stations.size()).getName()).append('\t')
+                    .append(stations.get(i * 7 % stations.size()).getName()).append('\n');
+        }
+        StringWriter output = new StringWriter();
+        try (BatchRouter router = new BatchRouter(calculator, BatchRouter.Format.JSONL, 4, 8)) {
+            assertEquals(count, router.run(new StringReader(input.toString()), output));
+        }
+
+        String[] lines = output.toString().split("\\R");
+        assertEquals(count, lines.length);
+        JSONParser parser = new JSONParser();
+        for (int i = 0; i < count; i += 97) {
+            JSONObject json = (JSONObject) parser.parse(lines[i]);
+            Station from = stations.get(i % stations.size());
+            Station to = stations.get(i * 7 % stations.size());
+            assertEquals(from.getName(), json.get("from"));
+            assertEquals(to.getName(), json.get("to"));
+            assertFalse(json.containsKey("error"));
+            assertEquals(true, json.get("reachable"));
+            List<Station> route = calculator.getShortestRoute(from, to);
+            assertEquals(calculator.getDuration(route), (Double) json.get("duration"), 1e-9);
+            assertEquals(route.size(), ((JSONArray) json.get("route")).size());
+        }
+    }
+}
@@ -0,0 +1,203 @@
+import com.kpi.fict.ot.RouteCalculator;
+import com.kpi.fict.ot.StationIndex;
+import com.kpi.fict.ot.cache.RouteCache;
+import com.kpi.fict.ot.core.Closure;
+import com.kpi.fict.ot.core.Station;
+import com.kpi.fict.ot.graph.LineGraph;
+import com.kpi.fict.ot.graph.StationGraph;
+import com.kpi.fict.ot.io.NetworkGenerator;
+import com.kpi.fict.ot.io.NetworkLoader;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ClosureTest {
+
+    StationIndex stationIndex;
+    Station khreshchatyk;
+    Station teatralna;
+    Station zolotiVorota;
+    Station lukianivska;
+
+    @BeforeEach
+    void beforeEach() throws Exception {
+        stationIndex = NetworkLoader.load(Paths.get("src/main/resources/kyiv.json")).freeze();
+        khreshchatyk = stationIndex.getStation("Хрещатик");
+        teatralna = stationIndex.getStation("Театральна");
+        zolotiVorota = stationIndex.getStation("Золоті Ворота");
+        lukianivska = stationIndex.getStation("Лук'янівська");
+    }
+
+    boolean passes(List<Station> route, Station from, Station to) {
+        for (int i = 1; i < route.size(); i++) {
+            if (route.get(i - 1).equals(from) && route.get(i).equals(to)
+                    || route.get(i - 1).equals(to) && route.get(i).equals(from)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    @DisplayName("Closed station, segment and transfer in every mode")
+    void closures() {
+        for (RouteCalculator.Mode mode : RouteCalculator.Mode.values()) {
+            RouteCalculator calculator = new RouteCalculator(stationIndex, mode);
+            List<Station> open = calculator.getShortestRoute(khreshchatyk, lukianivska);
+            assertTrue(passes(open, khreshchatyk, teatralna), mode.name());
+
+            Closure segment = Closure.segment(khreshchatyk, teatralna);
+            calculator.close(segment);
+            List<Station> route = calculator.getShortestRoute(khreshchatyk, lukianivska);
+            assertFalse(route.isEmpty(), mode.name());
+            assertFalse(passes(route, khreshchatyk, teatralna), mode.name());
+            assertTrue(calculator.getDuration(route) > calculator.getDuration(open), mode.name());
+
+            calculator.reopen(segment);
+            Closure transfer = Closure.transfer(teatralna, zolotiVorota);
+            calculator.close(transfer);
+            assertFalse(passes(calculator.getShortestRoute(khreshchatyk, lukianivska), teatralna, zolotiVorota));
+
+            calculator.close(Closure.station(teatralna));
+            route = calculator.getShortestRoute(khreshchatyk, lukianivska);
+            assertFalse(route.isEmpty(), mode.name());
+            assertFalse(route.contains(teatralna), mode.name());
+            assertTrue(calculator.getShortestRoute(khreshchatyk, teatralna).isEmpty());
+            assertEquals(2, calculator.getActiveClosures().size());
+
+            calculator.reopen(transfer);
+            assertEquals(1, calculator.getClosures().size());
+        }
+    }
+
+    @Test
+    @DisplayName("Fewest transfers across a line split by a closed segment")
+    void splitLine() {
+        RouteCalculator calculator = new RouteCalculator(stationIndex, RouteCalculator.Mode.MIN_TRANSFERS);
+        Station universytet = stationIndex.getStation("Університет");
+        int lines = calculator.getLineGraph().size();
+
+        calculator.close(Closure.segment(khreshchatyk, teatralna));
+        LineGraph lineGraph = calculator.getLineGraph();
+        StationGraph graph = lineGraph.getGraph();
+        int from = lineGraph.getPart(graph.getId(khreshchatyk));
+        int to = lineGraph.getPart(graph.getId(universytet));
+        assertEquals(lines + 1, lineGraph.size());
+        assertEquals(lineGraph.getLineOf(from), lineGraph.getLineOf(to));
+        assertTrue(lineGraph.getTransfers(from, to) > 0);
+
+        List<Station> route = calculator.getShortestRoute(khreshchatyk, universytet);
+        assertFalse(route.isEmpty());
+        assertFalse(passes(route, khreshchatyk, teatralna));
+        int transfers = 0;
+        for (int i = 1; i < route.size(); i++) {
+            if (lineGraph.getPart(graph.getId(route.get(i - 1))) != lineGraph.getPart(graph.getId(route.get(i)))) {
+                transfers++;
+            }
+        }
+        assertEquals(lineGraph.getTransfers(from, to), transfers);
+    }
+
+    @Test
+    @DisplayName("Invalid closures")
+    void invalidClosures() {
+        RouteCalculator calculator = new RouteCalculator(stationIndex);
+
+        assertThrows(IllegalArgumentException.class, () -> Closure.segment(khreshchatyk, zolotiVorota));
+        assertThrows(IllegalArgumentException.class,
+                () -> calculator.close(Closure.segment(khreshchatyk, stationIndex.getStation("Університет"))));
+        assertThrows(IllegalArgumentException.class, () -> calculator.close(Closure.transfer(khreshchatyk, zolotiVorota)));
+        assertThrows(IllegalArgumentException.class,
+                () -> Closure.station(khreshchatyk).during(Instant.EPOCH, Instant.EPOCH));
+        assertFalse(calculator.reopen(Closure.station(khreshchatyk)));
+    }
+
+    @Test
+    @DisplayName("Closure window")
+    void window() {
+        Instant now = Instant.parse("2026-06-01T10:00:00Z");
+        RouteCalculator calculator = new RouteCalculator(stationIndex);
+        calculator.setClock(Clock.fixed(now, ZoneOffset.UTC));
+        calculator.close(Closure.segment(khreshchatyk, teatralna)
+                .during(now.plus(Duration.ofHours(1)), now.plus(Duration.ofHours(2))));
+
+        assertTrue(calculator.getActiveClosures().isEmpty());
+        assertTrue(passes(calculator.getShortestRoute(khreshchatyk, lukianivska), khreshchatyk, teatralna));
+
+        calculator.setClock(Clock.offset(Clock.fixed(now, ZoneOffset.UTC), Duration.ofMinutes(90)));
+        assertEquals(1, calculator.getActiveClosures().size());
+        assertFalse(passes(calculator.getShortestRoute(khreshchatyk, lukianivska), khreshchatyk, teatralna));
+
+        calculator.setClock(Clock.fixed(now.plus(Duration.ofHours(2)), ZoneOffset.UTC));
+        assertTrue(calculator.getActiveClosures().isEmpty());
+        assertTrue(passes(calculator.getShortestRoute(khreshchatyk, lukianivska), khreshchatyk, teatralna));
+    }
+
+    @Test
+    @DisplayName("Only the cached routes through a new closure are removed")
+    void cache() {
+        RouteCalculator calculator = new RouteCalculator(stationIndex);
+        RouteCache cache = calculator.enableRouteCache(1000);
+        List<Station> stations = new ArrayList<>(stationIndex.getStations());
+        for (Station from : stations) {
+            calculator.getShortestRoute(from, lukianivska);
+        }
+        int cached = cache.size();
+
+        calculator.close(Closure.segment(khreshchatyk, teatralna));
+        assertTrue(cache.size() > 0 && cache.size() < cached);
+        long hits = cache.getHitCount();
+        calculator.getShortestRoute(stationIndex.getStation("Академмістечко"), lukianivska);
+        assertEquals(hits + 1, cache.getHitCount());
+        assertFalse(passes(calculator.getShortestRoute(khreshchatyk, lukianivska), khreshchatyk, teatralna));
+
+        calculator.reopen(calculator.getClosures().get(0));
+        assertEquals(0, cache.size());
+        assertTrue(passes(calculator.getShortestRoute(khreshchatyk, lukianivska), khreshchatyk, teatralna));
+    }
+
+    @Test
+    @DisplayName("Hierarchy and route table repaired in a generated network")
+    void generatedNetwork() throws Exception {
+        StationIndex generated = TestNetworks.generate(new NetworkGenerator().seed(5).lines(20)
+                .stationsPerLine(10, 20).hubs(3, 4)).freeze();
+        List<Station> stations = new ArrayList<>(generated.getStations());
+        Collections.shuffle(stations, new Random(11));
+        RouteCalculator expected = new RouteCalculator(generated);
+        RouteCalculator hierarchy = new RouteCalculator(generated, RouteCalculator.Mode.HIERARCHY);
+        RouteCalculator table = new RouteCalculator(generated, RouteCalculator.Mode.TABLE);
+        for (int i = 0; i < 10; i++) {
+            Closure closure = Closure.station(stations.get(i));
+            expected.close(closure);
+            hierarchy.close(closure);
+            table.close(closure);
+        }
+
+        Random random = new Random(13);
+        for (int i = 0; i < 500; i++) {
+            Station from = stations.get(random.nextInt(stations.size()));
+            Station to = stations.get(random.nextInt(stations.size()));
+            List<Station> route = expected.getShortestRoute(from, to);
+            for (int s = 0; s < 10; s++) {
+                assertFalse(route.contains(stations.get(s)));
+            }
+            assertEquals(expected.getDuration(route), hierarchy.getDuration(hierarchy.getShortestRoute(from, to)), 1e-9);
+            assertEquals(expected.getDuration(route), table.getDuration(table.getShortestRoute(from, to)), 1e-9);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+import com.kpi.fict.ot.RouteCalculator;
+import com.kpi.fict.ot.StationIndex;
+import com.kpi.fict.ot.core.Station;
+import com.kpi.fict.ot.graph.ContractionHierarchy;
+import com.kpi.fict.ot.graph.ShortestPathSearch;
+import com.kpi.fict.ot.graph.StationGraph;
+import com.kpi.fict.ot.io.NetworkGenerator;
+import com.kpi.fict.ot.io.NetworkLoader;
+import com.kpi.fict.ot.io.NetworkSnapshot;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ContractionHierarchyTest {
+
+    @TempDir
+    Path directory;
+
+    StationIndex generate(int lines) throws Exception {
+        return TestNetworks.generate(new NetworkGenerator().seed(11).lines(lines).stationsPerLine(20, 40)
+                .loopShare(0.2).hubs(10, 4)).freeze();
+    }
+
+    @Test
+    @DisplayName("Hierarchy gives the fastest routes of Kyiv")
+    void findRoutesInKyiv() throws Exception {
+        StationIndex stationIndex = NetworkLoader.load(Paths.get("src/main/resources/kyiv.json")).freeze();
+        RouteCalculator expected = new RouteCalculator(stationIndex, RouteCalculator.Mode.GRAPH);
+        RouteCalculator actual = new RouteCalculator(stationIndex, RouteCalculator.Mode.HIERARCHY);
+
+        assertNotNull(actual.getHierarchy());
+        for (Station from : stationIndex.getStations()) {
+            for (Station to : stationIndex.getStations()) {
+                RouteAssertions.assertSameDuration(expected, actual, from, to);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Hierarchy settles a small part of a large network")
+    void findRoutesInGeneratedNetwork() throws Exception {
+        StationIndex stationIndex = generate(200);
+        RouteCalculator expected = new RouteCalculator(stationIndex, RouteCalculator.Mode.GRAPH);
+        RouteCalculator actual = new RouteCalculator(stationIndex, RouteCalculator.Mode.HIERARCHY);
+        ContractionHierarchy hierarchy = actual.getHierarchy();
+        List<Station> stations = new ArrayList<>(stationIndex.getStations());
+        Random random = new Random(5);
+
+        long settled = 0;
+        for (int i = 0; i < 300; i++) {
+            Station from = stations.get(random.nextInt(stations.size()));
+            Station to = stations.get(random.nextInt(stations.size()));
+            RouteAssertions.assertSameDuration(expected, actual, from, to);
+            settled += hierarchy.countSettled(actual.getGraph().getId(from), actual.getGraph().getId(to));
+        }
+        assertTrue(settled / 300 < stations.size() / 10, "Settled " + settled / 300 + " of " + stations.size());
+        assertTrue(hierarchy.getMemoryUsage() > 0);
+    }
+
+    @Test
+    @DisplayName("Snapshot keeps the hierarchy")
+    void writeAndOpen() throws Exception {
+        StationIndex stationIndex = generate(20);
+        StationGraph graph = RouteCalculator.compileGraph(stationIndex);
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(graph);
+        Path file = directory.resolve("generated.snapshot");
+        NetworkSnapshot.write(file, graph, hierarchy);
+
+        NetworkSnapshot snapshot = NetworkSnapshot.open(file);
+        assertNotNull(snapshot.getHierarchy());
+        assertEquals(hierarchy.getShortcutCount(), snapshot.getHierarchy().getShortcutCount());
+        ShortestPathSearch search = new ShortestPathSearch(snapshot.getGraph());
+        for (int from = 0; from < graph.size(); from += 7) {
+            for (int to = 0; to < graph.size(); to += 11) {
+                assertEquals(RouteCalculator.calculateDuration(search.findRoute(from, to)),
+                        RouteCalculator.calculateDuration(snapshot.getHierarchy().findRoute(from, to)), 1e-9);
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+import com.kpi.fict.ot.RouteCalculator;
+import com.kpi.fict.ot.StationIndex;
+import com.kpi.fict.ot.core.Line;
+import com.kpi.fict.ot.core.Station;
+import com.kpi.fict.ot.io.NetworkLoader;
+import com.kpi.fict.ot.metrics.LatencyHistogram;
+import com.kpi.fict.ot.metrics.LatencySnapshot;
+import com.kpi.fict.ot.metrics.Metrics;
+import com.kpi.fict.ot.metrics.QueryTrace;
+import com.kpi.fict.ot.metrics.QueryTracer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MetricsTest {
+
+    long count(String histogram) {
+        return Metrics.getDefault().histogram(histogram).getCount();
+    }
+
+    @Test
+    @DisplayName("Percentiles of the histogram")
+    void percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100_000; i++) {
+            histogram.record(i * 1000L);
+        }
+        LatencySnapshot snapshot = histogram.snapshot();
+
+        assertEquals(100_000, snapshot.getCount());
+        assertEquals(50_000.5, snapshot.getMean(), 1e-6);
+        assertEquals(50_000, snapshot.getMedian(), 50_000 * 0.125);
+        assertEquals(99_000, snapshot.getP99(), 99_000 * 0.125);
+        assertTrue(snapshot.getP99() <= snapshot.getP999() && snapshot.getP999() <= snapshot.getMax());
+        assertEquals(100_000, snapshot.getMax(), 1e-9);
+        assertEquals(0, new LatencyHistogram().snapshot().getP99(), 1e-9);
+    }
+
+    @Test
+    @DisplayName("Route latency by result type")
+    void routeLatency() {
+        StationIndex stationIndex = new StationIndex();
+        Station[] stations = new Station[8];
+        for (int l = 0; l < 4; l++) {
+            Line line = new Line(l + 1, "Line " + (l + 1));
+            stationIndex.addLine(line);
+            for (int s = 0; s < 2; s++) {
+                stations[l * 2 + s] = new Station("Station " + (l * 2 + s), line);
+                stationIndex.addStation(stations[l * 2 + s]);
+                line.addStation(stations[l * 2 + s]);
+            }
+        }
+        stationIndex.addConnection(List.of(stations[1], stations[2]));
+        stationIndex.addConnection(List.of(stations[3], stations[4]));
+        RouteCalculator calculator = new RouteCalculator(stationIndex.freeze());
+        long sameLine = count("route.sameLine");
+        long oneTransfer = count("route.oneTransfer");
+        long twoTransfers = count("route.twoTransfers");
+        long none = count("route.none");
+
+        calculator.getShortestRoute(stations[0], stations[1]);
+        calculator.getShortestRoute(stations[0], stations[3]);
+        calculator.getShortestRoute(stations[0], stations[5]);
+        calculator.getShortestRoute(stations[0], stations[7]);
+
+        assertEquals(sameLine + 1, count("route.sameLine"));
+        assertEquals(oneTransfer + 1, count("route.oneTransfer"));
+        assertEquals(twoTransfers + 1, count("route.twoTransfers"));
+        assertEquals(none + 1, count("route.none"));
+    }
+
+    @Test
+    @DisplayName("Lookups and loader phases")
+    void lookupsAndLoader() throws Exception {
+        StationIndex stationIndex = NetworkLoader.load(Paths.get("src/main/resources/kyiv.json")).freeze();
+        Metrics metrics = Metrics.getDefault();
+        long hits = metrics.counter("lookup.hits").sum();
+        long misses = metrics.counter("lookup.misses").sum();
+
+        assertNotNull(stationIndex.getStation("Хрещатик"));
+        assertNull(stationIndex.getStation("Хрещатiк2"));
+
+        assertEquals(hits + 1, metrics.counter("lookup.hits").sum());
+        assertEquals(misses + 1, metrics.counter("lookup.misses").sum());
+        assertTrue(count("loader.total") > 0);
+        assertTrue(count("loader.connections") > 0);
+    }
+
+    @Test
+    @DisplayName("Metrics MXBean")
+    void mbean() throws Exception {
+        RouteCalculator calculator = new RouteCalculator(
+                NetworkLoader.load(Paths.get("src/main/resources/kyiv.json")).freeze());
+        calculator.enableRouteCache(100);
+        ObjectName name = Metrics.getDefault().registerMBean();
+
+        Object counters = ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Counters");
+        Object latencies = ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Latencies");
+        assertNotNull(((TabularData) counters).get(new Object[]{"cache.misses"}));
+        assertNotNull(((TabularData) latencies).get(new Object[]{"loader.total"}));
+        assertEquals(name, Metrics.getDefault().registerMBean());
+    }
+
+    @Test
+    @DisplayName("Sampled query traces")
+    void traces() throws Exception {
+        StationIndex stationIndex = NetworkLoader.load(Paths.get("src/main/resources/kyiv.json")).freeze();
+        Station from = stationIndex.getStation("Академмістечко");
+        Station to = stationIndex.getStation("Теремки");
+        List<QueryTrace> traces = new ArrayList<>();
+
+        RouteCalculator calculator = new RouteCalculator(stationIndex);
+        calculator.setTracer(new QueryTracer(0, traces::add));
+        calculator.getShortestRoute(from, to);
+        assertTrue(traces.isEmpty());
+
+        calculator.setTracer(new QueryTracer(1, traces::add));
+        List<Station> route = calculator.getShortestRoute(from, to);
+        QueryTrace trace = traces.get(0);
+        assertEquals(route.size(), trace.getRouteSize());
+        assertTrue(trace.getSettledCount() > 0 && trace.getLabelledCount() >= trace.getSettledCount());
+        assertTrue(trace.getEdgeCount() >= trace.getSettledCount());
+        assertTrue(trace.getPhases().containsKey("search"));
+        assertTrue(trace.getTotalNanos() >= trace.getPhases().get("search"));
+        assertEquals(trace, calculator.getTracer().getSlowest().get(0));
+
+        RouteCalculator hierarchy = new RouteCalculator(stationIndex, RouteCalculator.Mode.HIERARCHY);
+        hierarchy.setTracer(new QueryTracer(1, traces::add));
+        hierarchy.getShortestRoute(from, to);
+        QueryTrace direct = new QueryTrace(from, to, "HIERARCHY");
+        hierarchy.getHierarchy().findRoute(hierarchy.getGraph().getId(from), hierarchy.getGraph().getId(to), direct);
+        assertTrue(direct.getSettledCount() > 0);
+        assertEquals(direct.getSettledCount(), traces.get(1).getSettledCount());
+
+        RouteCalculator legacy = new RouteCalculator(stationIndex, RouteCalculator.Mode.LEGACY);
+        legacy.setTracer(new QueryTracer(1, traces::add));
+        legacy.getShortestRoute(from, to);
+        assertTrue(traces.get(2).getCandidateCount() > 0);
+    }
+}
@@ -0,0 +1,72 @@
+import com.kpi.fict.ot.RouteCalculator;
+import com.kpi.fict.ot.StationIndex;
+import com.kpi.fict.ot.core.Line;
+import com.kpi.fict.ot.core.Station;
+import com.kpi.fict.ot.graph.TravelTimeMatrix;
+import com.kpi.fict.ot.io.NetworkGenerator;
+import com.kpi.fict.ot.io.NetworkLoader;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NetworkGeneratorTest {
+
+    String generate(NetworkGenerator generator) throws Exception {
+        StringWriter writer = new StringWriter();
+        generator.generate(writer);
+        return writer.toString();
+    }
+
+    StationIndex load(String json) throws Exception {
+        StationIndex stationIndex = new StationIndex();
+        new NetworkLoader(stationIndex).read(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+        return stationIndex.freeze();
+    }
+
+    @Test
+    @DisplayName("The same seed gives the same network")
+    void generateDeterministically() throws Exception {
+        NetworkGenerator generator = new NetworkGenerator().seed(7).lines(20).hubs(3, 4);
+
+        assertEquals(generate(generator), generate(generator));
+        assertNotEquals(generate(generator), generate(new NetworkGenerator().seed(8).lines(20).hubs(3, 4)));
+    }
+
+    @Test
+    @DisplayName("Generated network is connected")
+    void generateConnectedNetwork() throws Exception {
+        StationIndex stationIndex = load(generate(new NetworkGenerator().seed(3).lines(50)
+                .stationsPerLine(5, 15).transferDensity(1).loopShare(0.3).hubs(5, 3)));
+
+        assertEquals(50, stationIndex.getLines().size());
+        for (Line line : stationIndex.getLines()) {
+            assertTrue(line.getStations().size() >= 5 && line.getStations().size() <= 15);
+        }
+        List<Station> stations = new ArrayList<>(stationIndex.getStations());
+        TravelTimeMatrix matrix = new RouteCalculator(stationIndex).getTravelTimeMatrix(stations.subList(0, 1), stations);
+        for (int j = 0; j < stations.size(); j++) {
+            assertTrue(matrix.isReachable(0, j));
+        }
+    }
+
+    @Test
+    @DisplayName("Loop lines connect the last station with the first one")
+    void generateLoopLines() throws Exception {
+        StationIndex stationIndex = load(generate(new NetworkGenerator().lines(1).stationsPerLine(10, 10).loopShare(1)));
+        Line line = stationIndex.getLine(1);
+        RouteCalculator calculator = new RouteCalculator(stationIndex);
+
+        assertTrue(line.isLoop());
+        assertEquals(2, calculator.getShortestRoute(line.getStations().get(0), line.getStations().get(9)).size());
+        assertEquals(4, calculator.getShortestRoute(line.getStations().get(8), line.getStations().get(1)).size());
+    }
+}
@@ -0,0 +1,115 @@
+import com.kpi.fict.ot.StationIndex;
+import com.kpi.fict.ot.core.Line;
+import com.kpi.fict.ot.core.Station;
+import com.kpi.fict.ot.io.NetworkFormatException;
+import com.kpi.fict.ot.io.NetworkLoader;
+import com.kpi.fict.ot.io.NetworkWatcher;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NetworkLoaderTest {
+
+    @TempDir
+    Path directory;
+
+    StationIndex read(String json) throws Exception {
+        StationIndex stationIndex = new StationIndex();
+        new NetworkLoader(stationIndex).read(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+        return stationIndex;
+    }
+
+    @Test
+    @DisplayName("Loading of the Kyiv metro")
+    void loadKyiv() throws Exception {
+        StationIndex stationIndex = NetworkLoader.load(Paths.get("src/main/resources/kyiv.json"));
+
+        assertEquals(3, stationIndex.getLines().size());
+        assertEquals(stationIndex.getLines().stream().mapToInt(line -> line.getStations().size()).sum(),
+                stationIndex.getStations().size());
+        Station station = stationIndex.getStation("Хрещатик");
+        assertEquals(1, station.getLine().getNumber());
+        assertTrue(stationIndex.getConnectedStations(station).contains(stationIndex.getStation("Майдан Незалежності")));
+    }
+
+    @Test
+    @DisplayName("Sections in any order")
+    void loadInAnyOrder() throws Exception {
+        StationIndex stationIndex = read("{\"connections\": [[{\"line\": 1, \"station\": \"A\"}, "
+                + "{\"line\": 2, \"station\": \"C\"}]], \"extra\": {\"x\": [1, true, null]}, "
+                + "\"stations\": {\"1\": [\"A\", \"B\"], \"2\": [\"C\"]}, "
+                + "\"lines\": [{\"number\": 1, \"name\": \"One\"}, {\"number\": 2, \"name\": \"Two\"}]}");
+
+        assertEquals(3, stationIndex.getStations().size());
+        assertEquals(1, stationIndex.getStation("B").getPosition());
+        assertEquals(1, stationIndex.getConnectedStations(stationIndex.getStation("A")).size());
+    }
+
+    @Test
+    @DisplayName("Running and transfer times")
+    void loadDurations() throws Exception {
+        StationIndex stationIndex = read("{\"lines\": [{\"number\": 1, \"name\": \"One\", \"durations\": [1.5, 4]}, "
+                + "{\"number\": 2, \"name\": \"Two\"}], "
+                + "\"stations\": {\"1\": [\"A\", \"B\", \"C\"], \"2\": [\"D\", \"E\"]}, "
+                + "\"connections\": [{\"stations\": [{\"line\": 1, \"station\": \"C\"}, "
+                + "{\"line\": 2, \"station\": \"D\"}], \"duration\": 6}]}");
+        Station c = stationIndex.getStation("C");
+
+        assertEquals(5.5, c.getLine().getRunningTime(0, 2));
+        assertEquals(4, c.getLine().getRunningTime(2, 1));
+        assertEquals(6, stationIndex.getTransferTime(c, stationIndex.getStation("D")));
+        assertEquals(StationIndex.DEFAULT_TRANSFER_TIME,
+                stationIndex.getTransferTime(stationIndex.getStation("A"), stationIndex.getStation("D")));
+        assertEquals(Line.DEFAULT_RUNNING_TIME, stationIndex.getStation("E").getLine().getRunningTime(0, 1));
+
+        assertThrows(NetworkFormatException.class, () -> read("{\"lines\": [{\"number\": 1, \"name\": \"One\", "
+                + "\"durations\": [1, 2]}], \"stations\": {\"1\": [\"A\", \"B\"]}}"));
+    }
+
+    @Test
+    @DisplayName("Errors contain the position")
+    void reportPosition() {
+        NetworkFormatException ex = assertThrows(NetworkFormatException.class, () -> read(
+                "{\"lines\": [{\"number\": 1, \"name\": \"One\"}],\n"
+                        + "\"stations\": {\"1\": [\"A\" \"B\"]}}"));
+        assertEquals(2, ex.getLine());
+
+        ex = assertThrows(NetworkFormatException.class, () -> read(
+                "{\"lines\": [{\"number\": 1, \"name\": \"One\"}], \"stations\": {\"1\": [\"A\"]},\n"
+                        + "\"connections\": [[{\"line\": 1, \"station\": \"Z\"}]]}"));
+        assertEquals(2, ex.getLine());
+    }
+
+    @Test
+    @DisplayName("Reloading a changed network file")
+    void watchFile() throws Exception {
+        Path file = directory.resolve("network.json");
+        Files.writeString(file, "{\"lines\": [{\"number\": 1, \"name\": \"One\"}], \"stations\": {\"1\": [\"A\"]}}");
+        BlockingQueue<StationIndex> reloaded = new LinkedBlockingQueue<>();
+
+        try (NetworkWatcher ignored = new NetworkWatcher(file, reloaded::add)) {
+            Files.writeString(file, "{\"lines\": [{\"number\": 1, \"name\": \"One\"}], "
+                    + "\"stations\": {\"1\": [\"A\", \"B\"]}}");
+            StationIndex stationIndex = reloaded.poll(30, TimeUnit.SECONDS);
+
+            assertNotNull(stationIndex, "The network was not reloaded");
+            assertTrue(stationIndex.isFrozen());
+            assertEquals(2, stationIndex.getStations().size());
+            assertEquals(1, stationIndex.getStation("B").getPosition());
+        }
+    }
+}
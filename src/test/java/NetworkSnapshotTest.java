@@ -0,0 +1,136 @@
+import com.kpi.fict.ot.RouteCalculator;
+import com.kpi.fict.ot.StationIndex;
+import com.kpi.fict.ot.core.Line;
+import com.kpi.fict.ot.core.Station;
+import com.kpi.fict.ot.graph.StationGraph;
+import com.kpi.fict.ot.io.NetworkFormatException;
+import com.kpi.fict.ot.io.NetworkLoader;
+import com.kpi.fict.ot.io.NetworkSnapshot;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NetworkSnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Snapshot gives the same routes")
+    void writeAndOpen() throws Exception {
+        StationIndex stationIndex = NetworkLoader.load(Paths.get("src/main/resources/kyiv.json"));
+        StationGraph graph = RouteCalculator.compileGraph(stationIndex);
+        Path file = directory.resolve("kyiv.snapshot");
+        NetworkSnapshot.write(file, graph);
+
+        NetworkSnapshot snapshot = NetworkSnapshot.open(file);
+        RouteCalculator expected = new RouteCalculator(stationIndex, graph, RouteCalculator.Mode.GRAPH);
+        RouteCalculator actual = new RouteCalculator(snapshot.getStationIndex(), snapshot.getGraph(),
+                RouteCalculator.Mode.GRAPH);
+
+        assertEquals(stationIndex.getStations().size(), snapshot.getStationIndex().getStations().size());
+        for (Station from : stationIndex.getStations()) {
+            for (Station to : stationIndex.getStations()) {
+                assertEquals(names(expected.getShortestRoute(from, to)), names(actual.getShortestRoute(
+                        snapshot.getStationIndex().getStation(from.getName(), from.getLine().getNumber()),
+                        snapshot.getStationIndex().getStation(to.getName(), to.getLine().getNumber()))));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Snapshot keeps running and transfer times")
+    void writeAndOpenDurations() throws Exception {
+        StationIndex stationIndex = new StationIndex();
+        new NetworkLoader(stationIndex).read(new ByteArrayInputStream(("{\"lines\": ["
+                + "{\"number\": 1, \"name\": \"One\", \"loop\": true, \"durations\": [1, 2, 3]}, "
+                + "{\"number\": 2, \"name\": \"Two\"}], "
+                + "\"stations\": {\"1\": [\"A\", \"B\", \"C\"], \"2\": [\"D\"]}, "
+                + "\"connections\": [{\"stations\": [{\"line\": 1, \"station\": \"C\"}, "
+                + "{\"line\": 2, \"station\": \"D\"}], \"duration\": 5}]}").getBytes(StandardCharsets.UTF_8)));
+        Path file = directory.resolve("network.snapshot");
+        NetworkSnapshot.write(file, RouteCalculator.compileGraph(stationIndex));
+
+        StationIndex restored = NetworkSnapshot.open(file).getStationIndex();
+        Line line = restored.getLine(1);
+        assertTrue(line.isLoop());
+        assertArrayEquals(new double[]{1, 2, 3}, line.getRunningTimes());
+        assertEquals(5, restored.getTransferTime(restored.getStation("D"), restored.getStation("C")));
+    }
+
+    @Test
+    @DisplayName("Edges of a mapped graph can be blocked")
+    void blockMappedEdges() throws Exception {
+        StationIndex stationIndex = NetworkLoader.load(Paths.get("src/main/resources/kyiv.json"));
+        Path file = directory.resolve("kyiv.snapshot");
+        NetworkSnapshot.write(file, RouteCalculator.compileGraph(stationIndex));
+
+        StationGraph graph = NetworkSnapshot.open(file).getGraph();
+        StationGraph blocked = graph.withBlockedEdges(new int[0], new int[]{0, 1}, new int[0]);
+        assertTrue(graph.isPassable(0, 1));
+        assertFalse(blocked.isPassable(0, 1));
+        assertFalse(blocked.isPassable(1, 0));
+        assertTrue(blocked.isPassable(1, 2));
+    }
+
+    @Test
+    @DisplayName("Corrupted snapshot is rejected")
+    void rejectCorrupted() throws Exception {
+        StationIndex stationIndex = NetworkLoader.load(Paths.get("src/main/resources/kyiv.json"));
+        Path file = directory.resolve("kyiv.snapshot");
+        NetworkSnapshot.write(file, RouteCalculator.compileGraph(stationIndex));
+
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file, bytes);
+        assertThrows(NetworkFormatException.class, () -> NetworkSnapshot.open(file));
+    }
+
+    @Test
+    @DisplayName("Running times that do not match the stations are rejected")
+    void rejectRunningTimes() throws Exception {
+        StationIndex stationIndex = new StationIndex();
+        new NetworkLoader(stationIndex).read(new ByteArrayInputStream(("{\"lines\": ["
+                + "{\"number\": 1, \"name\": \"One\", \"loop\": true, \"durations\": [1, 2, 3]}], "
+                + "\"stations\": {\"1\": [\"A\", \"B\", \"C\"]}, \"connections\": []}")
+                .getBytes(StandardCharsets.UTF_8)));
+        Path file = directory.resolve("network.snapshot");
+        NetworkSnapshot.write(file, RouteCalculator.compileGraph(stationIndex));
+
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+        for (int position = 24; position < bytes.capacity(); ) {
+            int tag = bytes.getInt(position);
+            long length = bytes.getLong(position + 4);
+            if (tag == 4) {
+                bytes.putInt(position + 12, 0);
+            }
+            position += 12 + (int) length;
+        }
+        CRC32C checksum = new CRC32C();
+        checksum.update(bytes.slice(24, bytes.capacity() - 24));
+        bytes.putInt(16, (int) checksum.getValue());
+        Files.write(file, bytes.array());
+        assertThrows(NetworkFormatException.class, () -> NetworkSnapshot.open(file));
+    }
+
+    List<String> names(List<Station> route) {
+        return route.stream().map(station -> station.getLine().getNumber() + station.getName())
+                .collect(Collectors.toList());
+    }
+}
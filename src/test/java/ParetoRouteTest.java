@@ -0,0 +1,95 @@
+import com.kpi.fict.ot.RouteCalculator;
+import com.kpi.fict.ot.StationIndex;
+import com.kpi.fict.ot.core.Closure;
+import com.kpi.fict.ot.core.Station;
+import com.kpi.fict.ot.graph.RouteAlternative;
+import com.kpi.fict.ot.io.NetworkGenerator;
+import com.kpi.fict.ot.io.NetworkLoader;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ParetoRouteTest {
+
+    void check(RouteCalculator calculator, Station from, Station to) {
+        List<RouteAlternative> routes = calculator.getParetoRoutes(from, to);
+        double shortest = calculator.getDuration(calculator.getShortestRoute(from, to));
+        if (routes.isEmpty()) {
+            assertTrue(calculator.getShortestRoute(from, to).isEmpty());
+            return;
+        }
+        RouteAlternative last = routes.get(routes.size() - 1);
+        assertEquals(shortest, last.getDuration(), 1e-9);
+        for (int i = 0; i < routes.size(); i++) {
+            RouteAlternative route = routes.get(i);
+            List<Station> stations = route.getRoute();
+            assertEquals(from, stations.get(0));
+            assertEquals(to, stations.get(stations.size() - 1));
+            assertEquals(route.getDuration(), calculator.getDuration(stations), 1e-9);
+            if (i > 0) {
+                assertTrue(route.getTransfers() > routes.get(i - 1).getTransfers());
+                assertTrue(route.getDuration() < routes.get(i - 1).getDuration());
+            }
+        }
+        for (int k = 0, i = -1; k <= last.getTransfers(); k++) {
+            while (i + 1 < routes.size() && routes.get(i + 1).getTransfers() <= k) {
+                i++;
+            }
+            double expected = calculator.getReachableStations(from, Double.POSITIVE_INFINITY, k).getDuration(to);
+            assertEquals(expected, i >= 0 ? routes.get(i).getDuration() : Double.POSITIVE_INFINITY, 1e-9);
+        }
+    }
+
+    @Test
+    @DisplayName("Pareto routes of the Kyiv network")
+    void kyiv() throws Exception {
+        StationIndex stationIndex = NetworkLoader.load(Paths.get("src/main/resources/kyiv.json")).freeze();
+        RouteCalculator calculator = new RouteCalculator(stationIndex);
+        Station khreshchatyk = stationIndex.getStation("Хрещатик");
+        Station lukianivska = stationIndex.getStation("Лук'янівська");
+
+        List<RouteAlternative> routes = calculator.getParetoRoutes(khreshchatyk, khreshchatyk);
+        assertEquals(1, routes.size());
+        assertEquals(0, routes.get(0).getTransfers());
+        assertEquals(List.of(khreshchatyk), routes.get(0).getRoute());
+        assertEquals(1, calculator.getParetoRoutes(khreshchatyk, lukianivska).get(0).getTransfers());
+        assertTrue(calculator.getParetoRoutes(khreshchatyk, lukianivska, 0).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> calculator.getParetoRoutes(khreshchatyk, lukianivska, -1));
+
+        for (Station from : stationIndex.getStations()) {
+            for (Station to : stationIndex.getStations()) {
+                check(calculator, from, to);
+            }
+        }
+
+        calculator.close(Closure.station(stationIndex.getStation("Театральна")));
+        for (RouteAlternative route : calculator.getParetoRoutes(khreshchatyk, lukianivska)) {
+            assertFalse(route.getRoute().contains(stationIndex.getStation("Театральна")));
+        }
+        check(calculator, khreshchatyk, lukianivska);
+    }
+
+    @Test
+    @DisplayName("Pareto routes of a generated network")
+    void generatedNetwork() throws Exception {
+        StationIndex stationIndex = TestNetworks.generate(new NetworkGenerator().seed(17).lines(15)
+                .stationsPerLine(8, 16).hubs(3, 4).loopShare(0.3)).freeze();
+        RouteCalculator calculator = new RouteCalculator(stationIndex);
+        List<Station> stations = new ArrayList<>(stationIndex.getStations());
+
+        Random random = new Random(19);
+        for (int i = 0; i < 300; i++) {
+            check(calculator, stations.get(random.nextInt(stations.size())),
+                    stations.get(random.nextInt(stations.size())));
+        }
+    }
+}
@@ -0,0 +1,122 @@
+import com.kpi.fict.ot.RouteCalculator;
+import com.kpi.fict.ot.StationIndex;
+import com.kpi.fict.ot.core.Closure;
+import com.kpi.fict.ot.core.Station;
+import com.kpi.fict.ot.graph.Reachability;
+import com.kpi.fict.ot.graph.RouteAlternative;
+import com.kpi.fict.ot.io.NetworkLoader;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ReachabilityTest {
+
+    StationIndex stationIndex;
+    RouteCalculator calculator;
+    Station khreshchatyk;
+
+    @BeforeEach
+    void beforeEach() throws Exception {
+        stationIndex = NetworkLoader.load(Paths.get("src/main/resources/kyiv.json")).freeze();
+        calculator = new RouteCalculator(stationIndex);
+        khreshchatyk = stationIndex.getStation("Хрещатик");
+    }
+
+    @Test
+    @DisplayName("Stations within a travel time")
+    void withinDuration() {
+        Reachability all = calculator.getReachableStations(khreshchatyk, Double.POSITIVE_INFINITY, -1);
+        Reachability near = calculator.getReachableStations(khreshchatyk, 15, -1);
+
+        assertEquals(stationIndex.getStations().size(), all.size());
+        assertEquals(khreshchatyk, near.getStations().get(0));
+        assertNull(near.getPrevious(khreshchatyk));
+        double previous = 0;
+        int count = 0;
+        for (Station station : stationIndex.getStations()) {
+            double duration = calculator.getDuration(calculator.getShortestRoute(khreshchatyk, station));
+            assertEquals(duration, all.getDuration(station), 1e-9);
+            assertEquals(duration, calculator.getDuration(all.getRoute(station)), 1e-9);
+            assertEquals(duration <= 15, near.isReachable(station));
+            count += duration <= 15 ? 1 : 0;
+        }
+        assertEquals(count, near.size());
+        for (Station station : near.getStations()) {
+            assertTrue(near.getDuration(station) >= previous);
+            previous = near.getDuration(station);
+            List<Station> route = near.getRoute(station);
+            assertEquals(station, route.get(route.size() - 1));
+            assertEquals(route.size() > 1 ? route.get(route.size() - 2) : null, near.getPrevious(station));
+        }
+    }
+
+    @Test
+    @DisplayName("Stations within a number of transfers")
+    void withinTransfers() {
+        Station academy = stationIndex.getStation("Академмістечко");
+        for (int maxTransfers = 0; maxTransfers <= 2; maxTransfers++) {
+            Reachability reachability = calculator.getReachableStations(academy, Double.POSITIVE_INFINITY, maxTransfers);
+            for (Station station : stationIndex.getStations()) {
+                RouteAlternative fastest = null;
+                for (RouteAlternative alternative : calculator.getAlternativeRoutes(academy, station, 30)) {
+                    if (alternative.getTransfers() <= maxTransfers) {
+                        fastest = alternative;
+                        break;
+                    }
+                }
+                if (fastest == null) {
+                    continue;
+                }
+                assertEquals(fastest.getDuration(), reachability.getDuration(station), 1e-9, station.getName());
+                assertTrue(reachability.getTransfers(station) <= maxTransfers);
+                assertEquals(fastest.getDuration(), calculator.getDuration(reachability.getRoute(station)), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Reused layered workspaces")
+    void reuseLayers() {
+        Station academy = stationIndex.getStation("Академмістечко");
+        Reachability first = calculator.getReachableStations(academy, 15, 1);
+        calculator.getReachableStations(khreshchatyk, Double.POSITIVE_INFINITY, 1);
+        Reachability second = calculator.getReachableStations(academy, 15, 1);
+
+        assertEquals(first.size(), second.size());
+        for (Station station : stationIndex.getStations()) {
+            assertEquals(first.getDuration(station), second.getDuration(station), 1e-9);
+            assertEquals(first.getRoute(station), second.getRoute(station));
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> calculator.getReachableStations(academy, 10, Integer.MAX_VALUE));
+    }
+
+    @Test
+    @DisplayName("Several sources and closures")
+    void severalSources() {
+        Station teatralna = stationIndex.getStation("Театральна");
+        Station zolotiVorota = stationIndex.getStation("Золоті Ворота");
+        Reachability hub = calculator.getReachableStations(List.of(teatralna, zolotiVorota), 5, 0);
+
+        assertEquals(0, hub.getDuration(teatralna), 1e-9);
+        assertEquals(0, hub.getDuration(zolotiVorota), 1e-9);
+        assertTrue(hub.isReachable(stationIndex.getStation("Лук'янівська")));
+        assertFalse(hub.isReachable(khreshchatyk) && hub.getTransfers(khreshchatyk) != 0);
+
+        calculator.close(Closure.station(teatralna));
+        Reachability closed = calculator.getReachableStations(khreshchatyk, Double.POSITIVE_INFINITY, -1);
+        assertFalse(closed.isReachable(teatralna));
+        assertEquals(0, calculator.getReachableStations(teatralna, 10, -1).size());
+        assertThrows(IllegalArgumentException.class, () -> calculator.getReachableStations(khreshchatyk, -1, -1));
+        assertThrows(IllegalArgumentException.class, () -> calculator.getReachableStations(khreshchatyk, 10, -2));
+    }
+}
@@ -0,0 +1,23 @@
+import com.kpi.fict.ot.RouteCalculator;
+import com.kpi.fict.ot.core.Station;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public final class RouteAssertions {
+
+    private RouteAssertions() {
+    }
+
+    static void assertSameDuration(RouteCalculator expected, RouteCalculator actual, Station from, Station to) {
+        List<Station> expectedRoute = expected.getShortestRoute(from, to);
+        List<Station> actualRoute = actual.getShortestRoute(from, to);
+        assertEquals(expectedRoute.isEmpty(), actualRoute.isEmpty());
+        assertEquals(expected.getDuration(expectedRoute), actual.getDuration(actualRoute), 1e-9);
+        if (!actualRoute.isEmpty()) {
+            assertEquals(from, actualRoute.get(0));
+            assertEquals(to, actualRoute.get(actualRoute.size() - 1));
+        }
+    }
+}
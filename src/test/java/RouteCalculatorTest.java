@@ -1,16 +1,33 @@
 import com.kpi.fict.ot.RouteCalculator;
 import com.kpi.fict.ot.StationIndex;
+import com.kpi.fict.ot.cache.RouteCache;
 import com.kpi.fict.ot.core.Line;
+import com.kpi.fict.ot.core.LineSegment;
+import com.kpi.fict.ot.core.Route;
 import com.kpi.fict.ot.core.Station;
+import com.kpi.fict.ot.graph.RouteAlternative;
+import com.kpi.fict.ot.graph.TravelTimeMatrix;
+import com.kpi.fict.ot.io.NetworkGenerator;
+import com.kpi.fict.ot.io.NetworkLoader;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class RouteCalculatorTest {
 
@@ -128,6 +145,263 @@ public class RouteCalculatorTest {
         assertEquals(expectedRoute, calculator.getShortestRoute(from, to));
     }
 
+    @Test
+    @DisplayName("The shortest route with three connections")
+    void getShortestRouteWithThreeConnections() {
+        Line line5 = new Line(5, "Белая");
+        Station station14 = new Station("Позняки", line5);
+        Station station15 = new Station("Осокорки", line5);
+        line5.addStation(station14);
+        line5.addStation(station15);
+        stationIndex.addLine(line5);
+        stationIndex.addStation(station14);
+        stationIndex.addStation(station15);
+        stationIndex.addConnection(Arrays.asList(stationIndex.getStation("Левобережная"), station14));
+
+        Station from = stationIndex.getStation("Васильковская");
+        Station to = stationIndex.getStation("Осокорки");
+
+        List<Station> expectedRoute = new ArrayList<>(Arrays.asList(
+                from, stationIndex.getStation("Лыбидская"),
+                stationIndex.getStation("Университет"), stationIndex.getStation("Вокзальная"),
+                stationIndex.getStation("Дарницкая"), stationIndex.getStation("Левобережная"),
+                station14, to
+        ));
+
+        assertEquals(expectedRoute, new RouteCalculator(stationIndex).getShortestRoute(from, to));
+        assertEquals(new ArrayList<>(),
+                new RouteCalculator(stationIndex, RouteCalculator.Mode.LEGACY).getShortestRoute(from, to));
+    }
+
+    @Test
+    @DisplayName("The route with the fewest transfers")
+    void getShortestRouteWithMinimumTransfers() {
+        Line line5 = new Line(5, "Белая");
+        Station station14 = new Station("Позняки", line5);
+        line5.addStation(station14);
+        stationIndex.addLine(line5);
+        stationIndex.addStation(station14);
+        stationIndex.addConnection(Arrays.asList(stationIndex.getStation("Левобережная"), station14));
+        RouteCalculator calculator = new RouteCalculator(stationIndex, RouteCalculator.Mode.MIN_TRANSFERS);
+
+        Station from = stationIndex.getStation("Оболонь");
+        assertEquals(List.of(List.of(from.getLine(), stationIndex.getLine(1), stationIndex.getLine(4), line5)),
+                calculator.getLineGraph().getMinimumTransferSequences(from.getLine(), line5, 10));
+        assertEquals(Arrays.asList("Оболонь", "Лыбидская", "Университет", "Вокзальная", "Дарницкая",
+                        "Левобережная", "Позняки"),
+                calculator.getShortestRoute(from, station14).stream().map(Station::getName)
+                        .collect(Collectors.toList()));
+        assertEquals(Arrays.asList("Оболонь", "Нивки"), calculator.getShortestRoute(from,
+                stationIndex.getStation("Нивки")).stream().map(Station::getName).collect(Collectors.toList()));
+    }
+
+    @Test
+    @DisplayName("Legacy mode finds the same routes on the line")
+    void getShortestRouteOnTheLineInLegacyMode() {
+        RouteCalculator legacy = new RouteCalculator(stationIndex, RouteCalculator.Mode.LEGACY);
+        for (Station from : stationIndex.getStations()) {
+            for (Station to : from.getLine().getStations()) {
+                assertEquals(legacy.getShortestRoute(from, to), calculator.getShortestRoute(from, to));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Cached routes")
+    void getShortestRouteFromCache() {
+        RouteCache cache = calculator.enableRouteCache(100);
+        Station from = stationIndex.getStation("Васильковская");
+        Station to = stationIndex.getStation("Гидропарк");
+
+        List<Station> route = calculator.getShortestRoute(from, to);
+        assertEquals(route, calculator.getShortestRoute(from, to));
+        List<Station> reverse = new ArrayList<>(route);
+        Collections.reverse(reverse);
+        assertEquals(reverse, calculator.getShortestRoute(to, from));
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getReverseHitCount());
+
+        Line line5 = new Line(5, "Белая");
+        Station station14 = new Station("Позняки", line5);
+        line5.addStation(station14);
+        stationIndex.addLine(line5);
+        stationIndex.addStation(station14);
+        stationIndex.addConnection(Arrays.asList(stationIndex.getStation("Гидропарк"), station14));
+
+        assertEquals(route, calculator.getShortestRoute(from, to));
+        assertEquals(route.size() + 1, calculator.getShortestRoute(from, station14).size());
+        assertEquals(3, cache.getMissCount());
+    }
+
+    @Test
+    @DisplayName("Reverse cache hits for line segments")
+    void reverseLineSegmentFromCache() {
+        RouteCache cache = new RouteCache(10, true);
+        Line line = stationIndex.getStation("Гидропарк").getLine();
+        cache.put(cache.getGeneration(), 1, 2, new LineSegment(line, 0, 2));
+        assertEquals(new LineSegment(line, 2, 0), cache.get(cache.getGeneration(), 2, 1));
+        assertEquals(1, cache.getReverseHitCount());
+        cache.put(cache.getGeneration(), 3, 4, new ArrayList<>(List.of(line.getStations().get(0))));
+        assertNull(cache.get(cache.getGeneration(), 4, 3));
+        assertEquals(1, cache.getReverseHitCount());
+    }
+
+    @Test
+    @DisplayName("Route cache keeps its size bound")
+    void routeCacheBound() {
+        for (int maximumSize : new int[] {1, 5, 100}) {
+            RouteCache cache = new RouteCache(maximumSize, false);
+            for (int i = 0; i < 1000; i++) {
+                cache.put(cache.getGeneration(), i, i + 1, List.of());
+            }
+            assertEquals(maximumSize, cache.size());
+        }
+    }
+
+    @Test
+    @DisplayName("Swapping a frozen station index")
+    void swap() {
+        Station from = stationIndex.getStation("Оболонь");
+        Station to = stationIndex.getStation("Васильковская");
+        List<Station> route = calculator.getShortestRoute(from, to);
+
+        Line line3 = new Line(3, "Синяя");
+        StationIndex.Builder builder = StationIndex.builder().addLine(line3);
+        Arrays.asList("Оболонь", "Лыбидская", "Демиевская", "Васильковская")
+                .forEach(name -> builder.addStation(new Station(name, line3)));
+        StationIndex newIndex = builder.build();
+        assertTrue(newIndex.isFrozen());
+        assertEquals(4, line3.getStations().size());
+        assertThrows(IllegalStateException.class, builder::build);
+        assertThrows(IllegalStateException.class, () -> newIndex.addLine(new Line(6, "Серая")));
+        assertThrows(IllegalStateException.class, () -> line3.addStation(new Station("Теремки", line3)));
+        assertThrows(UnsupportedOperationException.class, () -> line3.getStations().clear());
+
+        calculator.swap(newIndex);
+        List<Station> newRoute = calculator.getShortestRoute(from, to);
+        assertEquals(route.size() + 1, newRoute.size());
+        assertSame(newIndex.getStation("Демиевская"), newRoute.get(2));
+        assertSame(newIndex, calculator.getStationIndex());
+    }
+
+    @Test
+    @DisplayName("Travel time matrix")
+    void getTravelTimeMatrix() {
+        List<Station> stations = new ArrayList<>(stationIndex.getStations());
+        TravelTimeMatrix matrix = calculator.getTravelTimeMatrix(stations, stations);
+
+        assertEquals(stations.size(), matrix.getRows());
+        assertEquals(stations.size(), matrix.getColumns());
+        for (int i = 0; i < stations.size(); i++) {
+            for (int j = 0; j < stations.size(); j++) {
+                List<Station> route = calculator.getShortestRoute(stations.get(i), stations.get(j));
+                assertEquals(calculator.getDuration(route), matrix.getDuration(i, j), 1e-9);
+                int transfers = 0;
+                for (int k = 1; k < route.size(); k++) {
+                    transfers += route.get(k - 1).getLine().equals(route.get(k).getLine()) ? 0 : 1;
+                }
+                assertEquals(transfers, matrix.getTransfers(i, j));
+            }
+        }
+    }
+
+    StationIndex loadTwoLines() throws Exception {
+        StationIndex network = new StationIndex();
+        new NetworkLoader(network).read(new ByteArrayInputStream(("{\"lines\": ["
+                + "{\"number\": 1, \"name\": \"One\", \"durations\": [1, 1, 20]}, "
+                + "{\"number\": 2, \"name\": \"Two\", \"durations\": [2]}], "
+                + "\"stations\": {\"1\": [\"A\", \"B\", \"C\", \"D\"], \"2\": [\"E\", \"F\"]}, "
+                + "\"connections\": [{\"stations\": [{\"line\": 1, \"station\": \"C\"}, "
+                + "{\"line\": 2, \"station\": \"E\"}], \"duration\": 1}, "
+                + "[{\"line\": 1, \"station\": \"D\"}, {\"line\": 2, \"station\": \"F\"}]]}")
+                .getBytes(StandardCharsets.UTF_8)));
+        return network.freeze();
+    }
+
+    @Test
+    @DisplayName("The fastest route with running and transfer times")
+    void getShortestRouteWithDurations() throws Exception {
+        StationIndex network = loadTwoLines();
+        RouteCalculator calculator = new RouteCalculator(network);
+        Station from = network.getStation("A");
+        Station to = network.getStation("D");
+
+        List<Station> route = calculator.getShortestRoute(from, to);
+        assertEquals(Arrays.asList("A", "B", "C", "E", "F", "D"),
+                route.stream().map(Station::getName).collect(Collectors.toList()));
+        assertEquals(1 + 1 + 1 + 2 + StationIndex.DEFAULT_TRANSFER_TIME, calculator.getDuration(route));
+        assertEquals(22, RouteCalculator.calculateDuration(from.getLine().getSegment(0, 3)));
+        assertEquals(from.getLine().getSegment(0, 3),
+                new RouteCalculator(network, RouteCalculator.Mode.MIN_TRANSFERS).getShortestRoute(from, to));
+    }
+
+    @Test
+    @DisplayName("Route across the end of a loop line has no transfers")
+    void countTransfersOnLoopLine() throws Exception {
+        StationIndex network = new StationIndex();
+        new NetworkLoader(network).read(new ByteArrayInputStream(("{\"lines\": ["
+                + "{\"number\": 1, \"name\": \"Ring\", \"loop\": true, \"durations\": [1, 1, 1, 1, 1]}], "
+                + "\"stations\": {\"1\": [\"A\", \"B\", \"C\", \"D\", \"E\"]}}")
+                .getBytes(StandardCharsets.UTF_8)));
+        RouteCalculator calculator = new RouteCalculator(network.freeze());
+
+        List<Station> route = calculator.getShortestRoute(network.getStation("B"), network.getStation("E"));
+        assertEquals(Arrays.asList("B", "A", "E"), route.stream().map(Station::getName).collect(Collectors.toList()));
+        assertEquals(2, ((Route) route).getSegments().size());
+        assertEquals(0, Route.countTransfers(route));
+        assertEquals(0, Route.countTransfers(new ArrayList<>(route)));
+    }
+
+    @Test
+    @DisplayName("Alternative routes in the order of the travel time")
+    void getAlternativeRoutes() throws Exception {
+        StationIndex network = loadTwoLines();
+        RouteCalculator calculator = new RouteCalculator(network);
+        Station from = network.getStation("A");
+        Station to = network.getStation("D");
+
+        List<RouteAlternative> routes = calculator.getAlternativeRoutes(from, to, 5);
+        assertEquals(2, routes.size());
+        assertEquals(Arrays.asList("A", "B", "C", "E", "F", "D"),
+                routes.get(0).getRoute().stream().map(Station::getName).collect(Collectors.toList()));
+        assertEquals(2, routes.get(0).getTransfers());
+        assertEquals(from.getLine().getSegment(0, 3), routes.get(1).getRoute());
+        assertEquals(22, routes.get(1).getDuration());
+        assertEquals(0, routes.get(1).getTransfers());
+
+        routes = calculator.getAlternativeRoutes(from, to, 5, List.of(network.getStation("E")));
+        assertEquals(1, routes.size());
+        assertEquals(from.getLine().getSegment(0, 3), routes.get(0).getRoute());
+        assertEquals(List.of(), calculator.getAlternativeRoutes(from, to, 5, List.of(to)));
+    }
+
+    @Test
+    @DisplayName("Alternative routes are loopless and distinct")
+    void getAlternativeRoutesInGeneratedNetwork() throws Exception {
+        StationIndex network = TestNetworks.generate(new NetworkGenerator().seed(4).lines(30).stationsPerLine(10, 20)
+                .hubs(3, 4)).freeze();
+        RouteCalculator calculator = new RouteCalculator(network);
+        List<Station> stations = new ArrayList<>(network.getStations());
+        Station from = stations.get(0);
+        Station to = stations.get(stations.size() - 1);
+
+        List<RouteAlternative> routes = calculator.getAlternativeRoutes(from, to, 5);
+        assertEquals(5, routes.size());
+        assertEquals(calculator.getDuration(calculator.getShortestRoute(from, to)), routes.get(0).getDuration(), 1e-9);
+        for (int i = 0; i < routes.size(); i++) {
+            List<Station> route = routes.get(i).getRoute();
+            assertEquals(from, route.get(0));
+            assertEquals(to, route.get(route.size() - 1));
+            assertEquals(route.size(), new HashSet<>(route).size());
+            assertEquals(calculator.getDuration(route), routes.get(i).getDuration(), 1e-9);
+            if (i > 0) {
+                assertTrue(routes.get(i - 1).getDuration() <= routes.get(i).getDuration());
+                assertNotEquals(routes.get(i - 1).getRoute(), route);
+            }
+        }
+    }
+
     @Test
     @DisplayName("Travel duration evaluating")
     void calculateDuration() {
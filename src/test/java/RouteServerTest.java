@@ -0,0 +1,163 @@
+import com.kpi.fict.ot.RouteCalculator;
+import com.kpi.fict.ot.StationIndex;
+import com.kpi.fict.ot.core.Station;
+import com.kpi.fict.ot.io.NetworkLoader;
+import com.kpi.fict.ot.server.RouteServer;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RouteServerTest {
+    RouteServer server;
+    HttpClient client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        RouteCalculator calculator = new RouteCalculator(NetworkLoader.load(Paths.get("src/main/resources/kyiv.json")).freeze());
+        server = new RouteServer(calculator, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 4, 256);
+        server.start();
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    HttpResponse<String> get(String target) throws Exception {
+        return client.send(request(target), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+    }
+
+    HttpRequest request(String target) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + server.getAddress().getPort() + target)).build();
+    }
+
+    String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    @DisplayName("Route with its duration")
+    void getRoute() throws Exception {
+        HttpResponse<String> response = get("/route?from=" + encode("Хрещатик") + "&to=" + encode("Лук'янівська"));
+
+        assertEquals(200, response.statusCode());
+        JSONObject body = (JSONObject) new JSONParser().parse(response.body());
+        JSONArray stations = (JSONArray) body.get("stations");
+        assertEquals("Хрещатик", ((JSONObject) stations.get(0)).get("name"));
+        assertEquals("Лук'янівська", ((JSONObject) stations.get(stations.size() - 1)).get("name"));
+        assertEquals(1L, body.get("transfers"));
+    }
+
+    @Test
+    @DisplayName("Alternative routes avoiding a station")
+    void getAlternatives() throws Exception {
+        HttpResponse<String> response = get("/alternatives?from=" + encode("Хрещатик") + "&to="
+                + encode("Лук'янівська") + "&k=3&avoid=" + encode("Театральна"));
+
+        assertEquals(200, response.statusCode());
+        JSONObject body = (JSONObject) new JSONParser().parse(response.body());
+        JSONArray routes = (JSONArray) body.get("routes");
+        // the other route changes to the red line at Театральна
+        assertEquals(1, routes.size());
+        for (Object route : routes) {
+            for (Object station : (JSONArray) ((JSONObject) route).get("stations")) {
+                assertNotEquals("Театральна", ((JSONObject) station).get("name"));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Station suggestions")
+    void findStations() throws Exception {
+        HttpResponse<String> response = get("/stations?q=" + encode("хрещ"));
+
+        assertEquals(200, response.statusCode());
+        JSONObject body = (JSONObject) new JSONParser().parse(response.body());
+        assertFalse(((JSONArray) body.get("stations")).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Stations reachable within the limits")
+    void getReachable() throws Exception {
+        HttpResponse<String> response = get("/reachable?from=" + encode("Хрещатик") + "&maxDuration=10&maxTransfers=0");
+        assertEquals(200, response.statusCode());
+        JSONArray stations = (JSONArray) ((JSONObject) new JSONParser().parse(response.body())).get("stations");
+        assertEquals("Хрещатик", ((JSONObject) stations.get(0)).get("name"));
+        for (Object station : stations) {
+            assertEquals(1L, ((JSONObject) station).get("line"));
+        }
+        assertEquals(400, get("/reachable?from=" + encode("Хрещатик") + "&maxTransfers=-1").statusCode());
+    }
+
+    @Test
+    @DisplayName("Errors of the requests")
+    void rejectInvalidRequests() throws Exception {
+        assertEquals(404, get("/duration?from=" + encode("Хрещатикк") + "&to=" + encode("Арсенальна")).statusCode());
+        assertEquals(400, get("/duration?from=" + encode("Хрещатик")).statusCode());
+        assertEquals(414, get("/stations?q=" + "a".repeat(300)).statusCode());
+        URI uri = URI.create("http://localhost:" + server.getAddress().getPort() + "/route");
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri)
+                .POST(HttpRequest.BodyPublishers.ofString("{}")).build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(405, response.statusCode());
+    }
+
+    @Test
+    @DisplayName("Requests over the concurrency limit are rejected")
+    void rejectOverLimit() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch released = new CountDownLatch(1);
+        StationIndex stationIndex = NetworkLoader.load(Paths.get("src/main/resources/kyiv.json")).freeze();
+        RouteCalculator blocking = new RouteCalculator(stationIndex) {
+            @Override
+            public List<Station> getShortestRoute(Station from, Station to) {
+                entered.countDown();
+                try {
+                    released.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.getShortestRoute(from, to);
+            }
+        };
+        server.close();
+        server = new RouteServer(blocking, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1, 256);
+        server.start();
+        String route = "/route?from=" + encode("Хрещатик") + "&to=" + encode("Лук'янівська");
+
+        CompletableFuture<HttpResponse<String>> first = client.sendAsync(request(route),
+                HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        try {
+            assertEquals(503, get(route).statusCode());
+            assertEquals(503, get("/stations?q=" + encode("хрещ")).statusCode());
+        } finally {
+            released.countDown();
+        }
+        assertEquals(200, first.get(5, TimeUnit.SECONDS).statusCode());
+        assertEquals(200, get(route).statusCode());
+    }
+}
@@ -0,0 +1,71 @@
+import com.kpi.fict.ot.RouteCalculator;
+import com.kpi.fict.ot.StationIndex;
+import com.kpi.fict.ot.core.Station;
+import com.kpi.fict.ot.graph.RouteTable;
+import com.kpi.fict.ot.graph.StationGraph;
+import com.kpi.fict.ot.io.NetworkGenerator;
+import com.kpi.fict.ot.io.NetworkLoader;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RouteTableTest {
+
+    @Test
+    @DisplayName("Route table of Kyiv")
+    void routesInKyiv() throws Exception {
+        StationIndex stationIndex = NetworkLoader.load(Paths.get("src/main/resources/kyiv.json")).freeze();
+        RouteCalculator expected = new RouteCalculator(stationIndex);
+        RouteCalculator actual = new RouteCalculator(stationIndex, RouteCalculator.Mode.TABLE);
+        RouteTable table = actual.getRouteTable();
+        StationGraph graph = table.getGraph();
+
+        assertNotNull(table);
+        assertEquals(1, table.getHopBytes());
+        assertEquals(RouteTable.estimateMemory(graph), table.getMemoryUsage());
+        for (Station from : stationIndex.getStations()) {
+            for (Station to : stationIndex.getStations()) {
+                RouteAssertions.assertSameDuration(expected, actual, from, to);
+                int source = graph.getId(from);
+                int target = graph.getId(to);
+                assertEquals(expected.getDuration(expected.getShortestRoute(from, to)),
+                        table.getDuration(source, target), 1e-4);
+                assertEquals(table.getDuration(source, target), table.getDuration(target, source), 1e-4);
+                assertEquals(table.getTransfers(source, target), table.getTransfers(target, source));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Generated network and the memory limit")
+    void routesInGeneratedNetwork() throws Exception {
+        StationIndex stationIndex = TestNetworks.generate(new NetworkGenerator().seed(3).lines(40)
+                .stationsPerLine(10, 30).hubs(4, 4)).freeze();
+        StationGraph graph = RouteCalculator.compileGraph(stationIndex);
+        RouteCalculator expected = new RouteCalculator(stationIndex, graph, RouteCalculator.Mode.GRAPH);
+        RouteCalculator actual = new RouteCalculator(stationIndex, graph, RouteCalculator.Mode.TABLE);
+        RouteCalculator refused = new RouteCalculator(stationIndex, graph, RouteCalculator.Mode.TABLE,
+                RouteTable.estimateMemory(graph) - 1);
+
+        assertNotNull(actual.getRouteTable());
+        assertNull(refused.getRouteTable());
+        List<Station> stations = new ArrayList<>(stationIndex.getStations());
+        Random random = new Random(7);
+        for (int i = 0; i < 500; i++) {
+            Station from = stations.get(random.nextInt(stations.size()));
+            Station to = stations.get(random.nextInt(stations.size()));
+            RouteAssertions.assertSameDuration(expected, actual, from, to);
+            RouteAssertions.assertSameDuration(expected, refused, from, to);
+        }
+        assertTrue(actual.getRouteTable().getMemoryUsage() < (long) graph.size() * graph.size() * 8);
+    }
+}
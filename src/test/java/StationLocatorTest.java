@@ -0,0 +1,213 @@
+import com.kpi.fict.ot.RouteCalculator;
+import com.kpi.fict.ot.StationIndex;
+import com.kpi.fict.ot.core.Closure;
+import com.kpi.fict.ot.core.Coordinates;
+import com.kpi.fict.ot.core.Line;
+import com.kpi.fict.ot.core.Station;
+import com.kpi.fict.ot.graph.ShortestPathSearch;
+import com.kpi.fict.ot.graph.StationGraph;
+import com.kpi.fict.ot.io.NetworkFormatException;
+import com.kpi.fict.ot.io.NetworkGenerator;
+import com.kpi.fict.ot.io.NetworkLoader;
+import com.kpi.fict.ot.io.NetworkSnapshot;
+import com.kpi.fict.ot.lookup.NearbyStation;
+import com.kpi.fict.ot.lookup.StationLocator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StationLocatorTest {
+
+    @TempDir
+    Path directory;
+
+    StationIndex stationIndex;
+    List<Station> stations;
+
+    @BeforeEach
+    void beforeEach() throws Exception {
+        stationIndex = TestNetworks.generate(new NetworkGenerator().seed(23).lines(20).stationsPerLine(10, 30)
+                .hubs(3, 4).loopShare(0.2));
+        stations = new ArrayList<>(stationIndex.getStations());
+        Random random = new Random(29);
+        for (Station station : stations) {
+            stationIndex.setLocation(station, 50.3 + random.nextDouble() * 0.3, 30.3 + random.nextDouble() * 0.5);
+        }
+        stationIndex.freeze();
+    }
+
+    StationIndex read(String json) throws Exception {
+        StationIndex index = new StationIndex();
+        new NetworkLoader(index).read(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+        return index;
+    }
+
+    List<NearbyStation> scan(double latitude, double longitude) {
+        List<NearbyStation> all = new ArrayList<>();
+        for (Station station : stations) {
+            all.add(new NearbyStation(station, Coordinates.distance(latitude, longitude,
+                    station.getLatitude(), station.getLongitude())));
+        }
+        all.sort(Comparator.comparingDouble(NearbyStation::getDistance));
+        return all;
+    }
+
+    @Test
+    @DisplayName("Nearest stations and stations within a radius")
+    void nearestAndWithin() {
+        StationLocator locator = stationIndex.getLocator();
+        assertEquals(stations.size(), locator.size());
+
+        Random random = new Random(31);
+        for (int i = 0; i < 200; i++) {
+            double latitude = 50.25 + random.nextDouble() * 0.4;
+            double longitude = 30.25 + random.nextDouble() * 0.6;
+            List<NearbyStation> expected = scan(latitude, longitude);
+
+            List<NearbyStation> nearest = stationIndex.findNearestStations(latitude, longitude, 7);
+            assertEquals(7, nearest.size());
+            for (int k = 0; k < nearest.size(); k++) {
+                assertEquals(expected.get(k).getDistance(), nearest.get(k).getDistance(), 1e-6);
+            }
+
+            double radius = 500 + random.nextDouble() * 2000;
+            List<NearbyStation> within = stationIndex.findStationsWithin(latitude, longitude, radius);
+            long count = expected.stream().filter(nearby -> nearby.getDistance() <= radius).count();
+            assertEquals(count, within.size());
+            for (int k = 0; k < within.size(); k++) {
+                assertEquals(expected.get(k).getDistance(), within.get(k).getDistance(), 1e-6);
+            }
+        }
+        assertEquals(stations.size(), locator.nearest(50.4, 30.5, stations.size() + 10).size());
+        assertThrows(IllegalArgumentException.class, () -> locator.nearest(91, 30, 1));
+        assertThrows(IllegalArgumentException.class, () -> locator.nearest(50, 30, 0));
+        assertThrows(IllegalArgumentException.class, () -> locator.within(50, 30, -1));
+        assertThrows(IllegalStateException.class, () -> stations.get(0).setLocation(50.4, 30.5));
+    }
+
+    @Test
+    @DisplayName("Locations in the network file")
+    void loadLocations() throws Exception {
+        StationIndex loaded = read("{\"stations\": {\"1\": [{\"name\": \"Західна\", \"latitude\": 0.5, "
+                + "\"longitude\": 179.999}, \"Центральна\", {\"name\": \"Східна\", \"latitude\": 0.5, "
+                + "\"longitude\": -179.999}]}, \"lines\": [{\"number\": 1, \"name\": \"Перша\"}]}").freeze();
+        Station west = loaded.getStation("Західна");
+        Station east = loaded.getStation("Східна");
+
+        assertTrue(west.hasLocation());
+        assertFalse(loaded.getStation("Центральна").hasLocation());
+        assertEquals(2, loaded.getLocator().size());
+        List<NearbyStation> within = loaded.findStationsWithin(0.5, 180, 150);
+        assertEquals(2, within.size());
+        assertEquals(Coordinates.distance(0.5, 179.999, 0.5, -179.999), 2 * within.get(0).getDistance(), 1e-6);
+        assertEquals(east, loaded.findNearestStations(0.5, -179.9999, 1).get(0).getStation());
+
+        assertThrows(NetworkFormatException.class, () -> read("{\"lines\": [{\"number\": 1, \"name\": \"Перша\"}], "
+                + "\"stations\": {\"1\": [{\"name\": \"Західна\", \"latitude\": 0.5}]}}"));
+        assertThrows(NetworkFormatException.class, () -> read("{\"lines\": [{\"number\": 1, \"name\": \"Перша\"}], "
+                + "\"stations\": {\"1\": [{\"name\": \"Західна\", \"latitude\": 95, \"longitude\": 0}]}}"));
+    }
+
+    @Test
+    @DisplayName("A* gives the shortest routes")
+    void goalDirected() {
+        RouteCalculator calculator = new RouteCalculator(stationIndex);
+        assertTrue(new ShortestPathSearch(calculator.getGraph()).isGoalDirected());
+        RouteCalculator hierarchy = new RouteCalculator(stationIndex, RouteCalculator.Mode.HIERARCHY);
+
+        Random random = new Random(37);
+        for (int i = 0; i < 300; i++) {
+            Station from = stations.get(random.nextInt(stations.size()));
+            Station to = stations.get(random.nextInt(stations.size()));
+            assertEquals(hierarchy.getDuration(hierarchy.getShortestRoute(from, to)),
+                    calculator.getDuration(calculator.getShortestRoute(from, to)), 1e-9);
+        }
+
+        StationIndex unlocated = new StationIndex();
+        Line line = new Line(1, "Перша");
+        unlocated.addLine(line);
+        for (String name : List.of("А", "Б")) {
+            Station station = new Station(name, line);
+            unlocated.addStation(station);
+            line.addStation(station);
+        }
+        assertFalse(new ShortestPathSearch(StationGraph.compile(unlocated)).isGoalDirected());
+    }
+
+    @Test
+    @DisplayName("Moving a station outdates the locator and the graph")
+    void moveStation() {
+        StationIndex index = new StationIndex();
+        Line line = new Line(1, "Перша");
+        index.addLine(line);
+        List<Station> located = new ArrayList<>();
+        for (String name : List.of("А", "Б", "В")) {
+            Station station = new Station(name, line);
+            index.addStation(station);
+            line.addStation(station);
+            index.setLocation(station, 50.4, 30.4 + located.size() * 0.1);
+            located.add(station);
+        }
+        RouteCalculator calculator = new RouteCalculator(index);
+        StationGraph graph = calculator.getGraph();
+        assertEquals(located.get(0), calculator.findNearestStation(50.4, 30.3));
+
+        long version = index.getVersion();
+        index.setLocation(located.get(2), 50.4, 30.2);
+        assertTrue(index.getVersion() > version);
+        assertEquals(located.get(2), index.getLocator().nearest(50.4, 30.1, 1).get(0).getStation());
+        assertEquals(located.get(2), calculator.findNearestStation(50.4, 30.1));
+        assertNotSame(graph, calculator.getGraph());
+        assertThrows(IllegalArgumentException.class, () -> index.setLocation(stations.get(0), 50.4, 30.5));
+        assertThrows(IllegalStateException.class, () -> stationIndex.setLocation(stations.get(0), 50.4, 30.5));
+    }
+
+    @Test
+    @DisplayName("Route between locations skips closed stations")
+    void routeBetweenLocations() {
+        RouteCalculator calculator = new RouteCalculator(stationIndex);
+        Station from = stations.get(3);
+        Station to = stations.get(stations.size() - 3);
+
+        List<Station> route = calculator.getShortestRoute(from.getLatitude(), from.getLongitude(),
+                to.getLatitude(), to.getLongitude());
+        assertEquals(calculator.getShortestRoute(from, to), route);
+
+        calculator.close(Closure.station(from));
+        Station nearest = calculator.findNearestStation(from.getLatitude(), from.getLongitude());
+        assertNotEquals(from, nearest);
+        assertEquals(scan(from.getLatitude(), from.getLongitude()).get(1).getStation(), nearest);
+    }
+
+    @Test
+    @DisplayName("Snapshot keeps the locations")
+    void snapshot() throws Exception {
+        StationGraph graph = RouteCalculator.compileGraph(stationIndex);
+        Path file = directory.resolve("generated.snapshot");
+        NetworkSnapshot.write(file, graph);
+
+        StationIndex restored = NetworkSnapshot.open(file).getStationIndex();
+        assertEquals(stations.size(), restored.getLocator().size());
+        for (Station station : stations) {
+            Station copy = restored.getStation(station.getName(), station.getLine().getNumber());
+            assertEquals(station.getLatitude(), copy.getLatitude());
+            assertEquals(station.getLongitude(), copy.getLongitude());
+        }
+    }
+}
@@ -0,0 +1,81 @@
+import com.kpi.fict.ot.core.Line;
+import com.kpi.fict.ot.core.Station;
+import com.kpi.fict.ot.lookup.StationMatch;
+import com.kpi.fict.ot.lookup.StationNameIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StationNameIndexTest {
+
+    StationNameIndex nameIndex;
+    Line line1;
+    Line line2;
+
+    @BeforeEach
+    @DisplayName("Station names")
+    void beforeEach() {
+        nameIndex = new StationNameIndex();
+        line1 = new Line(1, "Червона");
+        line2 = new Line(2, "Зелена");
+
+        Arrays.asList(
+                new Station("Лук'янівська", line2),
+                new Station("Театральна", line1),
+                new Station("Театральна", line2),
+                new Station("Теремки", line2),
+                new Station("Лісова", line1),
+                new Station("Либідська", line1)
+        ).forEach(nameIndex::add);
+    }
+
+    @Test
+    @DisplayName("Exact lookup ignores case and apostrophes")
+    void getStations() {
+        assertEquals("Лук'янівська", nameIndex.getStations("ЛУК’ЯНІВСЬКА").get(0).getName());
+        assertEquals("Лук'янівська", nameIndex.getStations("лукянівська").get(0).getName());
+        assertTrue(nameIndex.getStations("Нивки").isEmpty());
+    }
+
+    @Test
+    @DisplayName("The same name on several lines")
+    void getStationsOnSeveralLines() {
+        List<Station> stations = nameIndex.getStations("театральна");
+        assertEquals(Arrays.asList(line1, line2),
+                stations.stream().map(Station::getLine).collect(Collectors.toList()));
+    }
+
+    @Test
+    @DisplayName("Autocomplete ranks shorter names first")
+    void complete() {
+        List<String> names = nameIndex.complete("те", 10).stream()
+                .map(match -> match.getStation().getName())
+                .collect(Collectors.toList());
+        assertEquals(Arrays.asList("Теремки", "Театральна", "Театральна"), names);
+    }
+
+    @Test
+    @DisplayName("Fuzzy matching finds names with typos")
+    void findSimilar() {
+        List<StationMatch> matches = nameIndex.findSimilar("Лисова", 1, 10);
+        assertEquals(1, matches.size());
+        assertEquals("Лісова", matches.get(0).getStation().getName());
+        assertEquals(StationMatch.Kind.FUZZY, matches.get(0).getKind());
+        assertEquals(1, matches.get(0).getDistance());
+    }
+
+    @Test
+    @DisplayName("Search puts exact matches first")
+    void search() {
+        List<StationMatch> matches = nameIndex.search("Лісова", 10);
+        assertEquals(StationMatch.Kind.EXACT, matches.get(0).getKind());
+        assertEquals("Лісова", matches.get(0).getStation().getName());
+    }
+}
@@ -0,0 +1,23 @@
+import com.kpi.fict.ot.StationIndex;
+import com.kpi.fict.ot.io.NetworkGenerator;
+import com.kpi.fict.ot.io.NetworkLoader;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+public final class TestNetworks {
+
+    private TestNetworks() {
+    }
+
+    static StationIndex generate(NetworkGenerator generator) throws IOException {
+        StringWriter writer = new StringWriter();
+        generator.generate(writer);
+        StationIndex stationIndex = new StationIndex();
+        new NetworkLoader(stationIndex).read(new ByteArrayInputStream(writer.toString()
+                .getBytes(StandardCharsets.UTF_8)));
+        return stationIndex;
+    }
+}
@@ -0,0 +1,99 @@
+import com.kpi.fict.ot.StationIndex;
+import com.kpi.fict.ot.core.Station;
+import com.kpi.fict.ot.io.NetworkLoader;
+import com.kpi.fict.ot.timetable.Journey;
+import com.kpi.fict.ot.timetable.LineSchedule;
+import com.kpi.fict.ot.timetable.Timetable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class TimetableTest {
+    StationIndex stationIndex;
+    Timetable timetable;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stationIndex = new StationIndex();
+        new NetworkLoader(stationIndex).read(new ByteArrayInputStream(("{\"lines\": ["
+                + "{\"number\": 1, \"name\": \"One\", \"durations\": [2, 2, 2]}, "
+                + "{\"number\": 2, \"name\": \"Two\", \"durations\": [3]}, "
+                + "{\"number\": 3, \"name\": \"Ring\", \"loop\": true, \"durations\": [1, 1, 1, 1]}], "
+                + "\"stations\": {\"1\": [\"A\", \"B\", \"C\", \"D\"], \"2\": [\"E\", \"F\"], "
+                + "\"3\": [\"R1\", \"R2\", \"R3\", \"R4\"]}, "
+                + "\"connections\": [{\"stations\": [{\"line\": 1, \"station\": \"B\"}, "
+                + "{\"line\": 2, \"station\": \"E\"}], \"duration\": 1}, "
+                + "[{\"line\": 1, \"station\": \"D\"}, {\"line\": 3, \"station\": \"R1\"}]]}")
+                .getBytes(StandardCharsets.UTF_8)));
+        stationIndex.freeze();
+        timetable = Timetable.build(stationIndex, Map.of(
+                1, new LineSchedule(new int[]{Timetable.parseTime("08:00"), Timetable.parseTime("08:10")}, new int[0]),
+                2, LineSchedule.ofHeadway(Timetable.parseTime("08:00"), Timetable.parseTime("09:00"), 300)),
+                LineSchedule.ofHeadway(Timetable.parseTime("06:00"), Timetable.parseTime("23:00"), 600));
+    }
+
+    @Test
+    @DisplayName("Waiting for the next train and a transfer")
+    void findEarliestArrivalWithTransfer() {
+        Journey journey = timetable.findEarliestArrival(stationIndex.getStation("A"), stationIndex.getStation("F"),
+                Timetable.parseTime("08:01"));
+
+        assertNotNull(journey);
+        assertEquals(2, journey.getLegs().size());
+        assertEquals(Timetable.parseTime("08:10"), journey.getLegs().get(0).getDepartureTime());
+        // 08:12 at B, 08:13 at E after the transfer, the train of 08:15 arrives at F at 08:18
+        assertEquals(Timetable.parseTime("08:18"), journey.getArrivalTime());
+        assertEquals(Arrays.asList("A", "B", "E", "F"),
+                journey.toRoute().stream().map(Station::getName).collect(Collectors.toList()));
+    }
+
+    @Test
+    @DisplayName("Loop trains pass from the last station to the first one")
+    void findEarliestArrivalOnLoop() {
+        Journey journey = timetable.findEarliestArrival(stationIndex.getStation("R1"), stationIndex.getStation("R4"),
+                Timetable.parseTime("12:00"));
+
+        assertEquals(Timetable.parseTime("12:01"), journey.getArrivalTime());
+        assertEquals(Arrays.asList("R1", "R4"),
+                journey.getLegs().get(0).getStations().stream().map(Station::getName).collect(Collectors.toList()));
+    }
+
+    @Test
+    @DisplayName("No trains after the end of service")
+    void findEarliestArrivalAfterService() {
+        assertNull(timetable.findEarliestArrival(stationIndex.getStation("A"), stationIndex.getStation("D"),
+                Timetable.parseTime("08:11")));
+        Journey journey = timetable.findEarliestArrival(stationIndex.getStation("C"), stationIndex.getStation("C"),
+                Timetable.parseTime("23:40"));
+        assertEquals(Collections.emptyList(), journey.getLegs());
+    }
+
+    @Test
+    @DisplayName("Headway-based timetable of Kyiv")
+    void findEarliestArrivalInKyiv() throws Exception {
+        StationIndex kyiv = NetworkLoader.load(Paths.get("src/main/resources/kyiv.json")).freeze();
+        Timetable kyivTimetable = Timetable.build(kyiv, Map.of(),
+                LineSchedule.ofHeadway(Timetable.parseTime("05:40"), Timetable.parseTime("23:40"), 240));
+
+        Journey journey = kyivTimetable.findEarliestArrival(kyiv.getStation("Академмістечко"), kyiv.getStation("Теремки"),
+                Timetable.parseTime("22:00"));
+        assertNotNull(journey);
+        assertEquals(2, journey.getLegs().size());
+        assertEquals("22:00", Timetable.formatTime(journey.getLegs().get(0).getDepartureTime()));
+        // the last train of the second line has passed the transfer station
+        assertNull(kyivTimetable.findEarliestArrival(kyiv.getStation("Академмістечко"), kyiv.getStation("Теремки"),
+                Timetable.parseTime("23:40")));
+    }
+}